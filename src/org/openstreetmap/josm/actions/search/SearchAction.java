@@ -42,6 +42,7 @@ import org.openstreetmap.josm.actions.search.SearchCompiler.ParseError;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Filter;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.gui.ExtendedDialog;
 import org.openstreetmap.josm.gui.preferences.ToolbarPreferences;
 import org.openstreetmap.josm.gui.preferences.ToolbarPreferences.ActionParser;
@@ -59,6 +60,12 @@ public class SearchAction extends JosmAction implements ParameterizedAction {
     /** Maximum number of characters before the search expression is shortened for display purposes. */
     public static final int MAX_LENGTH_SEARCH_EXPRESSION_DISPLAY = 100;
 
+    /**
+     * Determines if the tag and spatial indexes of the dataset are used to find the primitives to test.
+     * @since 8577
+     */
+    public static final BooleanProperty USE_INDEX = new BooleanProperty("search.use-index", true);
+
     private static final String SEARCH_EXPRESSION = "searchExpression";
 
     public static enum SearchMode {
@@ -462,11 +469,21 @@ public class SearchAction extends JosmAction implements ParameterizedAction {
                 foundMatches = sel.size();
             }
 
-            Collection<OsmPrimitive> all;
-            if (s.allElements) {
-                all = Main.main.getCurrentDataSet().allPrimitives();
-            } else {
-                all = Main.main.getCurrentDataSet().allNonDeletedCompletePrimitives();
+            DataSet ds = Main.main.getCurrentDataSet();
+            Collection<? extends OsmPrimitive> all = null;
+            if (s.mode != SearchMode.in_selection && USE_INDEX.get()) {
+                // only the matching primitives are added or removed, they can be searched among the candidates
+                Collection<? extends OsmPrimitive> candidates = matcher.getCandidates(ds);
+                if (candidates != null) {
+                    all = s.allElements ? candidates : Utils.filter(candidates, OsmPrimitive.nonDeletedCompletePredicate);
+                }
+            }
+            if (all == null) {
+                if (s.allElements) {
+                    all = ds.allPrimitives();
+                } else {
+                    all = ds.allNonDeletedCompletePrimitives();
+                }
             }
 
             for (OsmPrimitive osm : all) {
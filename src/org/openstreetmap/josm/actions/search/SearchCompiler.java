@@ -7,11 +7,15 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import java.io.PushbackReader;
 import java.io.StringReader;
 import java.text.Normalizer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -20,12 +24,15 @@ import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.actions.search.PushbackTokenizer.Range;
 import org.openstreetmap.josm.actions.search.PushbackTokenizer.Token;
 import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.OsmUtils;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.TagIndex;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.tools.Geometry;
 import org.openstreetmap.josm.tools.Predicate;
@@ -250,6 +257,28 @@ public class SearchCompiler {
         public final boolean evaluate(OsmPrimitive object) {
             return match(object);
         }
+
+        /**
+         * Returns the primitives of the dataset that may match, found from the tag index or the spatial index
+         * of the dataset, so that the other primitives do not have to be tested.
+         * The primitives returned still have to be tested with {@link #match}.
+         * @param ds the dataset
+         * @return the primitives that may match, or {@code null} if all the primitives of the dataset may match
+         * @since 8577
+         */
+        public Collection<? extends OsmPrimitive> getCandidates(DataSet ds) {
+            return null;
+        }
+
+        /**
+         * Returns the union of two collections of candidates, without duplicates.
+         */
+        protected static Collection<OsmPrimitive> union(Collection<? extends OsmPrimitive> c1, Collection<? extends OsmPrimitive> c2) {
+            Set<OsmPrimitive> result = Collections.newSetFromMap(new IdentityHashMap<OsmPrimitive, Boolean>());
+            result.addAll(c1);
+            result.addAll(c2);
+            return result;
+        }
     }
 
     /**
@@ -316,6 +345,11 @@ public class SearchCompiler {
         public boolean match(OsmPrimitive osm) {
             return false;
         }
+
+        @Override
+        public Collection<? extends OsmPrimitive> getCandidates(DataSet ds) {
+            return Collections.emptyList();
+        }
     }
 
     /**
@@ -361,6 +395,11 @@ public class SearchCompiler {
             else
                 return ret;
         }
+
+        @Override
+        public Collection<? extends OsmPrimitive> getCandidates(DataSet ds) {
+            return defaultValue ? null : ds.getTagIndex().get(key);
+        }
     }
 
     /**
@@ -376,6 +415,16 @@ public class SearchCompiler {
             return lhs.match(osm) && rhs.match(osm);
         }
 
+        @Override
+        public Collection<? extends OsmPrimitive> getCandidates(DataSet ds) {
+            // the primitives matching both operands are among the candidates of the most selective operand
+            Collection<? extends OsmPrimitive> c1 = lhs.getCandidates(ds);
+            Collection<? extends OsmPrimitive> c2 = rhs.getCandidates(ds);
+            if (c1 == null || (c2 != null && c2.size() < c1.size()))
+                return c2;
+            return c1;
+        }
+
         @Override
         public String toString() {
             return lhs + " && " + rhs;
@@ -395,6 +444,13 @@ public class SearchCompiler {
             return lhs.match(osm) || rhs.match(osm);
         }
 
+        @Override
+        public Collection<? extends OsmPrimitive> getCandidates(DataSet ds) {
+            Collection<? extends OsmPrimitive> c1 = lhs.getCandidates(ds);
+            Collection<? extends OsmPrimitive> c2 = c1 == null ? null : rhs.getCandidates(ds);
+            return c2 == null ? null : union(c1, c2);
+        }
+
         @Override
         public String toString() {
             return lhs + " || " + rhs;
@@ -414,6 +470,13 @@ public class SearchCompiler {
             return lhs.match(osm) ^ rhs.match(osm);
         }
 
+        @Override
+        public Collection<? extends OsmPrimitive> getCandidates(DataSet ds) {
+            Collection<? extends OsmPrimitive> c1 = lhs.getCandidates(ds);
+            Collection<? extends OsmPrimitive> c2 = c1 == null ? null : rhs.getCandidates(ds);
+            return c2 == null ? null : union(c1, c2);
+        }
+
         @Override
         public String toString() {
             return lhs + " ^ " + rhs;
@@ -593,6 +656,23 @@ public class SearchCompiler {
             return false;
         }
 
+        @Override
+        public Collection<? extends OsmPrimitive> getCandidates(DataSet ds) {
+            if (keyPattern != null || "timestamp".equals(key))
+                return null;
+            TagIndex index = ds.getTagIndex();
+            if (caseSensitive)
+                return index.get(key);
+            Collection<OsmPrimitive> result = null;
+            for (String k : index.getKeys()) {
+                if (key.equalsIgnoreCase(k)) {
+                    // a primitive may have several keys differing only by case
+                    result = result == null ? index.get(k) : union(result, index.get(k));
+                }
+            }
+            return result == null ? Collections.<OsmPrimitive>emptyList() : result;
+        }
+
         @Override
         public String toString() {
             return key + "=" + value;
@@ -625,6 +705,11 @@ public class SearchCompiler {
             }
             return compareMode < 0 ? compareResult < 0 : compareMode > 0 ? compareResult > 0 : compareResult == 0;
         }
+
+        @Override
+        public Collection<? extends OsmPrimitive> getCandidates(DataSet ds) {
+            return ds.getTagIndex().get(key);
+        }
     }
 
     /**
@@ -751,6 +836,18 @@ public class SearchCompiler {
             throw new AssertionError("Missed state");
         }
 
+        @Override
+        public Collection<? extends OsmPrimitive> getCandidates(DataSet ds) {
+            switch (mode) {
+            case EXACT:
+                return ds.getTagIndex().get(key, value);
+            case ANY_VALUE:
+                return ds.getTagIndex().get(key);
+            default:
+                return null;
+            }
+        }
+
         @Override
         public String toString() {
             return key + '=' + value;
@@ -1331,6 +1428,23 @@ public class SearchCompiler {
             } else
                 return false;
         }
+
+        @Override
+        public Collection<? extends OsmPrimitive> getCandidates(DataSet ds) {
+            // ways and relations without any node match if all their nodes have to be in the bounds
+            if (all)
+                return null;
+            Bounds bounds = getBounds();
+            if (bounds == null)
+                return Collections.emptyList();
+            // the matching primitives have at least one node in the bounds, so their bbox intersects the bounds
+            BBox bbox = new BBox(bounds.getMinLon(), bounds.getMinLat(), bounds.getMaxLon(), bounds.getMaxLat());
+            Collection<OsmPrimitive> result = new ArrayList<>();
+            result.addAll(ds.searchNodes(bbox));
+            result.addAll(ds.searchWays(bbox));
+            result.addAll(ds.searchRelations(bbox));
+            return result;
+        }
     }
 
     /**
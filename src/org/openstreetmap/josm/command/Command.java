@@ -140,6 +140,9 @@ public abstract class Command extends PseudoCommand {
     /** the map of OsmPrimitives in the original state to OsmPrimitives in cloned state */
     private Map<OsmPrimitive, PrimitiveData> cloneMap = new HashMap<>();
 
+    /** the original state of the OsmPrimitives, reduced to the changed fields by {@link #compactUndoData} */
+    private Map<OsmPrimitive, PrimitiveDelta> deltaMap = new HashMap<>();
+
     /** the layer which this command is applied to */
     private final OsmDataLayer layer;
 
@@ -174,9 +177,45 @@ public abstract class Command extends PseudoCommand {
             osm.accept(visitor);
         }
         cloneMap = visitor.orig;
+        deltaMap = new HashMap<>();
         return true;
     }
 
+    /**
+     * Reduces the original state of the primitives remembered by {@link #executeCommand} to the fields
+     * changed by the command, to save memory while the command is kept in the undo history.
+     * <p>
+     * Must be called right after the execution of the command: the original state is then rebuilt from
+     * the state of the primitives after the command, see {@link #undoCommand} and {@link #getOrig}.
+     * @since 8579
+     */
+    public void compactUndoData() {
+        if (cloneMap.isEmpty())
+            return;
+        Map<OsmPrimitive, PrimitiveDelta> deltas = new LinkedHashMap<>();
+        for (Entry<OsmPrimitive, PrimitiveData> e : cloneMap.entrySet()) {
+            deltas.put(e.getKey(), new PrimitiveDelta(e.getValue(), e.getKey()));
+        }
+        cloneMap = new HashMap<>();
+        deltaMap = deltas;
+    }
+
+    /**
+     * Returns an estimate of the memory used to undo this command.
+     * @return an estimate of the memory used to undo this command, in bytes
+     * @since 8579
+     */
+    public long getUndoDataSize() {
+        long size = 0;
+        for (PrimitiveData data : cloneMap.values()) {
+            size += 32 + PrimitiveDelta.getSize(data);
+        }
+        for (PrimitiveDelta delta : deltaMap.values()) {
+            size += 32 + delta.getSize();
+        }
+        return size;
+    }
+
     /**
      * Undoes the command.
      * It can be assumed that all objects are in the same state they were before.
@@ -191,6 +230,12 @@ public abstract class Command extends PseudoCommand {
                 e.getKey().load(e.getValue());
             }
         }
+        for (Entry<OsmPrimitive, PrimitiveDelta> e : deltaMap.entrySet()) {
+            OsmPrimitive primitive = e.getKey();
+            if (primitive.getDataSet() != null) {
+                primitive.load(e.getValue().restore(primitive));
+            }
+        }
     }
 
     /**
@@ -210,11 +255,14 @@ public abstract class Command extends PseudoCommand {
     /**
      * Lets other commands access the original version
      * of the object. Usually for undoing.
+     * If the undo data was compacted, the original version is rebuilt from the current state of the object,
+     * so it is only accurate while the object is in its state after the command.
      * @param osm The requested OSM object
      * @return The original version of the requested object, if any
      */
     public PrimitiveData getOrig(OsmPrimitive osm) {
-        return cloneMap.get(osm);
+        PrimitiveDelta delta = deltaMap.get(osm);
+        return delta != null ? delta.restore(osm) : cloneMap.get(osm);
     }
 
     /**
@@ -241,7 +289,7 @@ public abstract class Command extends PseudoCommand {
      * Return the primitives that take part in this command.
      */
     @Override public Collection<? extends OsmPrimitive> getParticipatingPrimitives() {
-        return cloneMap.keySet();
+        return deltaMap.isEmpty() ? cloneMap.keySet() : deltaMap.keySet();
     }
 
     /**
@@ -306,6 +354,7 @@ public abstract class Command extends PseudoCommand {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((cloneMap == null) ? 0 : cloneMap.hashCode());
+        result = prime * result + ((deltaMap == null) ? 0 : deltaMap.hashCode());
         result = prime * result + ((layer == null) ? 0 : layer.hashCode());
         return result;
     }
@@ -324,6 +373,11 @@ public abstract class Command extends PseudoCommand {
                 return false;
         } else if (!cloneMap.equals(other.cloneMap))
             return false;
+        if (deltaMap == null) {
+            if (other.deltaMap != null)
+                return false;
+        } else if (!deltaMap.equals(other.deltaMap))
+            return false;
         if (layer == null) {
             if (other.layer != null)
                 return false;
@@ -3,11 +3,11 @@ package org.openstreetmap.josm.command;
 
 import static org.openstreetmap.josm.tools.I18n.trn;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.List;
 
 import javax.swing.Icon;
 
@@ -48,9 +48,14 @@ public class MoveCommand extends Command {
     private double backupY;
 
     /**
-     * List of all old states of the objects.
+     * Old states of the nodes, in the order of {@link #nodes}: lat/lon, east/north (NaN if unknown) and modified flag.
+     * Kept in arrays rather than in {@link Command.OldNodeState} objects as large selections are often moved.
      */
-    private List<OldNodeState> oldState = new LinkedList<>();
+    private final double[] oldLat;
+    private final double[] oldLon;
+    private final double[] oldEast;
+    private final double[] oldNorth;
+    private final BitSet oldModified = new BitSet();
 
     /**
      * Constructs a new {@code MoveCommand} to move a primitive.
@@ -92,8 +97,21 @@ public class MoveCommand extends Command {
         this.x = x;
         this.y = y;
         this.nodes = AllNodesVisitor.getAllNodes(objects);
+        int size = nodes.size();
+        oldLat = new double[size];
+        oldLon = new double[size];
+        oldEast = new double[size];
+        oldNorth = new double[size];
+        int i = 0;
         for (Node n : this.nodes) {
-            oldState.add(new OldNodeState(n));
+            LatLon ll = n.getCoor();
+            EastNorth en = n.getEastNorth();
+            oldLat[i] = ll == null ? Double.NaN : ll.lat();
+            oldLon[i] = ll == null ? Double.NaN : ll.lon();
+            oldEast[i] = en == null ? Double.NaN : en.east();
+            oldNorth[i] = en == null ? Double.NaN : en.north();
+            oldModified.set(i, n.isModified());
+            i++;
         }
     }
 
@@ -180,12 +198,12 @@ public class MoveCommand extends Command {
     }
 
     private void updateCoordinates() {
-        Iterator<OldNodeState> it = oldState.iterator();
+        int i = 0;
         for (Node n : nodes) {
-            OldNodeState os = it.next();
-            if (os.getEastNorth() != null) {
-                n.setEastNorth(os.getEastNorth().add(x, y));
+            if (!Double.isNaN(oldEast[i])) {
+                n.setEastNorth(new EastNorth(oldEast[i] + x, oldNorth[i] + y));
             }
+            i++;
         }
     }
 
@@ -206,11 +224,11 @@ public class MoveCommand extends Command {
 
     @Override
     public void undoCommand() {
-        Iterator<OldNodeState> it = oldState.iterator();
+        int i = 0;
         for (Node n : nodes) {
-            OldNodeState os = it.next();
-            n.setCoor(os.getLatlon());
-            n.setModified(os.isModified());
+            n.setCoor(Double.isNaN(oldLat[i]) ? null : new LatLon(oldLat[i], oldLon[i]));
+            n.setModified(oldModified.get(i));
+            i++;
         }
     }
 
@@ -231,6 +249,11 @@ public class MoveCommand extends Command {
         return ImageProvider.get("data", "node");
     }
 
+    @Override
+    public long getUndoDataSize() {
+        return super.getUndoDataSize() + 33L * nodes.size();
+    }
+
     @Override
     public Collection<Node> getParticipatingPrimitives() {
         return nodes;
@@ -246,7 +269,11 @@ public class MoveCommand extends Command {
         temp = Double.doubleToLongBits(backupY);
         result = prime * result + (int) (temp ^ (temp >>> 32));
         result = prime * result + ((nodes == null) ? 0 : nodes.hashCode());
-        result = prime * result + ((oldState == null) ? 0 : oldState.hashCode());
+        result = prime * result + Arrays.hashCode(oldLat);
+        result = prime * result + Arrays.hashCode(oldLon);
+        result = prime * result + Arrays.hashCode(oldEast);
+        result = prime * result + Arrays.hashCode(oldNorth);
+        result = prime * result + oldModified.hashCode();
         result = prime * result + ((startEN == null) ? 0 : startEN.hashCode());
         temp = Double.doubleToLongBits(x);
         result = prime * result + (int) (temp ^ (temp >>> 32));
@@ -273,10 +300,9 @@ public class MoveCommand extends Command {
                 return false;
         } else if (!nodes.equals(other.nodes))
             return false;
-        if (oldState == null) {
-            if (other.oldState != null)
-                return false;
-        } else if (!oldState.equals(other.oldState))
+        if (!Arrays.equals(oldLat, other.oldLat) || !Arrays.equals(oldLon, other.oldLon)
+                || !Arrays.equals(oldEast, other.oldEast) || !Arrays.equals(oldNorth, other.oldNorth)
+                || !oldModified.equals(other.oldModified))
             return false;
         if (startEN == null) {
             if (other.startEN != null)
@@ -0,0 +1,271 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.command;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.RelationData;
+import org.openstreetmap.josm.data.osm.RelationMemberData;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.WayData;
+
+/**
+ * The state of a primitive before a command, reduced to the fields changed by the command.
+ * <p>
+ * The small attributes restored by {@link OsmPrimitive#load} (flags, version, user...) are always kept. The tags,
+ * the coordinates, the way nodes and the relation members are only kept if the command changed them, and
+ * the way nodes only for the part of the way that changed. The state before the command is rebuilt from the
+ * current state of the primitive, which must be the state right after the command.
+ * @since 8579
+ */
+final class PrimitiveDelta {
+
+    private static final int DELETED = 1;
+    private static final int MODIFIED = 2;
+    private static final int INCOMPLETE = 4;
+    private static final int COOR_CHANGED = 8;
+
+    private final int flags;
+    private final int version;
+    private final int changesetId;
+    private final int timestamp;
+    private final User user;
+
+    /** key and old value of the changed tags, the old value is null for the added tags. Null if the tags did not change */
+    private final String[] tags;
+
+    /** old coordinates of a node, NaN if unknown */
+    private final double lat;
+    private final double lon;
+
+    /** old ids of the changed way nodes, between the common first and last nodes. Null if the nodes did not change */
+    private final long[] nodes;
+    private final int nodesPrefix;
+    private final int nodesSuffix;
+
+    /** old members of a relation. Null if the members did not change */
+    private final RelationMemberData[] members;
+
+    /**
+     * Constructs a new {@code PrimitiveDelta}.
+     * @param before the state of the primitive before the command
+     * @param after the primitive, in its state after the command
+     */
+    PrimitiveDelta(PrimitiveData before, OsmPrimitive after) {
+        PrimitiveData current = after.save();
+        int f = (before.isDeleted() ? DELETED : 0) | (before.isModified() ? MODIFIED : 0) | (before.isIncomplete() ? INCOMPLETE : 0);
+        version = before.getVersion();
+        changesetId = before.getChangesetId();
+        timestamp = before.getRawTimestamp();
+        user = before.getUser();
+        tags = diffTags(before.getKeys(), current.getKeys());
+
+        double oldLat = Double.NaN;
+        double oldLon = Double.NaN;
+        if (before instanceof NodeData) {
+            LatLon oldCoor = ((NodeData) before).getCoor();
+            if (oldCoor != null) {
+                oldLat = oldCoor.lat();
+                oldLon = oldCoor.lon();
+            }
+            LatLon coor = ((NodeData) current).getCoor();
+            if (oldCoor == null ? coor != null : !oldCoor.equals(coor)) {
+                f |= COOR_CHANGED;
+            }
+        }
+        lat = oldLat;
+        lon = oldLon;
+        flags = f;
+
+        long[] oldNodes = null;
+        int prefix = 0;
+        int suffix = 0;
+        if (before instanceof WayData) {
+            List<Long> oldIds = ((WayData) before).getNodes();
+            List<Long> ids = ((WayData) current).getNodes();
+            if (!oldIds.equals(ids)) {
+                int max = Math.min(oldIds.size(), ids.size());
+                while (prefix < max && oldIds.get(prefix).equals(ids.get(prefix))) {
+                    prefix++;
+                }
+                while (suffix < max - prefix
+                        && oldIds.get(oldIds.size() - 1 - suffix).equals(ids.get(ids.size() - 1 - suffix))) {
+                    suffix++;
+                }
+                oldNodes = new long[oldIds.size() - prefix - suffix];
+                for (int i = 0; i < oldNodes.length; i++) {
+                    oldNodes[i] = oldIds.get(prefix + i);
+                }
+            }
+        }
+        nodes = oldNodes;
+        nodesPrefix = prefix;
+        nodesSuffix = suffix;
+
+        RelationMemberData[] oldMembers = null;
+        if (before instanceof RelationData) {
+            List<RelationMemberData> m = ((RelationData) before).getMembers();
+            if (!m.equals(((RelationData) current).getMembers())) {
+                oldMembers = m.toArray(new RelationMemberData[m.size()]);
+            }
+        }
+        members = oldMembers;
+    }
+
+    private static String[] diffTags(Map<String, String> before, Map<String, String> after) {
+        List<String> diff = new ArrayList<>();
+        for (Map.Entry<String, String> e : before.entrySet()) {
+            if (!e.getValue().equals(after.get(e.getKey()))) {
+                diff.add(e.getKey());
+                diff.add(e.getValue());
+            }
+        }
+        for (String key : after.keySet()) {
+            if (!before.containsKey(key)) {
+                diff.add(key);
+                diff.add(null);
+            }
+        }
+        return diff.isEmpty() ? null : diff.toArray(new String[diff.size()]);
+    }
+
+    /**
+     * Rebuilds the state of the primitive before the command.
+     * @param primitive the primitive, in its state after the command
+     * @return the state of the primitive before the command
+     */
+    PrimitiveData restore(OsmPrimitive primitive) {
+        PrimitiveData data = primitive.save();
+        data.setDeleted((flags & DELETED) != 0);
+        data.setModified((flags & MODIFIED) != 0);
+        data.setIncomplete((flags & INCOMPLETE) != 0);
+        data.setVersion(version);
+        data.setChangesetId(changesetId);
+        data.setRawTimestamp(timestamp);
+        data.setUser(user);
+        if (tags != null) {
+            Map<String, String> keys = new HashMap<>(data.getKeys());
+            for (int i = 0; i < tags.length; i += 2) {
+                if (tags[i + 1] == null) {
+                    keys.remove(tags[i]);
+                } else {
+                    keys.put(tags[i], tags[i + 1]);
+                }
+            }
+            data.setKeys(keys);
+        }
+        if (data instanceof NodeData && (flags & COOR_CHANGED) != 0) {
+            ((NodeData) data).setCoor(Double.isNaN(lat) ? null : new LatLon(lat, lon));
+        }
+        if (data instanceof WayData && nodes != null) {
+            List<Long> ids = ((WayData) data).getNodes();
+            // the way may have been changed without command since then, for example by a download
+            int prefix = Math.min(nodesPrefix, ids.size());
+            int suffix = Math.min(nodesSuffix, ids.size() - prefix);
+            List<Long> oldIds = new ArrayList<>(prefix + nodes.length + suffix);
+            oldIds.addAll(ids.subList(0, prefix));
+            for (long id : nodes) {
+                oldIds.add(id);
+            }
+            oldIds.addAll(ids.subList(ids.size() - suffix, ids.size()));
+            ((WayData) data).setNodes(oldIds);
+        }
+        if (data instanceof RelationData && members != null) {
+            ((RelationData) data).setMembers(Arrays.asList(members));
+        }
+        return data;
+    }
+
+    /**
+     * Returns an estimate of the memory used by this delta.
+     * @return an estimate of the memory used by this delta, in bytes
+     */
+    long getSize() {
+        long size = 64;
+        if (tags != null) {
+            size += 16 + 4 * tags.length;
+            for (String s : tags) {
+                size += s == null ? 0 : 40 + 2 * s.length();
+            }
+        }
+        if (nodes != null) {
+            size += 16 + 8 * nodes.length;
+        }
+        if (members != null) {
+            size += 16 + 44 * members.length;
+        }
+        return size;
+    }
+
+    /**
+     * Returns an estimate of the memory used by a full copy of a primitive.
+     * @param data the copy of the primitive
+     * @return an estimate of the memory used by the copy, in bytes
+     */
+    static long getSize(PrimitiveData data) {
+        long size = 64;
+        for (Map.Entry<String, String> e : data.getKeys().entrySet()) {
+            size += 88 + 2 * (e.getKey().length() + e.getValue().length());
+        }
+        if (data instanceof WayData) {
+            size += 40 + 24 * ((WayData) data).getNodesCount();
+        } else if (data instanceof RelationData) {
+            size += 40 + 44 * ((RelationData) data).getMembersCount();
+        }
+        return size;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + flags;
+        result = prime * result + version;
+        result = prime * result + changesetId;
+        result = prime * result + timestamp;
+        result = prime * result + ((user == null) ? 0 : user.hashCode());
+        result = prime * result + Arrays.hashCode(tags);
+        long temp = Double.doubleToLongBits(lat);
+        result = prime * result + (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(lon);
+        result = prime * result + (int) (temp ^ (temp >>> 32));
+        result = prime * result + Arrays.hashCode(nodes);
+        result = prime * result + nodesPrefix;
+        result = prime * result + nodesSuffix;
+        result = prime * result + Arrays.hashCode(members);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        PrimitiveDelta other = (PrimitiveDelta) obj;
+        if (flags != other.flags || version != other.version || changesetId != other.changesetId || timestamp != other.timestamp)
+            return false;
+        if (user == null) {
+            if (other.user != null)
+                return false;
+        } else if (!user.equals(other.user))
+            return false;
+        if (!Arrays.equals(tags, other.tags))
+            return false;
+        if (Double.doubleToLongBits(lat) != Double.doubleToLongBits(other.lat)
+                || Double.doubleToLongBits(lon) != Double.doubleToLongBits(other.lon))
+            return false;
+        if (!Arrays.equals(nodes, other.nodes) || nodesPrefix != other.nodesPrefix || nodesSuffix != other.nodesSuffix)
+            return false;
+        return Arrays.equals(members, other.members);
+    }
+}
@@ -55,6 +55,8 @@ public class SequenceCommand extends Command {
                 undoCommands(i-1);
                 return false;
             }
+            // the next commands may modify the same primitives
+            sequence[i].compactUndoData();
         }
         sequenceComplete = true;
         return true;
@@ -85,6 +87,15 @@ public class SequenceCommand extends Command {
         undoCommands(sequence.length-1);
     }
 
+    @Override
+    public long getUndoDataSize() {
+        long size = super.getUndoDataSize();
+        for (Command c : sequence) {
+            size += c.getUndoDataSize();
+        }
+        return size;
+    }
+
     @Override public void fillModifiedData(Collection<OsmPrimitive> modified, Collection<OsmPrimitive> deleted, Collection<OsmPrimitive> added) {
         for (Command c : sequence) {
             c.fillModifiedData(modified, deleted, added);
@@ -27,6 +27,9 @@ public class UndoRedoHandler implements MapView.LayerChangeListener {
 
     private final LinkedList<CommandQueueListener> listenerCommands = new LinkedList<>();
 
+    /** Estimate of the memory used by {@link #commands}, in bytes */
+    private long undoDataSize;
+
     /**
      * Constructs a new {@code UndoRedoHandler}.
      */
@@ -41,12 +44,19 @@ public class UndoRedoHandler implements MapView.LayerChangeListener {
     public void addNoRedraw(final Command c) {
         CheckParameterUtil.ensureParameterNotNull(c, "c");
         c.executeCommand();
+        c.compactUndoData();
         commands.add(c);
+        undoDataSize += c.getUndoDataSize();
         // Limit the number of commands in the undo list.
         // Currently you have to undo the commands one by one. If
         // this changes, a higher default value may be reasonable.
         if (commands.size() > Main.pref.getInteger("undo.max", 1000)) {
-            commands.removeFirst();
+            undoDataSize -= commands.removeFirst().getUndoDataSize();
+        }
+        // Optionally limit the memory used by the undo list (in MB), the last command is always kept
+        long maxSize = Main.pref.getInteger("undo.max_memory", 0) * 1024L * 1024L;
+        while (maxSize > 0 && undoDataSize > maxSize && commands.size() > 1) {
+            undoDataSize -= commands.removeFirst().getUndoDataSize();
         }
         redoCommands.clear();
     }
@@ -89,6 +99,7 @@ public class UndoRedoHandler implements MapView.LayerChangeListener {
         try {
             for (int i = 1; i <= num; ++i) {
                 final Command c = commands.removeLast();
+                undoDataSize -= c.getUndoDataSize();
                 c.undoCommand();
                 redoCommands.addFirst(c);
                 if (commands.isEmpty()) {
@@ -123,7 +134,9 @@ public class UndoRedoHandler implements MapView.LayerChangeListener {
         for (int i = 0; i < num; ++i) {
             final Command c = redoCommands.removeFirst();
             c.executeCommand();
+            c.compactUndoData();
             commands.add(c);
+            undoDataSize += c.getUndoDataSize();
             if (redoCommands.isEmpty()) {
                 break;
             }
@@ -135,6 +148,15 @@ public class UndoRedoHandler implements MapView.LayerChangeListener {
         }
     }
 
+    /**
+     * Returns an estimate of the memory used by the commands that can be undone.
+     * @return an estimate of the memory used by the commands that can be undone, in bytes
+     * @since 8579
+     */
+    public synchronized long getUndoDataSize() {
+        return undoDataSize;
+    }
+
     public void fireCommandsChanged() {
         for (final CommandQueueListener l : listenerCommands) {
             l.commandChanged(commands.size(), redoCommands.size());
@@ -144,6 +166,7 @@ public class UndoRedoHandler implements MapView.LayerChangeListener {
     public void clean() {
         redoCommands.clear();
         commands.clear();
+        undoDataSize = 0;
         fireCommandsChanged();
     }
 
@@ -164,6 +187,10 @@ public class UndoRedoHandler implements MapView.LayerChangeListener {
             }
         }
         if (changed) {
+            undoDataSize = 0;
+            for (Command c : commands) {
+                undoDataSize += c.getUndoDataSize();
+            }
             fireCommandsChanged();
         }
     }
@@ -0,0 +1,444 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.jcs.engine.CacheConstants;
+import org.apache.commons.jcs.engine.behavior.ICacheElement;
+import org.apache.commons.jcs.engine.behavior.ICompositeCacheAttributes;
+import org.apache.commons.jcs.engine.control.CompositeCache;
+import org.apache.commons.jcs.engine.control.group.GroupAttrName;
+import org.apache.commons.jcs.engine.memory.behavior.IMemoryCache;
+import org.apache.commons.jcs.engine.stats.StatElement;
+import org.apache.commons.jcs.engine.stats.Stats;
+import org.apache.commons.jcs.engine.stats.behavior.IStatElement;
+import org.apache.commons.jcs.engine.stats.behavior.IStats;
+
+/**
+ * LRU memory cache for JCS, limited by the estimated size of its objects in memory instead of their number.
+ * <p>
+ * The size of {@link CacheEntry} objects is the size of their content, plus the size of the decoded image
+ * for {@link BufferedImageCacheEntry}. As images are decoded after the entries are added to the cache, the size
+ * of an entry is computed again each time it is read.
+ * <p>
+ * Entries are spread over independent stripes, each with its own lock and its share of the budget, so that
+ * reading a tile while painting does not wait for the loader threads adding other tiles.
+ * <p>
+ * The budget is given by {@link BudgetedMemoryCacheAttributes}. With other attributes, an average size is
+ * assumed for each of the maximum number of objects.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ * @since 8572
+ */
+public class BudgetedMemoryCache<K, V> implements IMemoryCache<K, V> {
+
+    private static final int STRIPES = 16;
+    /** Estimated overhead of the cache element, its attributes and the map entry */
+    private static final long ENTRY_OVERHEAD = 256;
+    /** Estimated size of an object when nothing better is known */
+    private static final long DEFAULT_OBJECT_SIZE = 1024;
+    /** Estimated size of an object to compute the budget from the maximum number of objects */
+    private static final long AVERAGE_OBJECT_SIZE = 256 * 1024;
+
+    private static final class Node<K, V> {
+        private final ICacheElement<K, V> element;
+        private long size;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(ICacheElement<K, V> element, long size) {
+            this.element = element;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Part of the cache, with its own lock. Nodes are kept in a list from the most recently used (head)
+     * to the least recently used (tail).
+     */
+    private static final class Stripe<K, V> {
+        private final Map<K, Node<K, V>> map = new HashMap<>();
+        private Node<K, V> head;
+        private Node<K, V> tail;
+        private long size;
+
+        private void addFirst(Node<K, V> node) {
+            node.prev = null;
+            node.next = head;
+            if (head != null) {
+                head.prev = node;
+            }
+            head = node;
+            if (tail == null) {
+                tail = node;
+            }
+            size += node.size;
+        }
+
+        private void unlink(Node<K, V> node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                head = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            } else {
+                tail = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size -= node.size;
+        }
+
+        private void removeNode(Node<K, V> node) {
+            map.remove(node.element.getKey());
+            unlink(node);
+        }
+
+        private void clear() {
+            map.clear();
+            head = null;
+            tail = null;
+            size = 0;
+        }
+    }
+
+    private CompositeCache<K, V> cache;
+    private ICompositeCacheAttributes cacheAttributes;
+    private Stripe<K, V>[] stripes;
+    private volatile long stripeLimit;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong putCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized void initialize(CompositeCache<K, V> hub) {
+        this.cache = hub;
+        this.cacheAttributes = hub.getCacheAttributes();
+        if (stripes == null) {
+            stripes = new Stripe[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe<>();
+            }
+        }
+        stripeLimit = getMaxMemorySize() / STRIPES;
+    }
+
+    /**
+     * Returns the maximum size of the objects kept in memory.
+     * @return the maximum size, in bytes
+     */
+    public long getMaxMemorySize() {
+        if (cacheAttributes instanceof BudgetedMemoryCacheAttributes) {
+            return ((BudgetedMemoryCacheAttributes) cacheAttributes).getMaxMemorySize() * 1024L;
+        }
+        return cacheAttributes.getMaxObjects() * AVERAGE_OBJECT_SIZE;
+    }
+
+    private Stripe<K, V> getStripe(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (STRIPES - 1)];
+    }
+
+    private static long sizeOf(ICacheElement<?, ?> element) {
+        Object value = element.getVal();
+        long size;
+        if (value instanceof BufferedImageCacheEntry) {
+            size = ((BufferedImageCacheEntry) value).getMemorySize();
+        } else if (value instanceof CacheEntry) {
+            byte[] content = ((CacheEntry) value).getContent();
+            size = content == null ? 0 : content.length;
+        } else {
+            size = DEFAULT_OBJECT_SIZE;
+        }
+        return size + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * Removes the least recently used nodes until the stripe fits in its budget, keeping at least the most recent node.
+     * Must be called with the lock of the stripe held.
+     */
+    private List<ICacheElement<K, V>> trim(Stripe<K, V> stripe, List<ICacheElement<K, V>> evicted) {
+        List<ICacheElement<K, V>> ret = evicted;
+        long limit = stripeLimit;
+        while (stripe.size > limit && stripe.tail != stripe.head) {
+            Node<K, V> node = stripe.tail;
+            stripe.removeNode(node);
+            if (ret == null) {
+                ret = new ArrayList<>();
+            }
+            ret.add(node.element);
+        }
+        return ret;
+    }
+
+    /**
+     * Spools the evicted elements. Must be called without holding any lock.
+     */
+    private void evicted(List<ICacheElement<K, V>> evicted) {
+        if (evicted != null) {
+            evictionCount.addAndGet(evicted.size());
+            for (ICacheElement<K, V> element : evicted) {
+                cache.spoolToDisk(element);
+            }
+        }
+    }
+
+    @Override
+    public void update(ICacheElement<K, V> ce) {
+        putCount.incrementAndGet();
+        Node<K, V> node = new Node<>(ce, sizeOf(ce));
+        Stripe<K, V> stripe = getStripe(ce.getKey());
+        List<ICacheElement<K, V>> evicted;
+        synchronized (stripe) {
+            Node<K, V> old = stripe.map.put(ce.getKey(), node);
+            if (old != null) {
+                stripe.unlink(old);
+            }
+            stripe.addFirst(node);
+            evicted = trim(stripe, null);
+        }
+        evicted(evicted);
+    }
+
+    @Override
+    public ICacheElement<K, V> get(K key) {
+        Stripe<K, V> stripe = getStripe(key);
+        ICacheElement<K, V> element;
+        List<ICacheElement<K, V>> evicted = null;
+        synchronized (stripe) {
+            Node<K, V> node = stripe.map.get(key);
+            if (node == null) {
+                element = null;
+            } else {
+                element = node.element;
+                stripe.unlink(node);
+                // the image might have been decoded since the last access
+                node.size = sizeOf(element);
+                stripe.addFirst(node);
+                evicted = trim(stripe, null);
+            }
+        }
+        if (element == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+            evicted(evicted);
+        }
+        return element;
+    }
+
+    @Override
+    public ICacheElement<K, V> getQuiet(K key) {
+        Stripe<K, V> stripe = getStripe(key);
+        synchronized (stripe) {
+            Node<K, V> node = stripe.map.get(key);
+            return node == null ? null : node.element;
+        }
+    }
+
+    @Override
+    public Map<K, ICacheElement<K, V>> getMultiple(Set<K> keys) {
+        Map<K, ICacheElement<K, V>> elements = new HashMap<>();
+        if (keys != null) {
+            for (K key : keys) {
+                ICacheElement<K, V> element = get(key);
+                if (element != null) {
+                    elements.put(key, element);
+                }
+            }
+        }
+        return elements;
+    }
+
+    @Override
+    public boolean remove(K key) {
+        boolean removed = false;
+        if (key instanceof String && ((String) key).endsWith(CacheConstants.NAME_COMPONENT_DELIMITER)) {
+            // remove all keys of the same name hierarchy
+            for (Stripe<K, V> stripe : stripes) {
+                synchronized (stripe) {
+                    for (Iterator<Node<K, V>> it = stripe.map.values().iterator(); it.hasNext();) {
+                        Node<K, V> node = it.next();
+                        K k = node.element.getKey();
+                        if (k instanceof String && ((String) k).startsWith((String) key)) {
+                            it.remove();
+                            stripe.unlink(node);
+                            removed = true;
+                        }
+                    }
+                }
+            }
+        } else if (key instanceof GroupAttrName && ((GroupAttrName<?>) key).attrName == null) {
+            // remove all keys of the same group
+            for (Stripe<K, V> stripe : stripes) {
+                synchronized (stripe) {
+                    for (Iterator<Node<K, V>> it = stripe.map.values().iterator(); it.hasNext();) {
+                        Node<K, V> node = it.next();
+                        K k = node.element.getKey();
+                        if (k instanceof GroupAttrName && ((GroupAttrName<?>) k).groupId.equals(((GroupAttrName<?>) key).groupId)) {
+                            it.remove();
+                            stripe.unlink(node);
+                            removed = true;
+                        }
+                    }
+                }
+            }
+        } else {
+            Stripe<K, V> stripe = getStripe(key);
+            synchronized (stripe) {
+                Node<K, V> node = stripe.map.get(key);
+                if (node != null) {
+                    stripe.removeNode(node);
+                    removed = true;
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void removeAll() {
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    @Override
+    public int freeElements(int numberToFree) {
+        List<ICacheElement<K, V>> freed = new ArrayList<>();
+        // remove the least recently used element of each stripe in turn
+        boolean found = true;
+        while (freed.size() < numberToFree && found) {
+            found = false;
+            for (Stripe<K, V> stripe : stripes) {
+                synchronized (stripe) {
+                    if (stripe.tail != null && freed.size() < numberToFree) {
+                        freed.add(stripe.tail.element);
+                        stripe.removeNode(stripe.tail);
+                        found = true;
+                    }
+                }
+            }
+        }
+        evicted(freed);
+        return freed.size();
+    }
+
+    @Override
+    public void waterfal(ICacheElement<K, V> ce) {
+        cache.spoolToDisk(ce);
+    }
+
+    @Override
+    public Set<K> getKeySet() {
+        Set<K> keys = new LinkedHashSet<>();
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                keys.addAll(stripe.map.keySet());
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.map.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the estimated size of the objects in memory.
+     * @return the size of the objects in memory, in bytes
+     */
+    public long getMemorySize() {
+        long size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of objects found in this cache.
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of objects not found in this cache.
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of objects removed to keep the cache within its budget.
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public IStats getStatistics() {
+        IStats stats = new Stats();
+        stats.setTypeName("Budgeted Memory Cache");
+        List<IStatElement<?>> elems = new ArrayList<>();
+        elems.add(new StatElement<>("Map Size", Integer.valueOf(getSize())));
+        elems.add(new StatElement<>("Memory Size", Long.valueOf(getMemorySize())));
+        elems.add(new StatElement<>("Max Memory Size", Long.valueOf(getMaxMemorySize())));
+        elems.add(new StatElement<>("Put Count", Long.valueOf(putCount.get())));
+        elems.add(new StatElement<>("Hit Count", Long.valueOf(hitCount.get())));
+        elems.add(new StatElement<>("Miss Count", Long.valueOf(missCount.get())));
+        elems.add(new StatElement<>("Eviction Count", Long.valueOf(evictionCount.get())));
+        stats.setStatElements(elems);
+        return stats;
+    }
+
+    @Override
+    public void dispose() {
+        // nothing to release, the elements are written to disk when they are added
+    }
+
+    @Override
+    public ICompositeCacheAttributes getCacheAttributes() {
+        return cacheAttributes;
+    }
+
+    @Override
+    public synchronized void setCacheAttributes(ICompositeCacheAttributes cattr) {
+        this.cacheAttributes = cattr;
+        stripeLimit = getMaxMemorySize() / STRIPES;
+    }
+
+    @Override
+    public CompositeCache<K, V> getCompositeCache() {
+        return cache;
+    }
+}
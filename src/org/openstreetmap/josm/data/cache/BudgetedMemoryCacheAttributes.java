@@ -0,0 +1,39 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import org.apache.commons.jcs.engine.CompositeCacheAttributes;
+
+/**
+ * Configuration of a cache region whose memory cache is a {@link BudgetedMemoryCache}.
+ * @since 8572
+ */
+public class BudgetedMemoryCacheAttributes extends CompositeCacheAttributes {
+    private static final long serialVersionUID = 1L;
+
+    private int maxMemorySize;
+
+    /**
+     * Constructs a new {@code BudgetedMemoryCacheAttributes}.
+     * @param maxMemorySize the maximum size of the objects kept in memory, in kB
+     */
+    public BudgetedMemoryCacheAttributes(int maxMemorySize) {
+        this.maxMemorySize = maxMemorySize;
+        setMemoryCacheName(BudgetedMemoryCache.class.getName());
+    }
+
+    /**
+     * Sets the maximum size of the objects kept in memory.
+     * @param maxMemorySize the maximum size in kB
+     */
+    public void setMaxMemorySize(int maxMemorySize) {
+        this.maxMemorySize = maxMemorySize;
+    }
+
+    /**
+     * Returns the maximum size of the objects kept in memory.
+     * @return the maximum size in kB
+     */
+    public int getMaxMemorySize() {
+        return maxMemorySize;
+    }
+}
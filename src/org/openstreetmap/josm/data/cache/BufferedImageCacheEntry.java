@@ -2,11 +2,9 @@
 package org.openstreetmap.josm.data.cache;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import java.awt.image.DataBuffer;
 import java.io.IOException;
 
-import javax.imageio.ImageIO;
-
 /**
  * Cache Entry that has methods to get the BufferedImage, that will be cached along in memory
  * but will be not serialized when saved to the disk (to avoid duplication of data)
@@ -21,6 +19,8 @@ public class BufferedImageCacheEntry extends CacheEntry {
     // we need to have separate control variable, to know, if we already tried to load the image, as img might be null
     // after we loaded image, as for example, when image file is malformed (eg. HTML file)
     private transient volatile boolean imageLoaded = false;
+    // subsampling used to decode img
+    private transient volatile int imageSubsampling = 1;
 
     /**
      *
@@ -38,14 +38,28 @@ public class BufferedImageCacheEntry extends CacheEntry {
      * @throws IOException if an error occurs during reading.
      */
     public BufferedImage getImage() throws IOException {
-        if (imageLoaded)
+        return getImage(1);
+    }
+
+    /**
+     * Returns BufferedImage for the content, decoded with at most the given subsampling. Subsequent calls
+     * will return the same instance, unless a finer subsampling is asked for.
+     *
+     * @param subsampling the number of source pixels, in each direction, for one pixel of the image
+     * @return BufferedImage of cache entry content
+     * @throws IOException if an error occurs during reading.
+     * @since 8573
+     */
+    public BufferedImage getImage(int subsampling) throws IOException {
+        if (isImageLoaded(subsampling))
             return img;
         synchronized (this) {
-            if (imageLoaded)
+            if (isImageLoaded(subsampling))
                 return img;
             byte[] content = getContent();
             if (content != null && content.length > 0) {
-                img = ImageIO.read(new ByteArrayInputStream(content));
+                img = BufferedImageDecoder.decode(content, subsampling);
+                imageSubsampling = subsampling;
                 imageLoaded = true;
 
                 if (writtenToDisk)
@@ -56,6 +70,37 @@ public class BufferedImageCacheEntry extends CacheEntry {
         return img;
     }
 
+    /**
+     * Checks if the image has already been decoded with at most the given subsampling.
+     * @param subsampling the number of source pixels, in each direction, for one pixel of the image
+     * @return true if {@link #getImage(int)} will not need to decode the image
+     * @since 8573
+     */
+    public boolean isImageLoaded(int subsampling) {
+        return imageLoaded && imageSubsampling <= subsampling;
+    }
+
+    /**
+     * Returns the estimated size of this entry in memory.
+     * @return the size of the content and of the decoded image, in bytes
+     * @since 8572
+     */
+    public long getMemorySize() {
+        byte[] c = content;
+        BufferedImage i = img;
+        return (c == null ? 0 : c.length) + (i == null ? 0 : getMemorySize(i));
+    }
+
+    /**
+     * Returns the size of the pixels of an image in memory.
+     * @param image the image
+     * @return the size of the pixel buffer of the image, in bytes
+     */
+    static long getMemorySize(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
     private void writeObject(java.io.ObjectOutputStream out) throws IOException {
         /*
          * This method below will be needed, if Apache Commons JCS (or any other caching system), will update
@@ -83,11 +128,20 @@ public class BufferedImageCacheEntry extends CacheEntry {
             }
             out.writeObject(this);
             // ugly hack to wait till element will get to disk to clean the memory
-            writtenToDisk = true;
+            setWrittenToDisk();
+        }
+    }
 
-            if (img != null) {
-                content = null;
-            }
+    /**
+     * Marks the content as saved to disk, so that it can be released once the image is decoded.
+     * Used by disk caches not relying on Java serialization.
+     */
+    synchronized void setWrittenToDisk() {
+        writtenToDisk = true;
+
+        // keep the content of subsampled images, to be able to decode them again at full resolution
+        if (img != null && imageSubsampling == 1) {
+            content = null;
         }
     }
 }
@@ -0,0 +1,192 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Decodes cached images, reusing the {@link ImageReader} instances of each image format. It also provides
+ * the threads used to decode tiles outside of the download threads and of the event dispatch thread.
+ * <p>
+ * Images are decoded into {@code TYPE_INT_RGB} or {@code TYPE_INT_ARGB} images when the reader supports it,
+ * as they are the fastest to draw on screen.
+ * @since 8573
+ */
+public final class BufferedImageDecoder {
+
+    /**
+     * Number of threads decoding images.
+     */
+    public static final IntegerProperty THREADS = new IntegerProperty("cache.jcs.decoder_threads",
+            Runtime.getRuntime().availableProcessors());
+
+    private static final ConcurrentMap<ImageReaderSpi, Queue<ImageReader>> readers = new ConcurrentHashMap<>();
+
+    private static final ThreadPoolExecutor executor = createExecutor();
+
+    private BufferedImageDecoder() {
+        // Hide default constructor for utils classes
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        int threads = Math.max(1, THREADS.get());
+        ThreadPoolExecutor ret = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), Utils.getNamedThreadFactory("JCS image decoder"));
+        ret.allowCoreThreadTimeOut(true);
+        return ret;
+    }
+
+    /**
+     * Returns the executor that decodes images.
+     * @return the executor that decodes images
+     */
+    public static Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Decodes an image.
+     * @param content the encoded image
+     * @param subsampling the number of source pixels, in each direction, for one pixel of the decoded image
+     * @return the decoded image, or null if no reader supports the image format
+     * @throws IOException if an error occurs during reading
+     */
+    public static BufferedImage decode(byte[] content, int subsampling) throws IOException {
+        ImageInputStream stream = new MemoryCacheImageInputStream(new ByteArrayInputStream(content));
+        try {
+            ImageReaderSpi provider = getProvider(stream);
+            if (provider == null) {
+                return null;
+            }
+            ImageReader reader = takeReader(provider);
+            boolean reusable = false;
+            try {
+                reader.setInput(stream, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                ImageTypeSpecifier type = getDestinationType(reader);
+                if (type != null) {
+                    param.setDestinationType(type);
+                }
+                BufferedImage image = reader.read(0, param);
+                reusable = true;
+                return image;
+            } finally {
+                if (reusable) {
+                    reader.reset();
+                    releaseReader(provider, reader);
+                } else {
+                    reader.dispose();
+                }
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Returns the provider of the readers of the image format, trying first the formats that were already decoded.
+     */
+    private static ImageReaderSpi getProvider(ImageInputStream stream) {
+        for (ImageReaderSpi provider : readers.keySet()) {
+            if (canDecode(provider, stream)) {
+                return provider;
+            }
+        }
+        Iterator<ImageReaderSpi> it = IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true);
+        while (it.hasNext()) {
+            ImageReaderSpi provider = it.next();
+            if (canDecode(provider, stream)) {
+                return provider;
+            }
+        }
+        return null;
+    }
+
+    private static boolean canDecode(ImageReaderSpi provider, ImageInputStream stream) {
+        try {
+            return provider.canDecodeInput(stream);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static ImageReader takeReader(ImageReaderSpi provider) throws IOException {
+        Queue<ImageReader> queue = readers.get(provider);
+        if (queue == null) {
+            readers.putIfAbsent(provider, new ConcurrentLinkedQueue<ImageReader>());
+        } else {
+            ImageReader reader = queue.poll();
+            if (reader != null) {
+                return reader;
+            }
+        }
+        return provider.createReaderInstance();
+    }
+
+    private static void releaseReader(ImageReaderSpi provider, ImageReader reader) {
+        Queue<ImageReader> queue = readers.get(provider);
+        // keep one reader per decoding thread, and a few for the other threads
+        if (queue.size() < executor.getMaximumPoolSize() + 2) {
+            queue.offer(reader);
+        } else {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Returns the type of the decoded image: the first type proposed by the reader, unless it supports an integer RGB type.
+     */
+    private static ImageTypeSpecifier getDestinationType(ImageReader reader) throws IOException {
+        ImageTypeSpecifier first = null;
+        for (Iterator<ImageTypeSpecifier> it = reader.getImageTypes(0); it.hasNext();) {
+            ImageTypeSpecifier type = it.next();
+            switch (type.getBufferedImageType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                return type;
+            default:
+                if (first == null) {
+                    first = type;
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Returns the number of image readers kept for reuse.
+     * @return the number of image readers kept for reuse
+     */
+    public static int getReaderCount() {
+        int count = 0;
+        for (Queue<ImageReader> queue : readers.values()) {
+            count += queue.size();
+        }
+        return count;
+    }
+}
@@ -179,6 +179,16 @@ public class CacheEntryAttributes extends ElementAttributes {
         return Collections.unmodifiableMap(attrs);
     }
 
+    /**
+     * Restores all attributes, including the reserved ones, as returned by {@link #getMetadata()}.
+     * Used by disk caches not relying on Java serialization.
+     *
+     * @param map attributes to restore
+     */
+    void restoreAttributes(Map<String, String> map) {
+        attrs.putAll(map);
+    }
+
     /**
      * @return error message returned while retrieving this object
      */
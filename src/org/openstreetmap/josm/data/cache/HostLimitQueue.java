@@ -1,149 +1,465 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.data.cache;
 
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.Semaphore;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.openstreetmap.josm.Main;
 
 /**
  * @author Wiktor Niesiobędzki
  *
- * Queue for ThreadPoolExecutor that implements per-host limit. It will acquire a semaphore for each task
- * and it will set a runnable task with semaphore release, when job has finished.
+ * Queue for ThreadPoolExecutor that implements per-host limit. Jobs are kept in one priority queue per host,
+ * and a worker takes the job with the lowest {@link JCSCachedTileLoaderJob#getPriority() priority} among the hosts
+ * that have less than hostLimit jobs running, so it does not need to scan all the queued jobs. Jobs with the same
+ * priority are run in the order they were queued. When the job is taken, it gets a runnable task that frees its
+ * host slot when the job has finished.
  *
- * This implementation doesn't guarantee to have at most hostLimit connections per host[1], and it doesn't
- * guarantee that all threads will be busy, when there is work for them[2].
- *
- * [1] More connection per host may happen, when ThreadPoolExecutor is growing its pool, and thus
- *     tasks do not go through the Queue
- * [2] If we have a queue, and for all hosts in queue we will fail to acquire semaphore, the thread
- *     take the first available job and wait for semaphore. It might be the case, that semaphore was released
- *     for some task further in queue, but this implementation doesn't try to detect such situation
+ * Priorities are computed when a job is queued, and computed again by {@link #reprioritize()}, which also drops
+ * the jobs that became {@link JCSCachedTileLoaderJob#isObsolete() obsolete}.
  *
+ * This implementation doesn't guarantee to have at most hostLimit connections per host, as more connections
+ * may happen, when ThreadPoolExecutor is growing its pool, and thus tasks do not go through the Queue.
  *
  */
-public class HostLimitQueue extends LinkedBlockingDeque<Runnable> {
-    private static final long serialVersionUID = 1L;
+public class HostLimitQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private static final Comparator<QueuedJob> ORDER = new Comparator<QueuedJob>() {
+        @Override
+        public int compare(QueuedJob o1, QueuedJob o2) {
+            int c = Double.compare(o1.priority, o2.priority);
+            return c != 0 ? c : Long.compare(o1.sequence, o2.sequence);
+        }
+    };
+
+    private static final class QueuedJob {
+        private final Runnable job;
+        private final long sequence;
+        private final long queued = System.nanoTime();
+        private double priority;
+
+        private QueuedJob(Runnable job, long sequence, double priority) {
+            this.job = job;
+            this.sequence = sequence;
+            this.priority = priority;
+        }
+    }
+
+    private static final class HostQueue {
+        private final PriorityQueue<QueuedJob> jobs = new PriorityQueue<>(16, ORDER);
+        private final boolean limited;
+        private int running;
 
-    private final Map<String, Semaphore> hostSemaphores = new ConcurrentHashMap<>();
+        private HostQueue(boolean limited) {
+            this.limited = limited;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Map<String, HostQueue> hosts = new HashMap<>();
     private final int hostLimit;
+    private int size;
+    private long sequence;
+
+    // statistics
+    private long dispatched;
+    private long canceled;
+    private long totalWait;
+    private long maxWait;
 
     /**
      * Creates an unbounded queue
      * @param hostLimit how many parallel calls to host to allow
      */
     public HostLimitQueue(int hostLimit) {
-        super(); // create unbounded queue
         this.hostLimit = hostLimit;
     }
 
-    private JCSCachedTileLoaderJob<?, ?> findJob() {
-        for (Iterator<Runnable> it = iterator(); it.hasNext();) {
-            Runnable r = it.next();
-            if (r instanceof JCSCachedTileLoaderJob) {
-                JCSCachedTileLoaderJob<?, ?> job = (JCSCachedTileLoaderJob<?, ?>) r;
-                if (tryAcquireSemaphore(job)) {
-                    if (remove(job)) {
-                        return job;
-                    } else {
-                        // we have acquired the semaphore, but we didn't manage to remove it, as someone else did
-                        // release the semaphore and look for another candidate
-                        releaseSemaphore(job);
-                    }
-                } else {
-                    Main.info("TMS - Skipping job {0} because host limit reached", job.getUrl());
+    private static String getHost(Runnable r) {
+        if (r instanceof JCSCachedTileLoaderJob) {
+            return ((JCSCachedTileLoaderJob<?, ?>) r).getUrl().getHost();
+        }
+        return null;
+    }
+
+    private static double getPriority(Runnable r) {
+        if (r instanceof JCSCachedTileLoaderJob) {
+            return ((JCSCachedTileLoaderJob<?, ?>) r).getPriority();
+        }
+        return 0;
+    }
+
+    private HostQueue getHostQueue(String host) {
+        HostQueue queue = hosts.get(host);
+        if (queue == null) {
+            // jobs without a host are not limited
+            queue = new HostQueue(host != null);
+            hosts.put(host, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Takes the best job that can be run now. Must be called with the lock held.
+     * @return the job, or null if there is no job or all the hosts of queued jobs reached their limit
+     */
+    private Runnable dispatch() {
+        HostQueue best = null;
+        for (HostQueue queue : hosts.values()) {
+            QueuedJob head = queue.jobs.peek();
+            if (head != null && (!queue.limited || queue.running < hostLimit)
+                    && (best == null || ORDER.compare(head, best.jobs.peek()) < 0)) {
+                best = queue;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        QueuedJob job = best.jobs.poll();
+        size--;
+        long wait = System.nanoTime() - job.queued;
+        dispatched++;
+        totalWait += wait;
+        maxWait = Math.max(maxWait, wait);
+        if (best.limited) {
+            best.running++;
+            final HostQueue host = best;
+            ((JCSCachedTileLoaderJob<?, ?>) job.job).setFinishedTask(new Runnable() {
+                @Override
+                public void run() {
+                    release(host);
                 }
+            });
+        }
+        if (size > 0) {
+            // there might be another job that can run, wake up another worker
+            available.signal();
+        }
+        return job.job;
+    }
+
+    private void release(HostQueue host) {
+        lock.lock();
+        try {
+            host.running--;
+            if (host.running < 0) {
+                Main.warn("More permits than it should be");
+                host.running = 0;
             }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        String host = getHost(e);
+        double priority = getPriority(e);
+        lock.lock();
+        try {
+            getHostQueue(host).jobs.add(new QueuedJob(e, sequence++, priority));
+            size++;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean offer(Runnable e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    @Override
+    public void put(Runnable e) {
+        offer(e);
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dispatch();
+        } finally {
+            lock.unlock();
         }
-        return null;
     }
 
     @Override
     public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
-        Runnable job = findJob();
-        if (job != null) {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            Runnable job = dispatch();
+            while (job == null && nanos > 0) {
+                nanos = available.awaitNanos(nanos);
+                job = dispatch();
+            }
             return job;
+        } finally {
+            lock.unlock();
         }
-        job = pollFirst(timeout, unit);
-        if (job != null) {
-            acquireSemaphore(job);
-        }
-        return job;
     }
 
     @Override
     public Runnable take() throws InterruptedException {
-        Runnable job = findJob();
-        if (job != null) {
+        lock.lockInterruptibly();
+        try {
+            Runnable job = dispatch();
+            while (job == null) {
+                available.await();
+                job = dispatch();
+            }
             return job;
+        } finally {
+            lock.unlock();
         }
-        job = takeFirst();
-        if (job != null) {
-            acquireSemaphore(job);
-        }
-        return job;
     }
 
-    private  Semaphore getSemaphore(JCSCachedTileLoaderJob<?, ?> job) {
-        String host = job.getUrl().getHost();
-        Semaphore limit = hostSemaphores.get(host);
-        if (limit == null) {
-            synchronized (hostSemaphores) {
-                limit = hostSemaphores.get(host);
-                if (limit == null) {
-                    limit = new Semaphore(hostLimit);
-                    hostSemaphores.put(host, limit);
+    /**
+     * Returns the job with the lowest priority, regardless of the host limits.
+     */
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            QueuedJob best = null;
+            for (HostQueue queue : hosts.values()) {
+                QueuedJob head = queue.jobs.peek();
+                if (head != null && (best == null || ORDER.compare(head, best) < 0)) {
+                    best = head;
                 }
             }
+            return best == null ? null : best.job;
+        } finally {
+            lock.unlock();
         }
-        return limit;
     }
 
-    private void acquireSemaphore(Runnable job) throws InterruptedException {
-        if (job instanceof JCSCachedTileLoaderJob) {
-            final JCSCachedTileLoaderJob<?, ?> jcsJob = (JCSCachedTileLoaderJob<?, ?>) job;
-            Semaphore limit = getSemaphore(jcsJob);
-            if (limit != null) {
-                limit.acquire();
-                jcsJob.setFinishedTask(new Runnable() {
-                    @Override
-                    public void run() {
-                        releaseSemaphore(jcsJob);
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Runnable)) {
+            return false;
+        }
+        String host = getHost((Runnable) o);
+        lock.lock();
+        try {
+            HostQueue queue = hosts.get(host);
+            if (queue != null) {
+                for (Iterator<QueuedJob> it = queue.jobs.iterator(); it.hasNext();) {
+                    if (it.next().job == o) {
+                        it.remove();
+                        size--;
+                        return true;
                     }
-                });
+                }
             }
+            return false;
+        } finally {
+            lock.unlock();
         }
     }
 
-    private boolean tryAcquireSemaphore(final JCSCachedTileLoaderJob<?, ?> job) {
-        boolean ret = true;
-        Semaphore limit = getSemaphore(job);
-        if (limit != null) {
-            ret = limit.tryAcquire();
-            if (ret) {
-                job.setFinishedTask(new Runnable() {
-                    @Override
-                    public void run() {
-                        releaseSemaphore(job);
-                    }
-                });
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int n = 0;
+            for (HostQueue queue : hosts.values()) {
+                while (n < maxElements && !queue.jobs.isEmpty()) {
+                    c.add(queue.jobs.poll().job);
+                    size--;
+                    n++;
+                }
             }
+            return n;
+        } finally {
+            lock.unlock();
         }
-        return ret;
     }
 
-    private void releaseSemaphore(JCSCachedTileLoaderJob<?, ?> job) {
-        Semaphore limit = getSemaphore(job);
-        if (limit != null) {
-            limit.release();
-            if (limit.availablePermits() > hostLimit) {
-                Main.warn("More permits than it should be");
+    /**
+     * Returns an iterator over a snapshot of the queued jobs, in no particular order.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        final List<Runnable> snapshot = new ArrayList<>();
+        lock.lock();
+        try {
+            for (HostQueue queue : hosts.values()) {
+                for (QueuedJob job : queue.jobs) {
+                    snapshot.add(job.job);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new Iterator<Runnable>() {
+            private final Iterator<Runnable> it = snapshot.iterator();
+            private Runnable last;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                last = it.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                HostLimitQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Computes again the priority of the queued jobs, and cancels the jobs that are obsolete.
+     * Should be called when the priorities of the jobs have changed, for example when the map view has moved.
+     * @since 8571
+     */
+    public void reprioritize() {
+        List<JCSCachedTileLoaderJob<?, ?>> obsolete = new ArrayList<>();
+        lock.lock();
+        try {
+            for (HostQueue queue : hosts.values()) {
+                List<QueuedJob> jobs = new ArrayList<>(queue.jobs);
+                queue.jobs.clear();
+                for (QueuedJob job : jobs) {
+                    if (job.job instanceof JCSCachedTileLoaderJob && ((JCSCachedTileLoaderJob<?, ?>) job.job).isObsolete()) {
+                        obsolete.add((JCSCachedTileLoaderJob<?, ?>) job.job);
+                        size--;
+                    } else {
+                        job.priority = getPriority(job.job);
+                        queue.jobs.add(job);
+                    }
+                }
             }
+            canceled += obsolete.size();
+        } finally {
+            lock.unlock();
+        }
+        // notify the listeners without holding the lock
+        for (JCSCachedTileLoaderJob<?, ?> job : obsolete) {
+            job.handleJobCancellation();
+        }
+    }
+
+    /**
+     * Returns the number of jobs that have been taken from this queue.
+     * @return the number of jobs that have been taken from this queue
+     * @since 8571
+     */
+    public long getDispatchedCount() {
+        lock.lock();
+        try {
+            return dispatched;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of jobs that have been canceled by {@link #reprioritize()}.
+     * @return the number of obsolete jobs that have been canceled
+     * @since 8571
+     */
+    public long getCanceledCount() {
+        lock.lock();
+        try {
+            return canceled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the average time the jobs have spent in this queue before being run.
+     * @return the average wait time in milliseconds
+     * @since 8571
+     */
+    public double getAverageWaitTime() {
+        lock.lock();
+        try {
+            return dispatched == 0 ? 0 : totalWait / 1e6 / dispatched;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the longest time a job has spent in this queue before being run.
+     * @return the maximum wait time in milliseconds
+     * @since 8571
+     */
+    public double getMaxWaitTime() {
+        lock.lock();
+        try {
+            return maxWait / 1e6;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns queue statistics, for display in debug output.
+     * @return queue statistics as string
+     * @since 8571
+     */
+    public String getStats() {
+        lock.lock();
+        try {
+            return String.format("queued: %d, dispatched: %d, canceled: %d, average wait: %.1f ms, max wait: %.1f ms",
+                    size, dispatched, canceled, dispatched == 0 ? 0 : totalWait / 1e6 / dispatched, maxWait / 1e6);
+        } finally {
+            lock.unlock();
         }
     }
 }
@@ -140,26 +140,71 @@ public final class JCSCacheManager {
      */
     public static <K, V> CacheAccess<K, V> getCache(String cacheName, int maxMemoryObjects, int maxDiskObjects, String cachePath)
             throws IOException {
+        return getCache(cacheName, maxMemoryObjects, maxDiskObjects, cachePath, false);
+    }
+
+    /**
+     * Returns configured cache object with defined limits of memory cache and disk cache, and a choice of disk cache.
+     * The disk cache is created by the first call for a region, later calls reuse it whatever the choice.
+     * @param cacheName         region name
+     * @param maxMemoryObjects  number of objects to keep in memory
+     * @param maxDiskObjects    maximum size of the objects stored on disk in kB
+     * @param cachePath         path to disk cache. if null, no disk cache will be created
+     * @param mappedDiskCache   if {@code true}, use a {@link MappedDiskCache} instead of the JCS indexed disk cache
+     * @return cache access object
+     * @throws IOException if directory is not found
+     * @since 8570
+     */
+    public static <K, V> CacheAccess<K, V> getCache(String cacheName, int maxMemoryObjects, int maxDiskObjects, String cachePath,
+            boolean mappedDiskCache) throws IOException {
+        return getCache(cacheName, maxMemoryObjects, maxDiskObjects, cachePath, mappedDiskCache, 0);
+    }
+
+    /**
+     * Returns configured cache object with defined limits of memory cache and disk cache, and a choice of disk cache.
+     * The memory cache is limited by the size of its objects when {@code maxMemorySize} is positive.
+     * The caches are created by the first call for a region, later calls reuse them whatever the parameters.
+     * @param cacheName         region name
+     * @param maxMemoryObjects  number of objects to keep in memory, when maxMemorySize is 0
+     * @param maxDiskObjects    maximum size of the objects stored on disk in kB
+     * @param cachePath         path to disk cache. if null, no disk cache will be created
+     * @param mappedDiskCache   if {@code true}, use a {@link MappedDiskCache} instead of the JCS indexed disk cache
+     * @param maxMemorySize     maximum size of the objects kept in memory in kB, to use a {@link BudgetedMemoryCache}, or 0
+     * @return cache access object
+     * @throws IOException if directory is not found
+     * @since 8572
+     */
+    public static <K, V> CacheAccess<K, V> getCache(String cacheName, int maxMemoryObjects, int maxDiskObjects, String cachePath,
+            boolean mappedDiskCache, int maxMemorySize) throws IOException {
         if (cacheManager != null)
-            return getCacheInner(cacheName, maxMemoryObjects, maxDiskObjects, cachePath);
+            return getCacheInner(cacheName, maxMemoryObjects, maxDiskObjects, cachePath, mappedDiskCache, maxMemorySize);
 
         synchronized (JCSCacheManager.class) {
             if (cacheManager == null)
                 initialize();
-            return getCacheInner(cacheName, maxMemoryObjects, maxDiskObjects, cachePath);
+            return getCacheInner(cacheName, maxMemoryObjects, maxDiskObjects, cachePath, mappedDiskCache, maxMemorySize);
         }
     }
 
     @SuppressWarnings("unchecked")
-    private static <K, V> CacheAccess<K, V> getCacheInner(String cacheName, int maxMemoryObjects, int maxDiskObjects, String cachePath) {
-        CompositeCache<K, V> cc = cacheManager.getCache(cacheName, getCacheAttributes(maxMemoryObjects));
+    private static <K, V> CacheAccess<K, V> getCacheInner(String cacheName, int maxMemoryObjects, int maxDiskObjects, String cachePath,
+            boolean mappedDiskCache, int maxMemorySize) {
+        CompositeCache<K, V> cc = cacheManager.getCache(cacheName, getCacheAttributes(maxMemoryObjects, maxMemorySize));
 
         if (cachePath != null && cacheDirLock != null) {
-            IDiskCacheAttributes diskAttributes = getDiskCacheAttributes(maxDiskObjects, cachePath);
-            diskAttributes.setCacheName(cacheName);
             try {
                 if (cc.getAuxCaches().length == 0) {
-                    AuxiliaryCache<K, V> diskCache = diskCacheFactory.createCache(diskAttributes, cacheManager, null, new StandardSerializer());
+                    AuxiliaryCache<K, V> diskCache;
+                    if (mappedDiskCache) {
+                        MappedDiskCacheAttributes diskAttributes = getMappedDiskCacheAttributes(maxDiskObjects, cachePath);
+                        diskAttributes.setCacheName(cacheName);
+                        diskCache = new MappedDiskCache<>(diskAttributes);
+                        diskCache.setElementSerializer(new StandardSerializer());
+                    } else {
+                        IDiskCacheAttributes diskAttributes = getDiskCacheAttributes(maxDiskObjects, cachePath);
+                        diskAttributes.setCacheName(cacheName);
+                        diskCache = diskCacheFactory.createCache(diskAttributes, cacheManager, null, new StandardSerializer());
+                    }
                     cc.setAuxCaches(new AuxiliaryCache[]{diskCache});
                 }
             } catch (Exception e) {
@@ -195,8 +240,15 @@ public final class JCSCacheManager {
         return ret;
     }
 
-    private static CompositeCacheAttributes getCacheAttributes(int maxMemoryElements) {
-        CompositeCacheAttributes ret = new CompositeCacheAttributes();
+    private static MappedDiskCacheAttributes getMappedDiskCacheAttributes(int maxDiskSize, String cachePath) {
+        MappedDiskCacheAttributes ret = new MappedDiskCacheAttributes();
+        ret.setMaxSize(maxDiskSize);
+        ret.setDiskPath(new File(cachePath, "mapped"));
+        return ret;
+    }
+
+    private static CompositeCacheAttributes getCacheAttributes(int maxMemoryElements, int maxMemorySize) {
+        CompositeCacheAttributes ret = maxMemorySize > 0 ? new BudgetedMemoryCacheAttributes(maxMemorySize) : new CompositeCacheAttributes();
         ret.setMaxObjects(maxMemoryElements);
         ret.setDiskUsagePattern(DiskUsagePattern.UPDATE);
         return ret;
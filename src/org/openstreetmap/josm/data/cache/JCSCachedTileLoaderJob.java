@@ -172,8 +172,7 @@ public abstract class JCSCachedTileLoaderJob<K, V extends CacheEntry> implements
         }
 
         if (first || force) {
-            ensureCacheElement();
-            if (!force && cacheElement != null && isCacheElementValid() && isObjectLoadable()) {
+            if (!force && isCached()) {
                 // we got something in cache, and it's valid, so lets return it
                 log.log(Level.FINE, "JCS - Returning object from cache: {0}", getCacheKey());
                 finishLoading(LoadResult.SUCCESS);
@@ -184,6 +183,16 @@ public abstract class JCSCachedTileLoaderJob<K, V extends CacheEntry> implements
         }
     }
 
+    /**
+     * Checks if the cache contains a valid object for this job, that would be returned without downloading it.
+     * @return true if the cache contains a valid object for this job
+     * @since 8575
+     */
+    public boolean isCached() {
+        ensureCacheElement();
+        return cacheElement != null && isCacheElementValid() && isObjectLoadable();
+    }
+
     /**
      * This method is run when job has finished
      */
@@ -495,4 +504,23 @@ public abstract class JCSCachedTileLoaderJob<K, V extends CacheEntry> implements
     public void handleJobCancellation() {
         finishLoading(LoadResult.CANCELED);
     }
+
+    /**
+     * Returns the priority of this job, when it is waiting in a {@link HostLimitQueue}. Jobs with lower values are run first.
+     * @return the priority of this job, 0 by default, so that the jobs are run in the order they were submitted
+     * @since 8571
+     */
+    public double getPriority() {
+        return 0;
+    }
+
+    /**
+     * Checks if nobody is interested in the result of this job anymore. Obsolete jobs are canceled
+     * when {@link HostLimitQueue#reprioritize()} is called.
+     * @return true if this job does not need to be run anymore
+     * @since 8571
+     */
+    public boolean isObsolete() {
+        return false;
+    }
 }
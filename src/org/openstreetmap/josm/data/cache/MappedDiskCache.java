@@ -0,0 +1,700 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.jcs.auxiliary.AuxiliaryCacheAttributes;
+import org.apache.commons.jcs.auxiliary.disk.AbstractDiskCache;
+import org.apache.commons.jcs.engine.CacheConstants;
+import org.apache.commons.jcs.engine.CacheElement;
+import org.apache.commons.jcs.engine.behavior.ICacheElement;
+import org.apache.commons.jcs.engine.behavior.IElementAttributes;
+import org.apache.commons.jcs.engine.stats.StatElement;
+import org.apache.commons.jcs.engine.stats.behavior.IStatElement;
+import org.apache.commons.jcs.engine.stats.behavior.IStats;
+import org.openstreetmap.josm.Main;
+
+/**
+ * JCS disk cache storing the elements in append-only, memory-mapped segment files.
+ * <p>
+ * This is an alternative to the JCS {@code IndexedDiskCache} for large imagery caches:
+ * <ul>
+ * <li>the key index is an on-disk hash table ({@link MappedDiskIndex}), memory-mapped: it is neither loaded on startup,
+ * nor written on shutdown, and it does not use heap memory,</li>
+ * <li>{@link CacheEntry} values and their {@link CacheEntryAttributes} are written in a simple binary format instead of
+ * Java serialization, and the content is copied straight from the mapped file into the entry on read,</li>
+ * <li>new records are always appended to the active segment. Segments whose records are mostly obsolete are compacted
+ * in background, and the oldest segments are dropped when the size limit is reached.</li>
+ * </ul>
+ * Keys whose 64 bits hashes collide replace each other, which is harmless for a cache.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ * @since 8570
+ */
+public class MappedDiskCache<K, V> extends AbstractDiskCache<K, V> {
+
+    private static final int SEGMENT_MAGIC = 0x4a4f5347; // "JOSG"
+    private static final int SEGMENT_HEADER_SIZE = 8;
+    /** Record header: length, type, key length, content offset */
+    private static final int RECORD_HEADER_SIZE = 13;
+    private static final byte TYPE_SERIALIZED = 0;
+    private static final byte TYPE_CACHE_ENTRY = 1;
+    private static final byte TYPE_IMAGE_ENTRY = 2;
+    private static final byte STRING_KEY = 0x10;
+    /** A segment is compacted when less than this part of it is still used */
+    private static final double COMPACTION_THRESHOLD = 0.5;
+    /** Number of index slots scanned at once by the compaction, between which readers and writers may proceed */
+    private static final int COMPACTION_BATCH = 4096;
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "mapped-disk-cache-compactor");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    });
+
+    private final MappedDiskCacheAttributes attributes;
+    private final File dir;
+    private final String prefix;
+    private final ReentrantReadWriteLock storageLock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Set<Integer> compacting = new HashSet<>();
+    private final MappedDiskIndex index;
+    private Segment active;
+    private int compactions;
+
+    private static final class Segment {
+        private final int id;
+        private final File file;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buf;
+        private int end;
+        private long liveBytes;
+
+        Segment(int id, File file, RandomAccessFile raf, MappedByteBuffer buf, int end) {
+            this.id = id;
+            this.file = file;
+            this.raf = raf;
+            this.buf = buf;
+            this.end = end;
+        }
+
+        int capacity() {
+            return buf.capacity();
+        }
+
+        void setEnd(int end) {
+            this.end = end;
+            buf.putInt(4, end);
+        }
+
+        boolean isCompactable() {
+            return liveBytes < (end - SEGMENT_HEADER_SIZE) * COMPACTION_THRESHOLD;
+        }
+    }
+
+    /**
+     * Constructs a new {@code MappedDiskCache}, opening the files of a previous instance if they exist.
+     * @param attributes the configuration of the cache
+     * @throws IOException if the cache directory cannot be accessed
+     */
+    public MappedDiskCache(MappedDiskCacheAttributes attributes) throws IOException {
+        super(attributes);
+        this.attributes = attributes;
+        this.dir = attributes.getDiskPath();
+        this.prefix = getCacheName().replaceAll("[^\\w.-]", "_");
+        if (dir == null || (!dir.isDirectory() && !dir.mkdirs()))
+            throw new IOException("Cannot access cache directory " + dir);
+        index = new MappedDiskIndex(dir, prefix);
+        openSegments();
+        alive = true;
+    }
+
+    private File getSegmentFile(int id) {
+        return new File(dir, prefix + ".seg." + id);
+    }
+
+    private void openSegments() throws IOException {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+                if (name.startsWith(prefix + ".seg.")) {
+                    try {
+                        openSegment(Integer.parseInt(name.substring(prefix.length() + 5)), f);
+                    } catch (NumberFormatException e) {
+                        Main.debug("Ignoring " + f);
+                    }
+                }
+            }
+        }
+        for (int slot = 0; slot < index.capacity(); slot++) {
+            int id = index.getSegment(slot);
+            if (id > MappedDiskIndex.EMPTY) {
+                Segment s = segments.get(id);
+                if (s == null || index.getOffset(slot) + index.getLength(slot) > s.end) {
+                    index.remove(slot);
+                } else {
+                    s.liveBytes += index.getLength(slot);
+                }
+            }
+        }
+        // drop the segments left empty by a compaction or a removal, except the last one which can still be appended to
+        for (Segment s : new ArrayList<>(segments.values())) {
+            if (s.liveBytes == 0 && s != segments.lastEntry().getValue()) {
+                deleteSegment(s);
+            }
+        }
+        if (!segments.isEmpty()) {
+            active = segments.lastEntry().getValue();
+        }
+    }
+
+    private void openSegment(int id, File f) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        boolean ok = false;
+        try {
+            if (id > 0 && raf.length() >= SEGMENT_HEADER_SIZE && raf.length() <= Integer.MAX_VALUE) {
+                MappedByteBuffer buf = raf.getChannel().map(MapMode.READ_WRITE, 0, raf.length());
+                int end = buf.getInt(4);
+                if (buf.getInt(0) == SEGMENT_MAGIC && end >= SEGMENT_HEADER_SIZE && end <= buf.capacity()) {
+                    segments.put(id, new Segment(id, f, raf, buf, end));
+                    ok = true;
+                }
+            }
+        } finally {
+            if (!ok) {
+                raf.close();
+            }
+        }
+        if (!ok) {
+            Main.warn("Deleting invalid cache segment " + f);
+            if (!f.delete()) {
+                Main.warn("Cannot delete " + f);
+            }
+        }
+    }
+
+    private Segment createSegment(int size) throws IOException {
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        File f = getSegmentFile(id);
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        MappedByteBuffer buf;
+        try {
+            raf.setLength(0);
+            raf.setLength(size);
+            buf = raf.getChannel().map(MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        buf.putInt(0, SEGMENT_MAGIC);
+        Segment s = new Segment(id, f, raf, buf, SEGMENT_HEADER_SIZE);
+        s.setEnd(SEGMENT_HEADER_SIZE);
+        segments.put(id, s);
+        return s;
+    }
+
+    private void deleteSegment(Segment s) throws IOException {
+        segments.remove(s.id);
+        if (s == active) {
+            active = null;
+        }
+        s.raf.close();
+        if (!s.file.delete()) {
+            // a mapped file cannot be deleted on Windows before the mapping is garbage collected.
+            // The segment has no live record anymore, so it will be deleted on next startup
+            Main.debug("Cannot delete cache segment " + s.file);
+        }
+    }
+
+    private long getTotalBytes() {
+        long total = 0;
+        for (Segment s : segments.values()) {
+            total += s.end;
+        }
+        return total;
+    }
+
+    /**
+     * Computes the 64 bits FNV-1a hash of a key.
+     */
+    private static long hash(byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private byte[] getKeyBytes(K key) throws IOException {
+        if (key instanceof String) {
+            return ((String) key).getBytes(StandardCharsets.UTF_8);
+        }
+        return getElementSerializer().serialize(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private K toKey(byte[] bytes, boolean isString) throws IOException, ClassNotFoundException {
+        if (isString) {
+            return (K) new String(bytes, StandardCharsets.UTF_8);
+        }
+        return getElementSerializer().deSerialize(bytes, null);
+    }
+
+    /**
+     * Encodes the header, key and attributes of a record. The record length and content offset are left to fill.
+     */
+    private static ByteArrayOutputStream encodeHead(byte type, byte[] keyBytes) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(head);
+        out.writeInt(0);
+        out.writeByte(type);
+        out.writeInt(keyBytes.length);
+        out.writeInt(0);
+        out.write(keyBytes);
+        return head;
+    }
+
+    @Override
+    protected void processUpdate(ICacheElement<K, V> cacheElement) throws IOException {
+        if (!alive)
+            return;
+        K key = cacheElement.getKey();
+        V value = cacheElement.getVal();
+        IElementAttributes attr = cacheElement.getElementAttributes();
+        byte keyFlag = key instanceof String ? STRING_KEY : 0;
+        byte[] keyBytes = getKeyBytes(key);
+        ByteArrayOutputStream head;
+        byte[] content;
+        if (value instanceof CacheEntry && attr instanceof CacheEntryAttributes) {
+            content = ((CacheEntry) value).getContent();
+            if (content == null) {
+                // already written, and released after the image has been decoded
+                return;
+            }
+            head = encodeHead((byte) ((value instanceof BufferedImageCacheEntry ? TYPE_IMAGE_ENTRY : TYPE_CACHE_ENTRY) | keyFlag),
+                    keyBytes);
+            DataOutputStream out = new DataOutputStream(head);
+            out.writeLong(attr.getMaxLife());
+            out.writeLong(attr.getIdleTime());
+            out.writeBoolean(attr.getIsEternal());
+            Map<String, String> metadata = ((CacheEntryAttributes) attr).getMetadata();
+            out.writeInt(metadata.size());
+            for (Entry<String, String> e : metadata.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeUTF(e.getValue());
+            }
+        } else {
+            content = getElementSerializer().serialize(cacheElement);
+            head = encodeHead((byte) (TYPE_SERIALIZED | keyFlag), keyBytes);
+        }
+        byte[] headBytes = head.toByteArray();
+        int length = headBytes.length + content.length;
+        ByteBuffer.wrap(headBytes).putInt(0, length).putInt(9, headBytes.length);
+
+        Segment compactable = null;
+        storageLock.writeLock().lock();
+        try {
+            if (!alive)
+                return;
+            long hash = hash(keyBytes);
+            int slot = index.find(hash);
+            if (slot >= 0) {
+                compactable = release(slot);
+            }
+            ensureSpace(length, true);
+            int offset = append(headBytes, content);
+            // the previous record may have been evicted with its segment
+            slot = index.find(hash);
+            if (slot >= 0) {
+                index.set(slot, active.id, offset, length);
+            } else {
+                index.insert(hash, active.id, offset, length);
+            }
+        } finally {
+            storageLock.writeLock().unlock();
+        }
+        if (value instanceof BufferedImageCacheEntry) {
+            ((BufferedImageCacheEntry) value).setWrittenToDisk();
+        }
+        scheduleCompaction(compactable);
+    }
+
+    /**
+     * Marks the record of a slot as obsolete.
+     * @return its segment, if it should now be compacted
+     */
+    private Segment release(int slot) {
+        Segment s = segments.get(index.getSegment(slot));
+        if (s != null) {
+            s.liveBytes -= index.getLength(slot);
+            if (s != active && s.isCompactable()) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Makes sure the active segment can hold a record of the given length.
+     * @param length the record length
+     * @param evict if the oldest segments should be dropped when the size limit is reached
+     */
+    private void ensureSpace(int length, boolean evict) throws IOException {
+        if (active == null || active.end + length > active.capacity()) {
+            if (active != null) {
+                active.buf.force();
+            }
+            active = createSegment(Math.max(attributes.getSegmentSize(), SEGMENT_HEADER_SIZE + length));
+        }
+        if (evict && attributes.getMaxSize() > 0) {
+            long maxBytes = attributes.getMaxSize() * 1024L;
+            while (segments.size() > 1 && getTotalBytes() > maxBytes) {
+                evict(segments.firstEntry().getValue());
+            }
+        }
+    }
+
+    private void evict(Segment s) throws IOException {
+        if (s.liveBytes > 0) {
+            for (int slot = 0; slot < index.capacity(); slot++) {
+                if (index.getSegment(slot) == s.id) {
+                    index.remove(slot);
+                }
+            }
+        }
+        deleteSegment(s);
+    }
+
+    private int append(byte[] head, byte[] content) {
+        int offset = active.end;
+        ByteBuffer b = active.buf.duplicate();
+        b.position(offset);
+        b.put(head);
+        b.put(content);
+        active.setEnd(offset + head.length + content.length);
+        active.liveBytes += head.length + content.length;
+        return offset;
+    }
+
+    private void scheduleCompaction(final Segment s) {
+        if (s == null)
+            return;
+        synchronized (compacting) {
+            if (!compacting.add(s.id))
+                return;
+        }
+        COMPACTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    compact(s);
+                } catch (IOException e) {
+                    Main.warn(e);
+                } finally {
+                    synchronized (compacting) {
+                        compacting.remove(s.id);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Moves the live records of a segment to the active segment, and deletes it.
+     * The index is scanned by batches, so that readers and writers are not blocked for the whole compaction.
+     * As a new key may rebuild the index between two batches, the scan is repeated until the segment is empty.
+     */
+    private void compact(Segment s) throws IOException {
+        for (int pass = 0; pass < 3; pass++) {
+            for (int from = 0;; from += COMPACTION_BATCH) {
+                storageLock.writeLock().lock();
+                try {
+                    if (!alive || segments.get(s.id) != s)
+                        return;
+                    if (s.liveBytes == 0) {
+                        deleteSegment(s);
+                        compactions++;
+                        return;
+                    }
+                    if (from >= index.capacity())
+                        break;
+                    int to = Math.min(from + COMPACTION_BATCH, index.capacity());
+                    for (int slot = from; slot < to; slot++) {
+                        if (index.getSegment(slot) == s.id) {
+                            move(s, slot);
+                        }
+                    }
+                } finally {
+                    storageLock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private void move(Segment s, int slot) throws IOException {
+        int offset = index.getOffset(slot);
+        int length = index.getLength(slot);
+        ensureSpace(length, false);
+        ByteBuffer src = s.buf.duplicate();
+        src.position(offset);
+        src.limit(offset + length);
+        ByteBuffer dst = active.buf.duplicate();
+        dst.position(active.end);
+        dst.put(src);
+        int newOffset = active.end;
+        active.setEnd(newOffset + length);
+        active.liveBytes += length;
+        s.liveBytes -= length;
+        index.set(slot, active.id, newOffset, length);
+    }
+
+    @Override
+    protected ICacheElement<K, V> processGet(K key) throws IOException {
+        if (!alive)
+            return null;
+        byte[] keyBytes = getKeyBytes(key);
+        storageLock.readLock().lock();
+        try {
+            if (!alive)
+                return null;
+            int slot = index.find(hash(keyBytes));
+            if (slot < 0)
+                return null;
+            Segment s = segments.get(index.getSegment(slot));
+            if (s == null)
+                return null;
+            return read(key, keyBytes, s.buf, index.getOffset(slot), index.getLength(slot));
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            storageLock.readLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ICacheElement<K, V> read(K key, byte[] keyBytes, MappedByteBuffer buf, int offset, int length)
+            throws IOException, ClassNotFoundException {
+        ByteBuffer b = buf.duplicate();
+        b.position(offset);
+        int keyLength = b.getInt(offset + 5);
+        int contentOffset = b.getInt(offset + 9);
+        if (b.getInt(offset) != length || keyLength != keyBytes.length || contentOffset > length) {
+            Main.warn("Invalid record for " + key + " in cache " + getCacheName());
+            return null;
+        }
+        byte[] head = new byte[contentOffset];
+        b.get(head);
+        if (!Arrays.equals(keyBytes, Arrays.copyOfRange(head, RECORD_HEADER_SIZE, RECORD_HEADER_SIZE + keyLength))) {
+            // another key with the same hash
+            return null;
+        }
+        byte[] content = new byte[length - contentOffset];
+        b.get(content);
+        int type = head[4] & ~STRING_KEY;
+        if (type == TYPE_SERIALIZED) {
+            return getElementSerializer().deSerialize(content, null);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(head, RECORD_HEADER_SIZE + keyLength,
+                contentOffset - RECORD_HEADER_SIZE - keyLength));
+        CacheEntryAttributes attr = new CacheEntryAttributes();
+        attr.setMaxLife(in.readLong());
+        attr.setIdleTime(in.readLong());
+        attr.setIsEternal(in.readBoolean());
+        int size = in.readInt();
+        Map<String, String> metadata = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            metadata.put(in.readUTF(), in.readUTF());
+        }
+        attr.restoreAttributes(metadata);
+        V value = (V) (type == TYPE_IMAGE_ENTRY ? new BufferedImageCacheEntry(content) : new CacheEntry(content));
+        CacheElement<K, V> element = new CacheElement<>(getCacheName(), key, value);
+        element.setElementAttributes(attr);
+        return element;
+    }
+
+    @Override
+    public Map<K, ICacheElement<K, V>> processGetMatching(String pattern) throws IOException {
+        Map<K, ICacheElement<K, V>> elements = new HashMap<>();
+        for (K key : getKeyMatcher().getMatchingKeysFromArray(pattern, getKeySet())) {
+            ICacheElement<K, V> element = processGet(key);
+            if (element != null) {
+                elements.put(key, element);
+            }
+        }
+        return elements;
+    }
+
+    @Override
+    public Set<K> getKeySet() throws IOException {
+        Set<K> keys = new HashSet<>();
+        storageLock.readLock().lock();
+        try {
+            if (!alive)
+                return keys;
+            for (int slot = 0; slot < index.capacity(); slot++) {
+                Segment s = segments.get(index.getSegment(slot));
+                if (s != null) {
+                    keys.add(readKey(s, index.getOffset(slot)));
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            storageLock.readLock().unlock();
+        }
+        return keys;
+    }
+
+    private K readKey(Segment s, int offset) throws IOException, ClassNotFoundException {
+        ByteBuffer b = s.buf.duplicate();
+        byte[] keyBytes = new byte[b.getInt(offset + 5)];
+        b.position(offset + RECORD_HEADER_SIZE);
+        b.get(keyBytes);
+        return toKey(keyBytes, (b.get(offset + 4) & STRING_KEY) != 0);
+    }
+
+    @Override
+    protected boolean processRemove(K key) throws IOException {
+        if (key instanceof String && ((String) key).endsWith(CacheConstants.NAME_COMPONENT_DELIMITER)) {
+            boolean removed = false;
+            for (K k : getKeySet()) {
+                if (k instanceof String && ((String) k).startsWith((String) key)) {
+                    removed |= processRemove(k);
+                }
+            }
+            return removed;
+        }
+        byte[] keyBytes = getKeyBytes(key);
+        Segment compactable;
+        storageLock.writeLock().lock();
+        try {
+            if (!alive)
+                return false;
+            int slot = index.find(hash(keyBytes));
+            if (slot < 0)
+                return false;
+            compactable = release(slot);
+            index.remove(slot);
+        } finally {
+            storageLock.writeLock().unlock();
+        }
+        scheduleCompaction(compactable);
+        return true;
+    }
+
+    @Override
+    protected void processRemoveAll() throws IOException {
+        storageLock.writeLock().lock();
+        try {
+            if (!alive)
+                return;
+            for (Segment s : new ArrayList<>(segments.values())) {
+                deleteSegment(s);
+            }
+            index.clear();
+        } finally {
+            storageLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void processDispose() throws IOException {
+        storageLock.writeLock().lock();
+        try {
+            if (!alive)
+                return;
+            alive = false;
+            for (Segment s : segments.values()) {
+                s.buf.force();
+                s.raf.close();
+            }
+            segments.clear();
+            active = null;
+            index.close();
+        } finally {
+            storageLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        storageLock.readLock().lock();
+        try {
+            return alive ? index.size() : 0;
+        } finally {
+            storageLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of segment files. This is exposed for testing.
+     * @return the number of segment files
+     */
+    int getSegmentCount() {
+        storageLock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            storageLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected String getDiskLocation() {
+        return dir.getAbsolutePath();
+    }
+
+    @Override
+    public AuxiliaryCacheAttributes getAuxiliaryCacheAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public IStats getStatistics() {
+        IStats stats = super.getStatistics();
+        stats.setTypeName("Mapped Disk Cache");
+        List<IStatElement<?>> elems = new ArrayList<>(stats.getStatElements());
+        storageLock.readLock().lock();
+        try {
+            elems.add(new StatElement<>("Is Alive", Boolean.valueOf(alive)));
+            elems.add(new StatElement<>("Key Count", Integer.valueOf(alive ? index.size() : 0)));
+            elems.add(new StatElement<>("Segment Count", Integer.valueOf(segments.size())));
+            elems.add(new StatElement<>("Data Size", Long.valueOf(getTotalBytes())));
+            elems.add(new StatElement<>("Times Compacted", Integer.valueOf(compactions)));
+        } finally {
+            storageLock.readLock().unlock();
+        }
+        stats.setStatElements(elems);
+        return stats;
+    }
+}
@@ -0,0 +1,55 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import org.apache.commons.jcs.auxiliary.disk.AbstractDiskCacheAttributes;
+
+/**
+ * Configuration of a {@link MappedDiskCache}.
+ * @since 8570
+ */
+public class MappedDiskCacheAttributes extends AbstractDiskCacheAttributes {
+    private static final long serialVersionUID = 1L;
+
+    /** Default size of the segment files, in bytes */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private int maxSize = -1;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * Sets the maximum size of the cache on disk. The oldest segments are dropped when it is exceeded.
+     * @param maxSize the maximum size in kB, or -1 for no limit
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the maximum size of the cache on disk.
+     * @return the maximum size in kB, or -1 for no limit
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the size of the segment files. Records larger than this size get a segment of their own.
+     * @param segmentSize the size of the segment files, in bytes
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Returns the size of the segment files.
+     * @return the size of the segment files, in bytes
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedDiskCacheAttributes [maxSize=" + maxSize + ", segmentSize=" + segmentSize + ", diskPath=" + getDiskPath() + ']';
+    }
+}
@@ -0,0 +1,325 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.openstreetmap.josm.Main;
+
+/**
+ * On-disk hash table of {@link MappedDiskCache}, memory-mapped so that it does not use heap memory.
+ * The slots are scanned once when the index is opened, to count the entries and the removed slots.
+ * <p>
+ * Each slot maps the 64 bits hash of a key to the location of its record: segment id, offset and length.
+ * Slots are found with linear probing. The table is rebuilt in a new file, with a new generation number,
+ * when it becomes too full, as a mapped file cannot be resized on every platform.
+ * @since 8570
+ */
+final class MappedDiskIndex {
+
+    private static final int MAGIC = 0x4a4f4958; // "JOIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 20;
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final double MAX_LOAD = 0.6;
+
+    /** Segment id of an empty slot */
+    static final int EMPTY = 0;
+    /** Segment id of a slot whose entry has been removed */
+    static final int REMOVED = -1;
+
+    private final File dir;
+    private final String prefix;
+    private File file;
+    private RandomAccessFile raf;
+    private MappedByteBuffer buf;
+    private int generation;
+    private int capacity;
+    private int count;
+    private int removed;
+
+    /**
+     * Opens the index stored in the given directory, or creates an empty one.
+     * @param dir the directory
+     * @param prefix the prefix of the index file names
+     * @throws IOException if an I/O error occurs
+     */
+    MappedDiskIndex(File dir, String prefix) throws IOException {
+        this.dir = dir;
+        this.prefix = prefix;
+        File[] files = dir.listFiles();
+        File latest = null;
+        int latestGeneration = -1;
+        if (files != null) {
+            for (File f : files) {
+                int g = getGeneration(f);
+                if (g > latestGeneration) {
+                    latest = f;
+                    latestGeneration = g;
+                }
+            }
+        }
+        if (latest != null && open(latest, latestGeneration)) {
+            deleteOtherGenerations();
+        } else {
+            create(Math.max(latestGeneration + 1, 0), INITIAL_CAPACITY);
+        }
+    }
+
+    private int getGeneration(File f) {
+        String name = f.getName();
+        if (name.startsWith(prefix + ".idx.")) {
+            try {
+                return Integer.parseInt(name.substring(prefix.length() + 5));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void deleteOtherGenerations() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                int g = getGeneration(f);
+                if (g >= 0 && g != generation && !f.delete()) {
+                    Main.debug("Cannot delete old cache index " + f);
+                }
+            }
+        }
+    }
+
+    private boolean open(File f, int g) throws IOException {
+        RandomAccessFile r = new RandomAccessFile(f, "rw");
+        boolean ok = false;
+        try {
+            if (r.length() >= HEADER_SIZE) {
+                MappedByteBuffer b = r.getChannel().map(MapMode.READ_WRITE, 0, r.length());
+                int c = b.getInt(8);
+                if (b.getInt(0) == MAGIC && b.getInt(4) == VERSION && c > 0 && (c & (c - 1)) == 0
+                        && r.length() == HEADER_SIZE + (long) c * SLOT_SIZE) {
+                    file = f;
+                    raf = r;
+                    buf = b;
+                    generation = g;
+                    capacity = c;
+                    count = 0;
+                    removed = 0;
+                    for (int slot = 0; slot < capacity; slot++) {
+                        int segment = getSegment(slot);
+                        if (segment > EMPTY) {
+                            count++;
+                        } else if (segment == REMOVED) {
+                            removed++;
+                        }
+                    }
+                    ok = true;
+                }
+            }
+        } finally {
+            if (!ok) {
+                r.close();
+            }
+        }
+        if (!ok) {
+            Main.warn("Ignoring invalid cache index " + f);
+        }
+        return ok;
+    }
+
+    private void create(int g, int c) throws IOException {
+        File f = new File(dir, prefix + ".idx." + g);
+        RandomAccessFile r = new RandomAccessFile(f, "rw");
+        try {
+            r.setLength(0);
+            r.setLength(HEADER_SIZE + (long) c * SLOT_SIZE);
+            buf = r.getChannel().map(MapMode.READ_WRITE, 0, r.length());
+        } catch (IOException e) {
+            r.close();
+            throw e;
+        }
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, VERSION);
+        buf.putInt(8, c);
+        buf.putInt(12, 0); // reserved
+        file = f;
+        raf = r;
+        generation = g;
+        capacity = c;
+        count = 0;
+        removed = 0;
+    }
+
+    /**
+     * Returns the number of slots of the table.
+     * @return the number of slots
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of entries.
+     * @return the number of entries
+     */
+    int size() {
+        return count;
+    }
+
+    long getHash(int slot) {
+        return buf.getLong(HEADER_SIZE + slot * SLOT_SIZE);
+    }
+
+    /**
+     * Returns the segment id of a slot.
+     * @param slot the slot
+     * @return the segment id, or {@link #EMPTY} or {@link #REMOVED}
+     */
+    int getSegment(int slot) {
+        return buf.getInt(HEADER_SIZE + slot * SLOT_SIZE + 8);
+    }
+
+    int getOffset(int slot) {
+        return buf.getInt(HEADER_SIZE + slot * SLOT_SIZE + 12);
+    }
+
+    int getLength(int slot) {
+        return buf.getInt(HEADER_SIZE + slot * SLOT_SIZE + 16);
+    }
+
+    /**
+     * Finds the slot of a key.
+     * @param hash the hash of the key
+     * @return the slot, or -1 if the key is not found
+     */
+    int find(long hash) {
+        int mask = capacity - 1;
+        for (int slot = (int) mix(hash) & mask;; slot = (slot + 1) & mask) {
+            int segment = getSegment(slot);
+            if (segment == EMPTY) {
+                return -1;
+            } else if (segment != REMOVED && getHash(slot) == hash) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Sets the location of the record of an existing slot.
+     * @param slot the slot
+     * @param segment the segment id
+     * @param offset the offset of the record in the segment
+     * @param length the length of the record
+     */
+    void set(int slot, int segment, int offset, int length) {
+        int pos = HEADER_SIZE + slot * SLOT_SIZE;
+        buf.putInt(pos + 12, offset);
+        buf.putInt(pos + 16, length);
+        buf.putInt(pos + 8, segment);
+    }
+
+    /**
+     * Adds a key, which must not be in the table yet.
+     * @param hash the hash of the key
+     * @param segment the segment id
+     * @param offset the offset of the record in the segment
+     * @param length the length of the record
+     * @throws IOException if the table needs to be rebuilt and an I/O error occurs
+     */
+    void insert(long hash, int segment, int offset, int length) throws IOException {
+        if (count + removed + 1 > capacity * MAX_LOAD) {
+            int newCapacity = capacity;
+            while (count + 1 > newCapacity * MAX_LOAD / 2) {
+                newCapacity *= 2;
+            }
+            rebuild(newCapacity);
+        }
+        int mask = capacity - 1;
+        int slot = (int) mix(hash) & mask;
+        while (getSegment(slot) > EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        if (getSegment(slot) == REMOVED) {
+            removed--;
+        }
+        buf.putLong(HEADER_SIZE + slot * SLOT_SIZE, hash);
+        set(slot, segment, offset, length);
+        count++;
+    }
+
+    /**
+     * Removes the entry of a slot.
+     * @param slot the slot
+     */
+    void remove(int slot) {
+        buf.putInt(HEADER_SIZE + slot * SLOT_SIZE + 8, REMOVED);
+        count--;
+        removed++;
+    }
+
+    /**
+     * Removes all the entries.
+     * @throws IOException if an I/O error occurs
+     */
+    void clear() throws IOException {
+        count = 0;
+        removed = 0;
+        rebuild(INITIAL_CAPACITY);
+    }
+
+    private void rebuild(int newCapacity) throws IOException {
+        long[] hashes = new long[count];
+        int[] locations = new int[3 * count];
+        int n = 0;
+        for (int slot = 0; slot < capacity && n < count; slot++) {
+            if (getSegment(slot) > EMPTY) {
+                hashes[n] = getHash(slot);
+                locations[3 * n] = getSegment(slot);
+                locations[3 * n + 1] = getOffset(slot);
+                locations[3 * n + 2] = getLength(slot);
+                n++;
+            }
+        }
+        File oldFile = file;
+        RandomAccessFile oldRaf = raf;
+        create(generation + 1, newCapacity);
+        oldRaf.close();
+        if (!oldFile.delete()) {
+            // a mapped file cannot be deleted on Windows, it will be deleted on next startup
+            Main.debug("Cannot delete old cache index " + oldFile);
+        }
+        for (int i = 0; i < n; i++) {
+            insert(hashes[i], locations[3 * i], locations[3 * i + 1], locations[3 * i + 2]);
+        }
+    }
+
+    /**
+     * Writes the modified pages to the disk.
+     */
+    void flush() {
+        buf.force();
+    }
+
+    /**
+     * Flushes and closes the index.
+     * @throws IOException if an I/O error occurs
+     */
+    void close() throws IOException {
+        flush();
+        raf.close();
+    }
+
+    /**
+     * Spreads the bits of a hash, so that similar keys do not end up in neighbouring slots.
+     */
+    private static long mix(long hash) {
+        long h = hash ^ (hash >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        return h ^ (h >>> 33);
+    }
+}
@@ -66,7 +66,14 @@ public final class QuadTiling {
         return quadTile(coor);
     }
 
-    static long lon2x(double lon) {
+    /**
+     * Returns the tile column of the given longitude at the deepest level.
+     * Bit {@code NR_LEVELS-level-1} of the result is the one used by {@link #index(double, double, int)} at {@code level}.
+     * @param lon longitude
+     * @return tile column of the given longitude
+     * @since 8563
+     */
+    public static long lon2x(double lon) {
         long ret = (long) ((lon + 180.0) * WORLD_PARTS / 360.0);
         if (Utils.equalsEpsilon(ret, WORLD_PARTS)) {
             ret--;
@@ -74,7 +81,14 @@ public final class QuadTiling {
         return ret;
     }
 
-    static long lat2y(double lat) {
+    /**
+     * Returns the tile row of the given latitude at the deepest level.
+     * Bit {@code NR_LEVELS-level-1} of the result is the one used by {@link #index(double, double, int)} at {@code level}.
+     * @param lat latitude
+     * @return tile row of the given latitude
+     * @since 8563
+     */
+    public static long lat2y(double lat) {
         long ret = (long) ((lat + 90.0) * WORLD_PARTS / 180.0);
         if (Utils.equalsEpsilon(ret, WORLD_PARTS)) {
             ret--;
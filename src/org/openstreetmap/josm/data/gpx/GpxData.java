@@ -3,6 +3,7 @@ package org.openstreetmap.josm.data.gpx;
 
 import java.awt.geom.Area;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
@@ -17,6 +18,9 @@ import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.Data;
 import org.openstreetmap.josm.data.DataSource;
 import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.data.projection.Projections;
 import org.openstreetmap.josm.tools.Utils;
 
 /**
@@ -184,23 +188,35 @@ public class GpxData extends WithAttributes implements Data {
      * @return  minimum and maximum dates in array of 2 elements
      */
     public static Date[] getMinMaxTimeForTrack(GpxTrack trk) {
-        WayPoint earliest = null, latest = null;
+        double earliest = Double.NaN, latest = Double.NaN;
 
         for (GpxTrackSegment seg : trk.getSegments()) {
-            for (WayPoint pnt : seg.getWayPoints()) {
-                if (latest == null) {
-                    latest = earliest = pnt;
-                } else {
-                    if (pnt.compareTo(earliest) < 0) {
-                        earliest = pnt;
+            if (seg instanceof PackedGpxTrackSegment) {
+                PackedGpxTrackSegment packed = (PackedGpxTrackSegment) seg;
+                for (int i = 0; i < packed.size(); i++) {
+                    double t = packed.getTime(i);
+                    if (Double.isNaN(latest)) {
+                        latest = earliest = t;
+                    } else if (t < earliest) {
+                        earliest = t;
                     } else {
-                        latest = pnt;
+                        latest = t;
                     }
                 }
+                continue;
+            }
+            for (WayPoint pnt : seg.getWayPoints()) {
+                if (Double.isNaN(latest)) {
+                    latest = earliest = pnt.time;
+                } else if (pnt.time < earliest) {
+                    earliest = pnt.time;
+                } else {
+                    latest = pnt.time;
+                }
             }
         }
-        if (earliest == null || latest == null) return null;
-        return new Date[]{earliest.getTime(), latest.getTime()};
+        if (Double.isNaN(earliest) || Double.isNaN(latest)) return null;
+        return new Date[]{new Date((long) (earliest * 1000)), new Date((long) (latest * 1000))};
     }
 
     /**
@@ -216,6 +232,17 @@ public class GpxData extends WithAttributes implements Data {
         double now = System.currentTimeMillis()/1000.0;
         for (GpxTrack trk: tracks) {
             for (GpxTrackSegment seg : trk.getSegments()) {
+                if (seg instanceof PackedGpxTrackSegment) {
+                    PackedGpxTrackSegment packed = (PackedGpxTrackSegment) seg;
+                    for (int i = 0; i < packed.size(); i++) {
+                        double t = packed.getTime(i);
+                        if (t > 0 && t <= now) {
+                            if (t > max) max = t;
+                            if (t < min) min = t;
+                        }
+                    }
+                    continue;
+                }
                 for (WayPoint pnt : seg.getWayPoints()) {
                     double t = pnt.time;
                     if (t > 0 && t <= now) {
@@ -262,80 +289,39 @@ public class GpxData extends WithAttributes implements Data {
          * where RN = sqrt(PR^2 - PN^2)
          */
 
-        double PNminsq = tolerance * tolerance;
-        EastNorth bestEN = null;
-        double bestTime = 0.0;
-        double px = P.east();
-        double py = P.north();
-        double rx = 0.0, ry = 0.0, sx, sy, x, y;
         if (tracks == null)
             return null;
+        NearestPointFinder finder = new NearestPointFinder(P, tolerance);
+        Bounds area = null;
         for (GpxTrack track : tracks) {
             for (GpxTrackSegment seg : track.getSegments()) {
+                if (seg instanceof PackedGpxTrackSegment) {
+                    if (area == null) {
+                        area = getLatLonBounds(P, tolerance);
+                    }
+                    finder.visit((PackedGpxTrackSegment) seg, area);
+                    continue;
+                }
                 WayPoint R = null;
+                EastNorth r = null;
                 for (WayPoint S : seg.getWayPoints()) {
                     EastNorth c = S.getEastNorth();
                     if (R == null) {
-                        R = S;
-                        rx = c.east();
-                        ry = c.north();
-                        x = px - rx;
-                        y = py - ry;
-                        double PRsq = x * x + y * y;
-                        if (PRsq < PNminsq) {
-                            PNminsq = PRsq;
-                            bestEN = c;
-                            bestTime = R.time;
-                        }
-                    } else {
-                        sx = c.east();
-                        sy = c.north();
-                        double A = sy - ry;
-                        double B = rx - sx;
-                        double C = -A * rx - B * ry;
-                        double RSsq = A * A + B * B;
-                        if (RSsq == 0) {
-                            continue;
-                        }
-                        double PNsq = A * px + B * py + C;
-                        PNsq = PNsq * PNsq / RSsq;
-                        if (PNsq < PNminsq) {
-                            x = px - rx;
-                            y = py - ry;
-                            double PRsq = x * x + y * y;
-                            x = px - sx;
-                            y = py - sy;
-                            double PSsq = x * x + y * y;
-                            if (PRsq - PNsq <= RSsq && PSsq - PNsq <= RSsq) {
-                                double RNoverRS = Math.sqrt((PRsq - PNsq) / RSsq);
-                                double nx = rx - RNoverRS * B;
-                                double ny = ry + RNoverRS * A;
-                                bestEN = new EastNorth(nx, ny);
-                                bestTime = R.time + RNoverRS * (S.time - R.time);
-                                PNminsq = PNsq;
-                            }
-                        }
-                        R = S;
-                        rx = sx;
-                        ry = sy;
+                        finder.visitPoint(c, S.time);
+                    } else if (!finder.visitLine(r, R.time, c, S.time)) {
+                        continue;
                     }
+                    R = S;
+                    r = c;
                 }
                 if (R != null) {
-                    EastNorth c = R.getEastNorth();
                     /* if there is only one point in the seg, it will do this twice, but no matter */
-                    rx = c.east();
-                    ry = c.north();
-                    x = px - rx;
-                    y = py - ry;
-                    double PRsq = x * x + y * y;
-                    if (PRsq < PNminsq) {
-                        PNminsq = PRsq;
-                        bestEN = c;
-                        bestTime = R.time;
-                    }
+                    finder.visitPoint(r, R.time);
                 }
             }
         }
+        EastNorth bestEN = finder.bestEN;
+        double bestTime = finder.bestTime;
         if (bestEN == null)
             return null;
         WayPoint best = new WayPoint(Main.getProjection().eastNorth2latlon(bestEN));
@@ -343,6 +329,125 @@ public class GpxData extends WithAttributes implements Data {
         return best;
     }
 
+    /**
+     * Returns the bounds containing the points at less than a given distance of a point, in projected coordinates.
+     * @param en the point
+     * @param distance the distance, in east/north units
+     * @return the bounds, slightly enlarged as the projected square is not a rectangle in lat/lon,
+     * or {@code null} if the corners of the square cannot be converted
+     */
+    private static Bounds getLatLonBounds(EastNorth en, double distance) {
+        double d = distance * 1.1;
+        Bounds b = null;
+        for (int i = 0; i < 4; i++) {
+            LatLon ll = Main.getProjection().eastNorth2latlon(
+                    new EastNorth(en.east() + (i < 2 ? -d : d), en.north() + (i % 2 == 0 ? -d : d)));
+            if (Double.isNaN(ll.lat()) || Double.isNaN(ll.lon()))
+                return null;
+            if (b == null) {
+                b = new Bounds(ll, false);
+            } else {
+                b.extend(ll);
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Finds the point of the tracks nearest to a given point, see {@link GpxData#nearestPointOnTrack}.
+     */
+    private static final class NearestPointFinder {
+        private final double px;
+        private final double py;
+        private double PNminsq;
+        private EastNorth bestEN;
+        private double bestTime;
+
+        NearestPointFinder(EastNorth P, double tolerance) {
+            px = P.east();
+            py = P.north();
+            PNminsq = tolerance * tolerance;
+        }
+
+        /**
+         * Visits the first or last point of a segment.
+         */
+        void visitPoint(EastNorth c, double time) {
+            double x = px - c.east();
+            double y = py - c.north();
+            double PRsq = x * x + y * y;
+            if (PRsq < PNminsq) {
+                PNminsq = PRsq;
+                bestEN = c;
+                bestTime = time;
+            }
+        }
+
+        /**
+         * Visits the section of track between two points R and S.
+         * @return false if the section is degenerate
+         */
+        boolean visitLine(EastNorth r, double rtime, EastNorth s, double stime) {
+            double rx = r.east();
+            double ry = r.north();
+            double sx = s.east();
+            double sy = s.north();
+            double A = sy - ry;
+            double B = rx - sx;
+            double C = -A * rx - B * ry;
+            double RSsq = A * A + B * B;
+            if (RSsq == 0)
+                return false;
+            double PNsq = A * px + B * py + C;
+            PNsq = PNsq * PNsq / RSsq;
+            if (PNsq < PNminsq) {
+                double x = px - rx;
+                double y = py - ry;
+                double PRsq = x * x + y * y;
+                x = px - sx;
+                y = py - sy;
+                double PSsq = x * x + y * y;
+                if (PRsq - PNsq <= RSsq && PSsq - PNsq <= RSsq) {
+                    double RNoverRS = Math.sqrt((PRsq - PNsq) / RSsq);
+                    double nx = rx - RNoverRS * B;
+                    double ny = ry + RNoverRS * A;
+                    bestEN = new EastNorth(nx, ny);
+                    bestTime = rtime + RNoverRS * (stime - rtime);
+                    PNminsq = PNsq;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Visits the sections of a packed segment that may be close enough, found with its index.
+         * @param area the area containing the points close enough, null to visit all the points
+         */
+        void visit(PackedGpxTrackSegment seg, Bounds area) {
+            int last = seg.size() - 1;
+            if (last < 0)
+                return;
+            int[] ranges = area == null ? new int[] {0, last} : seg.getRanges(area);
+            for (int k = 0; k < ranges.length; k += 2) {
+                int r = ranges[k];
+                EastNorth rc = seg.getEastNorth(r);
+                if (r == 0) {
+                    visitPoint(rc, seg.getTime(0));
+                }
+                for (int i = ranges[k] + 1; i <= ranges[k + 1]; i++) {
+                    EastNorth c = seg.getEastNorth(i);
+                    if (visitLine(rc, seg.getTime(r), c, seg.getTime(i))) {
+                        r = i;
+                        rc = c;
+                    }
+                }
+            }
+            if (ranges.length > 0 && ranges[ranges.length - 1] == last) {
+                visitPoint(seg.getEastNorth(last), seg.getTime(last));
+            }
+        }
+    }
+
     /**
      * Iterate over all track segments and over all routes.
      *
@@ -361,30 +466,67 @@ public class GpxData extends WithAttributes implements Data {
     }
 
     public void resetEastNorthCache() {
-        if (waypoints != null) {
-            for (WayPoint wp : waypoints) {
-                wp.invalidateEastNorthCache();
+        for (WayPoint wp : getAllWayPoints()) {
+            wp.invalidateEastNorthCache();
+        }
+        for (PackedGpxTrackSegment segment : getPackedSegments()) {
+            segment.invalidateEastNorthCache();
+        }
+    }
+
+    /**
+     * Reprojects the waypoints whose projected coordinates are cached, with the current projection.
+     *
+     * The coordinates are converted at once and in parallel by {@link Projections#project(Projection, double[], int)}.
+     * The other waypoints are still projected when their coordinates are first needed.
+     * @since 8581
+     */
+    public void reprojectEastNorthCache() {
+        WayPoint.reprojectEastNorthCache(getAllWayPoints());
+        for (PackedGpxTrackSegment segment : getPackedSegments()) {
+            segment.reprojectEastNorthCache();
+        }
+    }
+
+    private List<PackedGpxTrackSegment> getPackedSegments() {
+        List<PackedGpxTrackSegment> segments = new ArrayList<>();
+        if (tracks != null) {
+            for (GpxTrack track: tracks) {
+                for (GpxTrackSegment segment: track.getSegments()) {
+                    if (segment instanceof PackedGpxTrackSegment) {
+                        segments.add((PackedGpxTrackSegment) segment);
+                    }
+                }
             }
         }
+        return segments;
+    }
+
+    /**
+     * Returns the waypoints, the track points and the route points, except the points of the packed segments.
+     */
+    private List<WayPoint> getAllWayPoints() {
+        List<WayPoint> points = new ArrayList<>();
+        if (waypoints != null) {
+            points.addAll(waypoints);
+        }
         if (tracks != null) {
             for (GpxTrack track: tracks) {
                 for (GpxTrackSegment segment: track.getSegments()) {
-                    for (WayPoint wp: segment.getWayPoints()) {
-                        wp.invalidateEastNorthCache();
+                    if (!(segment instanceof PackedGpxTrackSegment)) {
+                        points.addAll(segment.getWayPoints());
                     }
                 }
             }
         }
         if (routes != null) {
             for (GpxRoute route: routes) {
-                if (route.routePoints == null) {
-                    continue;
-                }
-                for (WayPoint wp: route.routePoints) {
-                    wp.invalidateEastNorthCache();
+                if (route.routePoints != null) {
+                    points.addAll(route.routePoints);
                 }
             }
         }
+        return points;
     }
 
     /**
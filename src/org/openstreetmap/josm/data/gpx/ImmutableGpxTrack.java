@@ -29,6 +29,19 @@ public class ImmutableGpxTrack extends WithAttributes implements GpxTrack {
         this.bounds = calculateBounds();
     }
 
+    /**
+     * Constructs a new {@code ImmutableGpxTrack} from its segments.
+     * @param segments the segments of the track
+     * @param attributes the attributes of the track
+     * @since 8583
+     */
+    public ImmutableGpxTrack(List<GpxTrackSegment> segments, Map<String, Object> attributes) {
+        this.attr = Collections.unmodifiableMap(new HashMap<>(attributes));
+        this.segments = Collections.unmodifiableCollection(new ArrayList<>(segments));
+        this.length = calculateLength();
+        this.bounds = calculateBounds();
+    }
+
     private double calculateLength() {
         double result = 0.0; // in meters
 
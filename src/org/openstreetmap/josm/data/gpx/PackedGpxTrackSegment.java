@@ -0,0 +1,422 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.gpx;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TimeZone;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.Projections;
+
+/**
+ * A read-only track segment storing its points in arrays rather than as {@link WayPoint} objects,
+ * for the huge recorded tracks.
+ * <p>
+ * The coordinates and times are stored in packed arrays. The other attributes are only stored for the points
+ * having some, as a flat array of keys and values. The time attribute is not stored when it can be rebuilt
+ * from the time of the point. The points are indexed by blocks of {@link #BLOCK_SIZE} consecutive points,
+ * to find the parts of the track in an area without testing every point.
+ * <p>
+ * {@link #getWayPoints()} returns a view creating the way points when they are accessed: the drawing state
+ * of the way points ({@link WayPoint#customColoring} and others) is not kept.
+ * @since 8583
+ */
+public final class PackedGpxTrackSegment implements GpxTrackSegment {
+
+    /** Number of lines indexed by a block */
+    public static final int BLOCK_SIZE = 64;
+
+    private static final ThreadLocal<GregorianCalendar> CALENDAR = new ThreadLocal<GregorianCalendar>() {
+        @Override protected GregorianCalendar initialValue() {
+            return new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        }
+    };
+
+    private final int size;
+    /** latitude and longitude of the points */
+    private final double[] coords;
+    /** time of the points, in seconds, NaN for the points without time attribute */
+    private final double[] times;
+    /** keys and values of the other attributes of the points, null for the points without. Null if no point has some */
+    private final Object[][] attributes;
+    /** min latitude, min longitude, max latitude and max longitude of the blocks */
+    private final double[] blockBounds;
+    private final Bounds bounds;
+    private final double length;
+    /** cached east/north coordinates of the points, null if not computed */
+    private volatile double[] eastNorth;
+
+    /**
+     * Builds a {@link PackedGpxTrackSegment} point by point, without keeping the {@link WayPoint} objects.
+     */
+    public static final class Builder {
+        private int size;
+        private double[] coords = new double[2 * 16];
+        private double[] times = new double[16];
+        private Object[][] attributes;
+
+        /**
+         * Adds a point at the end of the segment.
+         * @param wp the point
+         */
+        public void add(WayPoint wp) {
+            if (size == times.length) {
+                int capacity = 2 * size;
+                coords = Arrays.copyOf(coords, 2 * capacity);
+                times = Arrays.copyOf(times, capacity);
+                if (attributes != null) {
+                    attributes = Arrays.copyOf(attributes, capacity);
+                }
+            }
+            LatLon c = wp.getCoor();
+            coords[2 * size] = c.lat();
+            coords[2 * size + 1] = c.lon();
+            Object time = wp.attr.get(GpxConstants.PT_TIME);
+            times[size] = time == null ? Double.NaN : wp.time;
+            int count = wp.attr.size();
+            if (time != null && time.equals(formatTime(wp.time))) {
+                count--; // rebuilt from the time when needed
+            } else {
+                time = null;
+            }
+            if (count > 0) {
+                Object[] values = new Object[2 * count];
+                int i = 0;
+                for (Map.Entry<String, Object> e : wp.attr.entrySet()) {
+                    if (time == null || !GpxConstants.PT_TIME.equals(e.getKey())) {
+                        values[i++] = e.getKey();
+                        values[i++] = e.getValue();
+                    }
+                }
+                if (attributes == null) {
+                    attributes = new Object[times.length][];
+                }
+                attributes[size] = values;
+            }
+            size++;
+        }
+
+        /**
+         * Returns the number of points added so far.
+         * @return the number of points added so far
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Builds the segment from the added points.
+         * @return the new segment
+         */
+        public PackedGpxTrackSegment build() {
+            return new PackedGpxTrackSegment(size, Arrays.copyOf(coords, 2 * size), Arrays.copyOf(times, size),
+                    attributes == null ? null : Arrays.copyOf(attributes, size));
+        }
+    }
+
+    /**
+     * The points of a {@link PackedGpxTrackSegment}, created when they are accessed.
+     */
+    public final class WayPointList extends AbstractList<WayPoint> implements RandomAccess {
+
+        private WayPointList() {
+            // Created by the segment
+        }
+
+        @Override
+        public WayPoint get(int index) {
+            return getWayPoint(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the segment of the points.
+         * @return the segment of the points
+         */
+        public PackedGpxTrackSegment getSegment() {
+            return PackedGpxTrackSegment.this;
+        }
+    }
+
+    private PackedGpxTrackSegment(int size, double[] coords, double[] times, Object[][] attributes) {
+        this.size = size;
+        this.coords = coords;
+        this.times = times;
+        this.attributes = attributes;
+
+        Bounds b = null;
+        double l = 0.0; // in meters
+        LatLon last = null;
+        for (int i = 0; i < size; i++) {
+            LatLon c = getCoor(i);
+            if (b == null) {
+                b = new Bounds(c);
+            } else {
+                b.extend(c);
+            }
+            if (last != null) {
+                double d = last.greatCircleDistance(c);
+                if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+                    l += d;
+                }
+            }
+            last = c;
+        }
+        this.bounds = b;
+        this.length = l;
+
+        int blocks = size <= 1 ? size : (size - 2) / BLOCK_SIZE + 1;
+        this.blockBounds = new double[4 * blocks];
+        for (int k = 0; k < blocks; k++) {
+            double minLat = Double.POSITIVE_INFINITY;
+            double minLon = Double.POSITIVE_INFINITY;
+            double maxLat = Double.NEGATIVE_INFINITY;
+            double maxLon = Double.NEGATIVE_INFINITY;
+            // a block includes the first point of the next block, so that it contains all its lines
+            int end = Math.min(k * BLOCK_SIZE + BLOCK_SIZE, size - 1);
+            for (int i = k * BLOCK_SIZE; i <= end; i++) {
+                double lat = coords[2 * i];
+                double lon = coords[2 * i + 1];
+                if (!Double.isNaN(lat) && !Double.isNaN(lon)) {
+                    minLat = Math.min(minLat, lat);
+                    minLon = Math.min(minLon, lon);
+                    maxLat = Math.max(maxLat, lat);
+                    maxLon = Math.max(maxLon, lon);
+                }
+            }
+            blockBounds[4 * k] = minLat;
+            blockBounds[4 * k + 1] = minLon;
+            blockBounds[4 * k + 2] = maxLat;
+            blockBounds[4 * k + 3] = maxLon;
+        }
+    }
+
+    private static String formatTime(double time) {
+        long ms = Math.round(time * 1000);
+        GregorianCalendar cal = CALENDAR.get();
+        cal.setTimeInMillis(ms);
+        int year = cal.get(Calendar.YEAR);
+        if (cal.get(Calendar.ERA) != GregorianCalendar.AD || year < 1000 || year > 9999)
+            return null;
+        StringBuilder sb = new StringBuilder(24).append(year).append('-');
+        append(sb, cal.get(Calendar.MONTH) + 1, 2).append('-');
+        append(sb, cal.get(Calendar.DAY_OF_MONTH), 2).append('T');
+        append(sb, cal.get(Calendar.HOUR_OF_DAY), 2).append(':');
+        append(sb, cal.get(Calendar.MINUTE), 2).append(':');
+        append(sb, cal.get(Calendar.SECOND), 2);
+        if (cal.get(Calendar.MILLISECOND) != 0) {
+            append(sb.append('.'), cal.get(Calendar.MILLISECOND), 3);
+        }
+        return sb.append('Z').toString();
+    }
+
+    private static StringBuilder append(StringBuilder sb, int value, int digits) {
+        for (int d = digits == 3 ? 100 : 10; d > 1 && value < d; d /= 10) {
+            sb.append('0');
+        }
+        return sb.append(value);
+    }
+
+    /**
+     * Returns the number of points.
+     * @return the number of points
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the latitude of a point.
+     * @param i the index of the point
+     * @return the latitude of the point
+     */
+    public double getLat(int i) {
+        return coords[2 * i];
+    }
+
+    /**
+     * Returns the longitude of a point.
+     * @param i the index of the point
+     * @return the longitude of the point
+     */
+    public double getLon(int i) {
+        return coords[2 * i + 1];
+    }
+
+    /**
+     * Returns the coordinates of a point.
+     * @param i the index of the point
+     * @return the coordinates of the point
+     */
+    public LatLon getCoor(int i) {
+        return new LatLon(coords[2 * i], coords[2 * i + 1]);
+    }
+
+    /**
+     * Determines if a point has a time attribute.
+     * @param i the index of the point
+     * @return {@code true} if the point has a time attribute
+     */
+    public boolean hasTime(int i) {
+        return !Double.isNaN(times[i]);
+    }
+
+    /**
+     * Returns the time of a point, like {@link WayPoint#time}.
+     * @param i the index of the point
+     * @return the time of the point in seconds, 0 if unknown
+     */
+    public double getTime(int i) {
+        return Double.isNaN(times[i]) ? 0 : times[i];
+    }
+
+    /**
+     * Returns an attribute of a point.
+     * @param i the index of the point
+     * @param key the key of the attribute
+     * @return the value of the attribute, or {@code null}
+     */
+    public Object get(int i, String key) {
+        Object[] values = attributes == null ? null : attributes[i];
+        if (values != null) {
+            for (int j = 0; j < values.length; j += 2) {
+                if (key.equals(values[j]))
+                    return values[j + 1];
+            }
+        }
+        return GpxConstants.PT_TIME.equals(key) && hasTime(i) ? formatTime(times[i]) : null;
+    }
+
+    /**
+     * Returns the projected coordinates of a point, with the current projection.
+     * @param i the index of the point
+     * @return the projected coordinates of the point
+     */
+    public EastNorth getEastNorth(int i) {
+        double[] en = getEastNorth();
+        return new EastNorth(en[2 * i], en[2 * i + 1]);
+    }
+
+    private double[] getEastNorth() {
+        double[] en = eastNorth;
+        if (en == null) {
+            en = coords.clone();
+            Projections.project(Main.getProjection(), en, size);
+            eastNorth = en;
+        }
+        return en;
+    }
+
+    /**
+     * Invalidates the cached projected coordinates.
+     */
+    void invalidateEastNorthCache() {
+        eastNorth = null;
+    }
+
+    /**
+     * Reprojects the projected coordinates with the current projection, if they are cached.
+     */
+    void reprojectEastNorthCache() {
+        if (eastNorth != null) {
+            eastNorth = null;
+            getEastNorth();
+        }
+    }
+
+    /**
+     * Creates a way point for a point of the segment.
+     * @param i the index of the point
+     * @return a new way point
+     */
+    public WayPoint getWayPoint(int i) {
+        double[] en = eastNorth;
+        WayPoint wp = en == null ? new WayPoint(getCoor(i)) : new WayPoint(getCoor(i), en[2 * i], en[2 * i + 1]);
+        Object[] values = attributes == null ? null : attributes[i];
+        if (values != null) {
+            wp.attr = new HashMap<>(values.length);
+            for (int j = 0; j < values.length; j += 2) {
+                wp.attr.put((String) values[j], values[j + 1]);
+            }
+        }
+        if (hasTime(i)) {
+            wp.time = times[i];
+            if (!wp.attr.containsKey(GpxConstants.PT_TIME)) {
+                wp.attr.put(GpxConstants.PT_TIME, formatTime(times[i]));
+            }
+        }
+        return wp;
+    }
+
+    /**
+     * Returns the ranges of points whose lines may intersect the given bounds. A range includes the
+     * last point of its last line, the lines between two ranges are outside the bounds.
+     * @param area the bounds
+     * @return the first and last index of each range, in an array of the form
+     * {@code first0, last0, first1, last1...}, sorted by index
+     */
+    public int[] getRanges(Bounds area) {
+        int[] ranges = new int[8];
+        int count = 0;
+        int blocks = blockBounds.length / 4;
+        for (int k = 0; k < blocks; k++) {
+            if (intersects(k, area)) {
+                int first = k * BLOCK_SIZE;
+                int last = Math.min(first + BLOCK_SIZE, size - 1);
+                if (count > 0 && ranges[count - 1] == first) {
+                    ranges[count - 1] = last;
+                } else {
+                    if (count == ranges.length) {
+                        ranges = Arrays.copyOf(ranges, 2 * count);
+                    }
+                    ranges[count++] = first;
+                    ranges[count++] = last;
+                }
+            }
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+
+    private boolean intersects(int k, Bounds area) {
+        if (blockBounds[4 * k] > area.getMaxLat() || blockBounds[4 * k + 2] < area.getMinLat())
+            return false;
+        double minLon = blockBounds[4 * k + 1];
+        double maxLon = blockBounds[4 * k + 3];
+        if (area.crosses180thMeridian())
+            return maxLon >= area.getMinLon() || minLon <= area.getMaxLon();
+        return minLon <= area.getMaxLon() && maxLon >= area.getMinLon();
+    }
+
+    @Override
+    public Bounds getBounds() {
+        return bounds == null ? null : new Bounds(bounds);
+    }
+
+    @Override
+    public List<WayPoint> getWayPoints() {
+        return new WayPointList();
+    }
+
+    @Override
+    public double length() {
+        return length;
+    }
+
+    @Override
+    public int getUpdateCount() {
+        return 0;
+    }
+}
@@ -44,6 +44,19 @@ public class WayPoint extends WithAttributes implements Comparable<WayPoint>, Te
         lon = ll.lon();
     }
 
+    /**
+     * Constructs a new {@code WayPoint} with known projected coordinates.
+     * @param ll the coordinates
+     * @param east the cached easting, with the current projection
+     * @param north the cached northing, with the current projection
+     * @since 8583
+     */
+    WayPoint(LatLon ll, double east, double north) {
+        this(ll);
+        this.east = east;
+        this.north = north;
+    }
+
     /*
      * We "inline" lat/lon, rather than usinga LatLon internally => reduces memory overhead. Relevant
      * because a lot of GPX waypoints are created when GPS tracks are downloaded from the OSM server.
@@ -65,6 +78,29 @@ public class WayPoint extends WithAttributes implements Comparable<WayPoint>, Te
         this.north = Double.NaN;
     }
 
+    /**
+     * Reprojects the waypoints whose projected coordinates are cached, with the current projection,
+     * and invalidates the cache of the other ones.
+     * @param points the waypoints
+     * @since 8581
+     */
+    static void reprojectEastNorthCache(List<WayPoint> points) {
+        double[] coords = new double[2 * points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            WayPoint wp = points.get(i);
+            // NaN coordinates are not projected
+            boolean cached = !Double.isNaN(wp.east) && !Double.isNaN(wp.north);
+            coords[2 * i] = cached ? wp.lat : Double.NaN;
+            coords[2 * i + 1] = cached ? wp.lon : Double.NaN;
+        }
+        Projections.project(Main.getProjection(), coords, points.size());
+        for (int i = 0; i < points.size(); i++) {
+            WayPoint wp = points.get(i);
+            wp.east = coords[2 * i];
+            wp.north = coords[2 * i + 1];
+        }
+    }
+
     public final LatLon getCoor() {
         return new LatLon(lat, lon);
     }
@@ -0,0 +1,242 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.jcs.access.behavior.ICacheAccess;
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.cache.BufferedImageCacheEntry;
+import org.openstreetmap.josm.data.cache.BufferedImageDecoder;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+
+/**
+ * Composes provisional images of missing tiles from the cached tiles of other zoom levels:
+ * the tiles of the next zoom levels are downscaled, or a part of the tile of a previous zoom level is upscaled.
+ * <p>
+ * The images are composed by the decoder threads. They are kept apart from the tiles, so that a provisional
+ * image is never mistaken for the real tile, and are displayed only until the real tile is loaded.
+ * @since 8574
+ */
+public class ProvisionalTileComposer {
+
+    /**
+     * Maximum number of provisional images kept in memory.
+     */
+    public static final IntegerProperty MAX_IMAGES = new IntegerProperty("imagery.tms.provisional_tiles", 128);
+
+    // the tiles of at most the two next zoom levels are used, as it needs 16 tiles for the second one
+    private static final int MAX_CHILD_ZOOM_DIFF = 2;
+    private static final int MAX_PARENT_ZOOM_DIFF = 4;
+
+    private final ICacheAccess<String, BufferedImageCacheEntry> cache;
+    // composed images
+    private final Map<String, BufferedImage> images = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+            return size() > MAX_IMAGES.get();
+        }
+    };
+    private final Set<String> pending = new HashSet<>();
+    // tiles for which no image could be composed, tried again once a tile they can be composed from has been loaded
+    private final Set<String> failed = new HashSet<>();
+
+    /**
+     * Constructs a new {@code ProvisionalTileComposer}.
+     * @param cache the cache containing the tiles
+     */
+    public ProvisionalTileComposer(ICacheAccess<String, BufferedImageCacheEntry> cache) {
+        this.cache = cache;
+    }
+
+    private static String getKey(Tile tile) {
+        return TMSCachedTileLoaderJob.getCacheKey(tile.getTileSource(), tile.getXtile(), tile.getYtile(), tile.getZoom());
+    }
+
+    /**
+     * Returns the provisional image of a tile, if it has already been composed.
+     * @param tile the tile
+     * @return the provisional image of the tile, or null
+     */
+    public BufferedImage getImage(Tile tile) {
+        String key = getKey(tile);
+        synchronized (images) {
+            return images.get(key);
+        }
+    }
+
+    /**
+     * Composes the provisional image of a tile in the background, unless it has already been tried.
+     * @param tile the tile
+     * @param whenComposed called once an image has been composed, from another thread
+     */
+    public void compose(final Tile tile, final Runnable whenComposed) {
+        final String key = getKey(tile);
+        synchronized (images) {
+            if (images.containsKey(key) || failed.contains(key) || !pending.add(key)) {
+                return;
+            }
+        }
+        BufferedImageDecoder.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                BufferedImage image = null;
+                try {
+                    // no need to compose a tile which is in the cache, it is only waiting to be decoded
+                    if (cache.get(key) == null) {
+                        image = composeImage(tile.getTileSource(), tile.getXtile(), tile.getYtile(), tile.getZoom());
+                    }
+                } catch (IOException e) {
+                    Main.warn("Unable to compose provisional tile "+key+": "+e.getMessage());
+                } finally {
+                    synchronized (images) {
+                        pending.remove(key);
+                        if (image != null) {
+                            images.put(key, image);
+                        } else {
+                            failed.add(key);
+                        }
+                    }
+                }
+                if (image != null && whenComposed != null) {
+                    whenComposed.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Determines if no image could be composed for a tile since a tile it can be composed from was last loaded.
+     * @param tile the tile
+     * @return {@code true} if the composition failed and will not be tried again for now
+     */
+    boolean hasFailed(Tile tile) {
+        String key = getKey(tile);
+        synchronized (images) {
+            return failed.contains(key);
+        }
+    }
+
+    /**
+     * Forgets the provisional image of a tile, typically once the real tile is loaded.
+     * As the cache may now contain the tiles needed by the provisional images of its parent and child tiles,
+     * their composition is tried again, as well as the composition of the tile itself.
+     * @param tile the tile
+     */
+    public void remove(Tile tile) {
+        TileSource source = tile.getTileSource();
+        int x = tile.getXtile();
+        int y = tile.getYtile();
+        int zoom = tile.getZoom();
+        synchronized (images) {
+            String key = getKey(tile);
+            images.remove(key);
+            failed.remove(key);
+            // the parent tiles composed from their children
+            for (int zoomDiff = 1; zoomDiff <= MAX_CHILD_ZOOM_DIFF && zoom - zoomDiff >= source.getMinZoom(); zoomDiff++) {
+                failed.remove(TMSCachedTileLoaderJob.getCacheKey(source, x >> zoomDiff, y >> zoomDiff, zoom - zoomDiff));
+            }
+            // the child tiles composed from a part of their parent
+            for (int zoomDiff = 1; zoomDiff <= MAX_PARENT_ZOOM_DIFF && zoom + zoomDiff <= source.getMaxZoom()
+                    && !failed.isEmpty(); zoomDiff++) {
+                int factor = 1 << zoomDiff;
+                for (int i = 0; i < factor * factor; i++) {
+                    failed.remove(TMSCachedTileLoaderJob.getCacheKey(source,
+                            (x << zoomDiff) + i % factor, (y << zoomDiff) + i / factor, zoom + zoomDiff));
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines if no composition failure is recorded.
+     * @return {@code true} if no composition failed since the related tiles were last loaded
+     */
+    boolean hasNoFailures() {
+        synchronized (images) {
+            return failed.isEmpty();
+        }
+    }
+
+    /**
+     * Forgets all the provisional images.
+     */
+    public void clear() {
+        synchronized (images) {
+            images.clear();
+            failed.clear();
+        }
+    }
+
+    private BufferedImage getCachedImage(TileSource source, int x, int y, int zoom) throws IOException {
+        if (x < 0 || y < 0 || x >= source.getTileXMax(zoom) || y >= source.getTileYMax(zoom)) {
+            return null;
+        }
+        BufferedImageCacheEntry entry = cache.get(TMSCachedTileLoaderJob.getCacheKey(source, x, y, zoom));
+        return entry == null ? null : entry.getImage();
+    }
+
+    /**
+     * Composes the image of a tile from the cached tiles of other zoom levels, trying the closest zoom levels first.
+     * @param source the tile source
+     * @param x the X coordinate of the tile
+     * @param y the Y coordinate of the tile
+     * @param zoom the zoom level of the tile
+     * @return the composed image, or null if the cache does not contain the needed tiles
+     * @throws IOException if an error occurs while decoding a cached tile
+     */
+    BufferedImage composeImage(TileSource source, int x, int y, int zoom) throws IOException {
+        int size = source.getTileSize();
+        for (int zoomDiff = 1; zoomDiff <= MAX_PARENT_ZOOM_DIFF; zoomDiff++) {
+            int factor = 1 << zoomDiff;
+            if (zoomDiff <= MAX_CHILD_ZOOM_DIFF && zoom + zoomDiff <= source.getMaxZoom()) {
+                BufferedImage[] children = new BufferedImage[factor * factor];
+                boolean complete = true;
+                for (int i = 0; i < children.length && complete; i++) {
+                    children[i] = getCachedImage(source, (x << zoomDiff) + i % factor, (y << zoomDiff) + i / factor, zoom + zoomDiff);
+                    complete = children[i] != null;
+                }
+                if (complete) {
+                    BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D g = createGraphics(image);
+                    for (int i = 0; i < children.length; i++) {
+                        int x1 = (i % factor) * size / factor;
+                        int y1 = (i / factor) * size / factor;
+                        g.drawImage(children[i], x1, y1, (i % factor + 1) * size / factor - x1, (i / factor + 1) * size / factor - y1, null);
+                    }
+                    g.dispose();
+                    return image;
+                }
+            }
+            if (zoom - zoomDiff >= source.getMinZoom()) {
+                BufferedImage parent = getCachedImage(source, x >> zoomDiff, y >> zoomDiff, zoom - zoomDiff);
+                if (parent != null) {
+                    // the parent image might have been decoded with a lower resolution
+                    int sx = (x % factor) * parent.getWidth() / factor;
+                    int sy = (y % factor) * parent.getHeight() / factor;
+                    BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D g = createGraphics(image);
+                    g.drawImage(parent, 0, 0, size, size,
+                            sx, sy, (x % factor + 1) * parent.getWidth() / factor, (y % factor + 1) * parent.getHeight() / factor, null);
+                    g.dispose();
+                    return image;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Graphics2D createGraphics(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        return g;
+    }
+}
@@ -54,6 +54,8 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader, TileCa
 
     private ThreadPoolExecutor downloadExecutor = DEFAULT_DOWNLOAD_JOB_DISPATCHER;
 
+    private final ProvisionalTileComposer provisionalTileComposer;
+
     /**
      * Constructor
      * @param listener          called when tile loading has finished
@@ -70,6 +72,7 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader, TileCa
         this.readTimeout = readTimeout;
         this.headers = headers;
         this.listener = listener;
+        this.provisionalTileComposer = new ProvisionalTileComposer(cache);
     }
 
     /**
@@ -85,7 +88,14 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader, TileCa
                 TimeUnit.SECONDS,
                 new HostLimitQueue(HOST_LIMIT.get().intValue()),
                 Utils.getNamedThreadFactory(name)
-                );
+                ) {
+            @Override
+            public void execute(Runnable command) {
+                // start all the threads on first use, so that every job goes through the queue and gets the host limit and priorities
+                prestartAllCoreThreads();
+                super.execute(command);
+            }
+        };
     }
 
     /**
@@ -98,13 +108,35 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader, TileCa
 
     @Override
     public TileJob createTileLoaderJob(Tile tile) {
+        return createTileLoaderJob(listener, tile);
+    }
+
+    /**
+     * Creates a job loading a tile.
+     * @param listener the listener notified when the tile is loaded, or null
+     * @param tile the tile
+     * @return the job loading the tile
+     * @since 8575
+     */
+    protected TMSCachedTileLoaderJob createTileLoaderJob(TileLoaderListener listener, Tile tile) {
         return new TMSCachedTileLoaderJob(listener, tile, cache,
                 connectTimeout, readTimeout, headers, getDownloadExecutor());
     }
 
+    /**
+     * Checks if the cache contains a valid image of a tile, so that loading it would not download it.
+     * @param tile the tile
+     * @return true if the tile is in the cache and has not expired
+     * @since 8575
+     */
+    public boolean isTileCached(Tile tile) {
+        return createTileLoaderJob(null, tile).isCached();
+    }
+
     @Override
     public void clearCache(TileSource source) {
         this.cache.remove(source.getName() + ":");
+        provisionalTileComposer.clear();
     }
 
     @Override
@@ -125,12 +157,25 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader, TileCa
     @Override
     public void clear() {
         cache.clear();
+        provisionalTileComposer.clear();
+    }
+
+    /**
+     * Returns the composer of the provisional images of the tiles that are not in the cache.
+     * @return the composer of the provisional images of the tiles
+     * @since 8574
+     */
+    public ProvisionalTileComposer getProvisionalTileComposer() {
+        return provisionalTileComposer;
     }
 
     /**
      * @return cache statistics as string
      */
     public String getStats() {
+        if (downloadExecutor.getQueue() instanceof HostLimitQueue) {
+            return cache.getStats() + "\nDownload queue - " + ((HostLimitQueue) downloadExecutor.getQueue()).getStats();
+        }
         return cache.getStats();
     }
 
@@ -146,6 +191,20 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader, TileCa
         }
     }
 
+    /**
+     * Computes again the download priorities of the tasks in the queue, and cancels the tasks that are not needed anymore.
+     * When the download executor does not use a {@link HostLimitQueue}, all the tasks in the queue are canceled.
+     * @see TileDownloadPrioritizer
+     * @since 8571
+     */
+    public void reprioritizeOutstandingTasks() {
+        if (downloadExecutor.getQueue() instanceof HostLimitQueue) {
+            ((HostLimitQueue) downloadExecutor.getQueue()).reprioritize();
+        } else {
+            cancelOutstandingTasks();
+        }
+    }
+
     /**
      * Sets the download executor that will be used to download tiles instead of default one.
      * You can use {@link #getNewThreadPoolExecutor} to create a new download executor with separate
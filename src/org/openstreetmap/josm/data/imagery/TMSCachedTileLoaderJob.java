@@ -3,10 +3,13 @@ package org.openstreetmap.josm.data.imagery;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +21,8 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.swing.SwingUtilities;
+
 import org.apache.commons.jcs.access.behavior.ICacheAccess;
 import org.openstreetmap.gui.jmapviewer.FeatureAdapter;
 import org.openstreetmap.gui.jmapviewer.Tile;
@@ -26,6 +31,7 @@ import org.openstreetmap.gui.jmapviewer.interfaces.TileLoaderListener;
 import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
 import org.openstreetmap.gui.jmapviewer.tilesources.AbstractTMSTileSource;
 import org.openstreetmap.josm.data.cache.BufferedImageCacheEntry;
+import org.openstreetmap.josm.data.cache.BufferedImageDecoder;
 import org.openstreetmap.josm.data.cache.CacheEntry;
 import org.openstreetmap.josm.data.cache.CacheEntryAttributes;
 import org.openstreetmap.josm.data.cache.ICachedLoaderListener;
@@ -41,8 +47,14 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
     private static final Logger LOG = FeatureAdapter.getLogger(TMSCachedTileLoaderJob.class.getCanonicalName());
     private static final long MAXIMUM_EXPIRES = 30 /*days*/ * 24 /*hours*/ * 60 /*minutes*/ * 60 /*seconds*/ *1000L /*milliseconds*/;
     private static final long MINIMUM_EXPIRES = 1 /*hour*/ * 60 /*minutes*/ * 60 /*seconds*/ *1000L /*milliseconds*/;
+    // tiles are decoded with at most this subsampling, as they are not displayed smaller by the layers
+    private static final int MAXIMUM_SUBSAMPLING = 4;
+    // metadata of the tile giving the subsampling of its image, if any
+    private static final String SUBSAMPLING = "subsampling";
     private Tile tile;
     private volatile URL url;
+    // the tile is loaded again to decode its image with less subsampling, the current image is displayed meanwhile
+    private volatile boolean refining;
 
     // we need another deduplication of Tile Loader listeners, as for each submit, new TMSCachedTileLoaderJob was created
     // that way, we reduce calls to tileLoadingFinished, and general CPU load due to surplus Map repaints
@@ -85,16 +97,19 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
     @Override
     public String getCacheKey() {
         if (tile != null) {
-            TileSource tileSource = tile.getTileSource();
-            String tsName = tileSource.getName();
-            if (tsName == null) {
-                tsName = "";
-            }
-            return tsName.replace(":", "_") + ":" + tileSource.getTileId(tile.getZoom(), tile.getXtile(), tile.getYtile());
+            return getCacheKey(tile.getTileSource(), tile.getXtile(), tile.getYtile(), tile.getZoom());
         }
         return null;
     }
 
+    static String getCacheKey(TileSource tileSource, int x, int y, int zoom) {
+        String tsName = tileSource.getName();
+        if (tsName == null) {
+            tsName = "";
+        }
+        return tsName.replace(":", "_") + ":" + tileSource.getTileId(zoom, x, y);
+    }
+
     /*
      *  this doesn't needs to be synchronized, as it's not that costly to keep only one execution
      *  in parallel, but URL creation and Tile.getUrl() are costly and are not needed when fetching
@@ -148,23 +163,76 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
         return isNoTileAtZoom() || super.cacheAsEmpty();
     }
 
+    private TileLoaderListener[] getListeners() {
+        synchronized (inProgress) {
+            Set<TileLoaderListener> listeners = inProgress.get(getCacheKey());
+            return listeners == null ? new TileLoaderListener[0] : listeners.toArray(new TileLoaderListener[listeners.size()]);
+        }
+    }
+
+    /**
+     * Returns the lowest download priority given by the listeners waiting for this tile.
+     * Listeners that are not {@link TileDownloadPrioritizer} get the tile with priority 0.
+     */
+    @Override
+    public double getPriority() {
+        double priority = Double.POSITIVE_INFINITY;
+        for (TileLoaderListener l : getListeners()) {
+            priority = Math.min(priority, l instanceof TileDownloadPrioritizer ? ((TileDownloadPrioritizer) l).getDownloadPriority(tile) : 0);
+        }
+        return priority == Double.POSITIVE_INFINITY ? 0 : priority;
+    }
+
+    /**
+     * The job is obsolete when all the listeners waiting for this tile are {@link TileDownloadPrioritizer} that do not need it anymore.
+     */
+    @Override
+    public boolean isObsolete() {
+        TileLoaderListener[] listeners = getListeners();
+        for (TileLoaderListener l : listeners) {
+            if (!(l instanceof TileDownloadPrioritizer) || ((TileDownloadPrioritizer) l).isTileNeeded(tile)) {
+                return false;
+            }
+        }
+        return listeners.length > 0;
+    }
+
     @Override
     public void submit(boolean force) {
+        refining = !force && tile.isLoaded() && !tile.hasError();
         tile.initLoading();
+        if (refining) {
+            tile.setLoaded(true);
+        }
         super.submit(this, force);
     }
 
     @Override
-    public void loadingFinished(CacheEntry object, CacheEntryAttributes attributes, LoadResult result) {
+    public void loadingFinished(final CacheEntry object, CacheEntryAttributes attributes, final LoadResult result) {
         this.attributes = attributes; // as we might get notification from other object than our selfs, pass attributes along
-        Set<TileLoaderListener> listeners;
+        final Set<TileLoaderListener> listeners;
         synchronized (inProgress) {
             listeners = inProgress.remove(getCacheKey());
         }
+        if (result == LoadResult.SUCCESS && object instanceof BufferedImageCacheEntry && (!tile.isLoaded() || refining)
+                && needsImage(listeners)) {
+            // decode the image in the decoder threads, so neither the download threads nor the event dispatch thread wait for it
+            BufferedImageDecoder.getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    finishLoading(object, result, listeners);
+                }
+            });
+        } else {
+            finishLoading(object, result, listeners);
+        }
+    }
+
+    private void finishLoading(CacheEntry object, LoadResult result, Set<TileLoaderListener> listeners) {
         boolean status = result.equals(LoadResult.SUCCESS);
 
         try {
-            if (!tile.isLoaded()) { //if someone else already loaded tile, skip all the handling
+            if (!tile.isLoaded() || refining) { //if someone else already loaded tile, skip all the handling
                 tile.finishLoading(); // whatever happened set that loading has finished
                 // set tile metadata
                 if (this.attributes != null) {
@@ -178,7 +246,17 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
                     handleNoTileAtZoom();
                     if (object != null) {
                         byte[] content = object.getContent();
-                        if (content != null && content.length > 0) {
+                        if (object instanceof BufferedImageCacheEntry && !needsImage(listeners)) {
+                            // only downloaded to the cache, the image will be decoded when the tile is displayed
+                            LOG.log(Level.FINE, "JCS TMS - Tile {0} stored in cache without decoding it", tile.getKey());
+                        } else if (object instanceof BufferedImageCacheEntry) {
+                            // reuse the image decoded by the cache entry, if any
+                            BufferedImage image = setImage((BufferedImageCacheEntry) object, getSubsampling(listeners));
+                            if (image == null && content != null && content.length > 0) {
+                                tile.setError(tr("Could not load image from tile server"));
+                                status = false;
+                            }
+                        } else if (content != null && content.length > 0) {
                             tile.loadImage(new ByteArrayInputStream(content));
                             if (tile.getImage() == null) {
                                 tile.setError(tr("Could not load image from tile server"));
@@ -186,12 +264,12 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
                             }
                         }
                     }
-                    int httpStatusCode = attributes.getResponseCode();
+                    int httpStatusCode = this.attributes.getResponseCode();
                     if (!isNoTileAtZoom() && httpStatusCode >= 400 && httpStatusCode != 499) {
-                        if (attributes.getErrorMessage() == null) {
+                        if (this.attributes.getErrorMessage() == null) {
                             tile.setError(tr("HTTP error {0} when loading tiles", httpStatusCode));
                         } else {
-                            tile.setError(tr("Error downloading tiles: {0}", attributes.getErrorMessage()));
+                            tile.setError(tr("Error downloading tiles: {0}", this.attributes.getErrorMessage()));
                         }
                         status = false;
                     }
@@ -222,6 +300,80 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
         }
     }
 
+    /**
+     * Determines if the image of the tile has to be decoded, which is not the case when the tile is only
+     * downloaded to the cache by a {@link TilePrefetcher}.
+     */
+    private static boolean needsImage(Collection<TileLoaderListener> listeners) {
+        if (listeners == null || listeners.isEmpty()) {
+            return true;
+        }
+        for (TileLoaderListener l : listeners) {
+            if (!(l instanceof TilePrefetcher)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the subsampling with which the image of the tile can be decoded, so that it is not displayed
+     * larger than its decoded size by any of the listeners.
+     */
+    private int getSubsampling(Collection<TileLoaderListener> listeners) {
+        if (listeners == null || listeners.isEmpty()) {
+            return 1;
+        }
+        double scale = 0;
+        for (TileLoaderListener l : listeners) {
+            if (!(l instanceof TileDisplayScaleProvider)) {
+                return 1;
+            }
+            scale = Math.max(scale, ((TileDisplayScaleProvider) l).getDisplayScale(tile));
+        }
+        return getSubsampling(scale);
+    }
+
+    private static int getSubsampling(double scale) {
+        int subsampling = 1;
+        while (subsampling < MAXIMUM_SUBSAMPLING && scale > 0 && scale * subsampling * 2 <= 1) {
+            subsampling *= 2;
+        }
+        return subsampling;
+    }
+
+    /**
+     * Sets the image of the cache entry, decoded with at most the given subsampling, as the image of the tile,
+     * and records the subsampling of the image in the metadata of the tile.
+     * @return the image, or null if it could not be decoded
+     */
+    private BufferedImage setImage(BufferedImageCacheEntry entry, int subsampling) throws IOException {
+        BufferedImage image = entry.getImage(subsampling);
+        if (image != null) {
+            // the entry may have decoded its image with less subsampling before
+            int actual = 1;
+            while (actual < subsampling && !entry.isImageLoaded(actual)) {
+                actual *= 2;
+            }
+            tile.setImage(image);
+            tile.putValue(SUBSAMPLING, actual > 1 ? Integer.toString(actual) : null);
+        }
+        return image;
+    }
+
+    /**
+     * Determines if the image of a loaded tile was decoded with too much subsampling to be displayed at the given scale.
+     * The tile should then be submitted again to get a more detailed image.
+     * @param tile the tile
+     * @param displayScale the size of the tile on screen, relative to its size
+     * @return {@code true} if the image of the tile is not detailed enough
+     * @since 8573
+     */
+    public static boolean needsMoreDetail(Tile tile, double displayScale) {
+        String subsampling = tile.getValue(SUBSAMPLING);
+        return subsampling != null && Integer.parseInt(subsampling) > getSubsampling(displayScale);
+    }
+
     /**
      * For TMS use BaseURL as settings discovery, so for different paths, we will have different settings (useful for developer servers)
      *
@@ -276,8 +428,15 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
                 }
 
                 if (data != null) {
-                    if (data.getImage() != null) {
-                        tile.setImage(data.getImage());
+                    int subsampling = getSubsampling(Arrays.asList(getListeners()));
+                    byte[] content = data.getContent();
+                    if (!data.isImageLoaded(subsampling) && content != null && content.length > 0
+                            && SwingUtilities.isEventDispatchThread()) {
+                        // do not decode while painting: leave the tile unloaded, it will be decoded by the decoder threads once submitted
+                        return tile;
+                    }
+                    BufferedImage image = setImage(data, subsampling);
+                    if (image != null) {
                         tile.finishLoading();
                     } else {
                         // we had some data, but we didn't get any image. Malformed image?
@@ -0,0 +1,19 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import org.openstreetmap.gui.jmapviewer.Tile;
+
+/**
+ * A tile loader listener that tells at which scale it displays the tiles it requested.
+ * {@link TMSCachedTileLoaderJob} uses it to decode the tiles shown smaller than their size with a lower resolution.
+ * @since 8573
+ */
+public interface TileDisplayScaleProvider {
+
+    /**
+     * Returns the scale at which a tile is displayed.
+     * @param tile the tile
+     * @return the number of screen pixels for one pixel of the tile, in each direction
+     */
+    double getDisplayScale(Tile tile);
+}
@@ -0,0 +1,26 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import org.openstreetmap.gui.jmapviewer.Tile;
+
+/**
+ * A tile loader listener that tells in which order the tiles it requested should be downloaded.
+ * It is asked by {@link TMSCachedTileLoaderJob} while the jobs wait for a download thread.
+ * @since 8571
+ */
+public interface TileDownloadPrioritizer {
+
+    /**
+     * Returns the download priority of a tile. Tiles with lower values are downloaded first.
+     * @param tile the tile
+     * @return the download priority of the tile
+     */
+    double getDownloadPriority(Tile tile);
+
+    /**
+     * Checks if a tile is still needed, for example if it is still near the visible area of the map.
+     * @param tile the tile
+     * @return false if the download of the tile can be canceled
+     */
+    boolean isTileNeeded(Tile tile);
+}
@@ -0,0 +1,398 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Collection;
+import java.util.Map;
+
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.TileXY;
+import org.openstreetmap.gui.jmapviewer.interfaces.ICoordinate;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileLoader;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileLoaderListener;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.gpx.GpxTrack;
+import org.openstreetmap.josm.data.gpx.GpxTrackSegment;
+import org.openstreetmap.josm.data.gpx.WayPoint;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Downloads to the cache all the tiles of an area for a range of zoom levels, for example to work offline.
+ * <p>
+ * The tiles are downloaded through a {@link TMSCachedTileLoader}, so the downloads share the per host limit
+ * ({@link TMSCachedTileLoader#HOST_LIMIT}) with the imagery layers, with a lower priority than the visible tiles.
+ * Tiles already in the cache are skipped, so running the prefetch again after an interruption resumes it.
+ * The downloaded tiles are not decoded, their images are decoded when they are displayed.
+ * The number of tiles waiting for download and the download rate are limited, not to overload the servers.
+ * @since 8575
+ */
+public class TilePrefetcher implements TileLoaderListener, TileDownloadPrioritizer {
+
+    /**
+     * Maximum number of tiles submitted and not yet downloaded.
+     */
+    public static final IntegerProperty MAX_PENDING_TILES = new IntegerProperty("imagery.prefetch.max_pending_tiles", 50);
+
+    /**
+     * Maximum number of tiles submitted per second, 0 for no limit.
+     */
+    public static final IntegerProperty MAX_TILES_PER_SECOND = new IntegerProperty("imagery.prefetch.max_tiles_per_second", 20);
+
+    /**
+     * Distance in meters around the GPX tracks or the selected primitives of the area to download.
+     * @since 8586
+     */
+    public static final IntegerProperty BUFFER_DISTANCE = new IntegerProperty("imagery.prefetch.buffer_distance", 100);
+
+    private static final double METERS_PER_DEGREE = 111320;
+
+    // the visible tiles of the layers are downloaded first, see AbstractTileSourceLayer#ZOOM_LEVEL_PRIORITY
+    private static final double PREFETCH_PRIORITY = 1e9;
+
+    private final TileSource tileSource;
+    private final TileLoader tileLoader;
+    private final Area area;
+    private final int minZoom;
+    private final int maxZoom;
+
+    private int totalCount = -1;
+    private int cachedCount;
+    private int downloadedCount;
+    private int failedCount;
+    private int pendingCount;
+    private volatile boolean canceled;
+
+    /**
+     * Constructs a new {@code TilePrefetcher}.
+     * @param tileSource the tile source
+     * @param loaderFactory the factory of the tile loader, which must create {@link TMSCachedTileLoader}s
+     * @param headers the HTTP headers sent with the requests
+     * @param area the area to download, in latitude and longitude degrees
+     * @param minZoom the first zoom level to download
+     * @param maxZoom the last zoom level to download
+     */
+    public TilePrefetcher(TileSource tileSource, TileLoaderFactory loaderFactory, Map<String, String> headers,
+            Area area, int minZoom, int maxZoom) {
+        this.tileSource = tileSource;
+        this.tileLoader = loaderFactory.makeTileLoader(this, headers);
+        if (!(tileLoader instanceof TMSCachedTileLoader)) {
+            throw new IllegalArgumentException("Tiles can only be prefetched with a cached tile loader");
+        }
+        this.area = area;
+        this.minZoom = Math.max(minZoom, tileSource.getMinZoom());
+        this.maxZoom = Math.min(maxZoom, tileSource.getMaxZoom());
+    }
+
+    /**
+     * Returns the area within the given distance of a bounding box, for example of the selected primitives.
+     * @param bbox the bounding box
+     * @param distance the distance in meters
+     * @return the area around the bounding box, in latitude and longitude degrees
+     * @since 8586
+     */
+    public static Area getAreaAround(BBox bbox, double distance) {
+        Path2D.Double path = new Path2D.Double();
+        append(path, bbox.getBottomRightLat(), bbox.getTopLeftLon(), bbox.getTopLeftLat(), bbox.getBottomRightLon(), distance);
+        return new Area(path);
+    }
+
+    /**
+     * Returns the area within the given distance of GPX tracks, for example to download the tiles along a route.
+     * The track segments are covered by rectangles of a few times the distance, which are merged at once.
+     * @param tracks the GPX tracks
+     * @param distance the distance in meters
+     * @return the area along the tracks, in latitude and longitude degrees
+     * @since 8586
+     */
+    public static Area getAreaAlongTracks(Collection<GpxTrack> tracks, double distance) {
+        Path2D.Double path = new Path2D.Double();
+        for (GpxTrack track : tracks) {
+            for (GpxTrackSegment segment : track.getSegments()) {
+                TrackArea trackArea = new TrackArea(path, distance);
+                for (WayPoint p : segment.getWayPoints()) {
+                    trackArea.add(p.getCoor());
+                }
+                trackArea.finish();
+            }
+        }
+        return new Area(path);
+    }
+
+    /**
+     * Covers a track segment with rectangles.
+     */
+    private static final class TrackArea {
+        private final Path2D path;
+        private final double distance;
+        private final double maxSize;
+        private LatLon last;
+        private double minLat;
+        private double minLon;
+        private double maxLat;
+        private double maxLon;
+
+        TrackArea(Path2D path, double distance) {
+            this.path = path;
+            this.distance = distance;
+            this.maxSize = 4 * distance / METERS_PER_DEGREE;
+        }
+
+        void add(LatLon c) {
+            if (last == null) {
+                minLat = maxLat = c.lat();
+                minLon = maxLon = c.lon();
+                last = c;
+                return;
+            }
+            // long parts without points are split, not to be covered by a single large rectangle
+            int steps = (int) Math.ceil(Math.max(Math.abs(c.lat() - last.lat()), Math.abs(c.lon() - last.lon())) / maxSize);
+            LatLon from = last;
+            for (int i = 1; i < steps; i++) {
+                addPoint(from.interpolate(c, (double) i / steps));
+            }
+            addPoint(c);
+        }
+
+        private void addPoint(LatLon c) {
+            if (Math.max(maxLat, c.lat()) - Math.min(minLat, c.lat()) > maxSize
+                    || Math.max(maxLon, c.lon()) - Math.min(minLon, c.lon()) > maxSize) {
+                append(path, minLat, minLon, maxLat, maxLon, distance);
+                // the next rectangle starts at the last point, so that the whole segment is covered
+                minLat = maxLat = last.lat();
+                minLon = maxLon = last.lon();
+            }
+            minLat = Math.min(minLat, c.lat());
+            maxLat = Math.max(maxLat, c.lat());
+            minLon = Math.min(minLon, c.lon());
+            maxLon = Math.max(maxLon, c.lon());
+            last = c;
+        }
+
+        void finish() {
+            if (last != null) {
+                append(path, minLat, minLon, maxLat, maxLon, distance);
+            }
+        }
+    }
+
+    private static void append(Path2D path, double minLat, double minLon, double maxLat, double maxLon, double distance) {
+        double dLat = distance / METERS_PER_DEGREE;
+        double dLon = dLat / Math.max(0.01, Math.cos(Math.toRadians((minLat + maxLat) / 2)));
+        path.append(new Rectangle2D.Double(minLon - dLon, minLat - dLat, maxLon - minLon + 2 * dLon, maxLat - minLat + 2 * dLat), false);
+    }
+
+    /**
+     * Returns the number of tiles of the area, for all the zoom levels.
+     * @return the number of tiles of the area
+     */
+    public synchronized int getTileCount() {
+        if (totalCount < 0) {
+            totalCount = 0;
+            for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+                totalCount += visitTiles(zoom, null, 0);
+            }
+        }
+        return totalCount;
+    }
+
+    /**
+     * Downloads the tiles which are not in the cache, and waits until they are downloaded.
+     * @param progressMonitor the progress monitor, or null
+     */
+    public void run(ProgressMonitor progressMonitor) {
+        if (progressMonitor == null) {
+            progressMonitor = NullProgressMonitor.INSTANCE;
+        }
+        int total = getTileCount();
+        synchronized (this) {
+            cachedCount = 0;
+            downloadedCount = 0;
+            failedCount = 0;
+        }
+        progressMonitor.beginTask(tr("Downloading tiles"), total);
+        try {
+            long start = System.currentTimeMillis();
+            for (int zoom = minZoom; zoom <= maxZoom && !isCanceled(progressMonitor); zoom++) {
+                visitTiles(zoom, progressMonitor, start);
+            }
+            synchronized (this) {
+                while (pendingCount > 0 && !isCanceled(progressMonitor)) {
+                    wait(200);
+                    updateProgress(progressMonitor, start);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (isCanceled(progressMonitor)) {
+                cancel();
+            }
+            progressMonitor.finishTask();
+        }
+    }
+
+    /**
+     * Counts the tiles of a zoom level in the area, and downloads them if a progress monitor is given.
+     */
+    private int visitTiles(int zoom, ProgressMonitor progressMonitor, long start) {
+        Rectangle2D bounds = area.getBounds2D();
+        TileXY t1 = tileSource.latLonToTileXY(bounds.getMaxY(), bounds.getMinX(), zoom);
+        TileXY t2 = tileSource.latLonToTileXY(bounds.getMinY(), bounds.getMaxX(), zoom);
+        int minX = Math.max(0, Math.min(t1.getXIndex(), t2.getXIndex()));
+        int maxX = Math.min(tileSource.getTileXMax(zoom) - 1, Math.max(t1.getXIndex(), t2.getXIndex()));
+        int minY = Math.max(0, Math.min(t1.getYIndex(), t2.getYIndex()));
+        int maxY = Math.min(tileSource.getTileYMax(zoom) - 1, Math.max(t1.getYIndex(), t2.getYIndex()));
+        int count = 0;
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                ICoordinate c1 = tileSource.tileXYToLatLon(x, y, zoom);
+                ICoordinate c2 = tileSource.tileXYToLatLon(x + 1, y + 1, zoom);
+                Rectangle2D.Double rect = new Rectangle2D.Double(Math.min(c1.getLon(), c2.getLon()), Math.min(c1.getLat(), c2.getLat()),
+                        Math.abs(c2.getLon() - c1.getLon()), Math.abs(c2.getLat() - c1.getLat()));
+                if (area.intersects(rect)) {
+                    count++;
+                    if (progressMonitor != null) {
+                        if (isCanceled(progressMonitor)) {
+                            return count;
+                        }
+                        download(new Tile(tileSource, x, y, zoom), progressMonitor, start);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private void download(Tile tile, ProgressMonitor progressMonitor, long start) {
+        TMSCachedTileLoader loader = (TMSCachedTileLoader) tileLoader;
+        if (loader.isTileCached(tile)) {
+            synchronized (this) {
+                cachedCount++;
+            }
+            updateProgress(progressMonitor, start);
+            return;
+        }
+        try {
+            synchronized (this) {
+                while (pendingCount >= Math.max(1, MAX_PENDING_TILES.get()) && !isCanceled(progressMonitor)) {
+                    wait(200);
+                    updateProgress(progressMonitor, start);
+                }
+                int rate = MAX_TILES_PER_SECOND.get();
+                if (rate > 0) {
+                    // submit the next tile once the previous downloads were submitted at the maximum rate
+                    long notBefore = start + (long) (downloadedCount + failedCount + pendingCount) * 1000 / rate;
+                    for (long delay = notBefore - System.currentTimeMillis(); delay > 0 && !isCanceled(progressMonitor);
+                            delay = notBefore - System.currentTimeMillis()) {
+                        wait(delay);
+                    }
+                }
+                if (isCanceled(progressMonitor)) {
+                    return;
+                }
+                pendingCount++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            canceled = true;
+            return;
+        }
+        TMSCachedTileLoaderJob job = (TMSCachedTileLoaderJob) loader.createTileLoaderJob(tile);
+        if (job.getUrl() == null) {
+            // the tile source is not ready, for example if the Bing attribution is not loaded yet
+            tileLoadingFinished(tile, false);
+        } else {
+            job.submit();
+        }
+    }
+
+    private void updateProgress(ProgressMonitor progressMonitor, long start) {
+        int processed;
+        int total;
+        String text;
+        synchronized (this) {
+            processed = cachedCount + downloadedCount + failedCount;
+            total = totalCount;
+            long elapsed = System.currentTimeMillis() - start;
+            // estimate the remaining time from the time spent on the processed tiles, downloaded or not
+            String eta = processed == 0 ? "?" : Utils.getDurationString(elapsed * Math.max(0, total - processed) / processed);
+            text = tr("{0}/{1} tiles, {2} already in cache, {3} failed, about {4} left",
+                    processed, total, cachedCount, failedCount, eta);
+        }
+        progressMonitor.setTicks(processed);
+        progressMonitor.setCustomText(text);
+    }
+
+    private boolean isCanceled(ProgressMonitor progressMonitor) {
+        return canceled || progressMonitor.isCanceled();
+    }
+
+    /**
+     * Cancels the prefetch. The tiles waiting for download are removed from the download queue.
+     */
+    public void cancel() {
+        canceled = true;
+        ((TMSCachedTileLoader) tileLoader).reprioritizeOutstandingTasks();
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void tileLoadingFinished(Tile tile, boolean success) {
+        synchronized (this) {
+            if (pendingCount > 0) {
+                pendingCount--;
+            }
+            if (success) {
+                downloadedCount++;
+            } else {
+                failedCount++;
+            }
+            notifyAll();
+        }
+    }
+
+    @Override
+    public double getDownloadPriority(Tile tile) {
+        return PREFETCH_PRIORITY;
+    }
+
+    @Override
+    public boolean isTileNeeded(Tile tile) {
+        return !canceled;
+    }
+
+    /**
+     * Returns the number of tiles that were already in the cache during the last run.
+     * @return the number of tiles that were already in the cache
+     */
+    public synchronized int getCachedCount() {
+        return cachedCount;
+    }
+
+    /**
+     * Returns the number of tiles downloaded during the last run.
+     * @return the number of tiles downloaded
+     */
+    public synchronized int getDownloadedCount() {
+        return downloadedCount;
+    }
+
+    /**
+     * Returns the number of tiles that could not be downloaded during the last run.
+     * @return the number of tiles that could not be downloaded
+     */
+    public synchronized int getFailedCount() {
+        return failedCount;
+    }
+}
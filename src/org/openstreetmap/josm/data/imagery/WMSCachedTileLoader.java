@@ -6,7 +6,6 @@ import java.util.Map;
 
 import org.apache.commons.jcs.access.behavior.ICacheAccess;
 import org.openstreetmap.gui.jmapviewer.Tile;
-import org.openstreetmap.gui.jmapviewer.interfaces.TileJob;
 import org.openstreetmap.gui.jmapviewer.interfaces.TileLoaderListener;
 import org.openstreetmap.josm.data.cache.BufferedImageCacheEntry;
 
@@ -37,7 +36,7 @@ public class WMSCachedTileLoader extends TMSCachedTileLoader {
     }
 
     @Override
-    public TileJob createTileLoaderJob(Tile tile) {
+    protected TMSCachedTileLoaderJob createTileLoaderJob(TileLoaderListener listener, Tile tile) {
         return new WMSCachedTileLoaderJob(listener, tile, cache, connectTimeout, readTimeout, headers, getDownloadExecutor());
     }
 }
@@ -42,6 +42,7 @@ import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.projection.Projection;
 import org.openstreetmap.josm.data.projection.ProjectionChangeListener;
+import org.openstreetmap.josm.data.projection.Projections;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.gui.tagging.ac.AutoCompletionManager;
 import org.openstreetmap.josm.tools.FilteredCollection;
@@ -119,12 +120,20 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
     private final List<AbstractDatasetChangedEvent> cachedEvents = new ArrayList<>();
 
     private int highlightUpdateCount;
+    private final CopyOnWriteArrayList<HighlightUpdateListener> highlightUpdateListeners = new CopyOnWriteArrayList<>();
 
     private boolean uploadDiscouraged = false;
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private final Object selectionLock = new Object();
 
+    // Index of the primitives by tag, created on first use and then updated with the write lock held
+    private volatile TagIndex tagIndex;
+    private final Object tagIndexLock = new Object();
+
+    // Index of the segments of the long ways, computed when the ways are searched and updated with the write lock held
+    private final WaySegmentIndex waySegmentIndex = new WaySegmentIndex();
+
     /**
      * Constructs a new {@code DataSet}.
      */
@@ -153,6 +162,30 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
         return highlightUpdateCount;
     }
 
+    /**
+     * Adds a listener notified of the changes of the highlighting in this dataset.
+     * @param listener the listener to add
+     * @since 8586
+     */
+    public void addHighlightUpdateListener(HighlightUpdateListener listener) {
+        highlightUpdateListeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Removes a listener of the changes of the highlighting in this dataset.
+     * @param listener the listener to remove
+     * @since 8586
+     */
+    public void removeHighlightUpdateListener(HighlightUpdateListener listener) {
+        highlightUpdateListeners.remove(listener);
+    }
+
+    private void fireWaySegmentsHighlightUpdated(Collection<WaySegment> oldSegments, Collection<WaySegment> newSegments) {
+        for (HighlightUpdateListener listener : highlightUpdateListeners) {
+            listener.waySegmentsHighlightUpdated(oldSegments, newSegments);
+        }
+    }
+
     /**
      * History of selections - shared by plugins and SelectionListDialog
      */
@@ -331,6 +364,29 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
         }
     }
 
+    /**
+     * Searches for way segments in the given bounding box.
+     * <p>
+     * Only the segments near the bounding box are tested for the long ways, whose segments are indexed by blocks.
+     * Segments with a deleted node or a node without coordinates are ignored.
+     * @param bbox the bounding box
+     * @return List of way segments whose bounding box intersects the given one, in the order of {@link #searchWays(BBox)}
+     * and by increasing index within a way. Can be empty but not null
+     * @since 8585
+     */
+    public List<WaySegment> searchWaySegments(BBox bbox) {
+        lock.readLock().lock();
+        try {
+            List<WaySegment> result = new ArrayList<>();
+            for (Way w : ways.search(bbox)) {
+                waySegmentIndex.search(w, bbox, result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     /**
      * Determines if the given way can be retrieved in the data set through its bounding box. Useful for dataset consistency test.
      * For efficiency reasons this method does not lock the dataset, you have to lock it manually.
@@ -441,6 +497,36 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
         return getPrimitives(OsmPrimitive.modifiedPredicate);
     }
 
+    /**
+     * Returns the index of the primitives of this dataset by key and by key=value.
+     * <p>
+     * The index is built on the first call, which takes a time proportional to the number of primitives,
+     * and is then kept up to date when primitives are added or removed and when tags change.
+     * @return the index of the primitives by tag
+     * @since 8577
+     */
+    public TagIndex getTagIndex() {
+        TagIndex result = tagIndex;
+        if (result == null) {
+            lock.readLock().lock();
+            try {
+                synchronized (tagIndexLock) {
+                    result = tagIndex;
+                    if (result == null) {
+                        result = new TagIndex();
+                        for (OsmPrimitive primitive : allPrimitives) {
+                            result.add(primitive);
+                        }
+                        tagIndex = result;
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return result;
+    }
+
     /**
      * Adds a primitive to the dataset.
      *
@@ -466,6 +552,9 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
                 throw new RuntimeException("failed to add primitive: "+primitive);
             allPrimitives.add(primitive);
             primitive.setDataset(this);
+            if (tagIndex != null) {
+                tagIndex.add(primitive);
+            }
             firePrimitivesAdded(Collections.singletonList(primitive), false);
         } finally {
             endUpdate();
@@ -503,6 +592,12 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
             }
             allPrimitives.remove(primitive);
             primitive.setDataset(null);
+            if (tagIndex != null) {
+                tagIndex.remove(primitive);
+            }
+            if (primitive instanceof Way) {
+                waySegmentIndex.wayChanged((Way) primitive);
+            }
             firePrimitivesRemoved(Collections.singletonList(primitive), false);
         } finally {
             endUpdate();
@@ -700,9 +795,11 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
         if (highlightedVirtualNodes.isEmpty() && waySegments.isEmpty())
             return;
 
+        Collection<WaySegment> old = highlightedVirtualNodes;
         highlightedVirtualNodes = waySegments;
         // can't use fireHighlightingChanged because it requires an OsmPrimitive
         highlightUpdateCount++;
+        fireWaySegmentsHighlightUpdated(old, waySegments);
     }
 
     /**
@@ -713,9 +810,11 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
         if (highlightedWaySegments.isEmpty() && waySegments.isEmpty())
             return;
 
+        Collection<WaySegment> old = highlightedWaySegments;
         highlightedWaySegments = waySegments;
         // can't use fireHighlightingChanged because it requires an OsmPrimitive
         highlightUpdateCount++;
+        fireWaySegmentsHighlightUpdated(old, waySegments);
     }
 
     /**
@@ -1091,6 +1190,7 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
         way.updatePosition();
         if (!ways.add(way))
             throw new RuntimeException("Reindexing way failed to add");
+        waySegmentIndex.wayChanged(way);
         if (!way.getBBox().equals(before)) {
             for (OsmPrimitive primitive: way.getReferrers()) {
                 reindexRelation((Relation) primitive);
@@ -1140,7 +1240,11 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
      */
     public void beginUpdate() {
         lock.writeLock().lock();
-        updateCount++;
+        if (updateCount++ == 0) {
+            // primitives added by the update are inserted into the spatial index at once
+            nodes.beginBulkLoad();
+            ways.beginBulkLoad();
+        }
     }
 
     /**
@@ -1150,6 +1254,8 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
         if (updateCount > 0) {
             updateCount--;
             if (updateCount == 0) {
+                nodes.endBulkLoad();
+                ways.endBulkLoad();
                 List<AbstractDatasetChangedEvent> eventsCopy = new ArrayList<>(cachedEvents);
                 cachedEvents.clear();
                 lock.writeLock().unlock();
@@ -1201,22 +1307,47 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
     }
 
     void fireTagsChanged(OsmPrimitive prim, Map<String, String> originalKeys) {
+        if (tagIndex != null) {
+            tagIndex.tagsChanged(prim, originalKeys);
+        }
         fireEvent(new TagsChangedEvent(this, prim, originalKeys));
     }
 
     void fireRelationMembersChanged(Relation r) {
+        BBox oldBBox = new BBox(r.getBBox());
         reindexRelation(r);
-        fireEvent(new RelationMembersChangedEvent(this, r));
+        fireEvent(new RelationMembersChangedEvent(this, r, oldBBox));
     }
 
     void fireNodeMoved(Node node, LatLon newCoor, EastNorth eastNorth) {
+        BBox oldBBox = getBBoxWithParentWays(node);
         reindexNode(node, newCoor, eastNorth);
-        fireEvent(new NodeMovedEvent(this, node));
+        fireEvent(new NodeMovedEvent(this, node, oldBBox));
     }
 
     void fireWayNodesChanged(Way way) {
+        BBox oldBBox = new BBox(way.getBBox());
         reindexWay(way);
-        fireEvent(new WayNodesChangedEvent(this, way));
+        fireEvent(new WayNodesChangedEvent(this, way, oldBBox));
+    }
+
+    /**
+     * Replies the bounding box of a node and of the ways it belongs to.
+     * @param node the node
+     * @return the bounding box of the node and of its parent ways, or {@code null} if none of them has coordinates
+     */
+    private static BBox getBBoxWithParentWays(Node node) {
+        BBox bbox = node.getCoor() != null ? new BBox(node) : null;
+        for (OsmPrimitive referrer : node.getReferrers()) {
+            if (referrer instanceof Way) {
+                if (bbox == null) {
+                    bbox = new BBox(referrer.getBBox());
+                } else {
+                    bbox.add(referrer.getBBox());
+                }
+            }
+        }
+        return bbox;
     }
 
     void fireChangesetIdChanged(OsmPrimitive primitive, int oldChangesetId, int newChangesetId) {
@@ -1225,6 +1356,9 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
 
     void fireHighlightingChanged(OsmPrimitive primitive) {
         highlightUpdateCount++;
+        for (HighlightUpdateListener listener : highlightUpdateListeners) {
+            listener.primitiveHighlightUpdated(primitive);
+        }
     }
 
     /**
@@ -1245,6 +1379,39 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
         }
     }
 
+    /**
+     * Reprojects the nodes whose projected east/north coordinates are cached, with the current projection.
+     *
+     * The coordinates are converted at once and in parallel by {@link Projections#project(Projection, double[], int)}.
+     * The other nodes are still projected when their coordinates are first needed.
+     * @since 8581
+     */
+    public void reprojectEastNorthCache() {
+        Projection projection = Main.getProjection();
+        if (projection == null) return; // sanity check
+        beginUpdate();
+        try {
+            int count = 0;
+            Node[] cached = new Node[1024];
+            double[] coords = new double[2 * cached.length];
+            for (Node n : nodes) {
+                if (count == cached.length) {
+                    cached = Arrays.copyOf(cached, 2 * count);
+                    coords = Arrays.copyOf(coords, 4 * count);
+                }
+                if (n.getCachedLatLon(coords, count)) {
+                    cached[count++] = n;
+                }
+            }
+            Projections.project(projection, coords, count);
+            for (int i = 0; i < count; i++) {
+                cached[i].setEastNorthCache(coords[2 * i], coords[2 * i + 1]);
+            }
+        } finally {
+            endUpdate();
+        }
+    }
+
     /**
      * Cleanups all deleted primitives (really delete them from the dataset).
      */
@@ -1271,6 +1438,12 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
                     selectionSnapshot = null;
                     allPrimitives.remove(primitive);
                     primitive.setDataset(null);
+                    if (tagIndex != null) {
+                        tagIndex.remove(primitive);
+                    }
+                    if (primitive instanceof Way) {
+                        waySegmentIndex.wayChanged((Way) primitive);
+                    }
                     changed = true;
                     it.remove();
                 }
@@ -1298,6 +1471,10 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
             ways.clear();
             relations.clear();
             allPrimitives.clear();
+            if (tagIndex != null) {
+                tagIndex.clear();
+            }
+            waySegmentIndex.clear();
         } finally {
             endUpdate();
         }
@@ -1347,7 +1524,7 @@ public final class DataSet implements Data, Cloneable, ProjectionChangeListener
     /* --------------------------------------------------------------------------------- */
     @Override
     public void projectionChanged(Projection oldValue, Projection newValue) {
-        invalidateEastNorthCache();
+        reprojectEastNorthCache();
     }
 
     public ProjectionBounds getDataSourceBoundingBox() {
@@ -7,9 +7,13 @@ import java.util.List;
 
 import org.openstreetmap.josm.actions.search.SearchAction.SearchMode;
 import org.openstreetmap.josm.actions.search.SearchCompiler;
+import org.openstreetmap.josm.actions.search.SearchCompiler.BinaryMatch;
+import org.openstreetmap.josm.actions.search.SearchCompiler.Child;
 import org.openstreetmap.josm.actions.search.SearchCompiler.Match;
 import org.openstreetmap.josm.actions.search.SearchCompiler.Not;
+import org.openstreetmap.josm.actions.search.SearchCompiler.Parent;
 import org.openstreetmap.josm.actions.search.SearchCompiler.ParseError;
+import org.openstreetmap.josm.actions.search.SearchCompiler.UnaryMatch;
 import org.openstreetmap.josm.tools.SubclassFilteredCollection;
 
 /**
@@ -91,10 +95,12 @@ public class FilterMatcher {
 
     private final List<FilterInfo> hiddenFilters = new ArrayList<>();
     private final List<FilterInfo> disabledFilters = new ArrayList<>();
+    private boolean testingRelatives;
 
     public void update(Collection<Filter> filters) throws ParseError {
         hiddenFilters.clear();
         disabledFilters.clear();
+        testingRelatives = false;
 
         for (Filter filter: filters) {
 
@@ -103,6 +109,7 @@ public class FilterMatcher {
             }
 
             FilterInfo fi = new FilterInfo(filter);
+            testingRelatives |= isTestingRelatives(fi.match);
             if (fi.isDelete) {
                 if (filter.hiding) {
                     // Remove only hide flag
@@ -128,6 +135,28 @@ public class FilterMatcher {
         }
     }
 
+    private static boolean isTestingRelatives(Match match) {
+        if (match instanceof Parent || match instanceof Child)
+            return true;
+        else if (match instanceof UnaryMatch)
+            return isTestingRelatives(((UnaryMatch) match).getOperand());
+        else if (match instanceof BinaryMatch)
+            return isTestingRelatives(((BinaryMatch) match).getLhs()) || isTestingRelatives(((BinaryMatch) match).getRhs());
+        else
+            return false;
+    }
+
+    /**
+     * Determines if an enabled filter tests the parents or the children of the primitives
+     * (<code>parent</code> and <code>child</code> keywords). In this case, a change of a primitive
+     * may change the filter state of any primitive connected to it, not only of its parents and children.
+     * @return true if an enabled filter tests the parents or the children of the primitives
+     * @since 8578
+     */
+    public boolean isTestingRelatives() {
+        return testingRelatives;
+    }
+
     /**
      * Check if primitive is filtered.
      * @param primitive the primitive to check
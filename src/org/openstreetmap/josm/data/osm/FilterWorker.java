@@ -1,8 +1,12 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.data.osm;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.openstreetmap.josm.data.osm.FilterMatcher.FilterType;
 import org.openstreetmap.josm.tools.Utils;
@@ -26,7 +30,7 @@ public final class FilterWorker {
      * @return true, if the filter state (normal / disabled / hidden)
      * of any primitive has changed in the process
      */
-    public static boolean executeFilters(Collection<OsmPrimitive> all, FilterMatcher filterMatcher) {
+    public static boolean executeFilters(Collection<? extends OsmPrimitive> all, FilterMatcher filterMatcher) {
         boolean changed = false;
         // first relations, then ways and nodes last; this is required to resolve dependencies
         changed = doExecuteFilters(Utils.filter(all, OsmPrimitive.relationPredicate), filterMatcher);
@@ -61,6 +65,56 @@ public final class FilterWorker {
         return doExecuteFilters(Collections.singleton(primitive), filterMatcher);
     }
 
+    /**
+     * Returns the primitives whose filter state may change when the given primitives change.
+     * <p>
+     * The filter state of a node depends on its parent ways, and the state of a way on its parent multipolygons,
+     * so the children of the changed primitives and the nodes of the member ways of the changed relations
+     * are returned with the primitives and their parents. If the filters test the parents or the children
+     * of the primitives, all the primitives connected to the changed primitives are returned.
+     *
+     * @param primitives the changed primitives
+     * @param filterMatcher the FilterMatcher
+     * @return the primitives whose filter state may change
+     * @since 8578
+     */
+    public static Set<OsmPrimitive> getAffectedPrimitives(Collection<? extends OsmPrimitive> primitives,
+            FilterMatcher filterMatcher) {
+        Set<OsmPrimitive> result = new HashSet<>();
+        if (filterMatcher.isTestingRelatives()) {
+            // Filters can use nested parent/child expression so complete tree is necessary
+            Deque<OsmPrimitive> stack = new ArrayDeque<>(primitives);
+            while (!stack.isEmpty()) {
+                OsmPrimitive p = stack.pop();
+                if (result.add(p)) {
+                    stack.addAll(getChildren(p));
+                    stack.addAll(p.getReferrers(true));
+                }
+            }
+        } else {
+            for (OsmPrimitive p : primitives) {
+                result.add(p);
+                result.addAll(p.getReferrers(true));
+                for (OsmPrimitive child : getChildren(p)) {
+                    result.add(child);
+                    if (child instanceof Way && p instanceof Relation) {
+                        result.addAll(((Way) child).getNodes());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Collection<? extends OsmPrimitive> getChildren(OsmPrimitive p) {
+        if (p instanceof Way)
+            return ((Way) p).getNodes();
+        else if (p instanceof Relation)
+            return ((Relation) p).getMemberPrimitivesList();
+        else
+            return Collections.emptyList();
+    }
+
     public static void clearFilterFlags(Collection<OsmPrimitive> prims) {
         for (OsmPrimitive osm : prims) {
             osm.unsetDisabledState();
@@ -0,0 +1,26 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.Collection;
+
+/**
+ * Listener notified when the highlighting of primitives or way segments of a dataset changes.
+ * Highlighting changes are frequent (e.g. while the mouse moves in select mode), so listeners should be fast.
+ * @see DataSet#addHighlightUpdateListener(HighlightUpdateListener)
+ * @since 8586
+ */
+public interface HighlightUpdateListener {
+
+    /**
+     * Informs the listener that a primitive has been highlighted or unhighlighted.
+     * @param primitive the primitive
+     */
+    void primitiveHighlightUpdated(OsmPrimitive primitive);
+
+    /**
+     * Informs the listener that the highlighted way segments or virtual nodes have changed.
+     * @param oldSegments the way segments highlighted before the change
+     * @param newSegments the way segments highlighted after the change
+     */
+    void waySegmentsHighlightUpdated(Collection<WaySegment> oldSegments, Collection<WaySegment> newSegments);
+}
@@ -106,6 +106,31 @@ public final class Node extends OsmPrimitive implements INode {
         return new EastNorth(east, north);
     }
 
+    /**
+     * Copies the lat/lon coordinates of this node to {@code coords[2*i]} and {@code coords[2*i+1]}
+     * if its projected coordinates are cached. Used to reproject the cached coordinates.
+     * @param coords the packed lat/lon coordinates
+     * @param i the index of this node in {@code coords}
+     * @return {@code true} if the projected coordinates of this node are cached
+     */
+    boolean getCachedLatLon(double[] coords, int i) {
+        if (Double.isNaN(east) || Double.isNaN(north) || !isLatLonKnown())
+            return false;
+        coords[2 * i] = lat;
+        coords[2 * i + 1] = lon;
+        return true;
+    }
+
+    /**
+     * Sets the cached projected coordinates of this node. Used to reproject the cached coordinates.
+     * @param east the east coordinate
+     * @param north the north coordinate
+     */
+    void setEastNorthCache(double east, double north) {
+        this.east = east;
+        this.north = north;
+    }
+
     /**
      * To be used only by Dataset.reindexNode
      */
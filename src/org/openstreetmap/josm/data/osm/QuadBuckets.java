@@ -17,6 +17,9 @@ import org.openstreetmap.josm.data.coor.QuadTiling;
  *
  * This class is (no longer) thread safe.
  *
+ * Big collections of objects should be added with {@link #addAll}, or between {@link #beginBulkLoad()} and
+ * {@link #endBulkLoad()}: the tree is then built in a single top-down pass instead of being split over and over
+ * while the objects are inserted one after another.
  */
 public class QuadBuckets<T extends OsmPrimitive> implements Collection<T> {
     private static final boolean consistency_testing = false;
@@ -390,6 +393,8 @@ public class QuadBuckets<T extends OsmPrimitive> implements Collection<T> {
     private QBLevel<T> root;
     private QBLevel<T> searchCache;
     private int size;
+    /** Objects added in bulk load mode which are not yet in the tree, {@code null} if not in bulk load mode */
+    private List<T> pending;
 
     /**
      * Constructs a new {@code QuadBuckets}.
@@ -403,15 +408,167 @@ public class QuadBuckets<T extends OsmPrimitive> implements Collection<T> {
         root = new QBLevel<>(this);
         searchCache = null;
         size = 0;
+        if (pending != null) {
+            pending.clear();
+        }
     }
 
     @Override
     public boolean add(T n) {
+        if (pending != null) {
+            pending.add(n);
+            return true;
+        }
         root.add(n);
         size++;
         return true;
     }
 
+    /**
+     * Starts the bulk load mode. Objects added in this mode are collected and only inserted into the tree
+     * by {@link #endBulkLoad()}, or as soon as the tree is accessed in another way.
+     * Like for other modifications, the bounding box of the added objects must not change until then.
+     */
+    void beginBulkLoad() {
+        if (pending == null) {
+            pending = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Inserts the objects collected in bulk load mode and ends this mode.
+     */
+    void endBulkLoad() {
+        flush();
+        pending = null;
+    }
+
+    /**
+     * Inserts the objects collected in bulk load mode, the mode remains active.
+     */
+    private void flush() {
+        if (pending == null || pending.isEmpty())
+            return;
+        List<T> objects = new ArrayList<>(pending);
+        pending.clear();
+        if (objects.size() > size / 2) {
+            build(objects);
+        } else {
+            for (T o : objects) {
+                root.add(o);
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the whole tree with the current content and the given objects.
+     * <p>
+     * The objects are distributed top-down: the quad tiling coordinates of every bounding box are computed once,
+     * then the objects of each bucket holding more than {@link #MAX_OBJECTS_PER_LEVEL} objects are partitioned
+     * among its children. The resulting tree is the same as the one built by successive {@link #add} calls,
+     * with exactly sized buckets.
+     * @param objects the objects to add
+     */
+    private void build(List<T> objects) {
+        List<T> all = objects;
+        if (size > 0) {
+            all = toList();
+            all.addAll(objects);
+        }
+        clear();
+        int n = all.size();
+        if (n == 0)
+            return;
+        int[] x = new int[n];
+        int[] y = new int[n];
+        int[] depth = new int[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            BBox bbox = all.get(i).getBBox();
+            long x0 = QuadTiling.lon2x(bbox.getTopLeftLon());
+            long y0 = QuadTiling.lat2y(bbox.getBottomRightLat());
+            long x1 = QuadTiling.lon2x(bbox.getBottomRightLon());
+            long y1 = QuadTiling.lat2y(bbox.getTopLeftLat());
+            x[i] = (int) (x0 & TILE_MASK);
+            y[i] = (int) (y0 & TILE_MASK);
+            // number of levels on which all corners of the bbox have the same index
+            depth[i] = Math.min(commonLevels(x0, x1), commonLevels(y0, y1));
+            order[i] = i;
+        }
+        new BulkBuilder<>(all, x, y, depth, order).build(root, 0, n);
+        size = n;
+    }
+
+    private static final long TILE_MASK = (1L << QuadTiling.NR_LEVELS) - 1;
+
+    private static int commonLevels(long a, long b) {
+        return Long.numberOfLeadingZeros((a ^ b) & TILE_MASK) - (Long.SIZE - QuadTiling.NR_LEVELS);
+    }
+
+    private static final class BulkBuilder<T extends OsmPrimitive> {
+        private final List<T> objects;
+        private final int[] x;
+        private final int[] y;
+        private final int[] depth;
+        private final int[] order;
+        private final int[] tmp;
+
+        BulkBuilder(List<T> objects, int[] x, int[] y, int[] depth, int[] order) {
+            this.objects = objects;
+            this.x = x;
+            this.y = y;
+            this.depth = depth;
+            this.order = order;
+            this.tmp = new int[order.length];
+        }
+
+        void build(QBLevel<T> bucket, int from, int to) {
+            if (to - from <= MAX_OBJECTS_PER_LEVEL || bucket.level >= QuadTiling.NR_LEVELS) {
+                setContent(bucket, from, to);
+                return;
+            }
+            bucket.isLeaf = false;
+            // stable counting sort of the range by child index, objects staying in this bucket first
+            int shift = QuadTiling.NR_LEVELS - bucket.level - 1;
+            int[] start = new int[QuadTiling.TILES_PER_LEVEL + 2];
+            for (int i = from; i < to; i++) {
+                start[childIndex(order[i], bucket.level, shift) + 2]++;
+            }
+            start[0] = from;
+            for (int c = 1; c < start.length; c++) {
+                start[c] += start[c - 1];
+            }
+            int[] pos = start.clone();
+            for (int i = from; i < to; i++) {
+                int o = order[i];
+                tmp[pos[childIndex(o, bucket.level, shift) + 1]++] = o;
+            }
+            System.arraycopy(tmp, from, order, from, to - from);
+            if (start[1] > from) {
+                setContent(bucket, from, start[1]);
+            }
+            for (int c = 0; c < QuadTiling.TILES_PER_LEVEL; c++) {
+                if (start[c + 2] > start[c + 1]) {
+                    build(bucket.getChild(c), start[c + 1], start[c + 2]);
+                }
+            }
+        }
+
+        private int childIndex(int o, int level, int shift) {
+            if (depth[o] <= level)
+                return -1;
+            return (x[o] >> shift & 1) * 2 + (y[o] >> shift & 1);
+        }
+
+        private void setContent(QBLevel<T> bucket, int from, int to) {
+            bucket.content = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                bucket.content.add(objects.get(order[i]));
+            }
+        }
+    }
+
     @Override
     public boolean retainAll(Collection<?> objects) {
         for (T o : this) {
@@ -435,6 +592,10 @@ public class QuadBuckets<T extends OsmPrimitive> implements Collection<T> {
 
     @Override
     public boolean addAll(Collection<? extends T> objects) {
+        if (pending == null && objects.size() > MAX_OBJECTS_PER_LEVEL && objects.size() > size / 2) {
+            build(new ArrayList<T>(objects));
+            return !objects.isEmpty();
+        }
         boolean changed = false;
         for (T o : objects) {
             changed = changed | this.add(o);
@@ -455,6 +616,7 @@ public class QuadBuckets<T extends OsmPrimitive> implements Collection<T> {
     public boolean remove(Object o) {
         @SuppressWarnings("unchecked")
         T t = (T) o;
+        flush();
         searchCache = null; // Search cache might point to one of removed buckets
         QBLevel<T> bucket = root.findBucket(t.getBBox());
         if (bucket.remove_content(t)) {
@@ -468,6 +630,7 @@ public class QuadBuckets<T extends OsmPrimitive> implements Collection<T> {
     public boolean contains(Object o) {
         @SuppressWarnings("unchecked")
         T t = (T) o;
+        flush();
         QBLevel<T> bucket = root.findBucket(t.getBBox());
         return bucket != null && bucket.content != null && bucket.content.contains(t);
     }
@@ -560,20 +723,22 @@ public class QuadBuckets<T extends OsmPrimitive> implements Collection<T> {
 
     @Override
     public Iterator<T> iterator() {
+        flush();
         return new QuadBucketIterator(this);
     }
 
     @Override
     public int size() {
-        return size;
+        return pending == null ? size : size + pending.size();
     }
 
     @Override
     public boolean isEmpty() {
-        return size == 0;
+        return size() == 0;
     }
 
     public List<T> search(BBox search_bbox) {
+        flush();
         List<T> ret = new ArrayList<>();
         // Doing this cuts down search cost on a real-life data set by about 25%
         if (searchCache == null) {
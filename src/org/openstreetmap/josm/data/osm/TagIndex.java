@@ -0,0 +1,154 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index of the primitives of a {@link DataSet} by key and by key=value, to find the primitives
+ * having a tag without testing all the primitives of the dataset.
+ * <p>
+ * The index is created by {@link DataSet#getTagIndex()} and kept up to date by the dataset
+ * when primitives are added or removed, and when their tags change. All the primitives of the dataset are
+ * indexed, including the deleted and incomplete ones.
+ * @since 8577
+ */
+public final class TagIndex {
+
+    /**
+     * Primitives by key, then by value. As most values are used by a single primitive (names, references),
+     * a value is mapped to the primitive itself, or to a set of primitives if several primitives have the tag.
+     */
+    private final Map<String, Map<String, Object>> index = new HashMap<>();
+
+    TagIndex() {
+        // Created by the dataset
+    }
+
+    synchronized void add(OsmPrimitive primitive) {
+        add(primitive, primitive.getKeys());
+    }
+
+    synchronized void remove(OsmPrimitive primitive) {
+        remove(primitive, primitive.getKeys());
+    }
+
+    synchronized void tagsChanged(OsmPrimitive primitive, Map<String, String> originalKeys) {
+        Map<String, String> keys = primitive.getKeys();
+        Map<String, String> removed = new HashMap<>();
+        for (Map.Entry<String, String> e : originalKeys.entrySet()) {
+            if (!e.getValue().equals(keys.get(e.getKey()))) {
+                removed.put(e.getKey(), e.getValue());
+            }
+        }
+        Map<String, String> added = new HashMap<>();
+        for (Map.Entry<String, String> e : keys.entrySet()) {
+            if (!e.getValue().equals(originalKeys.get(e.getKey()))) {
+                added.put(e.getKey(), e.getValue());
+            }
+        }
+        remove(primitive, removed);
+        add(primitive, added);
+    }
+
+    synchronized void clear() {
+        index.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(OsmPrimitive primitive, Map<String, String> keys) {
+        for (Map.Entry<String, String> e : keys.entrySet()) {
+            Map<String, Object> values = index.get(e.getKey());
+            if (values == null) {
+                index.put(e.getKey(), values = new HashMap<>());
+            }
+            Object o = values.get(e.getValue());
+            if (o == null) {
+                values.put(e.getValue(), primitive);
+            } else if (o instanceof OsmPrimitive) {
+                if (o != primitive) {
+                    Set<OsmPrimitive> set = Collections.newSetFromMap(new IdentityHashMap<OsmPrimitive, Boolean>());
+                    set.add((OsmPrimitive) o);
+                    set.add(primitive);
+                    values.put(e.getValue(), set);
+                }
+            } else {
+                ((Set<OsmPrimitive>) o).add(primitive);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void remove(OsmPrimitive primitive, Map<String, String> keys) {
+        for (Map.Entry<String, String> e : keys.entrySet()) {
+            Map<String, Object> values = index.get(e.getKey());
+            Object o = values == null ? null : values.get(e.getValue());
+            if (o == primitive) {
+                values.remove(e.getValue());
+            } else if (o instanceof Set) {
+                Set<OsmPrimitive> set = (Set<OsmPrimitive>) o;
+                set.remove(primitive);
+                if (set.size() == 1) {
+                    values.put(e.getValue(), set.iterator().next());
+                }
+            }
+            if (values != null && values.isEmpty()) {
+                index.remove(e.getKey());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addTo(Collection<OsmPrimitive> result, Object o) {
+        if (o instanceof OsmPrimitive) {
+            result.add((OsmPrimitive) o);
+        } else if (o != null) {
+            result.addAll((Set<OsmPrimitive>) o);
+        }
+    }
+
+    /**
+     * Returns the primitives having the given tag.
+     * @param key the key
+     * @param value the value
+     * @return the primitives having the given tag. Can be empty but not null
+     */
+    public synchronized List<OsmPrimitive> get(String key, String value) {
+        List<OsmPrimitive> result = new ArrayList<>();
+        Map<String, Object> values = index.get(key);
+        if (values != null) {
+            addTo(result, values.get(value));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the primitives having the given key, whatever its value.
+     * @param key the key
+     * @return the primitives having the given key. Can be empty but not null
+     */
+    public synchronized List<OsmPrimitive> get(String key) {
+        List<OsmPrimitive> result = new ArrayList<>();
+        Map<String, Object> values = index.get(key);
+        if (values != null) {
+            for (Object o : values.values()) {
+                addTo(result, o);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the keys used by the primitives.
+     * @return the keys used by the primitives
+     */
+    public synchronized List<String> getKeys() {
+        return new ArrayList<>(index.keySet());
+    }
+}
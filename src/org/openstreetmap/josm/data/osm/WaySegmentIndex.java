@@ -0,0 +1,109 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+
+/**
+ * Index of the segments of the long ways of a {@link DataSet}, to find the segments near a point without testing
+ * all the segments of the ways near it.
+ * <p>
+ * The segments of a way having at least {@link #MIN_INDEXED_NODES} nodes are grouped in blocks of {@link #BLOCK_SIZE}
+ * consecutive segments, with their bounding box. The blocks of a way are computed when the way is first searched,
+ * and dropped by the dataset when the nodes of the way change or when one of its nodes moves.
+ * @since 8585
+ */
+final class WaySegmentIndex {
+
+    /** Number of segments of a block */
+    static final int BLOCK_SIZE = 32;
+    /** Number of nodes from which the segments of a way are indexed */
+    static final int MIN_INDEXED_NODES = 4 * BLOCK_SIZE;
+
+    /** Bounding boxes of the blocks of the ways, as {@code xmin, ymin, xmax, ymax} for each block */
+    private final Map<Way, double[]> blocks = new IdentityHashMap<>();
+
+    synchronized void wayChanged(Way way) {
+        blocks.remove(way);
+    }
+
+    synchronized void clear() {
+        blocks.clear();
+    }
+
+    private synchronized double[] getBlocks(Way way, List<Node> nodes) {
+        double[] result = blocks.get(way);
+        if (result == null) {
+            int count = (nodes.size() - 2) / BLOCK_SIZE + 1;
+            result = new double[4 * count];
+            for (int k = 0; k < count; k++) {
+                double xmin = Double.POSITIVE_INFINITY;
+                double ymin = Double.POSITIVE_INFINITY;
+                double xmax = Double.NEGATIVE_INFINITY;
+                double ymax = Double.NEGATIVE_INFINITY;
+                int last = Math.min((k + 1) * BLOCK_SIZE, nodes.size() - 1);
+                for (int i = k * BLOCK_SIZE; i <= last; i++) {
+                    LatLon c = nodes.get(i).getCoor();
+                    if (c != null) {
+                        xmin = Math.min(xmin, c.lon());
+                        ymin = Math.min(ymin, c.lat());
+                        xmax = Math.max(xmax, c.lon());
+                        ymax = Math.max(ymax, c.lat());
+                    }
+                }
+                result[4 * k] = xmin;
+                result[4 * k + 1] = ymin;
+                result[4 * k + 2] = xmax;
+                result[4 * k + 3] = ymax;
+            }
+            blocks.put(way, result);
+        }
+        return result;
+    }
+
+    /**
+     * Adds the segments of a way whose bounding box intersects the given one, by increasing index.
+     * Segments with a deleted node or a node without coordinates are ignored.
+     * @param way the way
+     * @param bbox the bounding box
+     * @param result the list to which the segments are added
+     */
+    void search(Way way, BBox bbox, List<WaySegment> result) {
+        List<Node> nodes = way.getNodes();
+        if (nodes.size() < MIN_INDEXED_NODES) {
+            search(way, nodes, 0, nodes.size() - 1, bbox, result);
+            return;
+        }
+        double[] b = getBlocks(way, nodes);
+        int count = b.length / 4;
+        for (int k = 0; k < count; k++) {
+            if (b[4 * k] <= bbox.getBottomRightLon() && b[4 * k + 2] >= bbox.getTopLeftLon()
+                    && b[4 * k + 1] <= bbox.getTopLeftLat() && b[4 * k + 3] >= bbox.getBottomRightLat()) {
+                search(way, nodes, k * BLOCK_SIZE, Math.min((k + 1) * BLOCK_SIZE, nodes.size() - 1), bbox, result);
+            }
+        }
+    }
+
+    /**
+     * Adds the segments from the node {@code from} to the node {@code to} whose bounding box intersects the given one.
+     */
+    private static void search(Way way, List<Node> nodes, int from, int to, BBox bbox, List<WaySegment> result) {
+        LatLon a = from <= to ? getCoor(nodes.get(from)) : null;
+        for (int i = from + 1; i <= to; i++) {
+            LatLon b = getCoor(nodes.get(i));
+            if (a != null && b != null
+                    && Math.min(a.lon(), b.lon()) <= bbox.getBottomRightLon() && Math.max(a.lon(), b.lon()) >= bbox.getTopLeftLon()
+                    && Math.min(a.lat(), b.lat()) <= bbox.getTopLeftLat() && Math.max(a.lat(), b.lat()) >= bbox.getBottomRightLat()) {
+                result.add(new WaySegment(way, i - 1));
+            }
+            a = b;
+        }
+    }
+
+    private static LatLon getCoor(Node n) {
+        return n.isDeleted() ? null : n.getCoor();
+    }
+}
@@ -77,7 +77,7 @@ public class DatasetEventManager implements MapView.EditLayerChangeListener, Lis
                                 evs.add(event);
                             }
                         } else {
-                            consolidatedEvent = new DataChangedEvent(dataSet, new ArrayList<>(Arrays.asList(consolidatedEvent)));
+                            consolidatedEvent = new DataChangedEvent(dataSet, new ArrayList<>(Arrays.asList(consolidatedEvent, event)));
                         }
                     }
                 }
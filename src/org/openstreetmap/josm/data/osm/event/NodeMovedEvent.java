@@ -4,6 +4,7 @@ package org.openstreetmap.josm.data.osm.event;
 import java.util.Collections;
 import java.util.List;
 
+import org.openstreetmap.josm.data.osm.BBox;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
@@ -11,10 +12,23 @@ import org.openstreetmap.josm.data.osm.OsmPrimitive;
 public class NodeMovedEvent extends AbstractDatasetChangedEvent {
 
     private final Node node;
+    private final BBox oldBBox;
 
     public NodeMovedEvent(DataSet dataSet, Node node) {
+        this(dataSet, node, null);
+    }
+
+    /**
+     * Constructs a new {@code NodeMovedEvent}.
+     * @param dataSet the dataset
+     * @param node the changed node
+     * @param oldBBox the bounding box of the node and of its parent ways before the change, can be null
+     * @since 8565
+     */
+    public NodeMovedEvent(DataSet dataSet, Node node, BBox oldBBox) {
         super(dataSet);
         this.node = node;
+        this.oldBBox = oldBBox;
     }
 
     @Override
@@ -26,6 +40,15 @@ public class NodeMovedEvent extends AbstractDatasetChangedEvent {
         return node;
     }
 
+    /**
+     * Replies the bounding box of the node and of its parent ways before the change.
+     * @return the bounding box of the node and of its parent ways before the change, or {@code null} if unknown
+     * @since 8565
+     */
+    public BBox getOldBBox() {
+        return oldBBox;
+    }
+
     @Override
     public List<? extends OsmPrimitive> getPrimitives() {
         return Collections.singletonList(node);
@@ -4,6 +4,7 @@ package org.openstreetmap.josm.data.osm.visitor.paint;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
 import java.util.Iterator;
@@ -197,13 +198,25 @@ public abstract class AbstractMapRenderer implements Rendering {
      * @return <code>true</code> if segment is visible.
      */
     protected boolean isSegmentVisible(Point p1, Point p2) {
-        if ((p1.x < 0) && (p2.x < 0)) return false;
-        if ((p1.y < 0) && (p2.y < 0)) return false;
-        if ((p1.x > nc.getWidth()) && (p2.x > nc.getWidth())) return false;
-        if ((p1.y > nc.getHeight()) && (p2.y > nc.getHeight())) return false;
+        Rectangle bounds = getPaintBounds();
+        if ((p1.x < bounds.x) && (p2.x < bounds.x)) return false;
+        if ((p1.y < bounds.y) && (p2.y < bounds.y)) return false;
+        if ((p1.x > bounds.x + bounds.width) && (p2.x > bounds.x + bounds.width)) return false;
+        if ((p1.y > bounds.y + bounds.height) && (p2.y > bounds.y + bounds.height)) return false;
         return true;
     }
 
+    /**
+     * Replies the part of the map view to paint, in screen coordinates. This is the clip of the graphics context
+     * if it has one (e.g. when a single tile of the map view is rendered), the whole map view otherwise.
+     * @return the part of the map view to paint
+     * @since 8565
+     */
+    protected Rectangle getPaintBounds() {
+        Rectangle clip = g.getClipBounds();
+        return clip != null ? clip : new Rectangle(0, 0, nc.getWidth(), nc.getHeight());
+    }
+
     /**
      * Creates path for drawing virtual nodes for one way.
      *
@@ -0,0 +1,438 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Preferences.PreferenceChangeEvent;
+import org.openstreetmap.josm.data.Preferences.PreferenceChangedListener;
+import org.openstreetmap.josm.data.ProjectionBounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.HighlightUpdateListener;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.WaySegment;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles.MapPaintSylesUpdateListener;
+
+/**
+ * Off-screen render cache of a dataset, made of fixed screen-aligned tiles.
+ * <p>
+ * The map is divided into tiles of {@link #TILE_SIZE} pixels, aligned on the projected coordinates at the current scale.
+ * Only the tiles which are not cached yet are rendered, so panning the map view mostly consists in drawing cached images.
+ * Tiles of several scales are kept, up to the number of tiles configured by {@link #PROP_SIZE}, the least recently
+ * used ones are dropped first.
+ * <p>
+ * Dataset events invalidate the tiles intersecting the primitives involved, before and after the change. Changes of the
+ * selection and of the highlighting invalidate the tiles of the primitives or way segments involved. Changes of the
+ * projection, the map paint styles or the rendering preferences invalidate all tiles.
+ * @since 8565
+ */
+public class RenderTileCache implements DataSetListener, HighlightUpdateListener, PreferenceChangedListener,
+        MapPaintSylesUpdateListener {
+
+    /** Enables the tile render cache for data layers */
+    public static final BooleanProperty PROP_ENABLED = new BooleanProperty("mappaint.tile-cache", false);
+    /** Maximum number of cached tiles */
+    public static final IntegerProperty PROP_SIZE = new IntegerProperty("mappaint.tile-cache.size", 128);
+
+    /** Size of a tile in pixels */
+    public static final int TILE_SIZE = 256;
+    /** Margin in pixels of the rendered area, so that symbols and labels of primitives just outside a tile are not cut */
+    private static final int MARGIN = 128;
+    /** Number of changed primitives beyond which all tiles are invalidated at once */
+    private static final int MAX_DIRTY = 1000;
+    /** Prefixes of the preference keys which affect the rendering of the data */
+    private static final String[] RENDERING_PREFERENCES = {"mappaint.", "draw.", "color."};
+
+    private static final class TileKey {
+        private final double scale;
+        private final long x;
+        private final long y;
+
+        TileKey(double scale, long x, long y) {
+            this.scale = scale;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(scale);
+            int result = 31 + (int) (bits ^ (bits >>> 32));
+            result = 31 * result + (int) (x ^ (x >>> 32));
+            return 31 * result + (int) (y ^ (y >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TileKey))
+                return false;
+            TileKey other = (TileKey) obj;
+            return scale == other.scale && x == other.x && y == other.y;
+        }
+    }
+
+    private static final class Tile {
+        private final BufferedImage image;
+        /** Projected bounds of the tile, including the rendering margin */
+        private final ProjectionBounds bounds;
+
+        Tile(BufferedImage image, ProjectionBounds bounds) {
+            this.image = image;
+            this.bounds = bounds;
+        }
+    }
+
+    private final DataSet data;
+    private final Map<TileKey, Tile> tiles = new LinkedHashMap<TileKey, Tile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TileKey, Tile> eldest) {
+            return size() > PROP_SIZE.get();
+        }
+    };
+
+    /** Settings the cached tiles have been rendered with */
+    private List<Object> renderSettings;
+    private Collection<OsmPrimitive> selection;
+
+    /** Areas changed since the last paint, accessed by the threads firing dataset events */
+    private final List<BBox> dirty = new ArrayList<>();
+    private boolean dirtyAll;
+
+    private int renderedTiles;
+
+    /**
+     * Constructs a new {@code RenderTileCache} and registers it as listener of the dataset.
+     * @param data the dataset to render
+     */
+    public RenderTileCache(DataSet data) {
+        this.data = data;
+        data.addDataSetListener(this);
+        data.addHighlightUpdateListener(this);
+        Main.pref.addPreferenceChangeListener(this);
+        MapPaintStyles.addMapPaintSylesUpdateListener(this);
+    }
+
+    /**
+     * Unregisters this cache from the dataset and drops all tiles.
+     */
+    public void destroy() {
+        data.removeDataSetListener(this);
+        data.removeHighlightUpdateListener(this);
+        Main.pref.removePreferenceChangeListener(this);
+        MapPaintStyles.removeMapPaintSylesUpdateListener(this);
+        tiles.clear();
+    }
+
+    /**
+     * Paints the dataset on the map view, rendering the visible tiles which are not cached yet.
+     * Has to be called from the thread painting the map view.
+     * @param g the graphics context of the map view
+     * @param nc the map view
+     * @param inactive if true, the data is rendered such that it looks inactive
+     * @param virtual if true, virtual nodes are rendered
+     */
+    public void paint(Graphics2D g, NavigatableComponent nc, boolean inactive, boolean virtual) {
+        validate(inactive, virtual);
+
+        double scale = nc.getScale();
+        EastNorth center = nc.getCenter();
+        // world pixel coordinates of the upper left corner of the map view
+        double originX = center.east() / scale - nc.getWidth() / 2.0;
+        double originY = -center.north() / scale - nc.getHeight() / 2.0;
+        long minX = (long) Math.floor(originX / TILE_SIZE);
+        long minY = (long) Math.floor(originY / TILE_SIZE);
+        long maxX = (long) Math.floor((originX + nc.getWidth()) / TILE_SIZE);
+        long maxY = (long) Math.floor((originY + nc.getHeight()) / TILE_SIZE);
+
+        Map<TileKey, Tile> visible = new LinkedHashMap<>();
+        List<TileKey> missing = new ArrayList<>();
+        Rectangle missingArea = null;
+        for (long x = minX; x <= maxX; x++) {
+            for (long y = minY; y <= maxY; y++) {
+                TileKey key = new TileKey(scale, x, y);
+                Tile tile = tiles.get(key);
+                visible.put(key, tile);
+                if (tile == null) {
+                    missing.add(key);
+                    Rectangle r = getScreenRect(key, originX, originY);
+                    missingArea = missingArea == null ? r : missingArea.union(r);
+                }
+            }
+        }
+        if (missingArea != null) {
+            visible.putAll(render(nc, inactive, virtual, missing, missingArea, originX, originY));
+        }
+
+        for (Map.Entry<TileKey, Tile> e : visible.entrySet()) {
+            Rectangle r = getScreenRect(e.getKey(), originX, originY);
+            g.drawImage(e.getValue().image, r.x, r.y, null);
+        }
+    }
+
+    /**
+     * Renders the given area of the map view in one pass and stores it as tiles.
+     * @return the rendered tiles
+     */
+    private Map<TileKey, Tile> render(NavigatableComponent nc, boolean inactive, boolean virtual, List<TileKey> keys, Rectangle area,
+            double originX, double originY) {
+        Map<TileKey, Tile> result = new HashMap<>();
+        BufferedImage image = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.translate(-area.x, -area.y);
+            g.setClip(area);
+            Rectangle searchArea = new Rectangle(area);
+            searchArea.grow(MARGIN, MARGIN);
+            Rendering renderer = MapRendererFactory.getInstance().createActiveRenderer(g, nc, inactive);
+            renderer.render(data, virtual, nc.getLatLonBounds(searchArea));
+        } finally {
+            g.dispose();
+        }
+
+        for (TileKey key : keys) {
+            Rectangle r = getScreenRect(key, originX, originY);
+            BufferedImage tileImage = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D tg = tileImage.createGraphics();
+            try {
+                tg.drawImage(image, area.x - r.x, area.y - r.y, null);
+            } finally {
+                tg.dispose();
+            }
+            r.grow(MARGIN, MARGIN);
+            ProjectionBounds bounds = new ProjectionBounds(nc.getEastNorth(r.x, r.y + r.height));
+            bounds.extend(nc.getEastNorth(r.x + r.width, r.y));
+            Tile tile = new Tile(tileImage, bounds);
+            tiles.put(key, tile);
+            result.put(key, tile);
+            renderedTiles++;
+        }
+        return result;
+    }
+
+    private static Rectangle getScreenRect(TileKey key, double originX, double originY) {
+        return new Rectangle((int) Math.floor(key.x * TILE_SIZE - originX), (int) Math.floor(key.y * TILE_SIZE - originY),
+                TILE_SIZE, TILE_SIZE);
+    }
+
+    /**
+     * Drops the tiles which are no longer up to date.
+     */
+    private void validate(boolean inactive, boolean virtual) {
+        List<Object> settings = Arrays.<Object>asList(Main.getProjection(), inactive, virtual);
+        if (!settings.equals(renderSettings)) {
+            tiles.clear();
+            renderSettings = settings;
+        }
+
+        Collection<OsmPrimitive> currentSelection = data.getAllSelected();
+        if (currentSelection != selection) {
+            if (selection != null) {
+                // primitives selected or unselected since the last paint
+                Set<OsmPrimitive> changed = new HashSet<>(selection);
+                for (OsmPrimitive p : currentSelection) {
+                    if (!changed.remove(p)) {
+                        changed.add(p);
+                    }
+                }
+                invalidate(changed);
+            }
+            selection = currentSelection;
+        }
+
+        List<BBox> areas;
+        synchronized (this) {
+            if (dirtyAll) {
+                tiles.clear();
+            }
+            areas = new ArrayList<>(dirty);
+            dirty.clear();
+            dirtyAll = false;
+        }
+        if (tiles.isEmpty())
+            return;
+        Projection projection = Main.getProjection();
+        for (BBox bbox : areas) {
+            ProjectionBounds pb = new ProjectionBounds(projection.latlon2eastNorth(bbox.getTopLeft()));
+            pb.extend(projection.latlon2eastNorth(bbox.getBottomRight()));
+            pb.extend(projection.latlon2eastNorth(new LatLon(bbox.getTopLeftLat(), bbox.getBottomRightLon())));
+            pb.extend(projection.latlon2eastNorth(new LatLon(bbox.getBottomRightLat(), bbox.getTopLeftLon())));
+            for (Iterator<Tile> it = tiles.values().iterator(); it.hasNext();) {
+                if (it.next().bounds.intersects(pb)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates the tiles showing the given primitives.
+     * @param primitives the primitives whose rendering changed
+     */
+    private synchronized void invalidate(Collection<? extends OsmPrimitive> primitives) {
+        if (dirtyAll)
+            return;
+        if (dirty.size() + primitives.size() > MAX_DIRTY) {
+            invalidateAll();
+            return;
+        }
+        for (OsmPrimitive p : primitives) {
+            invalidate(p.getBBox());
+        }
+    }
+
+    /**
+     * Invalidates the tiles showing the given way segments.
+     * @param segments the way segments whose highlighting changed
+     */
+    private synchronized void invalidateSegments(Collection<WaySegment> segments) {
+        if (dirtyAll)
+            return;
+        if (dirty.size() + segments.size() > MAX_DIRTY) {
+            invalidateAll();
+            return;
+        }
+        for (WaySegment segment : segments) {
+            LatLon a = segment.getFirstNode().getCoor();
+            LatLon b = segment.getSecondNode().getCoor();
+            if (a != null && b != null) {
+                invalidate(new BBox(a, b));
+            }
+        }
+    }
+
+    private synchronized void invalidate(BBox bbox) {
+        if (bbox != null && bbox.getTopLeftLon() <= bbox.getBottomRightLon() && bbox.getBottomRightLat() <= bbox.getTopLeftLat()) {
+            dirty.add(bbox);
+        }
+    }
+
+    /**
+     * Invalidates all tiles.
+     */
+    public synchronized void invalidateAll() {
+        dirtyAll = true;
+        dirty.clear();
+    }
+
+    /**
+     * Replies the number of tiles rendered so far.
+     * @return the number of tiles rendered so far
+     */
+    int getRenderedTiles() {
+        return renderedTiles;
+    }
+
+    @Override
+    public void primitivesAdded(PrimitivesAddedEvent event) {
+        invalidate(event.getPrimitives());
+    }
+
+    @Override
+    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+        invalidate(event.getPrimitives());
+    }
+
+    @Override
+    public void tagsChanged(TagsChangedEvent event) {
+        invalidate(event.getPrimitives());
+    }
+
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {
+        Node node = event.getNode();
+        List<OsmPrimitive> changed = new ArrayList<>();
+        changed.add(node);
+        for (OsmPrimitive referrer : node.getReferrers()) {
+            if (referrer instanceof Way) {
+                changed.add(referrer);
+            }
+        }
+        invalidate(changed);
+        invalidate(event.getOldBBox());
+    }
+
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        invalidate(event.getPrimitives());
+        invalidate(event.getOldBBox());
+    }
+
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {
+        invalidate(event.getPrimitives());
+        invalidate(event.getOldBBox());
+    }
+
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+        // changeset id changes do not affect rendering
+    }
+
+    @Override
+    public void dataChanged(DataChangedEvent event) {
+        invalidateAll();
+    }
+
+    @Override
+    public void primitiveHighlightUpdated(OsmPrimitive primitive) {
+        invalidate(Collections.singleton(primitive));
+    }
+
+    @Override
+    public void waySegmentsHighlightUpdated(Collection<WaySegment> oldSegments, Collection<WaySegment> newSegments) {
+        invalidateSegments(oldSegments);
+        invalidateSegments(newSegments);
+    }
+
+    @Override
+    public void preferenceChanged(PreferenceChangeEvent e) {
+        for (String prefix : RENDERING_PREFERENCES) {
+            if (e.getKey().startsWith(prefix)) {
+                invalidateAll();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void mapPaintStylesUpdated() {
+        invalidateAll();
+    }
+
+    @Override
+    public void mapPaintStyleEntryUpdated(int idx) {
+        invalidateAll();
+    }
+}
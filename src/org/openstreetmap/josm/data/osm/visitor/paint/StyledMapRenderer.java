@@ -27,9 +27,11 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.text.Bidi;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -65,6 +67,7 @@ import org.openstreetmap.josm.gui.mappaint.BoxTextElemStyle.HorizontalTextAlignm
 import org.openstreetmap.josm.gui.mappaint.BoxTextElemStyle.VerticalTextAlignment;
 import org.openstreetmap.josm.gui.mappaint.ElemStyle;
 import org.openstreetmap.josm.gui.mappaint.ElemStyles;
+import org.openstreetmap.josm.gui.mappaint.LineElemStyle;
 import org.openstreetmap.josm.gui.mappaint.MapImage;
 import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
 import org.openstreetmap.josm.gui.mappaint.NodeElemStyle;
@@ -321,6 +324,11 @@ public class StyledMapRenderer extends AbstractMapRenderer {
     private boolean leftHandTraffic;
     private Object antialiasing;
 
+    /** Screen paths of the ways drawn without offset during the current rendering, prepared before drawing */
+    private Map<Way, GeneralPath> preparedWayPaths;
+    /** Screen shapes of the ways drawn as area during the current rendering, prepared before drawing */
+    private Map<Way, Shape> preparedAreaShapes;
+
     /**
      * Constructs a new {@code StyledMapRenderer}.
      *
@@ -434,9 +442,10 @@ public class StyledMapRenderer extends AbstractMapRenderer {
     }
 
     protected void drawArea(OsmPrimitive osm, Path2D.Double path, Color color, MapImage fillImage, boolean disabled, TextElement text) {
+        drawArea(osm, path.createTransformedShape(nc.getAffineTransform()), color, fillImage, disabled, text);
+    }
 
-        Shape area = path.createTransformedShape(nc.getAffineTransform());
-
+    private void drawArea(OsmPrimitive osm, Shape area, Color color, MapImage fillImage, boolean disabled, TextElement text) {
         if (!isOutlineOnly) {
             g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
             if (fillImage == null) {
@@ -552,7 +561,11 @@ public class StyledMapRenderer extends AbstractMapRenderer {
     }
 
     public void drawArea(Way w, Color color, MapImage fillImage, boolean disabled, TextElement text) {
-        drawArea(w, getPath(w), color, fillImage, disabled, text);
+        Shape area = preparedAreaShapes != null ? preparedAreaShapes.get(w) : null;
+        if (area == null) {
+            area = getPath(w).createTransformedShape(nc.getAffineTransform());
+        }
+        drawArea(w, area, color, fillImage, disabled, text);
     }
 
     public void drawBoxText(Node n, BoxTextElemStyle bs) {
@@ -716,7 +729,8 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         }
 
         if (size > 1) {
-            if ((p.x < 0) || (p.y < 0) || (p.x > nc.getWidth()) || (p.y > nc.getHeight())) return;
+            Rectangle bounds = getPaintBounds();
+            if ((p.x < bounds.x) || (p.y < bounds.y) || (p.x > bounds.x + bounds.width) || (p.y > bounds.y + bounds.height)) return;
             int radius = size / 2;
 
             if (isInactiveMode || n.isDisabled()) {
@@ -1247,7 +1261,13 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             boolean showOrientation, boolean showHeadArrowOnly,
             boolean showOneway, boolean onewayReversed) {
 
-        GeneralPath path = new GeneralPath();
+        // the screen path of ways without decorations is usually prepared before drawing, see #prepareGeometry
+        GeneralPath path = preparedWayPaths == null || showOrientation || showHeadArrowOnly || showOneway || Math.abs(offset) >= 0.1
+                ? null : preparedWayPaths.get(way);
+        final boolean prepared = path != null;
+        if (!prepared) {
+            path = new GeneralPath();
+        }
         GeneralPath orientationArrows = showOrientation ? new GeneralPath() : null;
         GeneralPath onewayArrows = showOneway ? new GeneralPath() : null;
         GeneralPath onewayArrowsCasing = showOneway ? new GeneralPath() : null;
@@ -1283,7 +1303,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             drawPathHighlight(highlightSegs, line);
         }
 
-        Iterator<Point> it = new OffsetIterator(wayNodes, offset);
+        Iterator<Point> it = prepared ? Collections.<Point>emptyIterator() : new OffsetIterator(wayNodes, offset);
         while (it.hasNext()) {
             Point p = it.next();
             if (lastPoint != null) {
@@ -1419,15 +1439,47 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         return path;
     }
 
+    /**
+     * Computes the screen path of a way drawn without offset nor decorations, like {@link #drawWay} does.
+     * @param w the way
+     * @param bounds the clip bounds, grown like in {@link #drawWay}
+     * @return the screen path of the way
+     */
+    private GeneralPath getClippedPath(Way w, Rectangle bounds) {
+        GeneralPath path = new GeneralPath();
+        Point lastPoint = null;
+        boolean initialMoveToNeeded = true;
+        for (Node n : w.getNodes()) {
+            Point p = nc.getPoint(n);
+            if (lastPoint != null) {
+                LineClip clip = new LineClip(lastPoint, p, bounds);
+                if (clip.execute()) {
+                    Point p1 = clip.getP1();
+                    if (!lastPoint.equals(p1)) {
+                        path.moveTo(p1.x, p1.y);
+                    } else if (initialMoveToNeeded) {
+                        initialMoveToNeeded = false;
+                        path.moveTo(p1.x, p1.y);
+                    }
+                    Point p2 = clip.getP2();
+                    path.lineTo(p2.x, p2.y);
+                }
+            }
+            lastPoint = p;
+        }
+        return path;
+    }
+
     private boolean isAreaVisible(Path2D.Double area) {
         Rectangle2D bounds = area.getBounds2D();
         if (bounds.isEmpty()) return false;
+        Rectangle paintBounds = getPaintBounds();
         Point2D p = nc.getPoint2D(new EastNorth(bounds.getX(), bounds.getY()));
-        if (p.getX() > nc.getWidth()) return false;
-        if (p.getY() < 0) return false;
+        if (p.getX() > paintBounds.getMaxX()) return false;
+        if (p.getY() < paintBounds.getMinY()) return false;
         p = nc.getPoint2D(new EastNorth(bounds.getX() + bounds.getWidth(), bounds.getY() + bounds.getHeight()));
-        if (p.getX() < 0) return false;
-        if (p.getY() > nc.getHeight()) return false;
+        if (p.getX() < paintBounds.getMinX()) return false;
+        if (p.getY() > paintBounds.getMaxY()) return false;
         return true;
     }
 
@@ -1504,6 +1556,8 @@ public class StyledMapRenderer extends AbstractMapRenderer {
                         osm.accept(this);
                     }
                 }
+                // each worker sorts its own records, the sorted runs are merged afterwards
+                Collections.sort(output);
                 return output;
             } finally {
                 MapCSSStyleSource.STYLE_SOURCE_LOCK.readLock().unlock();
@@ -1587,13 +1641,41 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         }
     }
 
-    private class ConcurrentTasksHelper {
+    /**
+     * Prepares the screen geometry of a range of ways, see {@link StyledMapRenderer#prepareGeometry}.
+     */
+    private class PrepareGeometryWorker implements Callable<Void> {
+        private final List<Way> ways;
+        private final int from;
+        private final int to;
+        private final boolean[] area;
+        private final Object[] geometry;
+        private final Rectangle bounds;
 
-        private final List<StyleRecord> allStyleElems;
+        PrepareGeometryWorker(List<Way> ways, int from, int to, boolean[] area, Object[] geometry, Rectangle bounds) {
+            this.ways = ways;
+            this.from = from;
+            this.to = to;
+            this.area = area;
+            this.geometry = geometry;
+            this.bounds = bounds;
+        }
 
-        public ConcurrentTasksHelper(List<StyleRecord> allStyleElems) {
-            this.allStyleElems = allStyleElems;
+        @Override
+        public Void call() {
+            AffineTransform transform = nc.getAffineTransform();
+            for (int i = from; i < to; i++) {
+                Way w = ways.get(i);
+                geometry[i] = area[i] ? getPath(w).createTransformedShape(transform) : getClippedPath(w, bounds);
+            }
+            return null;
         }
+    }
+
+    private class ConcurrentTasksHelper {
+
+        /** Sorted lists of style records, in the order of the processed primitives */
+        private final List<List<StyleRecord>> runs = new ArrayList<>();
 
         void process(List<? extends OsmPrimitive> prims) {
             final List<ComputeStyleListWorker> tasks = new ArrayList<>();
@@ -1603,25 +1685,140 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             for (int i = 0; i < noBuckets; i++) {
                 int from = i*bucketsize;
                 int to = Math.min((i+1)*bucketsize, prims.size());
-                List<StyleRecord> target = singleThread ? allStyleElems : new ArrayList<StyleRecord>(to - from);
-                tasks.add(new ComputeStyleListWorker(prims, from, to, target));
+                tasks.add(new ComputeStyleListWorker(prims, from, to, new ArrayList<StyleRecord>(to - from)));
             }
             if (singleThread) {
                 try {
                     for (ComputeStyleListWorker task : tasks) {
-                        task.call();
+                        runs.add(task.call());
                     }
                 } catch (Exception ex) {
                     throw new RuntimeException(ex);
                 }
             } else if (!tasks.isEmpty()) {
-                try {
-                    for (Future<List<StyleRecord>> future : THREAD_POOL.b.invokeAll(tasks)) {
-                        allStyleElems.addAll(future.get());
+                runs.addAll(invokeAll(tasks));
+            }
+        }
+
+        /**
+         * Merges the sorted runs of style records, pairwise and in parallel.
+         * Only adjacent runs are merged and ties are taken from the left run, so the result is the same as
+         * the one of a stable sort of all records.
+         * @return all style records, sorted
+         */
+        List<StyleRecord> merge() {
+            List<List<StyleRecord>> current = runs;
+            while (current.size() > 1) {
+                List<Callable<List<StyleRecord>>> merges = new ArrayList<>();
+                for (int i = 0; i + 1 < current.size(); i += 2) {
+                    final List<StyleRecord> left = current.get(i);
+                    final List<StyleRecord> right = current.get(i + 1);
+                    merges.add(new Callable<List<StyleRecord>>() {
+                        @Override
+                        public List<StyleRecord> call() {
+                            return mergeSorted(left, right);
+                        }
+                    });
+                }
+                List<List<StyleRecord>> next = new ArrayList<>();
+                if (THREAD_POOL.a == 1 || merges.size() == 1) {
+                    try {
+                        for (Callable<List<StyleRecord>> m : merges) {
+                            next.add(m.call());
+                        }
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
                     }
-                } catch (InterruptedException | ExecutionException ex) {
-                    throw new RuntimeException(ex);
+                } else {
+                    next.addAll(invokeAll(merges));
                 }
+                if (current.size() % 2 != 0) {
+                    next.add(current.get(current.size() - 1));
+                }
+                current = next;
+            }
+            return current.isEmpty() ? new ArrayList<StyleRecord>() : current.get(0);
+        }
+    }
+
+    private static <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : THREAD_POOL.b.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static List<StyleRecord> mergeSorted(List<StyleRecord> left, List<StyleRecord> right) {
+        List<StyleRecord> result = new ArrayList<>(left.size() + right.size());
+        int i = 0;
+        int j = 0;
+        while (i < left.size() && j < right.size()) {
+            if (right.get(j).compareTo(left.get(i)) < 0) {
+                result.add(right.get(j++));
+            } else {
+                result.add(left.get(i++));
+            }
+        }
+        result.addAll(left.subList(i, left.size()));
+        result.addAll(right.subList(j, right.size()));
+        return result;
+    }
+
+    /**
+     * Computes the screen geometry of the ways drawn as plain line or as area, on the thread pool.
+     * Drawing the sorted style records on the graphics context then only has to look it up. The screen path
+     * of a way is also shared by all its line styles (e.g. casing and core line of a road).
+     * @param records the style records to draw
+     */
+    private void prepareGeometry(List<StyleRecord> records) {
+        Map<Way, Boolean> wayPaths = new IdentityHashMap<>();
+        Map<Way, Boolean> areaShapes = new IdentityHashMap<>();
+        for (StyleRecord r : records) {
+            if (r.osm instanceof Way) {
+                if (r.style instanceof LineElemStyle && Math.abs(((LineElemStyle) r.style).offset) < 0.1) {
+                    wayPaths.put((Way) r.osm, Boolean.TRUE);
+                } else if (r.style instanceof AreaElemStyle) {
+                    areaShapes.put((Way) r.osm, Boolean.TRUE);
+                }
+            }
+        }
+        final List<Way> ways = new ArrayList<>(wayPaths.size() + areaShapes.size());
+        ways.addAll(wayPaths.keySet());
+        ways.addAll(areaShapes.keySet());
+        boolean[] area = new boolean[ways.size()];
+        Arrays.fill(area, wayPaths.size(), area.length, true);
+        Object[] geometry = new Object[ways.size()];
+        Rectangle bounds = g.getClipBounds();
+        if (bounds != null) {
+            // same bounds as drawWay
+            bounds.grow(100, 100);
+        }
+
+        final List<PrepareGeometryWorker> tasks = new ArrayList<>();
+        final int bucketsize = Math.max(100, ways.size()/THREAD_POOL.a/3);
+        for (int from = 0; from < ways.size(); from += bucketsize) {
+            tasks.add(new PrepareGeometryWorker(ways, from, Math.min(from + bucketsize, ways.size()), area, geometry, bounds));
+        }
+        if (THREAD_POOL.a == 1 || tasks.size() == 1) {
+            for (PrepareGeometryWorker task : tasks) {
+                task.call();
+            }
+        } else if (!tasks.isEmpty()) {
+            invokeAll(tasks);
+        }
+
+        preparedWayPaths = new IdentityHashMap<>(wayPaths.size());
+        preparedAreaShapes = new IdentityHashMap<>(areaShapes.size());
+        for (int i = 0; i < geometry.length; i++) {
+            if (area[i]) {
+                preparedAreaShapes.put(ways.get(i), (Shape) geometry[i]);
+            } else {
+                preparedWayPaths.put(ways.get(i), (GeneralPath) geometry[i]);
             }
         }
     }
@@ -1635,7 +1832,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         try {
             highlightWaySegments = data.getHighlightedWaySegments();
 
-            long timeStart = 0, timePhase1 = 0, timeFinished;
+            long timeStart = 0, timePhase1 = 0, timePhase2 = 0, timeFinished;
             if (Main.isTraceEnabled()) {
                 timeStart = System.currentTimeMillis();
                 System.err.print("BENCHMARK: rendering ");
@@ -1645,9 +1842,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             List<Way> ways = data.searchWays(bbox);
             List<Relation> relations = data.searchRelations(bbox);
 
-            final List<StyleRecord> allStyleElems = new ArrayList<>(nodes.size()+ways.size()+relations.size());
-
-            ConcurrentTasksHelper helper = new ConcurrentTasksHelper(allStyleElems);
+            ConcurrentTasksHelper helper = new ConcurrentTasksHelper();
 
             // Need to process all relations first.
             // Reason: Make sure, ElemStyles.getStyleCacheWithRange is
@@ -1662,7 +1857,13 @@ public class StyledMapRenderer extends AbstractMapRenderer {
                 System.err.print("phase 1 (calculate styles): " + Utils.getDurationString(timePhase1 - timeStart));
             }
 
-            Collections.sort(allStyleElems); // TODO: try parallel sort when switching to Java 8
+            final List<StyleRecord> allStyleElems = helper.merge();
+            prepareGeometry(allStyleElems);
+
+            if (Main.isTraceEnabled()) {
+                timePhase2 = System.currentTimeMillis();
+                System.err.print("; phase 2 (sort, prepare geometry): " + Utils.getDurationString(timePhase2 - timePhase1));
+            }
 
             for (StyleRecord r : allStyleElems) {
                 r.style.paintPrimitive(
@@ -1677,13 +1878,15 @@ public class StyledMapRenderer extends AbstractMapRenderer {
 
             if (Main.isTraceEnabled()) {
                 timeFinished = System.currentTimeMillis();
-                System.err.println("; phase 2 (draw): " + Utils.getDurationString(timeFinished - timePhase1) +
+                System.err.println("; phase 3 (draw): " + Utils.getDurationString(timeFinished - timePhase2) +
                     "; total: " + Utils.getDurationString(timeFinished - timeStart) +
                     " (scale: " + circum + " zoom level: " + Selector.GeneralSelector.scale2level(circum) + ")");
             }
 
             drawVirtualNodes(data, bbox);
         } finally {
+            preparedWayPaths = null;
+            preparedAreaShapes = null;
             data.getReadLock().unlock();
         }
     }
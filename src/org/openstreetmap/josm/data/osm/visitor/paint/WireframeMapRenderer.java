@@ -354,8 +354,9 @@ public class WireframeMapRenderer extends AbstractMapRenderer implements Visitor
 
             if (m.isNode()) {
                 Point p = nc.getPoint(m.getNode());
-                if (p.x < 0 || p.y < 0
-                        || p.x > nc.getWidth() || p.y > nc.getHeight()) {
+                Rectangle bounds = getPaintBounds();
+                if (p.x < bounds.x || p.y < bounds.y
+                        || p.x > bounds.x + bounds.width || p.y > bounds.y + bounds.height) {
                     continue;
                 }
 
@@ -394,8 +395,9 @@ public class WireframeMapRenderer extends AbstractMapRenderer implements Visitor
         if (size > 1) {
             int radius = size / 2;
             Point p = nc.getPoint(n);
-            if ((p.x < 0) || (p.y < 0) || (p.x > nc.getWidth())
-                    || (p.y > nc.getHeight()))
+            Rectangle bounds = getPaintBounds();
+            if ((p.x < bounds.x) || (p.y < bounds.y) || (p.x > bounds.x + bounds.width)
+                    || (p.y > bounds.y + bounds.height))
                 return;
             g.setColor(color);
             if (fill) {
@@ -462,10 +464,11 @@ public class WireframeMapRenderer extends AbstractMapRenderer implements Visitor
     protected boolean isPolygonVisible(Polygon polygon) {
         Rectangle bounds = polygon.getBounds();
         if (bounds.width == 0 && bounds.height == 0) return false;
-        if (bounds.x > nc.getWidth()) return false;
-        if (bounds.y > nc.getHeight()) return false;
-        if (bounds.x + bounds.width < 0) return false;
-        if (bounds.y + bounds.height < 0) return false;
+        Rectangle paintBounds = getPaintBounds();
+        if (bounds.x > paintBounds.x + paintBounds.width) return false;
+        if (bounds.y > paintBounds.y + paintBounds.height) return false;
+        if (bounds.x + bounds.width < paintBounds.x) return false;
+        if (bounds.y + bounds.height < paintBounds.y) return false;
         return true;
     }
 
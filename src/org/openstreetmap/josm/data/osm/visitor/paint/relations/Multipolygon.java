@@ -8,9 +8,11 @@ import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.openstreetmap.josm.Main;
@@ -19,6 +21,7 @@ import org.openstreetmap.josm.data.Preferences.PreferenceChangedListener;
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
@@ -160,15 +163,36 @@ public class Multipolygon {
         return roleMatcher;
     }
 
+    /**
+     * A way of a joined ring, in the order of the ring.
+     * @since 8576
+     */
+    static final class Segment {
+        private final long wayId;
+        private final boolean reversed;
+
+        Segment(long wayId, boolean reversed) {
+            this.wayId = wayId;
+            this.reversed = reversed;
+        }
+    }
+
     public static class JoinedWay {
         private final List<Node> nodes;
         private final Collection<Long> wayIds;
         private final boolean selected;
+        // the joined ways in the order of the nodes, or null if unknown
+        private final List<Segment> segments;
 
         public JoinedWay(List<Node> nodes, Collection<Long> wayIds, boolean selected) {
+            this(nodes, wayIds, selected, null);
+        }
+
+        JoinedWay(List<Node> nodes, Collection<Long> wayIds, boolean selected, List<Segment> segments) {
             this.nodes = nodes;
             this.wayIds = wayIds;
             this.selected = selected;
+            this.segments = segments;
         }
 
         public List<Node> getNodes() {
@@ -194,9 +218,13 @@ public class Multipolygon {
         private final Path2D.Double poly;
         public boolean selected;
         private Rectangle2D bounds;
+        // the path is rebuilt when it is needed after a change of the nodes, not for each change
+        private boolean dirty;
         private final Collection<Long> wayIds;
         private final List<Node> nodes;
         private final List<PolyData> inners;
+        // the joined ways in the order of the nodes, or null if unknown
+        private List<Segment> segments;
 
         public PolyData(Way closedWay) {
             this(closedWay.getNodes(), closedWay.isSelected(), Collections.singleton(closedWay.getUniqueId()));
@@ -204,6 +232,7 @@ public class Multipolygon {
 
         public PolyData(JoinedWay joinedWay) {
             this(joinedWay.getNodes(), joinedWay.isSelected(), joinedWay.getWayIds());
+            this.segments = joinedWay.segments;
         }
 
         private PolyData(List<Node> nodes, boolean selected, Collection<Long> wayIds) {
@@ -233,19 +262,21 @@ public class Multipolygon {
                 poly.closePath();
             }
             for (PolyData inner : inners) {
-                appendInner(inner.poly);
+                appendInner(inner.get());
             }
         }
 
         public PolyData(PolyData copy) {
             this.selected = copy.selected;
-            this.poly = (Double) copy.poly.clone();
+            this.poly = (Double) copy.get().clone();
             this.wayIds = Collections.unmodifiableCollection(copy.wayIds);
             this.nodes = new ArrayList<>(copy.nodes);
             this.inners = new ArrayList<>(copy.inners);
+            this.segments = copy.segments;
         }
 
         public Intersection contains(Path2D.Double p) {
+            Path2D.Double path = get();
             int contains = 0;
             int total = 0;
             double[] coords = new double[6];
@@ -253,7 +284,7 @@ public class Multipolygon {
                 switch (it.currentSegment(coords)) {
                     case PathIterator.SEG_MOVETO:
                     case PathIterator.SEG_LINETO:
-                        if (poly.contains(coords[0], coords[1])) {
+                        if (path.contains(coords[0], coords[1])) {
                             contains++;
                         }
                         total++;
@@ -264,22 +295,33 @@ public class Multipolygon {
             return Intersection.CROSSING;
         }
 
-        public void addInner(PolyData inner) {
+        public synchronized void addInner(PolyData inner) {
             inners.add(inner);
-            appendInner(inner.poly);
+            if (!dirty) {
+                appendInner(inner.get());
+            }
         }
 
         private void appendInner(Path2D.Double inner) {
             poly.append(inner.getPathIterator(null), false);
         }
 
-        public Path2D.Double get() {
+        /**
+         * Returns the path of this polygon and of its inner polygons, rebuilt if the nodes have changed.
+         * @return the path of this polygon
+         */
+        public synchronized Path2D.Double get() {
+            if (dirty) {
+                poly.reset();
+                buildPoly();
+                dirty = false;
+            }
             return poly;
         }
 
-        public Rectangle2D getBounds() {
+        public synchronized Rectangle2D getBounds() {
             if (bounds == null) {
-                bounds = poly.getBounds2D();
+                bounds = get().getBounds2D();
             }
             return bounds;
         }
@@ -292,6 +334,15 @@ public class Multipolygon {
             return nodes;
         }
 
+        /**
+         * Returns the inner polygons added to this polygon.
+         * @return the inner polygons added to this polygon
+         * @since 8576
+         */
+        public List<PolyData> getInners() {
+            return Collections.unmodifiableList(inners);
+        }
+
         private void resetNodes(DataSet dataSet) {
             if (!nodes.isEmpty()) {
                 DataSet ds = dataSet;
@@ -307,7 +358,7 @@ public class Multipolygon {
                 } else if (wayIds.size() == 1) {
                     Way w = (Way) ds.getPrimitiveById(wayIds.iterator().next(), OsmPrimitiveType.WAY);
                     nodes.addAll(w.getNodes());
-                } else if (!wayIds.isEmpty()) {
+                } else if (!wayIds.isEmpty() && !joinSegments(ds)) {
                     List<Way> waysToJoin = new ArrayList<>();
                     for (Long wayId : wayIds) {
                         Way w = (Way) ds.getPrimitiveById(wayId, OsmPrimitiveType.WAY);
@@ -315,30 +366,79 @@ public class Multipolygon {
                             waysToJoin.add(w);
                         }
                     }
+                    segments = null;
                     if (!waysToJoin.isEmpty()) {
-                        nodes.addAll(joinWays(waysToJoin).iterator().next().getNodes());
+                        JoinedWay joined = joinWays(waysToJoin).iterator().next();
+                        nodes.addAll(joined.getNodes());
+                        segments = joined.segments;
                     }
                 }
                 resetPoly();
             }
         }
 
-        private void resetPoly() {
-            poly.reset();
-            buildPoly();
+        /**
+         * Joins the ways again in the order found when the ring was created, which avoids searching
+         * the connections of all the ways when the nodes of one of them have changed.
+         * @return {@code true} if the ways are still connected in this order, {@code false} if they must be joined again
+         */
+        private boolean joinSegments(DataSet ds) {
+            if (segments == null || segments.size() != wayIds.size()) {
+                return false;
+            }
+            for (Segment segment : segments) {
+                Way w = (Way) ds.getPrimitiveById(segment.wayId, OsmPrimitiveType.WAY);
+                if (w == null || w.getNodesCount() == 0) {
+                    nodes.clear();
+                    return false;
+                }
+                List<Node> wayNodes = w.getNodes();
+                if (segment.reversed) {
+                    Collections.reverse(wayNodes);
+                }
+                if (!nodes.isEmpty()) {
+                    if (nodes.get(nodes.size() - 1) != wayNodes.get(0)) {
+                        nodes.clear();
+                        return false;
+                    }
+                    wayNodes.remove(0);
+                }
+                nodes.addAll(wayNodes);
+            }
+            return true;
+        }
+
+        private synchronized void resetPoly() {
+            dirty = true;
             bounds = null;
         }
 
+        /**
+         * Determines if a node belongs to this polygon, without its inner polygons.
+         */
+        private boolean containsNode(Node n) {
+            if (n.getDataSet() == null) {
+                return nodes.contains(n);
+            }
+            // a node is referred by a few ways, whereas a ring may have thousands of nodes
+            for (OsmPrimitive ref : n.getReferrers()) {
+                if (ref instanceof Way && wayIds.contains(ref.getUniqueId())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         public void nodeMoved(NodeMovedEvent event) {
             final Node n = event.getNode();
             boolean innerChanged = false;
             for (PolyData inner : inners) {
-                if (inner.nodes.contains(n)) {
+                if (inner.containsNode(n)) {
                     inner.resetPoly();
                     innerChanged = true;
                 }
             }
-            if (nodes.contains(n) || innerChanged) {
+            if (innerChanged || containsNode(n)) {
                 resetPoly();
             }
         }
@@ -352,8 +452,10 @@ public class Multipolygon {
                     innerChanged = true;
                 }
             }
-            if (wayIds.contains(wayId) || innerChanged) {
+            if (wayIds.contains(wayId)) {
                 resetNodes(event.getDataset());
+            } else if (innerChanged) {
+                resetPoly();
             }
         }
     }
@@ -362,6 +464,8 @@ public class Multipolygon {
     private final List<Way> outerWays = new ArrayList<>();
     private final List<PolyData> combinedPolygons = new ArrayList<>();
     private final List<Node> openEnds = new ArrayList<>();
+    // combined polygons containing each member way, in their own ring or in an inner ring
+    private final Map<Long, List<PolyData>> polygonsByWay = new HashMap<>();
 
     private boolean incomplete;
 
@@ -402,6 +506,24 @@ public class Multipolygon {
         if (!outerPolygons.isEmpty()) {
             addInnerToOuters(innerPolygons, outerPolygons);
         }
+        for (PolyData pd : combinedPolygons) {
+            indexPolygon(pd, pd);
+            for (PolyData inner : pd.inners) {
+                indexPolygon(inner, pd);
+            }
+        }
+    }
+
+    private void indexPolygon(PolyData ring, PolyData combined) {
+        for (Long wayId : ring.getWayIds()) {
+            List<PolyData> list = polygonsByWay.get(wayId);
+            if (list == null) {
+                polygonsByWay.put(wayId, list = new ArrayList<>(1));
+            }
+            if (!list.contains(combined)) {
+                list.add(combined);
+            }
+        }
     }
 
     public final boolean isIncomplete() {
@@ -436,6 +558,7 @@ public class Multipolygon {
             boolean selected = false;
             List<Node> nodes = null;
             Set<Long> wayIds = new HashSet<>();
+            List<Segment> segments = new ArrayList<>();
             boolean joined = true;
             while (joined && left > 0) {
                 joined = false;
@@ -487,6 +610,13 @@ public class Multipolygon {
                                 if (nodes == null) {
                                     nodes = w.getNodes();
                                     wayIds.add(w.getUniqueId());
+                                    segments.add(new Segment(w.getUniqueId(), false));
+                                }
+                                Segment segment = new Segment(c.getUniqueId(), mode == 22 || mode == 11);
+                                if (mode == 21 || mode == 22) {
+                                    segments.add(segment);
+                                } else {
+                                    segments.add(0, segment);
                                 }
                                 nodes.remove((mode == 21 || mode == 22) ? nl : 0);
                                 if (mode == 21) {
@@ -512,14 +642,48 @@ public class Multipolygon {
             if (nodes == null && w != null) {
                 nodes = w.getNodes();
                 wayIds.add(w.getUniqueId());
+                segments.add(new Segment(w.getUniqueId(), false));
             }
 
-            result.add(new JoinedWay(nodes, wayIds, selected));
+            result.add(new JoinedWay(nodes, wayIds, selected, segments));
         }
 
         return result;
     }
 
+    /**
+     * Updates the polygons containing a moved node. Only the rings of the ways containing the node are updated.
+     * @param event the node moved event
+     * @since 8576
+     */
+    public void nodeMoved(NodeMovedEvent event) {
+        Node n = event.getNode();
+        if (n.getDataSet() == null) {
+            for (PolyData pd : combinedPolygons) {
+                pd.nodeMoved(event);
+            }
+        } else {
+            for (OsmPrimitive ref : n.getReferrers()) {
+                if (ref instanceof Way) {
+                    for (PolyData pd : getCombinedPolygons(ref.getUniqueId())) {
+                        pd.nodeMoved(event);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the polygons containing a way whose nodes have changed. Only the rings of the way are joined again.
+     * @param event the way nodes changed event
+     * @since 8576
+     */
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        for (PolyData pd : getCombinedPolygons(event.getChangedWay().getUniqueId())) {
+            pd.wayNodesChanged(event);
+        }
+    }
+
     public PolyData findOuterPolygon(PolyData inner, List<PolyData> outerPolygons) {
 
         // First try to test only bbox, use precise testing only if we don't get unique result
@@ -546,8 +710,8 @@ public class Multipolygon {
 
         PolyData result = null;
         for (PolyData combined : outerPolygons) {
-            if (combined.contains(inner.poly) != Intersection.OUTSIDE) {
-                if (result == null || result.contains(combined.poly) == Intersection.INSIDE) {
+            if (combined.contains(inner.get()) != Intersection.OUTSIDE) {
+                if (result == null || result.contains(combined.get()) == Intersection.INSIDE) {
                     result = combined;
                 }
             }
@@ -600,6 +764,17 @@ public class Multipolygon {
         return combinedPolygons;
     }
 
+    /**
+     * Replies the combined polygons containing a member way, as outer or inner way.
+     * @param wayId the unique id of the way
+     * @return the combined polygons containing the way
+     * @since 8576
+     */
+    public List<PolyData> getCombinedPolygons(long wayId) {
+        List<PolyData> list = polygonsByWay.get(wayId);
+        return list == null ? Collections.<PolyData>emptyList() : list;
+    }
+
     public List<PolyData> getInnerPolygons() {
         final List<PolyData> innerPolygons = new ArrayList<>();
         createPolygons(innerWays, innerPolygons);
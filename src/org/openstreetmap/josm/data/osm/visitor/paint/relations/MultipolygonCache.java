@@ -204,13 +204,12 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
     private void dispatchEvent(AbstractDatasetChangedEvent event, Relation r, Collection<Map<Relation, Multipolygon>> maps) {
         for (Map<Relation, Multipolygon> map : maps) {
             Multipolygon m = map.get(r);
+            // only the rings containing the changed way or node are updated, and their paths are rebuilt when drawn
             if (m != null) {
-                for (PolyData pd : m.getCombinedPolygons()) {
-                    if (event instanceof NodeMovedEvent) {
-                        pd.nodeMoved((NodeMovedEvent) event);
-                    } else if (event instanceof WayNodesChangedEvent) {
-                        pd.wayNodesChanged((WayNodesChangedEvent) event);
-                    }
+                if (event instanceof NodeMovedEvent) {
+                    m.nodeMoved((NodeMovedEvent) event);
+                } else if (event instanceof WayNodesChangedEvent) {
+                    m.wayNodesChanged((WayNodesChangedEvent) event);
                 }
             }
         }
@@ -238,7 +237,10 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
 
     @Override
     public void tagsChanged(TagsChangedEvent event) {
-        updateMultipolygonsReferringTo(event);
+        // the tags of the nodes are not used by multipolygons
+        if (!(event.getPrimitive() instanceof Node)) {
+            updateMultipolygonsReferringTo(event);
+        }
     }
 
     @Override
@@ -328,7 +330,7 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
                         for (Map<Relation, Multipolygon> map : maps) {
                             Multipolygon multipolygon = map.get(ref);
                             if (multipolygon != null) {
-                                for (PolyData pd : multipolygon.getCombinedPolygons()) {
+                                for (PolyData pd : multipolygon.getCombinedPolygons(p.getUniqueId())) {
                                     if (pd.getWayIds().contains(p.getUniqueId())) {
                                         pd.selected = true;
                                         selectedPolyData.add(pd);
@@ -3,6 +3,7 @@ package org.openstreetmap.josm.data.projection;
 
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.datum.AbstractDatum;
 import org.openstreetmap.josm.data.projection.datum.Datum;
 import org.openstreetmap.josm.data.projection.proj.Proj;
 
@@ -76,6 +77,67 @@ public abstract class AbstractProjection implements Projection {
         return datum.toWGS84(ll);
     }
 
+    /**
+     * Converts packed lat/lon coordinates to easting/northing, in place, without creating objects per point.
+     *
+     * @param coords the coordinates: {@code coords[2*i]} is the latitude and {@code coords[2*i+1]} the longitude
+     * (in WGS84 degrees) of the point {@code i}, replaced by its east and north values.
+     * Unknown (NaN) coordinates are left unchanged
+     * @param from the index of the first point to convert
+     * @param to the index after the last point to convert
+     * @see Projections#project(Projection, double[], int)
+     * @since 8581
+     */
+    public void latlon2eastNorth(double[] coords, int from, int to) {
+        boolean batchDatum = datum instanceof AbstractDatum;
+        if (batchDatum) {
+            ((AbstractDatum) datum).fromWGS84(coords, from, to);
+        }
+        for (int i = 2 * from; i < 2 * to; i += 2) {
+            if (Double.isNaN(coords[i]) || Double.isNaN(coords[i + 1])) {
+                continue;
+            }
+            if (!batchDatum) {
+                LatLon ll = datum.fromWGS84(new LatLon(coords[i], coords[i + 1]));
+                coords[i] = ll.lat();
+                coords[i + 1] = ll.lon();
+            }
+            double[] en = proj.project(Math.toRadians(coords[i]), Math.toRadians(coords[i + 1] - lon0));
+            coords[i] = ellps.a * k0 * en[0] + x0;
+            coords[i + 1] = ellps.a * k0 * en[1] + y0;
+        }
+    }
+
+    /**
+     * Converts packed easting/northing coordinates to lat/lon, in place, without creating objects per point.
+     *
+     * @param coords the coordinates: {@code coords[2*i]} is the east and {@code coords[2*i+1]} the north value
+     * of the point {@code i}, replaced by its latitude and longitude (in WGS84 degrees).
+     * Unknown (NaN) coordinates are left unchanged
+     * @param from the index of the first point to convert
+     * @param to the index after the last point to convert
+     * @since 8581
+     */
+    public void eastNorth2latlon(double[] coords, int from, int to) {
+        boolean batchDatum = datum instanceof AbstractDatum;
+        for (int i = 2 * from; i < 2 * to; i += 2) {
+            if (Double.isNaN(coords[i]) || Double.isNaN(coords[i + 1])) {
+                continue;
+            }
+            double[] latlon_rad = proj.invproject((coords[i] - x0) / ellps.a / k0, (coords[i + 1] - y0) / ellps.a / k0);
+            coords[i] = Math.toDegrees(latlon_rad[0]);
+            coords[i + 1] = Math.toDegrees(latlon_rad[1]) + lon0;
+            if (!batchDatum) {
+                LatLon ll = datum.toWGS84(new LatLon(coords[i], coords[i + 1]));
+                coords[i] = ll.lat();
+                coords[i + 1] = ll.lon();
+            }
+        }
+        if (batchDatum) {
+            ((AbstractDatum) datum).toWGS84(coords, from, to);
+        }
+    }
+
     @Override
     public double getDefaultZoomInPPD() {
         // this will set the map scaler to about 1000 m
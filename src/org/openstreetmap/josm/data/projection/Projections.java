@@ -15,6 +15,10 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -45,6 +49,12 @@ import org.openstreetmap.josm.tools.Utils;
  */
 public final class Projections {
 
+    /** Number of points projected by a task of {@link #project(Projection, double[], int)} */
+    private static final int BATCH_SIZE = 16384;
+
+    /** Thread pool of {@link #project(Projection, double[], int)}, created when first needed */
+    private static Pair<Integer, ExecutorService> threadPool;
+
     private Projections() {
         // Hide default constructor for utils classes
     }
@@ -59,6 +69,66 @@ public final class Projections {
         return Main.getProjection().eastNorth2latlon(en);
     }
 
+    /**
+     * Converts packed lat/lon coordinates to easting/northing, in place, in parallel for large arrays.
+     * Projections not derived from {@link AbstractProjection} convert the points one by one.
+     * @param projection the projection
+     * @param coords the coordinates, see {@link AbstractProjection#latlon2eastNorth(double[], int, int)}
+     * @param count the number of points
+     * @since 8581
+     */
+    public static void project(final Projection projection, final double[] coords, int count) {
+        int batches = (count + BATCH_SIZE - 1) / BATCH_SIZE;
+        Pair<Integer, ExecutorService> pool = batches <= 1 ? null : getThreadPool();
+        if (pool == null || pool.a <= 1) {
+            latlon2eastNorth(projection, coords, 0, count);
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(batches);
+        for (int i = 0; i < batches; i++) {
+            final int from = i * BATCH_SIZE;
+            final int to = Math.min(count, from + BATCH_SIZE);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    latlon2eastNorth(projection, coords, from, to);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : pool.b.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static void latlon2eastNorth(Projection projection, double[] coords, int from, int to) {
+        if (projection instanceof AbstractProjection) {
+            ((AbstractProjection) projection).latlon2eastNorth(coords, from, to);
+            return;
+        }
+        for (int i = 2 * from; i < 2 * to; i += 2) {
+            if (!Double.isNaN(coords[i]) && !Double.isNaN(coords[i + 1])) {
+                EastNorth en = projection.latlon2eastNorth(new LatLon(coords[i], coords[i + 1]));
+                coords[i] = en.east();
+                coords[i + 1] = en.north();
+            }
+        }
+    }
+
+    private static synchronized Pair<Integer, ExecutorService> getThreadPool() {
+        if (threadPool == null) {
+            threadPool = Utils.newThreadPool("projection.numberOfThreads");
+        }
+        return threadPool;
+    }
+
     /*********************************
      * Registry for custom projection
      *
@@ -1,6 +1,7 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.data.projection.datum;
 
+import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.projection.Ellipsoid;
 
 public abstract class AbstractDatum implements Datum {
@@ -35,4 +36,40 @@ public abstract class AbstractDatum implements Datum {
     public Ellipsoid getEllipsoid() {
         return ellps;
     }
+
+    /**
+     * Converts packed lat/lon coordinates from this datum to WGS84 datum, in place.
+     * @param coords the coordinates in degrees, {@code coords[2*i]} is the latitude and {@code coords[2*i+1]}
+     * the longitude of the point {@code i}. Unknown (NaN) coordinates are left unchanged
+     * @param from the index of the first point to convert
+     * @param to the index after the last point to convert
+     * @since 8581
+     */
+    public void toWGS84(double[] coords, int from, int to) {
+        for (int i = 2 * from; i < 2 * to; i += 2) {
+            if (!Double.isNaN(coords[i]) && !Double.isNaN(coords[i + 1])) {
+                LatLon ll = toWGS84(new LatLon(coords[i], coords[i + 1]));
+                coords[i] = ll.lat();
+                coords[i + 1] = ll.lon();
+            }
+        }
+    }
+
+    /**
+     * Converts packed lat/lon coordinates from WGS84 to this datum, in place.
+     * @param coords the coordinates in degrees, {@code coords[2*i]} is the latitude and {@code coords[2*i+1]}
+     * the longitude of the point {@code i}. Unknown (NaN) coordinates are left unchanged
+     * @param from the index of the first point to convert
+     * @param to the index after the last point to convert
+     * @since 8581
+     */
+    public void fromWGS84(double[] coords, int from, int to) {
+        for (int i = 2 * from; i < 2 * to; i += 2) {
+            if (!Double.isNaN(coords[i]) && !Double.isNaN(coords[i + 1])) {
+                LatLon ll = fromWGS84(new LatLon(coords[i], coords[i + 1]));
+                coords[i] = ll.lat();
+                coords[i + 1] = ll.lon();
+            }
+        }
+    }
 }
@@ -29,4 +29,38 @@ public class NTV2Datum extends AbstractDatum {
         nadgrids.getShiftFile().gridShiftReverse(gs);
         return new LatLon(ll.lat() + gs.getLatShiftDegrees(), ll.lon() + gs.getLonShiftPositiveEastDegrees());
     }
+
+    @Override
+    public void toWGS84(double[] coords, int from, int to) {
+        shift(coords, from, to, true);
+    }
+
+    @Override
+    public void fromWGS84(double[] coords, int from, int to) {
+        shift(coords, from, to, false);
+    }
+
+    private void shift(double[] coords, int from, int to, boolean forward) {
+        NTV2GridShiftFile file = nadgrids.getShiftFile();
+        // a single grid shift object for all the points
+        NTV2GridShift gs = new NTV2GridShift();
+        for (int i = 2 * from; i < 2 * to; i += 2) {
+            double lat = coords[i];
+            double lon = coords[i + 1];
+            if (Double.isNaN(lat) || Double.isNaN(lon)) {
+                continue;
+            }
+            gs.setLatDegrees(lat);
+            gs.setLonPositiveEastDegrees(lon);
+            gs.setLatShiftSeconds(0);
+            gs.setLonShiftPositiveWestSeconds(0);
+            if (forward) {
+                file.gridShiftForward(gs);
+            } else {
+                file.gridShiftReverse(gs);
+            }
+            coords[i] = lat + gs.getLatShiftDegrees();
+            coords[i + 1] = lon + gs.getLonShiftPositiveEastDegrees();
+        }
+    }
 }
@@ -19,10 +19,17 @@
  */
 package org.openstreetmap.josm.data.projection.datum;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -42,15 +49,15 @@ import org.openstreetmap.josm.Main;
  * The older 'Australian' binary format is not supported, only the
  * official Canadian format, which is now also used for the national
  * Australian Grid.
- * <p>Grid Shift files can be read as InputStreams or RandomAccessFiles.
+ * <p>Grid Shift files can be read as InputStreams or memory-mapped files.
  * Loading an InputStream places all the required node information
  * (accuracy data is optional) into heap based Java arrays. This is the
  * highest perfomance option, and is useful for large volume transformations.
  * Non-file data sources (eg using an SQL Blob) are also supported through
- * InputStream. The RandonAccessFile option has a much smaller memory
- * footprint as only the Sub Grid headers are stored in memory, but
- * transformation is slower because the file must be read a number of
- * times for each transformation.
+ * InputStream. The memory-mapped option has a much smaller memory
+ * footprint as only the Sub Grid headers are stored in memory, and a much
+ * shorter loading time. The node data is read from the mapped file, with a
+ * small cache of the last used cells.
  * <p>Coordinates may be shifted Forward (ie from and to the Datums specified
  * in the Grid Shift File header) or Reverse. The reverse transformation
  * uses an iterative approach to approximate the Grid Shift, as the
@@ -62,6 +69,7 @@ import org.openstreetmap.josm.Main;
  * @author Peter Yuill
  * Modifified for JOSM :
  * - removed the RandomAccessFile mode (Pieren)
+ * - added the memory-mapped mode
  */
 public class NTV2GridShiftFile implements Serializable {
 
@@ -160,6 +168,74 @@ public class NTV2GridShiftFile implements Serializable {
         lastSubGrid = topLevelSubGrid[0];
     }
 
+    /**
+     * Load a Grid Shift File by mapping it in memory. Only the headers are read
+     * and stored in Java objects: the Grid Shift node data is read from the mapped
+     * file when a coordinate is shifted, so that it does not occupy the heap and
+     * is only paged in by the operating system for the areas actually used.
+     *
+     * @param file Grid Shift File
+     * @param loadAccuracy is Accuracy data to be read as well as shift data?
+     * @throws IOException if any I/O error occurs
+     * @since 8582
+     */
+    public void loadGridShiftFile(File file, boolean loadAccuracy) throws IOException {
+        // the mapping remains valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            loadGridShiftFile(channel.map(MapMode.READ_ONLY, 0, channel.size()), loadAccuracy);
+        }
+    }
+
+    /**
+     * Load a Grid Shift File from a buffer, typically a memory-mapped file.
+     * Only the headers are read, the Grid Shift node data is read from the buffer
+     * when a coordinate is shifted. The buffer must not be modified afterwards.
+     *
+     * @param buffer Grid Shift File content, from its position
+     * @param loadAccuracy is Accuracy data to be read as well as shift data?
+     * @throws IOException if the buffer is too small for the headers
+     * @since 8582
+     */
+    public void loadGridShiftFile(ByteBuffer buffer, boolean loadAccuracy) throws IOException {
+        ByteBuffer in = buffer.slice();
+        fromEllipsoid = "";
+        toEllipsoid = "";
+        topLevelSubGrid = null;
+        try {
+            byte[] b8 = new byte[8];
+            in.get(b8);
+            if (!"NUM_OREC".equals(new String(b8, StandardCharsets.UTF_8)))
+                throw new IllegalArgumentException("Input file is not an NTv2 grid shift file");
+            in.position(0);
+            in.order(ByteOrder.BIG_ENDIAN);
+            if (in.getInt(8) != 11) {
+                in.order(ByteOrder.LITTLE_ENDIAN);
+                if (in.getInt(8) != 11)
+                    throw new IllegalArgumentException("Input file is not an NTv2 grid shift file");
+            }
+            overviewHeaderCount = NTV2Util.getInt(in);
+            subGridHeaderCount = NTV2Util.getInt(in);
+            subGridCount = NTV2Util.getInt(in);
+            shiftType = NTV2Util.getString(in);
+            version = NTV2Util.getString(in);
+            fromEllipsoid = NTV2Util.getString(in);
+            toEllipsoid = NTV2Util.getString(in);
+            fromSemiMajorAxis = NTV2Util.getDouble(in);
+            fromSemiMinorAxis = NTV2Util.getDouble(in);
+            toSemiMajorAxis = NTV2Util.getDouble(in);
+            toSemiMinorAxis = NTV2Util.getDouble(in);
+
+            NTV2SubGrid[] subGrid = new NTV2SubGrid[subGridCount];
+            for (int i = 0; i < subGridCount; i++) {
+                subGrid[i] = new NTV2SubGrid(in, loadAccuracy);
+            }
+            topLevelSubGrid = createSubGridTree(subGrid);
+            lastSubGrid = topLevelSubGrid[0];
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated NTv2 grid shift file", e);
+        }
+    }
+
     /**
      * Create a tree of Sub Grids by adding each Sub Grid to its parent (where
      * it has one), and returning an array of the top level Sub Grids
@@ -1,8 +1,18 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.data.projection.datum;
 
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
+import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.io.CachedFile;
 
 /**
@@ -33,7 +43,7 @@ public class NTV2GridShiftFileWrapper {
 
     // CHECKSTYLE.ON: LineLength
 
-    private NTV2GridShiftFile instance = null;
+    private volatile NTV2GridShiftFile instance = null;
     private String gridFileName;
 
     /**
@@ -47,17 +57,97 @@ public class NTV2GridShiftFileWrapper {
     /**
      * Returns the actual {@link NTV2GridShiftFile} behind this wrapper.
      * The grid file is only loaded once, when first accessed.
+     * The grid file may be accessed concurrently, e.g. by parallel reprojection.
+     * <p>
+     * Grid files are memory-mapped, see {@link NTV2GridShiftFile#loadGridShiftFile(File, boolean)}.
+     * The resources of the JOSM jar are copied to the cache directory first, to be mapped from there.
+     * Grid files which cannot be copied are loaded in memory.
      * @return The NTv2 grid file
      */
     public NTV2GridShiftFile getShiftFile() {
         if (instance == null) {
-            try (InputStream is = new CachedFile(gridFileName).getInputStream()) {
-                instance = new NTV2GridShiftFile();
-                instance.loadGridShiftFile(is, false);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+            synchronized (this) {
+                if (instance == null) {
+                    try {
+                        NTV2GridShiftFile file = new NTV2GridShiftFile();
+                        File localFile = getLocalFile();
+                        if (localFile != null) {
+                            file.loadGridShiftFile(localFile, false);
+                        } else {
+                            try (InputStream is = new CachedFile(gridFileName).getInputStream()) {
+                                file.loadGridShiftFile(is, false);
+                            }
+                        }
+                        instance = file;
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
             }
         }
         return instance;
     }
+
+    /**
+     * Returns the grid file as a local file, if it can be memory-mapped.
+     * @return the local file, or {@code null}
+     * @throws IOException if the file cannot be retrieved
+     */
+    private File getLocalFile() throws IOException {
+        if (gridFileName.startsWith("resource://")) {
+            URL url = getClass().getResource(gridFileName.substring("resource:/".length()));
+            if (url == null)
+                return null;
+            return getLocalFile(url, new File(Main.pref.getCacheDirectory(), "ntv2"));
+        }
+        File file = new CachedFile(gridFileName).getFile();
+        return file != null && file.isFile() ? file : null;
+    }
+
+    /**
+     * Returns a resource of the classpath as a local file, so that it can be memory-mapped.
+     * <p>
+     * A resource packed in a jar file, like the grid files of JOSM, is copied once to the given cache directory.
+     * The copy is used again as long as it has the size and the date of the resource.
+     * @param url the URL of the resource
+     * @param cacheDir the directory of the copies of the resources which are not local files
+     * @return the local file, or {@code null} if the resource cannot be copied
+     */
+    static File getLocalFile(URL url, File cacheDir) {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return new File(url.toURI());
+            } catch (URISyntaxException e) {
+                Main.warn(e);
+                return null;
+            }
+        }
+        try {
+            URLConnection con = url.openConnection();
+            long length = con.getContentLengthLong();
+            long lastModified = con.getLastModified();
+            File file = new File(cacheDir, new File(url.getPath()).getName());
+            if (file.isFile() && file.length() == length && file.lastModified() == lastModified)
+                return file;
+            if (!cacheDir.isDirectory() && !cacheDir.mkdirs())
+                throw new IOException("Unable to create directory " + cacheDir);
+            // copy to a temporary file first, another JOSM instance may be mapping the former copy
+            File tmp = File.createTempFile(file.getName(), ".tmp", cacheDir);
+            try {
+                try (InputStream in = con.getInputStream()) {
+                    Files.copy(in, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                if (lastModified > 0) {
+                    tmp.setLastModified(lastModified);
+                }
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+            return file;
+        } catch (IOException e) {
+            Main.warn(tr("Failed to copy {0} to the cache directory, it is loaded in memory: {1}", url, e));
+            return null;
+        }
+    }
 }
@@ -22,6 +22,7 @@ package org.openstreetmap.josm.data.projection.datum;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 import org.openstreetmap.josm.Main;
@@ -35,11 +36,17 @@ import org.openstreetmap.josm.tools.Utils;
  * - removed the RandomAccessFile mode (Pieren)
  * - read grid file by single bytes. Workaround for a bug in some VM not supporting
  *   file reading by group of 4 bytes from a jar file.
+ * - added the memory-mapped mode, reading the node data from the grid file when needed
  */
 public class NTV2SubGrid implements Cloneable, Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /** Number of cells kept by {@link #getMappedCell}, a power of two */
+    private static final int CELL_CACHE_SIZE = 64;
+    /** Size of the node data of a node: latitude and longitude shifts and accuracies */
+    private static final int NODE_SIZE = 16;
+
     private String subGridName;
     private String parentSubGridName;
     private String created;
@@ -59,8 +66,29 @@ public class NTV2SubGrid implements Cloneable, Serializable {
     private float[] latAccuracy;
     private float[] lonAccuracy;
 
+    /** Grid shift file, in memory-mapped mode, and offset of the node data of this sub grid in the file */
+    private transient ByteBuffer buffer;
+    private int nodeOffset;
+    private boolean mappedAccuracy;
+    private transient MappedCell[] cellCache;
+
     private NTV2SubGrid[] subGrid;
 
+    /**
+     * The node data of the four corners of a cell, read from a memory-mapped grid shift file.
+     */
+    private static final class MappedCell {
+        /** Index of the first corner */
+        private final int index;
+        /** Latitude shifts, longitude shifts, then accuracies if read, at the four corners */
+        private final float[] values;
+
+        MappedCell(int index, float[] values) {
+            this.index = index;
+            this.values = values;
+        }
+    }
+
     /**
      * Construct a Sub Grid from an InputStream, loading the node data into
      * arrays in this object.
@@ -148,6 +176,39 @@ public class NTV2SubGrid implements Cloneable, Serializable {
         }
     }
 
+    /**
+     * Construct a Sub Grid from a memory-mapped Grid Shift File, reading its header only.
+     * The node data is read from the buffer when a coordinate is shifted.
+     *
+     * @param in GridShiftFile buffer, in the byte order of the file, positioned at the Sub Grid header.
+     * Its position is moved after the node data of the Sub Grid
+     * @param loadAccuracy is the node Accuracy data to be read?
+     * @since 8582
+     */
+    NTV2SubGrid(ByteBuffer in, boolean loadAccuracy) {
+        subGridName = NTV2Util.getString(in).trim();
+        parentSubGridName = NTV2Util.getString(in).trim();
+        created = NTV2Util.getString(in);
+        updated = NTV2Util.getString(in);
+        minLat = NTV2Util.getDouble(in);
+        maxLat = NTV2Util.getDouble(in);
+        minLon = NTV2Util.getDouble(in);
+        maxLon = NTV2Util.getDouble(in);
+        latInterval = NTV2Util.getDouble(in);
+        lonInterval = NTV2Util.getDouble(in);
+        lonColumnCount = 1 + (int) ((maxLon - minLon) / lonInterval);
+        latRowCount = 1 + (int) ((maxLat - minLat) / latInterval);
+        nodeCount = NTV2Util.getInt(in);
+        if (nodeCount != lonColumnCount * latRowCount)
+            throw new IllegalStateException("SubGrid " + subGridName + " has inconsistent grid dimesions");
+        nodeOffset = in.position();
+        // fails here rather than on the first shift if the file is truncated
+        in.position(nodeOffset + nodeCount * NODE_SIZE);
+        buffer = in;
+        mappedAccuracy = loadAccuracy;
+        cellCache = new MappedCell[CELL_CACHE_SIZE];
+    }
+
     private void readBytes(InputStream in, byte[] b) throws IOException {
         if (in.read(b) < b.length) {
             Main.error("Failed to read expected amount of bytes ("+ b.length +") from stream");
@@ -232,6 +293,10 @@ public class NTV2SubGrid implements Cloneable, Serializable {
         // Find the nodes at the four corners of the cell
 
         int indexA = lonIndex + (latIndex * lonColumnCount);
+        if (buffer != null) {
+            interpolateMappedGridShift(gs, indexA, x, y);
+            return;
+        }
         int indexB = indexA + 1;
         int indexC = indexA + lonColumnCount;
         int indexD = indexC + 1;
@@ -259,6 +324,46 @@ public class NTV2SubGrid implements Cloneable, Serializable {
         }
     }
 
+    private void interpolateMappedGridShift(NTV2GridShift gs, int indexA, double x, double y) {
+        float[] v = getMappedCell(indexA).values;
+        gs.setLatShiftSeconds(interpolate(v[0], v[1], v[2], v[3], x, y));
+        gs.setLonShiftPositiveWestSeconds(interpolate(v[4], v[5], v[6], v[7], x, y));
+        gs.setLatAccuracyAvailable(mappedAccuracy);
+        gs.setLonAccuracyAvailable(mappedAccuracy);
+        if (mappedAccuracy) {
+            gs.setLatAccuracySeconds(interpolate(v[8], v[9], v[10], v[11], x, y));
+            gs.setLonAccuracySeconds(interpolate(v[12], v[13], v[14], v[15], x, y));
+        }
+    }
+
+    /**
+     * Returns the node data of a cell, from the cache of the last used cells or from the mapped file.
+     * The cache is shared by the threads without locking, as the cells are immutable.
+     * @param indexA the index of the first corner of the cell
+     * @return the node data of the cell
+     */
+    private MappedCell getMappedCell(int indexA) {
+        int slot = indexA & (CELL_CACHE_SIZE - 1);
+        MappedCell cell = cellCache[slot];
+        if (cell == null || cell.index != indexA) {
+            int[] corners = {indexA, indexA + 1, indexA + lonColumnCount, indexA + lonColumnCount + 1};
+            float[] values = new float[mappedAccuracy ? 16 : 8];
+            for (int i = 0; i < 4; i++) {
+                // absolute reads, the buffer position is not used after loading
+                int offset = nodeOffset + corners[i] * NODE_SIZE;
+                values[i] = buffer.getFloat(offset);
+                values[4 + i] = buffer.getFloat(offset + 4);
+                if (mappedAccuracy) {
+                    values[8 + i] = buffer.getFloat(offset + 8);
+                    values[12 + i] = buffer.getFloat(offset + 12);
+                }
+            }
+            cell = new MappedCell(indexA, values);
+            cellCache[slot] = cell;
+        }
+        return cell;
+    }
+
     public String getParentSubGridName() {
         return parentSubGridName;
     }
@@ -19,6 +19,9 @@
  */
 package org.openstreetmap.josm.data.projection.datum;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import org.openstreetmap.josm.Main;
 
 /**
@@ -104,6 +107,44 @@ public final class NTV2Util {
         return Double.longBitsToDouble(l);
     }
 
+    /**
+     * Get the string value of a header record of a buffer. A record is made of an 8 bytes name
+     * and an 8 bytes value.
+     * @param buffer the buffer, positioned at the record. Its position is moved to the next record
+     * @return the string value
+     * @since 8582
+     */
+    static String getString(ByteBuffer buffer) {
+        byte[] b = new byte[8];
+        buffer.position(buffer.position() + 8);
+        buffer.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the int value of a header record of a buffer, in the byte order of the buffer.
+     * @param buffer the buffer, positioned at the record. Its position is moved to the next record
+     * @return the int value
+     * @since 8582
+     */
+    static int getInt(ByteBuffer buffer) {
+        int i = buffer.getInt(buffer.position() + 8);
+        buffer.position(buffer.position() + 16);
+        return i;
+    }
+
+    /**
+     * Get the double value of a header record of a buffer, in the byte order of the buffer.
+     * @param buffer the buffer, positioned at the record. Its position is moved to the next record
+     * @return the double value
+     * @since 8582
+     */
+    static double getDouble(ByteBuffer buffer) {
+        double d = buffer.getDouble(buffer.position() + 8);
+        buffer.position(buffer.position() + 16);
+        return d;
+    }
+
     /**
      * Does the current VM support the New IO api
      * @return true or false
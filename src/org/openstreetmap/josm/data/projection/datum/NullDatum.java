@@ -24,4 +24,14 @@ public class NullDatum extends AbstractDatum {
         return ll;
     }
 
+    @Override
+    public void toWGS84(double[] coords, int from, int to) {
+        // Nothing to convert
+    }
+
+    @Override
+    public void fromWGS84(double[] coords, int from, int to) {
+        // Nothing to convert
+    }
+
 }
@@ -0,0 +1,234 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.data.projection.Ellipsoid;
+import org.openstreetmap.josm.gui.preferences.validator.ValidatorPreference;
+import org.openstreetmap.josm.tools.Pair;
+
+/**
+ * Validates again the primitives affected by the changes of a data set, instead of the whole data set.
+ * <p>
+ * The changed primitives are collected from data set events by {@link #addEvent}. {@link #validate} then computes
+ * the dirty region:
+ * <ul>
+ * <li>the changed primitives and their referrers (parent ways and relations),</li>
+ * <li>the primitives of the errors involving one of them, as these errors become obsolete,</li>
+ * <li>for the tests comparing primitives with their surroundings, such as {@code CrossingWays} or
+ * {@code UnconnectedWays}, the nodes and ways near to the nodes and way segments of the above.</li>
+ * </ul>
+ * The tests are run on this region only, and only the new errors involving a changed primitive, its referrers or a
+ * primitive of an obsolete error are kept. Tests comparing primitives with each other independently of their
+ * location may miss errors with primitives outside of the dirty region: a full validation remains the reference.
+ * <p>
+ * Changes can be collected in one thread, typically the event dispatch thread, while another thread validates.
+ * @since 8568
+ */
+public class IncrementalValidator {
+
+    /** Distance (in meters) around the dirty primitives in which the neighbours are validated again */
+    public static final IntegerProperty PROP_NEIGHBOUR_DISTANCE =
+            new IntegerProperty(ValidatorPreference.PREFIX + ".incremental.neighbour_distance", 50);
+
+    private final DataSet ds;
+    private final Set<OsmPrimitive> changed = new LinkedHashSet<>();
+
+    /**
+     * Constructs a new {@code IncrementalValidator}.
+     * @param ds the data set whose changes are validated
+     */
+    public IncrementalValidator(DataSet ds) {
+        this.ds = ds;
+    }
+
+    /**
+     * Replies the data set whose changes are validated.
+     * @return the data set whose changes are validated
+     */
+    public DataSet getDataSet() {
+        return ds;
+    }
+
+    /**
+     * Collects the primitives changed by the given event, or by the events it consolidates.
+     * Events telling that the whole data set changed are ignored, they require a full validation.
+     * @param event the data set event
+     */
+    public synchronized void addEvent(AbstractDatasetChangedEvent event) {
+        if (event.getDataset() != ds) {
+            return;
+        }
+        switch (event.getType()) {
+        case DATA_CHANGED:
+            List<AbstractDatasetChangedEvent> events = ((DataChangedEvent) event).getEvents();
+            if (events != null) {
+                for (AbstractDatasetChangedEvent e : events) {
+                    addEvent(e);
+                }
+            }
+            break;
+        case NODE_MOVED:
+        case PRIMITIVES_ADDED:
+        case PRIMITIVES_REMOVED:
+        case RELATION_MEMBERS_CHANGED:
+        case TAGS_CHANGED:
+        case WAY_NODES_CHANGED:
+            changed.addAll(event.getPrimitives());
+            break;
+        default:
+            // changeset id changes do not affect the validation
+        }
+    }
+
+    /**
+     * Adds changed primitives.
+     * @param primitives the changed primitives
+     */
+    public synchronized void addChangedPrimitives(Collection<? extends OsmPrimitive> primitives) {
+        changed.addAll(primitives);
+    }
+
+    /**
+     * Determines if no change has been collected since the last validation.
+     * @return {@code true} if there is nothing to validate
+     */
+    public synchronized boolean isEmpty() {
+        return changed.isEmpty();
+    }
+
+    /**
+     * Runs the given tests on the dirty region of the collected changes, and forgets these changes.
+     * <p>
+     * The error list is not modified: the caller is expected to remove the obsolete errors and add the new ones.
+     * @param tests the tests to run
+     * @param errors the current validation errors of the data set
+     * @return the obsolete errors of {@code errors}, and the new errors found in the dirty region
+     */
+    public Pair<List<TestError>, List<TestError>> validate(Collection<? extends Test> tests, Collection<TestError> errors) {
+        List<OsmPrimitive> changedCopy;
+        synchronized (this) {
+            changedCopy = new ArrayList<>(changed);
+            changed.clear();
+        }
+        Set<OsmPrimitive> dirty = new HashSet<>();
+        for (OsmPrimitive p : changedCopy) {
+            addWithReferrers(dirty, p);
+            if (p instanceof Way && p.isDeleted()) {
+                // the nodes of a deleted way may now be unconnected
+                dirty.addAll(((Way) p).getNodes());
+            }
+        }
+
+        List<TestError> obsolete = new ArrayList<>();
+        for (TestError error : errors) {
+            if (isObsolete(error, dirty)) {
+                obsolete.add(error);
+            }
+        }
+        for (TestError error : obsolete) {
+            for (OsmPrimitive p : error.getPrimitives()) {
+                if (isValid(p)) {
+                    dirty.add(p);
+                }
+            }
+        }
+
+        List<TestError> found = new ArrayList<>();
+        if (!tests.isEmpty()) {
+            for (Test test : tests) {
+                test.setPartialSelection(true);
+            }
+            for (TestError error : ValidationRunner.run(tests, getValidatedPrimitives(dirty), null)) {
+                for (OsmPrimitive p : error.getPrimitives()) {
+                    if (dirty.contains(p)) {
+                        found.add(error);
+                        break;
+                    }
+                }
+            }
+        }
+        if (Main.pref.getBoolean(ValidatorPreference.PREF_USE_IGNORE, true)) {
+            for (TestError error : found) {
+                for (String state : Arrays.asList(error.getIgnoreState(), error.getIgnoreGroup(), error.getIgnoreSubGroup())) {
+                    if (state != null && OsmValidator.hasIgnoredError(state)) {
+                        error.setIgnored(true);
+                    }
+                }
+            }
+        }
+        return new Pair<>(obsolete, found);
+    }
+
+    private boolean isValid(OsmPrimitive p) {
+        return p.getDataSet() == ds && !p.isDeleted();
+    }
+
+    private boolean isObsolete(TestError error, Set<OsmPrimitive> dirty) {
+        if (error.getPrimitives().isEmpty()) {
+            return true;
+        }
+        for (OsmPrimitive p : error.getPrimitives()) {
+            if (dirty.contains(p) || !isValid(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addWithReferrers(Set<OsmPrimitive> dirty, OsmPrimitive p) {
+        if (dirty.add(p) && p.getDataSet() == ds) {
+            for (OsmPrimitive referrer : p.getReferrers()) {
+                addWithReferrers(dirty, referrer);
+            }
+        }
+    }
+
+    private Collection<OsmPrimitive> getValidatedPrimitives(Set<OsmPrimitive> dirty) {
+        Set<OsmPrimitive> result = new LinkedHashSet<>();
+        double margin = Math.toDegrees(PROP_NEIGHBOUR_DISTANCE.get() / Ellipsoid.WGS84.a);
+        for (OsmPrimitive p : dirty) {
+            if (!isValid(p)) {
+                continue;
+            }
+            result.add(p);
+            if (p instanceof Node && ((Node) p).isLatLonKnown()) {
+                LatLon ll = ((Node) p).getCoor();
+                addNeighbours(result, ll, ll, margin);
+            } else if (p instanceof Way) {
+                List<Node> nodes = ((Way) p).getNodes();
+                for (int i = 1; i < nodes.size(); i++) {
+                    if (nodes.get(i - 1).isLatLonKnown() && nodes.get(i).isLatLonKnown()) {
+                        addNeighbours(result, nodes.get(i - 1).getCoor(), nodes.get(i).getCoor(), margin);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void addNeighbours(Set<OsmPrimitive> result, LatLon a, LatLon b, double margin) {
+        BBox bbox = new BBox(a, b);
+        double lonMargin = margin / Math.max(0.01, Math.cos(Math.toRadians(Math.max(Math.abs(a.lat()), Math.abs(b.lat())))));
+        bbox.add(bbox.getTopLeftLon() - lonMargin, bbox.getTopLeftLat() + margin);
+        bbox.add(bbox.getBottomRightLon() + lonMargin, bbox.getBottomRightLat() - margin);
+        result.addAll(ds.searchNodes(bbox));
+        result.addAll(ds.searchWays(bbox));
+    }
+}
@@ -213,6 +213,20 @@ public class Test extends AbstractVisitor {
         return p.isUsable() && (!(p instanceof Way) || (((Way) p).getNodesCount() > 1)); // test only Ways with at least 2 nodes
     }
 
+    /**
+     * Determines if this test checks each primitive independently of the others, so that the primitives to be tested
+     * can be split in several chunks visited concurrently by {@link ValidationRunner}.
+     * <p>
+     * Such a test may only add errors to {@link #errors} while visiting a primitive, and must not keep any other state
+     * that changes during the visit. Tests that compare primitives with each other (for instance crossing ways or
+     * duplicated nodes) are not partitionable, which is the default.
+     * @return {@code true} if the primitives can be visited concurrently by several threads
+     * @since 8567
+     */
+    public boolean isPartitionable() {
+        return false;
+    }
+
     @Override
     public void visit(Node n) {}
 
@@ -0,0 +1,250 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.tools.Pair;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Runs a set of validation tests on a collection of primitives, using several threads.
+ * <p>
+ * Each test is run in its own task, so that independent tests run concurrently. The primitives are furthermore
+ * split in chunks for the {@linkplain Test#isPartitionable() partitionable} tests, which check each primitive
+ * independently of the others. The errors are collected per task and per chunk, and merged so that the result
+ * is the same, in the same order, as running the tests one after the other.
+ * <p>
+ * The number of threads is given by the preference {@code validator.numberOfThreads}. With a single thread,
+ * the tests are run sequentially in the calling thread.
+ * @since 8567
+ */
+public final class ValidationRunner {
+
+    private static final Pair<Integer, ExecutorService> THREAD_POOL = Utils.newThreadPool("validator.numberOfThreads");
+
+    /** Minimal number of primitives in a chunk of a partitionable test */
+    private static final int MIN_CHUNK_SIZE = 500;
+
+    /** Serializes the runs, as the test instances are shared */
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private ValidationRunner() {
+        // Hide default constructor for utils classes
+    }
+
+    /**
+     * Runs the given tests on the given primitives.
+     * <p>
+     * The tests must already be configured (see {@link Test#setPartialSelection} and {@link Test#setBeforeUpload}).
+     * The ticks count of the progress monitor is set to the number of tests times the number of primitives,
+     * and a sub task monitor is created for each test. Runs are serialized, as the test instances are shared.
+     * @param tests the tests to run
+     * @param selection the primitives to validate
+     * @param monitor the progress monitor, can be {@code null}
+     * @return the errors found by all tests, in the order of the tests. Empty if the validation has been canceled
+     */
+    public static List<TestError> run(Collection<? extends Test> tests, Collection<OsmPrimitive> selection,
+            ProgressMonitor monitor) {
+        if (monitor == null) {
+            monitor = NullProgressMonitor.INSTANCE;
+        }
+        LOCK.lock();
+        try {
+            monitor.setTicksCount(tests.size() * selection.size());
+            if (THREAD_POOL.a <= 1 || tests.isEmpty()) {
+                return runSequentially(tests, selection, monitor);
+            } else {
+                return runConcurrently(tests, selection, monitor);
+            }
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static List<TestError> runConcurrently(Collection<? extends Test> tests, Collection<OsmPrimitive> selection,
+            ProgressMonitor monitor) {
+        List<OsmPrimitive> primitives = new ArrayList<>(selection);
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, primitives.size() / THREAD_POOL.a / 3);
+        AtomicInteger testCounter = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        List<PartitionedErrors> partitioned = new ArrayList<>();
+        for (Test test : tests) {
+            ProgressMonitor subMonitor = monitor.createSubTaskMonitor(primitives.size(), false);
+            if (test.isPartitionable() && primitives.size() > chunkSize) {
+                monitor.setCustomText(tr("Test {0}/{1}: Starting {2}", testCounter.incrementAndGet(), tests.size(), test.getName()));
+                PartitionedErrors errors = new PartitionedErrors(test, subMonitor, primitives.size());
+                for (int from = 0; from < primitives.size(); from += chunkSize) {
+                    int to = Math.min(from + chunkSize, primitives.size());
+                    tasks.add(new ChunkTask(errors, primitives.subList(from, to)));
+                }
+                partitioned.add(errors);
+            } else {
+                tasks.add(new TestTask(test, primitives, subMonitor, monitor, testCounter, tests.size()));
+            }
+        }
+        try {
+            for (Future<Void> future : THREAD_POOL.b.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            for (PartitionedErrors errors : partitioned) {
+                errors.finish();
+            }
+        }
+        List<TestError> result = new ArrayList<>(200);
+        if (!monitor.isCanceled()) {
+            for (Test test : tests) {
+                result.addAll(test.getErrors());
+            }
+        }
+        return result;
+    }
+
+    private static List<TestError> runSequentially(Collection<? extends Test> tests, Collection<OsmPrimitive> selection,
+            ProgressMonitor monitor) {
+        List<TestError> errors = new ArrayList<>(200);
+        int testCounter = 0;
+        for (Test test : tests) {
+            if (monitor.isCanceled())
+                return new ArrayList<>();
+            testCounter++;
+            monitor.setCustomText(tr("Test {0}/{1}: Starting {2}", testCounter, tests.size(), test.getName()));
+            test.startTest(monitor.createSubTaskMonitor(selection.size(), false));
+            test.visit(selection);
+            test.endTest();
+            errors.addAll(test.getErrors());
+        }
+        return errors;
+    }
+
+    /**
+     * Runs a whole test in a worker thread.
+     */
+    private static class TestTask implements Callable<Void> {
+        private final Test test;
+        private final Collection<OsmPrimitive> selection;
+        private final ProgressMonitor subMonitor;
+        private final ProgressMonitor monitor;
+        private final AtomicInteger testCounter;
+        private final int testCount;
+
+        TestTask(Test test, Collection<OsmPrimitive> selection, ProgressMonitor subMonitor, ProgressMonitor monitor,
+                AtomicInteger testCounter, int testCount) {
+            this.test = test;
+            this.selection = selection;
+            this.subMonitor = subMonitor;
+            this.monitor = monitor;
+            this.testCounter = testCounter;
+            this.testCount = testCount;
+        }
+
+        @Override
+        public Void call() {
+            monitor.setCustomText(tr("Test {0}/{1}: Starting {2}", testCounter.incrementAndGet(), testCount, test.getName()));
+            test.startTest(subMonitor);
+            if (!monitor.isCanceled()) {
+                test.visit(selection);
+            }
+            test.endTest();
+            return null;
+        }
+    }
+
+    /**
+     * Visits a chunk of the primitives for a partitionable test, in a worker thread.
+     */
+    private static class ChunkTask implements Callable<Void> {
+        private final PartitionedErrors errors;
+        private final List<OsmPrimitive> chunk;
+        private final List<TestError> target = new ArrayList<>();
+
+        ChunkTask(PartitionedErrors errors, List<OsmPrimitive> chunk) {
+            this.errors = errors;
+            this.chunk = chunk;
+            errors.chunks.add(target);
+        }
+
+        @Override
+        public Void call() {
+            Test test = errors.test;
+            if (test.isCanceled()) {
+                return null;
+            }
+            errors.current.set(target);
+            try {
+                for (OsmPrimitive p : chunk) {
+                    if (test.isPrimitiveUsable(p)) {
+                        p.accept(test);
+                    }
+                }
+            } finally {
+                errors.current.remove();
+            }
+            test.progressMonitor.worked(chunk.size());
+            return null;
+        }
+    }
+
+    /**
+     * The error list of a partitioned test while its chunks are visited: each worker thread adds to the list
+     * of the chunk it is visiting. The lists are merged in the order of the chunks by {@link #finish()}.
+     */
+    private static class PartitionedErrors extends AbstractList<TestError> {
+        private final Test test;
+        private final ThreadLocal<List<TestError>> current = new ThreadLocal<>();
+        private final List<List<TestError>> chunks = new ArrayList<>();
+
+        PartitionedErrors(Test test, ProgressMonitor subMonitor, int size) {
+            this.test = test;
+            test.startTest(subMonitor);
+            test.progressMonitor.setTicksCount(size);
+            test.errors = this;
+        }
+
+        /**
+         * Restores the error list of the test, fills it with the errors of all chunks and ends the test.
+         */
+        void finish() {
+            List<TestError> errors = new ArrayList<>(30);
+            for (List<TestError> chunk : chunks) {
+                errors.addAll(chunk);
+            }
+            test.errors = errors;
+            test.endTest();
+        }
+
+        @Override
+        public boolean add(TestError e) {
+            return current.get().add(e);
+        }
+
+        @Override
+        public TestError get(int index) {
+            return current.get().get(index);
+        }
+
+        @Override
+        public int size() {
+            return current.get().size();
+        }
+    }
+}
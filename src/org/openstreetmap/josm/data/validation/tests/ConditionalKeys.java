@@ -160,6 +160,11 @@ public class ConditionalKeys extends Test.TagTest {
         return errors;
     }
 
+    @Override
+    public boolean isPartitionable() {
+        return true;
+    }
+
     @Override
     public void check(OsmPrimitive p) {
         errors.addAll(validatePrimitive(p));
@@ -3,15 +3,13 @@ package org.openstreetmap.josm.data.validation.tests;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
-import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.coor.EastNorth;
@@ -19,11 +17,10 @@ import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.data.osm.WaySegment;
-import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.Test;
 import org.openstreetmap.josm.data.validation.TestError;
-import org.openstreetmap.josm.data.validation.util.ValUtil;
+import org.openstreetmap.josm.data.validation.util.SegmentIndex;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 
 /**
@@ -38,10 +35,10 @@ public abstract class CrossingWays extends Test {
     private static final String RAILWAY = "railway";
     private static final String WATERWAY = "waterway";
 
-    /** All way segments, grouped by cells */
-    private Map<Point2D, List<WaySegment>> cellSegments;
-    /** The already detected errors */
-    private Set<WaySegment> errorSegments;
+    /** All way segments, in the order they are visited */
+    private List<WaySegment> segments;
+    /** The east/north coordinates of the way segments: x1, y1, x2, y2 for each segment */
+    private double[] segmentCoords;
     /** The already detected ways in error */
     private Map<List<Way>, List<WaySegment>> seenWays;
 
@@ -187,16 +184,17 @@ public abstract class CrossingWays extends Test {
     @Override
     public void startTest(ProgressMonitor monitor) {
         super.startTest(monitor);
-        cellSegments = new HashMap<>(1000);
-        errorSegments = new HashSet<>();
+        segments = new ArrayList<>(1000);
+        segmentCoords = new double[4000];
         seenWays = new HashMap<>(50);
     }
 
     @Override
     public void endTest() {
+        findCrossings();
         super.endTest();
-        cellSegments = null;
-        errorSegments = null;
+        segments = null;
+        segmentCoords = null;
         seenWays = null;
     }
 
@@ -226,69 +224,111 @@ public abstract class CrossingWays extends Test {
 
     @Override
     public void visit(Way w) {
-
         int nodesSize = w.getNodesCount();
         for (int i = 0; i < nodesSize - 1; i++) {
-            final WaySegment es1 = new WaySegment(w, i);
-            final EastNorth en1 = es1.getFirstNode().getEastNorth();
-            final EastNorth en2 = es1.getSecondNode().getEastNorth();
+            final WaySegment es = new WaySegment(w, i);
+            final EastNorth en1 = es.getFirstNode().getEastNorth();
+            final EastNorth en2 = es.getSecondNode().getEastNorth();
             if (en1 == null || en2 == null) {
-                Main.warn("Crossing ways test skipped "+es1);
+                Main.warn("Crossing ways test skipped "+es);
                 continue;
             }
-            for (List<WaySegment> segments : getSegments(en1, en2)) {
-                for (WaySegment es2 : segments) {
-                    List<Way> prims;
-                    List<WaySegment> highlight;
-
-                    if (errorSegments.contains(es1) && errorSegments.contains(es2)
-                            || !es1.intersects(es2)
-                            || ignoreWaySegmentCombination(es1.way, es2.way)) {
-                        continue;
-                    }
-
-                    prims = Arrays.asList(es1.way, es2.way);
-                    if ((highlight = seenWays.get(prims)) == null) {
-                        highlight = new ArrayList<>();
-                        highlight.add(es1);
-                        highlight.add(es2);
-
-                        final String message = createMessage(es1.way, es2.way);
-                        errors.add(new TestError(this, Severity.WARNING,
-                                message,
-                                CROSSING_WAYS,
-                                prims,
-                                highlight));
-                        seenWays.put(prims, highlight);
-                    } else {
-                        highlight.add(es1);
-                        highlight.add(es2);
-                    }
+            int k = 4 * segments.size();
+            if (k + 4 > segmentCoords.length) {
+                segmentCoords = Arrays.copyOf(segmentCoords, 2 * segmentCoords.length);
+            }
+            segmentCoords[k] = en1.east();
+            segmentCoords[k + 1] = en1.north();
+            segmentCoords[k + 2] = en2.east();
+            segmentCoords[k + 3] = en2.north();
+            segments.add(es);
+        }
+    }
+
+    /**
+     * Finds the crossings between the visited way segments.
+     * <p>
+     * Each segment is compared with the segments visited before it and whose bounding box it crosses,
+     * found with a spatial index whose cost does not depend on the length of the segments.
+     */
+    private void findCrossings() {
+        int count = segments.size();
+        SegmentIndex index = new SegmentIndex(segmentCoords, count);
+        Candidates candidates = new Candidates();
+        for (int i = 0; i < count && !isCanceled(); i++) {
+            final WaySegment es1 = segments.get(i);
+            candidates.limit = i;
+            candidates.size = 0;
+            index.search(segmentCoords[4 * i], segmentCoords[4 * i + 1], segmentCoords[4 * i + 2], segmentCoords[4 * i + 3],
+                    0, candidates);
+            Arrays.sort(candidates.values, 0, candidates.size);
+            for (int c = 0; c < candidates.size; c++) {
+                final WaySegment es2 = segments.get(candidates.values[c]);
+                List<Way> prims;
+                List<WaySegment> highlight;
+
+                if (!es1.intersects(es2) || ignoreWaySegmentCombination(es1.way, es2.way)) {
+                    continue;
+                }
+
+                prims = Arrays.asList(es1.way, es2.way);
+                if ((highlight = seenWays.get(prims)) == null) {
+                    highlight = new ArrayList<>();
+                    highlight.add(es1);
+                    highlight.add(es2);
+
+                    final String message = createMessage(es1.way, es2.way);
+                    errors.add(new TestError(this, Severity.WARNING,
+                            message,
+                            CROSSING_WAYS,
+                            prims,
+                            highlight));
+                    seenWays.put(prims, highlight);
+                } else {
+                    highlight.add(es1);
+                    highlight.add(es2);
                 }
-                segments.add(es1);
             }
         }
     }
 
     /**
-     * Returns all the cells this segment crosses.  Each cell contains the list
-     * of segments already processed
+     * Returns the already visited segments whose bounding box this segment crosses.
      *
      * @param n1 The first EastNorth
      * @param n2 The second EastNorth
-     * @return A list with all the cells the segment crosses
+     * @return A list with a single list of segments, which is a copy: adding to it has no effect
+     * @deprecated the segments are no longer grouped by grid cells, they are compared at the end of the test
      */
+    @Deprecated
     public List<List<WaySegment>> getSegments(EastNorth n1, EastNorth n2) {
+        Candidates candidates = new Candidates();
+        candidates.limit = segments.size();
+        new SegmentIndex(segmentCoords, segments.size()).search(n1.east(), n1.north(), n2.east(), n2.north(), 0, candidates);
+        Arrays.sort(candidates.values, 0, candidates.size);
+        List<WaySegment> result = new ArrayList<>(candidates.size);
+        for (int c = 0; c < candidates.size; c++) {
+            result.add(segments.get(candidates.values[c]));
+        }
+        return Collections.singletonList(result);
+    }
+
+    /**
+     * Collects the segments found by a search of the index, visited before a given one.
+     */
+    private static final class Candidates implements SegmentIndex.Visitor {
+        private int[] values = new int[16];
+        private int size;
+        private int limit;
 
-        List<List<WaySegment>> cells = new ArrayList<>();
-        for (Point2D cell : ValUtil.getSegmentCells(n1, n2, OsmValidator.griddetail)) {
-            List<WaySegment> segments = cellSegments.get(cell);
-            if (segments == null) {
-                segments = new ArrayList<>();
-                cellSegments.put(cell, segments);
+        @Override
+        public void visit(int segment) {
+            if (segment < limit) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, 2 * size);
+                }
+                values[size++] = segment;
             }
-            cells.add(segments);
         }
-        return cells;
     }
 }
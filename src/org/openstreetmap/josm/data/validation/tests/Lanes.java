@@ -86,6 +86,11 @@ public class Lanes extends Test.TagTest {
         }
     }
 
+    @Override
+    public boolean isPartitionable() {
+        return true;
+    }
+
     @Override
     public void check(OsmPrimitive p) {
         checkNumberOfLanesByKey(p, "lanes", tr("Number of lane dependent values inconsistent"));
@@ -56,6 +56,11 @@ public class NameMismatch extends Test.TagTest {
                 String.format("Missing name:*=%s. Add tag with correct language key.", name), NAME_TRANSLATION_MISSING, p));
     }
 
+    @Override
+    public boolean isPartitionable() {
+        return true;
+    }
+
     /**
      * Check a primitive for a name mismatch.
      *
@@ -197,25 +197,28 @@ public class OpeningHourTest extends Test.TagTest {
             return Collections.emptyList();
         }
         final List<OpeningHoursTestError> errors = new ArrayList<>();
-        try {
-            final Object r = parse(value, mode);
-            String prettifiedValue = null;
+        // the script engine is shared by all instances, which may be run concurrently by the validator
+        synchronized (ENGINE) {
             try {
-                prettifiedValue = (String) ((Invocable) ENGINE).invokeMethod(r, "prettifyValue");
-            } catch (Exception e) {
-                Main.debug(e.getMessage());
+                final Object r = parse(value, mode);
+                String prettifiedValue = null;
+                try {
+                    prettifiedValue = (String) ((Invocable) ENGINE).invokeMethod(r, "prettifyValue");
+                } catch (Exception e) {
+                    Main.debug(e.getMessage());
+                }
+                for (final Object i : getList(((Invocable) ENGINE).invokeMethod(r, "getErrors"))) {
+                    errors.add(new OpeningHoursTestError(getErrorMessage(key, i), Severity.ERROR, prettifiedValue));
+                }
+                for (final Object i : getList(((Invocable) ENGINE).invokeMethod(r, "getWarnings"))) {
+                    errors.add(new OpeningHoursTestError(getErrorMessage(key, i), Severity.WARNING, prettifiedValue));
+                }
+                if (!ignoreOtherSeverity && errors.isEmpty() && prettifiedValue != null && !value.equals(prettifiedValue)) {
+                    errors.add(new OpeningHoursTestError(tr("opening_hours value can be prettified"), Severity.OTHER, prettifiedValue));
+                }
+            } catch (ScriptException | NoSuchMethodException ex) {
+                Main.error(ex);
             }
-            for (final Object i : getList(((Invocable) ENGINE).invokeMethod(r, "getErrors"))) {
-                errors.add(new OpeningHoursTestError(getErrorMessage(key, i), Severity.ERROR, prettifiedValue));
-            }
-            for (final Object i : getList(((Invocable) ENGINE).invokeMethod(r, "getWarnings"))) {
-                errors.add(new OpeningHoursTestError(getErrorMessage(key, i), Severity.WARNING, prettifiedValue));
-            }
-            if (!ignoreOtherSeverity && errors.isEmpty() && prettifiedValue != null && !value.equals(prettifiedValue)) {
-                errors.add(new OpeningHoursTestError(tr("opening_hours value can be prettified"), Severity.OTHER, prettifiedValue));
-            }
-        } catch (ScriptException | NoSuchMethodException ex) {
-            Main.error(ex);
         }
         return errors;
     }
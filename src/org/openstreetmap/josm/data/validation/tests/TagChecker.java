@@ -310,6 +310,11 @@ public class TagChecker extends TagTest {
         return false;
     }
 
+    @Override
+    public boolean isPartitionable() {
+        return true;
+    }
+
     /**
      * Checks the primitive tags
      * @param p The primitive to check
@@ -134,6 +134,11 @@ public abstract class UnconnectedWays extends Test {
     protected static final int UNCONNECTED_WAYS = 1301;
     protected static final String PREFIX = ValidatorPreference.PREFIX + "." + UnconnectedWays.class.getSimpleName();
 
+    /** Length of the pieces of a long segment searched for nearby nodes, as a multiple of the searched distance */
+    private static final double PIECE_LENGTH_FACTOR = 50;
+    /** Maximal number of pieces of a segment searched for nearby nodes */
+    private static final int MAX_PIECES = 64;
+
     private Set<MyWaySegment> ways;
     private QuadBuckets<Node> endnodes; // nodes at end of way
     private QuadBuckets<Node> endnodesHighway; // nodes at end of way
@@ -330,26 +335,29 @@ public abstract class UnconnectedWays extends Test {
             return line.ptSegDist(p) < dist;
         }
 
-        public List<LatLon> getBounds(double fudge) {
-            double x1 = n1.getCoor().lon();
-            double x2 = n2.getCoor().lon();
-            if (x1 > x2) {
-                double tmpx = x1;
-                x1 = x2;
-                x2 = tmpx;
-            }
-            double y1 = n1.getCoor().lat();
-            double y2 = n2.getCoor().lat();
-            if (y1 > y2) {
-                double tmpy = y1;
-                y1 = y2;
-                y2 = tmpy;
+        /**
+         * Returns the bounding boxes of the pieces of this segment, enlarged by {@code dist} east/north units.
+         * Long segments are split in pieces, so that the search of nearby nodes does not cover a large diagonal area.
+         * @param dist the distance, in east/north units
+         * @return the bounding boxes to search
+         */
+        public List<BBox> getBounds(double dist) {
+            int pieces = (int) Math.max(1, Math.min(MAX_PIECES, Math.ceil(len / Math.max(PIECE_LENGTH_FACTOR * dist, 1))));
+            List<BBox> ret = new ArrayList<>(pieces);
+            double dx = (line.getX2() - line.getX1()) / pieces;
+            double dy = (line.getY2() - line.getY1()) / pieces;
+            for (int i = 0; i < pieces; i++) {
+                double x1 = line.getX1() + i * dx;
+                double y1 = line.getY1() + i * dy;
+                double minX = Math.min(x1, x1 + dx) - dist;
+                double minY = Math.min(y1, y1 + dy) - dist;
+                double maxX = Math.max(x1, x1 + dx) + dist;
+                double maxY = Math.max(y1, y1 + dy) + dist;
+                BBox bbox = new BBox(toLatLon(minX, minY), toLatLon(maxX, maxY));
+                bbox.add(toLatLon(minX, maxY));
+                bbox.add(toLatLon(maxX, minY));
+                ret.add(bbox);
             }
-            LatLon topLeft  = new LatLon(y2+fudge, x1-fudge);
-            LatLon botRight = new LatLon(y1-fudge, x2+fudge);
-            List<LatLon> ret = new ArrayList<>(2);
-            ret.add(topLeft);
-            ret.add(botRight);
             return ret;
         }
 
@@ -387,9 +395,11 @@ public abstract class UnconnectedWays extends Test {
             // This needs to be a hash set because the searches
             // overlap a bit and can return duplicate nodes.
             nearbyNodeCache = null;
-            List<LatLon> bounds = this.getBounds(dist);
-            List<Node> found_nodes = endnodesHighway.search(new BBox(bounds.get(0), bounds.get(1)));
-            found_nodes.addAll(endnodes.search(new BBox(bounds.get(0), bounds.get(1))));
+            List<Node> found_nodes = new ArrayList<>();
+            for (BBox bbox : getBounds(dist)) {
+                found_nodes.addAll(endnodesHighway.search(bbox));
+                found_nodes.addAll(endnodes.search(bbox));
+            }
 
             for (Node n : found_nodes) {
                 if (!nearby(n, dist) || !n.getCoor().isIn(dsArea)) {
@@ -411,6 +421,10 @@ public abstract class UnconnectedWays extends Test {
         }
     }
 
+    private static LatLon toLatLon(double east, double north) {
+        return Main.getProjection().eastNorth2latlon(new EastNorth(east, north));
+    }
+
     List<MyWaySegment> getWaySegments(Way w) {
         List<MyWaySegment> ret = new ArrayList<>();
         if (!w.isUsable()
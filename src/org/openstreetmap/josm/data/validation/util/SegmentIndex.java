@@ -0,0 +1,172 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation.util;
+
+import java.util.Arrays;
+
+/**
+ * A static spatial index of line segments, packed in a R-tree with the Sort-Tile-Recursive algorithm.
+ * <p>
+ * The segments are given as an array of coordinates, and identified by their position in this array. Unlike a grid,
+ * the cost of a search does not depend on the length of the segments, and no object is allocated per segment:
+ * the index is made of a few arrays of primitive types.
+ * @since 8569
+ */
+public class SegmentIndex {
+
+    /**
+     * Visitor of the segments found by a search.
+     */
+    public interface Visitor {
+        /**
+         * Visits a segment found by a search.
+         * @param segment the index of the segment in the coordinates array given to the constructor
+         */
+        void visit(int segment);
+    }
+
+    /** Number of children of a tree node */
+    private static final int NODE_SIZE = 16;
+
+    /** The segment index of each entry of the lowest level */
+    private final int[] entries;
+    /** For each level, starting with the entries, the bounding boxes (minX, minY, maxX, maxY) of its nodes */
+    private final double[][] levels;
+
+    /**
+     * Builds the index of the given segments.
+     * @param coords the coordinates of the segments: x1, y1, x2, y2 for each segment
+     * @param count the number of segments
+     */
+    public SegmentIndex(double[] coords, int count) {
+        entries = new int[count];
+        long[] keys = new long[count];
+        // sort the segments by the x of their center, then each vertical slice by the y of their center
+        for (int i = 0; i < count; i++) {
+            keys[i] = sortKey(coords[4 * i] + coords[4 * i + 2], i);
+        }
+        Arrays.sort(keys);
+        int leaves = (count + NODE_SIZE - 1) / NODE_SIZE;
+        int sliceSize = (int) Math.ceil(Math.sqrt(leaves)) * NODE_SIZE;
+        for (int from = 0; from < count; from += sliceSize) {
+            int to = Math.min(from + sliceSize, count);
+            for (int k = from; k < to; k++) {
+                int i = (int) keys[k];
+                keys[k] = sortKey(coords[4 * i + 1] + coords[4 * i + 3], i);
+            }
+            Arrays.sort(keys, from, to);
+        }
+        double[] boxes = new double[4 * count];
+        for (int k = 0; k < count; k++) {
+            int i = (int) keys[k];
+            entries[k] = i;
+            boxes[4 * k] = Math.min(coords[4 * i], coords[4 * i + 2]);
+            boxes[4 * k + 1] = Math.min(coords[4 * i + 1], coords[4 * i + 3]);
+            boxes[4 * k + 2] = Math.max(coords[4 * i], coords[4 * i + 2]);
+            boxes[4 * k + 3] = Math.max(coords[4 * i + 1], coords[4 * i + 3]);
+        }
+        int depth = 1;
+        for (int n = count; n > NODE_SIZE; n = (n + NODE_SIZE - 1) / NODE_SIZE) {
+            depth++;
+        }
+        levels = new double[depth][];
+        levels[0] = boxes;
+        for (int l = 1; l < depth; l++) {
+            double[] children = levels[l - 1];
+            int childCount = children.length / 4;
+            double[] nodes = new double[4 * ((childCount + NODE_SIZE - 1) / NODE_SIZE)];
+            for (int k = 0; k < nodes.length / 4; k++) {
+                int first = k * NODE_SIZE;
+                int last = Math.min(first + NODE_SIZE, childCount);
+                nodes[4 * k] = Double.POSITIVE_INFINITY;
+                nodes[4 * k + 1] = Double.POSITIVE_INFINITY;
+                nodes[4 * k + 2] = Double.NEGATIVE_INFINITY;
+                nodes[4 * k + 3] = Double.NEGATIVE_INFINITY;
+                for (int c = first; c < last; c++) {
+                    nodes[4 * k] = Math.min(nodes[4 * k], children[4 * c]);
+                    nodes[4 * k + 1] = Math.min(nodes[4 * k + 1], children[4 * c + 1]);
+                    nodes[4 * k + 2] = Math.max(nodes[4 * k + 2], children[4 * c + 2]);
+                    nodes[4 * k + 3] = Math.max(nodes[4 * k + 3], children[4 * c + 3]);
+                }
+            }
+            levels[l] = nodes;
+        }
+    }
+
+    /**
+     * Returns a key sorting the given value approximately, with the given index in its lower bits.
+     */
+    private static long sortKey(double value, int index) {
+        int bits = Float.floatToIntBits((float) value);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return ((long) bits << 32) | index;
+    }
+
+    /**
+     * Replies the number of indexed segments.
+     * @return the number of indexed segments
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Visits the segments whose bounding box, enlarged by {@code margin}, is crossed by the given segment.
+     * This includes all the segments intersecting the given one, and all the segments at less than {@code margin}.
+     * @param x1 the x of the start of the segment
+     * @param y1 the y of the start of the segment
+     * @param x2 the x of the end of the segment
+     * @param y2 the y of the end of the segment
+     * @param margin the margin added around the bounding boxes of the indexed segments
+     * @param visitor the visitor of the segments found
+     */
+    public void search(double x1, double y1, double x2, double y2, double margin, Visitor visitor) {
+        if (entries.length == 0) {
+            return;
+        }
+        int top = levels.length - 1;
+        int[] stackLevel = new int[NODE_SIZE * levels.length];
+        int[] stackNode = new int[NODE_SIZE * levels.length];
+        int size = 0;
+        for (int k = levels[top].length / 4 - 1; k >= 0; k--) {
+            stackLevel[size] = top;
+            stackNode[size++] = k;
+        }
+        while (size > 0) {
+            int level = stackLevel[--size];
+            int k = stackNode[size];
+            double[] boxes = levels[level];
+            if (!crosses(x1, y1, x2, y2, boxes[4 * k] - margin, boxes[4 * k + 1] - margin,
+                    boxes[4 * k + 2] + margin, boxes[4 * k + 3] + margin)) {
+                continue;
+            }
+            if (level == 0) {
+                visitor.visit(entries[k]);
+            } else {
+                int first = k * NODE_SIZE;
+                int last = Math.min(first + NODE_SIZE, levels[level - 1].length / 4);
+                for (int c = last - 1; c >= first; c--) {
+                    stackLevel[size] = level - 1;
+                    stackNode[size++] = c;
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines if a segment crosses or touches a rectangle.
+     */
+    private static boolean crosses(double x1, double y1, double x2, double y2,
+            double minX, double minY, double maxX, double maxY) {
+        if (Math.max(x1, x2) < minX || Math.min(x1, x2) > maxX || Math.max(y1, y2) < minY || Math.min(y1, y2) > maxY) {
+            return false;
+        }
+        // the segment does not cross the rectangle if all the corners are strictly on the same side of its line
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double c1 = dx * (minY - y1) - dy * (minX - x1);
+        double c2 = dx * (minY - y1) - dy * (maxX - x1);
+        double c3 = dx * (maxY - y1) - dy * (minX - x1);
+        double c4 = dx * (maxY - y1) - dy * (maxX - x1);
+        return !(c1 > 0 && c2 > 0 && c3 > 0 && c4 > 0) && !(c1 < 0 && c2 < 0 && c3 < 0 && c4 < 0);
+    }
+}
@@ -693,6 +693,17 @@ public class NavigatableComponent extends JComponent implements Helpful {
                 getLatLon(p.x + snapDistance, p.y + snapDistance));
     }
 
+    /**
+     * Returns the bounding box of the four corners of the snap square around a point. Unlike {@link #getBBox},
+     * it contains the whole square when the projection does not keep it aligned with the lat/lon axes.
+     */
+    private BBox getEnclosingBBox(Point p, int snapDistance) {
+        BBox bbox = getBBox(p, snapDistance);
+        bbox.add(getLatLon(p.x - snapDistance, p.y + snapDistance));
+        bbox.add(getLatLon(p.x + snapDistance, p.y - snapDistance));
+        return bbox;
+    }
+
     /**
      * The *result* does not depend on the current map selection state,
      * neither does the result *order*.
@@ -920,49 +931,42 @@ public class NavigatableComponent extends JComponent implements Helpful {
             double snapDistanceSq = Main.pref.getInteger("mappaint.segment.snap-distance", 10);
             snapDistanceSq *= snapDistanceSq;
 
-            for (Way w : ds.searchWays(getBBox(p, Main.pref.getInteger("mappaint.segment.snap-distance", 10)))) {
-                if (!predicate.evaluate(w)) {
+            Way lastWay = null;
+            boolean accepted = false;
+            for (WaySegment ws : ds.searchWaySegments(getEnclosingBBox(p, Main.pref.getInteger("mappaint.segment.snap-distance", 10)))) {
+                // the segments are grouped by way
+                if (ws.way != lastWay) {
+                    lastWay = ws.way;
+                    accepted = predicate.evaluate(ws.way);
+                }
+                if (!accepted) {
                     continue;
                 }
-                Node lastN = null;
-                int i = -2;
-                for (Node n : w.getNodes()) {
-                    i++;
-                    if (n.isDeleted() || n.isIncomplete()) { //FIXME: This shouldn't happen, raise exception?
-                        continue;
-                    }
-                    if (lastN == null) {
-                        lastN = n;
-                        continue;
-                    }
 
-                    Point2D A = getPoint2D(lastN);
-                    Point2D B = getPoint2D(n);
-                    double c = A.distanceSq(B);
-                    double a = p.distanceSq(B);
-                    double b = p.distanceSq(A);
-
-                    /* perpendicular distance squared
-                     * loose some precision to account for possible deviations in the calculation above
-                     * e.g. if identical (A and B) come about reversed in another way, values may differ
-                     * -- zero out least significant 32 dual digits of mantissa..
-                     */
-                    double perDistSq = Double.longBitsToDouble(
-                            Double.doubleToLongBits(a - (a - b + c) * (a - b + c) / 4 / c)
-                            >> 32 << 32); // resolution in numbers with large exponent not needed here..
-
-                    if (perDistSq < snapDistanceSq && a < c + snapDistanceSq && b < c + snapDistanceSq) {
-                        List<WaySegment> wslist;
-                        if (nearestMap.containsKey(perDistSq)) {
-                            wslist = nearestMap.get(perDistSq);
-                        } else {
-                            wslist = new LinkedList<>();
-                            nearestMap.put(perDistSq, wslist);
-                        }
-                        wslist.add(new WaySegment(w, i));
+                Point2D A = getPoint2D(ws.getFirstNode());
+                Point2D B = getPoint2D(ws.getSecondNode());
+                double c = A.distanceSq(B);
+                double a = p.distanceSq(B);
+                double b = p.distanceSq(A);
+
+                /* perpendicular distance squared
+                 * loose some precision to account for possible deviations in the calculation above
+                 * e.g. if identical (A and B) come about reversed in another way, values may differ
+                 * -- zero out least significant 32 dual digits of mantissa..
+                 */
+                double perDistSq = Double.longBitsToDouble(
+                        Double.doubleToLongBits(a - (a - b + c) * (a - b + c) / 4 / c)
+                        >> 32 << 32); // resolution in numbers with large exponent not needed here..
+
+                if (perDistSq < snapDistanceSq && a < c + snapDistanceSq && b < c + snapDistanceSq) {
+                    List<WaySegment> wslist;
+                    if (nearestMap.containsKey(perDistSq)) {
+                        wslist = nearestMap.get(perDistSq);
+                    } else {
+                        wslist = new LinkedList<>();
+                        nearestMap.put(perDistSq, wslist);
                     }
-
-                    lastN = n;
+                    wslist.add(ws);
                 }
             }
         }
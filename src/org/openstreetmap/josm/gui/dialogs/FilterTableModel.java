@@ -27,7 +27,6 @@ import org.openstreetmap.josm.data.osm.Filter;
 import org.openstreetmap.josm.data.osm.Filter.FilterPreferenceEntry;
 import org.openstreetmap.josm.data.osm.FilterMatcher;
 import org.openstreetmap.josm.data.osm.FilterWorker;
-import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 
 /**
@@ -85,6 +84,13 @@ public class FilterTableModel extends AbstractTableModel {
                 final Collection<OsmPrimitive> all = ds.allNonDeletedCompletePrimitives();
 
                 changed = FilterWorker.executeFilters(all, filterMatcher);
+                // the filter flags of the deleted primitives are cleared, so that they are not counted when
+                // they are updated by executeFilters(Collection)
+                for (OsmPrimitive osm : ds.allPrimitives()) {
+                    if (osm.isDeleted() || osm.isIncomplete()) {
+                        changed |= osm.unsetDisabledState();
+                    }
+                }
 
                 disabledCount = 0;
                 disabledAndHiddenCount = 0;
@@ -105,6 +111,10 @@ public class FilterTableModel extends AbstractTableModel {
                 ds.endUpdate();
             }
 
+            if (changed && Main.main.getEditLayer() != null) {
+                // the disabled state of the primitives changed without dataset events
+                Main.main.getEditLayer().invalidateRendering();
+            }
             if (!deselect.isEmpty()) {
                 ds.clearSelection(deselect);
             }
@@ -116,6 +126,11 @@ public class FilterTableModel extends AbstractTableModel {
         }
     }
 
+    /**
+     * Applies the filters to the given changed primitives, and to the primitives whose filter state depends on them.
+     * The number of disabled and hidden primitives is updated from the change of state of these primitives only.
+     * @param primitives the changed primitives
+     */
     public void executeFilters(Collection<? extends OsmPrimitive> primitives) {
         DataSet ds = Main.main.getCurrentDataSet();
         if (ds == null)
@@ -126,35 +141,24 @@ public class FilterTableModel extends AbstractTableModel {
 
         ds.beginUpdate();
         try {
-            for (int i = 0; i < 2; i++) {
-                for (OsmPrimitive primitive: primitives) {
-
-                    if (i == 0 && primitive instanceof Node) {
-                        continue;
-                    }
-
-                    if (i == 1 && !(primitive instanceof Node)) {
-                        continue;
-                    }
-
-                    if (primitive.isDisabled()) {
-                        disabledCount--;
-                    }
-                    if (primitive.isDisabledAndHidden()) {
-                        disabledAndHiddenCount--;
-                    }
-                    changed = changed | FilterWorker.executeFilters(primitive, filterMatcher);
-                    if (primitive.isDisabled()) {
-                        disabledCount++;
-                    }
-                    if (primitive.isDisabledAndHidden()) {
-                        disabledAndHiddenCount++;
-                    }
-
-                    if (primitive.isSelected() && primitive.isDisabled()) {
-                        deselect.add(primitive);
-                    }
-
+            Collection<OsmPrimitive> affected = FilterWorker.getAffectedPrimitives(primitives, filterMatcher);
+            // only the counted primitives have filter flags, see executeFilters()
+            for (OsmPrimitive primitive : affected) {
+                count(primitive, -1);
+            }
+            List<OsmPrimitive> counted = new ArrayList<>(affected.size());
+            for (OsmPrimitive primitive : affected) {
+                if (isCounted(primitive, ds)) {
+                    counted.add(primitive);
+                } else {
+                    changed |= primitive.unsetDisabledState();
+                }
+            }
+            changed |= FilterWorker.executeFilters(counted, filterMatcher);
+            for (OsmPrimitive primitive : counted) {
+                count(primitive, 1);
+                if (primitive.isSelected() && primitive.isDisabled()) {
+                    deselect.add(primitive);
                 }
             }
         } finally {
@@ -162,13 +166,31 @@ public class FilterTableModel extends AbstractTableModel {
         }
 
         if (changed) {
-            Main.map.mapView.repaint();
-            Main.map.filterDialog.updateDialogHeader();
+            if (Main.main.getEditLayer() != null) {
+                // the disabled state of the primitives related to the changed ones changed without dataset events
+                Main.main.getEditLayer().invalidateRendering();
+            }
+            if (Main.isDisplayingMapView()) {
+                Main.map.mapView.repaint();
+                Main.map.filterDialog.updateDialogHeader();
+            }
             ds.clearSelection(deselect);
         }
 
     }
 
+    private static boolean isCounted(OsmPrimitive primitive, DataSet ds) {
+        return primitive.getDataSet() == ds && !primitive.isDeleted() && !primitive.isIncomplete();
+    }
+
+    private void count(OsmPrimitive primitive, int increment) {
+        if (primitive.isDisabledAndHidden()) {
+            disabledAndHiddenCount += increment;
+        } else if (primitive.isDisabled()) {
+            disabledCount += increment;
+        }
+    }
+
     public void clearFilterFlags() {
         DataSet ds = Main.main.getCurrentDataSet();
         if (ds != null) {
@@ -15,6 +15,8 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.AbstractAction;
 import javax.swing.JComponent;
@@ -36,7 +38,12 @@ import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.WaySegment;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager.FireMode;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
+import org.openstreetmap.josm.data.validation.IncrementalValidator;
 import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.TestError;
 import org.openstreetmap.josm.data.validation.ValidatorVisitor;
@@ -50,10 +57,12 @@ import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.preferences.validator.ValidatorPreference;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.gui.widgets.PopupMenuLauncher;
 import org.openstreetmap.josm.io.OsmTransferException;
 import org.openstreetmap.josm.tools.ImageProvider;
 import org.openstreetmap.josm.tools.InputMapUtils;
+import org.openstreetmap.josm.tools.Pair;
 import org.openstreetmap.josm.tools.Shortcut;
 import org.xml.sax.SAXException;
 
@@ -64,7 +73,8 @@ import org.xml.sax.SAXException;
  *
  * @author frsantos
  */
-public class ValidatorDialog extends ToggleDialog implements SelectionChangedListener, LayerChangeListener {
+public class ValidatorDialog extends ToggleDialog implements SelectionChangedListener, LayerChangeListener,
+        DataSetListenerAdapter.Listener {
 
     /** The display tree */
     public ValidatorTreePanel tree;
@@ -84,6 +94,13 @@ public class ValidatorDialog extends ToggleDialog implements SelectionChangedLis
 
     private transient OsmDataLayer linkedLayer;
 
+    private final transient DataSetListenerAdapter dataChangedAdapter = new DataSetListenerAdapter(this);
+
+    /** Collects the changes of the linked layer, when validating while editing */
+    private transient IncrementalValidator incrementalValidator;
+    /** Set when the collected changes are going to be validated by the worker thread */
+    private final AtomicBoolean incrementalValidationScheduled = new AtomicBoolean();
+
     /**
      * Constructor
      */
@@ -161,10 +178,13 @@ public class ValidatorDialog extends ToggleDialog implements SelectionChangedLis
         if (activeLayer != null) {
             activeLayerChange(null, activeLayer);
         }
+        DatasetEventManager.getInstance().addDatasetListener(dataChangedAdapter, FireMode.IN_EDT_CONSOLIDATED);
     }
 
     @Override
     public void hideNotify() {
+        DatasetEventManager.getInstance().removeDatasetListener(dataChangedAdapter);
+        incrementalValidator = null;
         MapView.removeLayerChangeListener(this);
         DataSet.removeSelectionListener(this);
     }
@@ -396,6 +416,53 @@ public class ValidatorDialog extends ToggleDialog implements SelectionChangedLis
         // Do nothing
     }
 
+    /**
+     * Validates again the primitives affected by the changes of the linked layer, if enabled in preferences.
+     */
+    @Override
+    public void processDatasetEvent(AbstractDatasetChangedEvent event) {
+        if (!ValidatorPreference.PREF_INCREMENTAL.get() || linkedLayer == null || event.getDataset() != linkedLayer.data)
+            return;
+        if (incrementalValidator == null || incrementalValidator.getDataSet() != linkedLayer.data) {
+            incrementalValidator = new IncrementalValidator(linkedLayer.data);
+        }
+        incrementalValidator.addEvent(event);
+        if (incrementalValidator.isEmpty() || !incrementalValidationScheduled.compareAndSet(false, true))
+            return;
+        // in the worker thread, after a full validation if one is running
+        final IncrementalValidator validator = incrementalValidator;
+        Main.worker.submit(new Runnable() {
+            @Override
+            public void run() {
+                incrementalValidationScheduled.set(false);
+                validateIncrementally(validator);
+            }
+        });
+    }
+
+    private void validateIncrementally(final IncrementalValidator validator) {
+        if (validator.isEmpty())
+            return;
+        OsmValidator.initializeTests();
+        // the errors published by the previous validations
+        List<TestError> errors = GuiHelper.runInEDTAndWaitAndReturn(new Callable<List<TestError>>() {
+            @Override
+            public List<TestError> call() {
+                return new ArrayList<>(tree.getErrors());
+            }
+        });
+        final Pair<List<TestError>, List<TestError>> result = validator.validate(OsmValidator.getEnabledTests(false), errors);
+        GuiHelper.runInEDT(new Runnable() {
+            @Override
+            public void run() {
+                if (linkedLayer == null || linkedLayer.data != validator.getDataSet())
+                    return;
+                OsmValidator.initializeErrorLayer();
+                tree.updateErrors(validator.getDataSet(), result.a, result.b);
+            }
+        });
+    }
+
     @Override
     public void layerRemoved(Layer oldLayer) {
         if (oldLayer == linkedLayer) {
@@ -6,11 +6,13 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -332,6 +334,41 @@ public class ValidatorTreePanel extends JTree implements Destroyable {
         }
     }
 
+    /**
+     * Removes obsolete errors from the current error list and adds new ones, keeping the other errors.
+     * @param ds The data set of the errors, whose changes the errors listen to. Can be {@code null}
+     * @param obsolete The errors to remove
+     * @param newerrors The validation errors to add
+     * @since 8568
+     */
+    public void updateErrors(DataSet ds, Collection<TestError> obsolete, Collection<TestError> newerrors) {
+        if (errors == null || (obsolete.isEmpty() && newerrors.isEmpty()))
+            return;
+        if (!obsolete.isEmpty()) {
+            Set<TestError> toRemove = new HashSet<>(obsolete);
+            for (Iterator<TestError> it = errors.iterator(); it.hasNext();) {
+                TestError error = it.next();
+                if (toRemove.contains(error)) {
+                    it.remove();
+                    if (ds != null) {
+                        ds.removeDataSetListener(error);
+                    }
+                }
+            }
+        }
+        for (TestError error : newerrors) {
+            if (!error.isIgnored()) {
+                errors.add(error);
+                if (ds != null) {
+                    ds.addDataSetListener(error);
+                }
+            }
+        }
+        if (isVisible()) {
+            buildTree();
+        }
+    }
+
     /**
      * Returns the errors of the tree
      * @return the errors of the tree
@@ -1,20 +1,45 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.gui.layer;
 
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.awt.event.ActionEvent;
+import java.awt.geom.Area;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.AbstractAction;
+import javax.swing.Action;
+import javax.swing.JOptionPane;
 
 import org.apache.commons.jcs.access.CacheAccess;
 import org.apache.commons.jcs.access.behavior.ICacheAccess;
 import org.openstreetmap.gui.jmapviewer.interfaces.TileLoader;
 import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.ProjectionBounds;
 import org.openstreetmap.josm.data.cache.BufferedImageCacheEntry;
 import org.openstreetmap.josm.data.cache.JCSCacheManager;
+import org.openstreetmap.josm.data.gpx.GpxTrack;
 import org.openstreetmap.josm.data.imagery.CachedTileLoaderFactory;
 import org.openstreetmap.josm.data.imagery.ImageryInfo;
 import org.openstreetmap.josm.data.imagery.TileLoaderFactory;
+import org.openstreetmap.josm.data.imagery.TilePrefetcher;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.gui.PleaseWaitRunnable;
+import org.openstreetmap.josm.gui.progress.ProgressTaskId;
+import org.openstreetmap.josm.gui.progress.ProgressTaskIds;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
  *
@@ -31,16 +56,35 @@ public abstract class AbstractCachedTileSourceLayer extends AbstractTileSourceLa
 
     private static volatile TileLoaderFactory loaderFactoryOverride = null;
 
+    /** Executor of the tile prefetch, one area at a time */
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newSingleThreadExecutor(
+            Utils.getNamedThreadFactory("imagery-prefetch"));
+
     /**
      * how many object on disk should be stored for TMS region in MB. 500 MB is default value
      */
     public static final IntegerProperty MAX_DISK_CACHE_SIZE = new IntegerProperty(PREFERENCE_PREFIX + "max_disk_size", 512);
 
     /**
-     * use fairly small memory cache, as cached objects are quite big, as they contain BufferedImages
+     * use fairly small memory cache, as cached objects are quite big, as they contain BufferedImages.
+     * Only used when {@link #MAX_MEMORY_CACHE_SIZE} is 0.
      */
     public static final IntegerProperty MEMORY_CACHE_SIZE = new IntegerProperty(PREFERENCE_PREFIX + "cache.max_objects_ram", 200);
 
+    /**
+     * maximum size in MB of the tiles (compressed data and decoded images) kept in memory for each cache region,
+     * at most 1/8 of the Java heap. 0 limits the memory cache by number of tiles with {@link #MEMORY_CACHE_SIZE}.
+     * @since 8572
+     */
+    public static final IntegerProperty MAX_MEMORY_CACHE_SIZE = new IntegerProperty(PREFERENCE_PREFIX + "max_memory_size", 128);
+
+    /**
+     * Use memory-mapped segment files instead of the JCS indexed disk cache, unless set for a given cache region
+     * with {@code imagery.cache.<cache name>.mapped_disk_cache}
+     * @since 8570
+     */
+    public static final BooleanProperty MAPPED_DISK_CACHE = new BooleanProperty(PREFERENCE_PREFIX + "mapped_disk_cache", false);
+
     private ICacheAccess<String, BufferedImageCacheEntry> cache;
     private TileLoaderFactory loaderFactory;
 
@@ -90,7 +134,9 @@ public abstract class AbstractCachedTileSourceLayer extends AbstractTileSourceLa
             cache = JCSCacheManager.getCache(getCacheName(),
                     getMemoryCacheSize(),
                     getDiskCacheSize(),
-                    CachedTileLoaderFactory.PROP_TILECACHE_DIR.get());
+                    CachedTileLoaderFactory.PROP_TILECACHE_DIR.get(),
+                    useMappedDiskCache(),
+                    getMaxMemoryCacheSize());
             return cache;
         } catch (IOException e) {
             Main.warn(e);
@@ -127,7 +173,9 @@ public abstract class AbstractCachedTileSourceLayer extends AbstractTileSourceLa
                 return JCSCacheManager.getCache(name,
                         MEMORY_CACHE_SIZE.get(),
                         MAX_DISK_CACHE_SIZE.get() * 1024, // MAX_DISK_CACHE_SIZE is in MB
-                        CachedTileLoaderFactory.PROP_TILECACHE_DIR.get());
+                        CachedTileLoaderFactory.PROP_TILECACHE_DIR.get(),
+                        useMappedDiskCache(name),
+                        getDefaultMaxMemoryCacheSize());
             } catch (IOException e) {
                 Main.warn(e);
                 return null;
@@ -140,9 +188,208 @@ public abstract class AbstractCachedTileSourceLayer extends AbstractTileSourceLa
         return MEMORY_CACHE_SIZE.get();
     }
 
+    /**
+     * Returns the maximum size of the tiles kept in memory.
+     * @return the maximum size in kB, or 0 to limit the memory cache by {@link #getMemoryCacheSize() number of tiles}
+     * @since 8572
+     */
+    protected int getMaxMemoryCacheSize() {
+        return getDefaultMaxMemoryCacheSize();
+    }
+
+    private static int getDefaultMaxMemoryCacheSize() {
+        return (int) Math.min(MAX_MEMORY_CACHE_SIZE.get() * 1024L, Runtime.getRuntime().maxMemory() / 1024 / 8);
+    }
+
     protected int getDiskCacheSize() {
         return MAX_DISK_CACHE_SIZE.get() * 1024;
     }
 
+    /**
+     * Determines if the disk cache of this layer uses memory-mapped segment files instead of the JCS indexed disk cache.
+     * @return {@code true} to use a {@link org.openstreetmap.josm.data.cache.MappedDiskCache}
+     * @since 8570
+     */
+    protected boolean useMappedDiskCache() {
+        return useMappedDiskCache(getCacheName());
+    }
+
+    private static boolean useMappedDiskCache(String name) {
+        return Main.pref.getBoolean(PREFERENCE_PREFIX + name + ".mapped_disk_cache", MAPPED_DISK_CACHE.get());
+    }
+
     protected abstract String getCacheName();
+
+    /**
+     * Creates a task downloading to the cache the tiles of an area, so that they can be displayed offline.
+     * @param area the area, in latitude and longitude degrees, for example the area of the downloaded data
+     * @param minZoom the first zoom level to download
+     * @param maxZoom the last zoom level to download
+     * @return the task downloading the tiles
+     * @since 8575
+     */
+    public TilePrefetcher createTilePrefetcher(Area area, int minZoom, int maxZoom) {
+        return new TilePrefetcher(tileSource, getTileLoaderFactory(), getHeaders(tileSource), area,
+                Math.max(minZoom, getMinZoomLvl()), Math.min(maxZoom, getMaxZoomLvl()));
+    }
+
+    @Override
+    public Action[] getMenuEntries() {
+        List<Action> ret = new ArrayList<>(Arrays.asList(super.getMenuEntries()));
+        // before the info action
+        ret.add(ret.size() - 1, new PrefetchDataAreaAction());
+        ret.add(ret.size() - 1, new PrefetchGpxTracksAction());
+        ret.add(ret.size() - 1, new PrefetchSelectionAction());
+        return ret.toArray(new Action[ret.size()]);
+    }
+
+    /**
+     * Downloads the tiles of an area to the cache, after a confirmation.
+     * The area is computed, and the tiles are counted and downloaded, in {@link #PREFETCH_EXECUTOR},
+     * so that the prefetch does not hold {@link Main#worker} for the time of the download.
+     */
+    private abstract class PrefetchAction extends AbstractAction {
+        PrefetchAction(String name, boolean enabled) {
+            super(name);
+            setEnabled(enabled);
+        }
+
+        /**
+         * Returns the area to download. Called in the prefetch thread.
+         * @return the area to download, in latitude and longitude degrees, or null
+         */
+        protected abstract Area getArea();
+
+        /**
+         * Returns the message shown when there is no area to download.
+         * @return the message shown when there is no area to download
+         */
+        protected abstract String getNoAreaMessage();
+
+        @Override
+        public void actionPerformed(ActionEvent ae) {
+            final int minZoom = currentZoomLevel;
+            final int maxZoom = Math.min(currentZoomLevel + 2, getMaxZoomLvl());
+            // computing the area and counting its tiles take a while for large areas
+            PREFETCH_EXECUTOR.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Area area = getArea();
+                    if (area == null || area.isEmpty()) {
+                        GuiHelper.runInEDT(new Runnable() {
+                            @Override
+                            public void run() {
+                                JOptionPane.showMessageDialog(Main.parent, getNoAreaMessage(),
+                                        tr("Download tiles"), JOptionPane.INFORMATION_MESSAGE);
+                            }
+                        });
+                        return;
+                    }
+                    final TilePrefetcher prefetcher = createTilePrefetcher(area, minZoom, maxZoom);
+                    final int count = prefetcher.getTileCount();
+                    GuiHelper.runInEDT(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (JOptionPane.showConfirmDialog(Main.parent,
+                                    tr("Download {0} tiles of zoom levels {1} to {2} into the cache?", count, minZoom, maxZoom),
+                                    tr("Download tiles"), JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
+                                download(prefetcher);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+
+        private void download(final TilePrefetcher prefetcher) {
+            PREFETCH_EXECUTOR.submit(new PleaseWaitRunnable(tr("Downloading tiles")) {
+                @Override
+                protected void realRun() {
+                    prefetcher.run(progressMonitor);
+                }
+
+                @Override
+                protected void finish() {
+                    // nothing to do
+                }
+
+                @Override
+                protected void cancel() {
+                    prefetcher.cancel();
+                }
+
+                @Override
+                public ProgressTaskId canRunInBackground() {
+                    return ProgressTaskIds.PRECACHE_WMS;
+                }
+            });
+        }
+    }
+
+    private class PrefetchDataAreaAction extends PrefetchAction {
+        PrefetchDataAreaAction() {
+            super(tr("Download Tiles of the Data Area"), Main.main != null && Main.main.hasEditLayer());
+        }
+
+        @Override
+        protected Area getArea() {
+            OsmDataLayer layer = Main.main.getEditLayer();
+            return layer != null ? layer.data.getDataSourceArea() : null;
+        }
+
+        @Override
+        protected String getNoAreaMessage() {
+            return tr("The data layer has no downloaded area.");
+        }
+    }
+
+    private class PrefetchGpxTracksAction extends PrefetchAction {
+        PrefetchGpxTracksAction() {
+            super(tr("Download Tiles along the GPX Tracks"), Main.isDisplayingMapView()
+                    && !Main.map.mapView.getLayersOfType(GpxLayer.class).isEmpty());
+        }
+
+        @Override
+        protected Area getArea() {
+            if (!Main.isDisplayingMapView())
+                return null;
+            List<GpxTrack> tracks = new ArrayList<>();
+            for (GpxLayer layer : Main.map.mapView.getLayersOfType(GpxLayer.class)) {
+                tracks.addAll(layer.data.tracks);
+            }
+            return TilePrefetcher.getAreaAlongTracks(tracks, TilePrefetcher.BUFFER_DISTANCE.get());
+        }
+
+        @Override
+        protected String getNoAreaMessage() {
+            return tr("The GPX layers have no tracks.");
+        }
+    }
+
+    private class PrefetchSelectionAction extends PrefetchAction {
+        PrefetchSelectionAction() {
+            super(tr("Download Tiles of the Selection"), Main.main != null && Main.main.hasEditLayer()
+                    && !Main.main.getEditLayer().data.selectionEmpty());
+        }
+
+        @Override
+        protected Area getArea() {
+            OsmDataLayer layer = Main.main.getEditLayer();
+            if (layer == null)
+                return null;
+            BoundingXYVisitor v = new BoundingXYVisitor();
+            v.computeBoundingBox(layer.data.getSelected());
+            ProjectionBounds pb = v.getBounds();
+            if (pb == null)
+                return null;
+            Projection projection = Main.getProjection();
+            BBox bbox = new BBox(projection.eastNorth2latlon(pb.getMin()), projection.eastNorth2latlon(pb.getMax()));
+            return TilePrefetcher.getAreaAround(bbox, TilePrefetcher.BUFFER_DISTANCE.get());
+        }
+
+        @Override
+        protected String getNoAreaMessage() {
+            return tr("The selection has no coordinates.");
+        }
+    }
 }
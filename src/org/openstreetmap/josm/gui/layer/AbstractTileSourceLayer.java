@@ -16,6 +16,7 @@ import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
 import java.io.File;
 import java.io.IOException;
@@ -65,7 +66,11 @@ import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.imagery.ImageryInfo;
+import org.openstreetmap.josm.data.imagery.ProvisionalTileComposer;
 import org.openstreetmap.josm.data.imagery.TMSCachedTileLoader;
+import org.openstreetmap.josm.data.imagery.TMSCachedTileLoaderJob;
+import org.openstreetmap.josm.data.imagery.TileDisplayScaleProvider;
+import org.openstreetmap.josm.data.imagery.TileDownloadPrioritizer;
 import org.openstreetmap.josm.data.imagery.TileLoaderFactory;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.preferences.BooleanProperty;
@@ -92,7 +97,8 @@ import org.openstreetmap.josm.tools.GBC;
  * @since 3715
  * @since 8526 (copied from TMSLayer)
  */
-public abstract class AbstractTileSourceLayer extends ImageryLayer implements ImageObserver, TileLoaderListener, ZoomChangeListener {
+public abstract class AbstractTileSourceLayer extends ImageryLayer implements ImageObserver, TileLoaderListener, ZoomChangeListener,
+        TileDownloadPrioritizer, TileDisplayScaleProvider {
     private static final String PREFERENCE_PREFIX   = "imagery.generic";
 
     /** maximum zoom level supported */
@@ -120,6 +126,14 @@ public abstract class AbstractTileSourceLayer extends ImageryLayer implements Im
     public int currentZoomLevel;
     private boolean needRedraw;
 
+    /**
+     * Priority added for each zoom level between a tile and the current zoom level,
+     * so that the tiles at the current zoom level are downloaded first.
+     */
+    private static final double ZOOM_LEVEL_PRIORITY = 100;
+    /** Area of the map view used to prioritize tile downloads, updated on every change of the map view */
+    private volatile DownloadViewport downloadViewport;
+
     private AttributionSupport attribution = new AttributionSupport();
 
     // needed public access for session exporter
@@ -199,6 +213,9 @@ public abstract class AbstractTileSourceLayer extends ImageryLayer implements Im
             tile.setImage(sharpenImage(tile.getImage()));
         }
         tile.setLoaded(success);
+        if (success && tileLoader instanceof TMSCachedTileLoader) {
+            ((TMSCachedTileLoader) tileLoader).getProvisionalTileComposer().remove(tile);
+        }
         needRedraw = true;
         if (Main.map != null) {
             Main.map.repaint(100);
@@ -691,11 +708,69 @@ public abstract class AbstractTileSourceLayer extends ImageryLayer implements Im
             Main.debug("zoomChanged(): " + currentZoomLevel);
         }
         if (tileLoader instanceof TMSCachedTileLoader) {
-            ((TMSCachedTileLoader) tileLoader).cancelOutstandingTasks();
+            updateDownloadViewport();
+            ((TMSCachedTileLoader) tileLoader).reprioritizeOutstandingTasks();
         }
         needRedraw = true;
     }
 
+    private void updateDownloadViewport() {
+        MapView mv = Main.isDisplayingMapView() ? Main.map.mapView : null;
+        if (mv == null || tileSource == null || mv.getWidth() == 0 || mv.getHeight() == 0) {
+            downloadViewport = null;
+        } else {
+            downloadViewport = new DownloadViewport(mv.getEastNorth(0, 0), mv.getEastNorth(mv.getWidth(), mv.getHeight()),
+                    currentZoomLevel, Math.sqrt(getScaleFactor(currentZoomLevel)));
+        }
+    }
+
+    /**
+     * Tiles are downloaded by increasing distance from the center of the map view, starting with the current zoom level.
+     */
+    @Override
+    public double getDownloadPriority(Tile tile) {
+        DownloadViewport viewport = downloadViewport;
+        if (viewport == null) {
+            return 0;
+        }
+        TileSet ts = viewport.getTileSet(tile.getZoom());
+        if (ts == null) {
+            return Double.MAX_VALUE;
+        }
+        double dx = tile.getXtile() - (ts.x0 + ts.x1) / 2d;
+        double dy = tile.getYtile() - (ts.y0 + ts.y1) / 2d;
+        return Math.sqrt(dx * dx + dy * dy) + ZOOM_LEVEL_PRIORITY * Math.abs(tile.getZoom() - viewport.zoom);
+    }
+
+    /**
+     * Tiles are needed if they are at most one tile away from the map view, and at most one zoom level above the current one.
+     */
+    @Override
+    public boolean isTileNeeded(Tile tile) {
+        DownloadViewport viewport = downloadViewport;
+        if (viewport == null) {
+            return true;
+        }
+        if (tile.getZoom() > viewport.zoom + 1) {
+            return false;
+        }
+        TileSet ts = viewport.getTileSet(tile.getZoom());
+        return ts == null || (tile.getXtile() >= ts.x0 - 1 && tile.getXtile() <= ts.x1 + 1
+                && tile.getYtile() >= ts.y0 - 1 && tile.getYtile() <= ts.y1 + 1);
+    }
+
+    /**
+     * Tiles of other zoom levels than the current one are displayed scaled by a power of 2.
+     */
+    @Override
+    public double getDisplayScale(Tile tile) {
+        DownloadViewport viewport = downloadViewport;
+        if (viewport == null) {
+            return 1;
+        }
+        return viewport.scale * Math.pow(2, viewport.zoom - tile.getZoom());
+    }
+
     protected int getMaxZoomLvl() {
         if (info.getMaxZoom() != 0)
             return checkMaxZoomLvl(info.getMaxZoom(), tileSource);
@@ -818,7 +893,7 @@ public abstract class AbstractTileSourceLayer extends ImageryLayer implements Im
     private boolean loadTile(Tile tile, boolean force) {
         if (tile == null)
             return false;
-        if (!force && (tile.isLoaded() || tile.hasError()))
+        if (!force && ((tile.isLoaded() && !TMSCachedTileLoaderJob.needsMoreDetail(tile, getDisplayScale(tile))) || tile.hasError()))
             return false;
         if (tile.isLoading())
             return false;
@@ -991,6 +1066,32 @@ public abstract class AbstractTileSourceLayer extends ImageryLayer implements Im
         return missedTiles;
     }
 
+    // Draws the provisional images of the missed tiles, composed from the cached tiles of other zoom levels
+    // until the tiles are loaded, and asks for the composition of the other ones. Returns the tiles still missed.
+    private List<Tile> paintProvisionalTileImages(Graphics g, List<Tile> missedTiles, ProvisionalTileComposer composer) {
+        List<Tile> newlyMissedTiles = new LinkedList<>();
+        for (Tile tile : missedTiles) {
+            BufferedImage img = tile.hasError() ? null : composer.getImage(tile);
+            if (img == null) {
+                if (!tile.hasError()) {
+                    composer.compose(tile, new Runnable() {
+                        @Override
+                        public void run() {
+                            needRedraw = true;
+                            if (Main.map != null) {
+                                Main.map.repaint(100);
+                            }
+                        }
+                    });
+                }
+                newlyMissedTiles.add(tile);
+                continue;
+            }
+            drawImageInside(g, img, tileToRect(tile), null);
+        }
+        return newlyMissedTiles;
+    }
+
     private void myDrawString(Graphics g, String text, int x, int y) {
         Color oldColor = g.getColor();
         g.setColor(Color.black);
@@ -1225,6 +1326,28 @@ public abstract class AbstractTileSourceLayer extends ImageryLayer implements Im
         }
     }
 
+    /**
+     * Tile ranges of the map view at every zoom level of the layer
+     */
+    private final class DownloadViewport {
+        private final int zoom;
+        // number of screen pixels for one pixel of the tiles of the current zoom level
+        private final double scale;
+        private final TileSet[] tileSets = new TileSet[MAX_ZOOM + 1];
+
+        private DownloadViewport(EastNorth topLeft, EastNorth botRight, int zoom, double scale) {
+            this.zoom = zoom;
+            this.scale = scale;
+            for (int z = Math.max(getMinZoomLvl(), 1); z <= Math.min(getMaxZoomLvl(), MAX_ZOOM); z++) {
+                tileSets[z] = new TileSet(topLeft, botRight, z);
+            }
+        }
+
+        private TileSet getTileSet(int z) {
+            return z >= 0 && z < tileSets.length ? tileSets[z] : null;
+        }
+    }
+
     private static class TileSetInfo {
         public boolean hasVisibleTiles = false;
         public boolean hasOverzoomedTiles = false;
@@ -1369,6 +1492,9 @@ public abstract class AbstractTileSourceLayer extends ImageryLayer implements Im
         g.setColor(Color.DARK_GRAY);
 
         List<Tile> missedTiles = this.paintTileImages(g, ts, displayZoomLevel, null);
+        if (tileLoader instanceof TMSCachedTileLoader) {
+            missedTiles = paintProvisionalTileImages(g, missedTiles, ((TMSCachedTileLoader) tileLoader).getProvisionalTileComposer());
+        }
         int[] otherZooms = {-1, 1, -2, 2, -3, -4, -5};
         for (int zoomOffset : otherZooms) {
             if (!autoZoom) {
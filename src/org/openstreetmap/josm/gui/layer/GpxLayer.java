@@ -13,7 +13,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 
 import javax.swing.Action;
@@ -28,7 +27,10 @@ import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.SystemOfMeasurement;
 import org.openstreetmap.josm.data.gpx.GpxConstants;
 import org.openstreetmap.josm.data.gpx.GpxData;
+import org.openstreetmap.josm.data.gpx.GpxRoute;
 import org.openstreetmap.josm.data.gpx.GpxTrack;
+import org.openstreetmap.josm.data.gpx.GpxTrackSegment;
+import org.openstreetmap.josm.data.gpx.PackedGpxTrackSegment;
 import org.openstreetmap.josm.data.gpx.WayPoint;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.projection.Projection;
@@ -41,12 +43,14 @@ import org.openstreetmap.josm.gui.layer.gpx.CustomizeDrawingAction;
 import org.openstreetmap.josm.gui.layer.gpx.DownloadAlongTrackAction;
 import org.openstreetmap.josm.gui.layer.gpx.DownloadWmsAlongTrackAction;
 import org.openstreetmap.josm.gui.layer.gpx.GpxDrawHelper;
+import org.openstreetmap.josm.gui.layer.gpx.GpxLodPyramid;
 import org.openstreetmap.josm.gui.layer.gpx.ImportAudioAction;
 import org.openstreetmap.josm.gui.layer.gpx.ImportImagesAction;
 import org.openstreetmap.josm.gui.layer.gpx.MarkersFromNamedPointsAction;
 import org.openstreetmap.josm.gui.widgets.HtmlPanel;
 import org.openstreetmap.josm.io.GpxImporter;
 import org.openstreetmap.josm.tools.ImageProvider;
+import org.openstreetmap.josm.tools.Utils;
 import org.openstreetmap.josm.tools.date.DateUtils;
 
 public class GpxLayer extends Layer {
@@ -61,11 +65,16 @@ public class GpxLayer extends Layer {
 
     private final GpxDrawHelper drawHelper;
 
+    /** The simplified tracks, drawn when zoomed out, {@code null} if not computed yet or out of date */
+    private volatile GpxLodPyramid lodPyramid;
+    private volatile boolean lodPyramidComputing;
+
     public GpxLayer(GpxData d) {
         super(d.getString(GpxConstants.META_NAME));
         data = d;
         drawHelper = new GpxDrawHelper(data);
         ensureTrackVisibilityLength();
+        getLodPyramid();
     }
 
     public GpxLayer(GpxData d, String name) {
@@ -273,10 +282,19 @@ public class GpxLayer extends Layer {
         lastTracks.clear();
         lastTracks.addAll(data.tracks);
 
-        List<WayPoint> visibleSegments = listVisibleSegments(box);
+        drawHelper.readPreferences(getName());
+        GpxLodPyramid lod = getLodPyramid();
+        int level = -1;
+        if (lod != null) {
+            // size of a pixel at the center of the view, in degrees of latitude
+            int x = mv.getWidth() / 2;
+            int y = mv.getHeight() / 2;
+            level = GpxLodPyramid.getLevel(Math.abs(mv.getLatLon(x, y).lat() - mv.getLatLon(x, y + 100).lat()) / 100);
+        }
+        List<WayPoint> visibleSegments = level < 0 ? listVisibleSegments(box) : listVisibleSegments(box, lod, level);
         if (!visibleSegments.isEmpty()) {
-            drawHelper.readPreferences(getName());
-            drawHelper.drawAll(g, mv, visibleSegments);
+            // the simplified points are colored when listed
+            drawHelper.drawAll(g, mv, visibleSegments, level < 0);
             if (Main.map.mapView.getActiveLayer() == this) {
                 drawHelper.drawColorBar(g, mv);
             }
@@ -285,33 +303,135 @@ public class GpxLayer extends Layer {
 
     private List<WayPoint> listVisibleSegments(Bounds box) {
         WayPoint last = null;
-        LinkedList<WayPoint> visibleSegments = new LinkedList<>();
+        List<WayPoint> visibleSegments = new ArrayList<>();
 
         ensureTrackVisibilityLength();
         for (Collection<WayPoint> segment : data.getLinesIterable(trackVisibility)) {
+            if (segment instanceof PackedGpxTrackSegment.WayPointList) {
+                last = addVisiblePoints(((PackedGpxTrackSegment.WayPointList) segment).getSegment(), box, visibleSegments);
+                continue;
+            }
+            last = addVisiblePoints(segment, box, last, visibleSegments);
+        }
+        return visibleSegments;
+    }
+
+    /**
+     * Adds the points of a segment which are in the given bounds, or whose line from the previous point is.
+     * @return the last point of the segment
+     */
+    private static WayPoint addVisiblePoints(Collection<WayPoint> segment, Bounds box, WayPoint previous,
+            List<WayPoint> visibleSegments) {
+        WayPoint last = previous;
+        for (WayPoint pt : segment) {
+            Bounds b = new Bounds(pt.getCoor());
+            if (pt.drawLine && last != null) {
+                b.extend(last.getCoor());
+            }
+            if (b.intersects(box)) {
+                if (last != null && (visibleSegments.isEmpty()
+                        || visibleSegments.get(visibleSegments.size() - 1) != last)) {
+                    if (last.drawLine) {
+                        WayPoint l = new WayPoint(last);
+                        l.drawLine = false;
+                        visibleSegments.add(l);
+                    } else {
+                        visibleSegments.add(last);
+                    }
+                }
+                visibleSegments.add(pt);
+            }
+            last = pt;
+        }
+        return last;
+    }
 
-            for (WayPoint pt : segment) {
-                Bounds b = new Bounds(pt.getCoor());
-                if (pt.drawLine && last != null) {
-                    b.extend(last.getCoor());
+    /**
+     * Lists the visible points of the simplified tracks, at the given level, and the visible route points.
+     */
+    private List<WayPoint> listVisibleSegments(Bounds box, GpxLodPyramid lod, int level) {
+        List<WayPoint> visiblePoints = new ArrayList<>();
+        ensureTrackVisibilityLength();
+        int i = 0;
+        for (GpxTrack track : data.tracks) {
+            if (trackVisibility[i++]) {
+                for (GpxTrackSegment segment : track.getSegments()) {
+                    lod.addVisiblePoints(segment, level, box, drawHelper, visiblePoints);
                 }
-                if (b.intersects(box)) {
-                    if (last != null && (visibleSegments.isEmpty()
-                            || visibleSegments.getLast() != last)) {
-                        if (last.drawLine) {
-                            WayPoint l = new WayPoint(last);
-                            l.drawLine = false;
-                            visibleSegments.add(l);
-                        } else {
-                            visibleSegments.add(last);
+            }
+        }
+        WayPoint last = null;
+        for (GpxRoute route : data.routes) {
+            // the draw helper does not assign the colors of the drawn points in this mode
+            drawHelper.calculateColors(new ArrayList<>(route.routePoints), null);
+            last = addVisiblePoints(route.routePoints, box, last, visiblePoints);
+        }
+        return visiblePoints;
+    }
+
+    /**
+     * Returns the simplified tracks if they are up to date. Otherwise starts computing them
+     * in the background, if the tracks have enough points.
+     * @return the simplified tracks, or {@code null}
+     */
+    private GpxLodPyramid getLodPyramid() {
+        final int updateCount = sumUpdateCount();
+        GpxLodPyramid lod = lodPyramid;
+        if (lod != null && lod.isValid(data.tracks, updateCount))
+            return lod;
+        lodPyramid = null;
+        if (!lodPyramidComputing) {
+            int points = 0;
+            for (GpxTrack track : data.tracks) {
+                for (GpxTrackSegment segment : track.getSegments()) {
+                    points += segment.getWayPoints().size();
+                }
+            }
+            if (points >= GpxLodPyramid.PROP_MIN_POINTS.get()) {
+                lodPyramidComputing = true;
+                final List<GpxTrack> tracks = new ArrayList<>(data.tracks);
+                Thread t = Utils.getNamedThreadFactory("gpx-lod").newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            lodPyramid = new GpxLodPyramid(tracks, updateCount);
+                        } finally {
+                            lodPyramidComputing = false;
+                        }
+                        if (Main.isDisplayingMapView()) {
+                            Main.map.mapView.repaint();
                         }
                     }
-                    visibleSegments.add(pt);
-                }
-                last = pt;
+                });
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                t.start();
             }
         }
-        return visibleSegments;
+        return null;
+    }
+
+    /**
+     * Creates the points of a packed segment which are in the visible blocks, and assigns their colors.
+     * @return the last point of the segment if it was created, {@code null} otherwise
+     */
+    private WayPoint addVisiblePoints(PackedGpxTrackSegment segment, Bounds box, List<WayPoint> visibleSegments) {
+        WayPoint last = null;
+        int[] ranges = segment.getRanges(box);
+        for (int r = 0; r < ranges.length; r += 2) {
+            int from = ranges[r];
+            int to = ranges[r + 1];
+            List<WayPoint> points = new ArrayList<>(to - from + 1);
+            for (int i = from; i <= to; i++) {
+                points.add(segment.getWayPoint(i));
+            }
+            drawHelper.calculateColors(points, from > 0 ? segment.getWayPoint(from - 1) : null);
+            // the line to the first point is not visible, it is in the previous block
+            points.get(0).drawLine = false;
+            visibleSegments.addAll(points);
+            last = to == segment.size() - 1 ? points.get(points.size() - 1) : null;
+        }
+        return last;
     }
 
     @Override
@@ -346,7 +466,7 @@ public class GpxLayer extends Layer {
     @Override
     public void projectionChanged(Projection oldValue, Projection newValue) {
         if (newValue == null) return;
-        data.resetEastNorthCache();
+        data.reprojectEastNorthCache();
     }
 
     @Override
@@ -70,6 +70,7 @@ import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter.Listener;
 import org.openstreetmap.josm.data.osm.visitor.AbstractVisitor;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.osm.visitor.paint.MapRendererFactory;
+import org.openstreetmap.josm.data.osm.visitor.paint.RenderTileCache;
 import org.openstreetmap.josm.data.osm.visitor.paint.Rendering;
 import org.openstreetmap.josm.data.osm.visitor.paint.relations.MultipolygonCache;
 import org.openstreetmap.josm.data.projection.Projection;
@@ -110,6 +111,8 @@ public class OsmDataLayer extends AbstractModifiableLayer implements Listener, S
     private boolean requiresUploadToServer = false;
     private boolean isChanged = true;
     private int highlightUpdateCount;
+    /** Tile render cache, if enabled */
+    private RenderTileCache renderCache;
 
     /**
      * List of validation errors in this layer.
@@ -343,8 +346,19 @@ public class OsmDataLayer extends AbstractModifiableLayer implements Listener, S
             g.fill(a);
         }
 
-        Rendering painter = MapRendererFactory.getInstance().createActiveRenderer(g, mv, inactive);
-        painter.render(data, virtual, box);
+        if (RenderTileCache.PROP_ENABLED.get()) {
+            if (renderCache == null) {
+                renderCache = new RenderTileCache(data);
+            }
+            renderCache.paint(g, mv, inactive, virtual);
+        } else {
+            if (renderCache != null) {
+                renderCache.destroy();
+                renderCache = null;
+            }
+            Rendering painter = MapRendererFactory.getInstance().createActiveRenderer(g, mv, inactive);
+            painter.render(data, virtual, box);
+        }
         Main.map.conflictDialog.paintConflicts(g, mv);
     }
 
@@ -831,6 +845,22 @@ public class OsmDataLayer extends AbstractModifiableLayer implements Listener, S
     @Override
     public void destroy() {
         DataSet.removeSelectionListener(this);
+        if (renderCache != null) {
+            renderCache.destroy();
+            renderCache = null;
+        }
+    }
+
+    /**
+     * Invalidates the rendering of this layer, after a change of the primitives not reported by dataset events
+     * (e.g. a change of their disabled state by filters).
+     * @since 8565
+     */
+    public void invalidateRendering() {
+        isChanged = true;
+        if (renderCache != null) {
+            renderCache.invalidateAll();
+        }
     }
 
     @Override
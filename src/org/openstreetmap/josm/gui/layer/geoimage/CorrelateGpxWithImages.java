@@ -65,6 +65,7 @@ import org.openstreetmap.josm.data.gpx.GpxConstants;
 import org.openstreetmap.josm.data.gpx.GpxData;
 import org.openstreetmap.josm.data.gpx.GpxTrack;
 import org.openstreetmap.josm.data.gpx.GpxTrackSegment;
+import org.openstreetmap.josm.data.gpx.PackedGpxTrackSegment;
 import org.openstreetmap.josm.data.gpx.WayPoint;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.gui.ExtendedDialog;
@@ -1142,6 +1143,10 @@ public class CorrelateGpxWithImages extends AbstractAction {
 
         for (GpxTrack trk : selectedGpx.tracks) {
             for (GpxTrackSegment segment : trk.getSegments()) {
+                if (segment instanceof PackedGpxTrackSegment) {
+                    ret += matchPackedSegment(images, (PackedGpxTrackSegment) segment, offset);
+                    continue;
+                }
 
                 long prevWpTime = 0;
                 WayPoint prevWp = null;
@@ -1174,6 +1179,41 @@ public class CorrelateGpxWithImages extends AbstractAction {
         return ret;
     }
 
+    /**
+     * Matches the photos to a packed track segment, using the times of its points rather than
+     * parsing their time attribute, and creating only the points around the photos.
+     */
+    private int matchPackedSegment(List<ImageEntry> images, PackedGpxTrackSegment segment, long offset) {
+        int ret = 0;
+        long prevWpTime = 0;
+        int prev = -1;
+        WayPoint prevWp = null;
+        for (int cur = 0; cur < segment.size(); cur++) {
+            if (!segment.hasTime(cur)) {
+                prev = -1;
+                prevWp = null;
+                prevWpTime = 0;
+                continue;
+            }
+            long curWpTime = Math.round(segment.getTime(cur) * 1000) + offset;
+            // only the photos taken since the previous point, or shortly before a first point, can match
+            long since = prevWpTime > 0 ? Math.min(prevWpTime, curWpTime - Math.abs(curWpTime - prevWpTime)) : curWpTime - 5*1000;
+            int i = getLastIndexOfListBefore(images, curWpTime);
+            WayPoint curWp = null;
+            if (i >= 0 && images.get(i).getExifTime().getTime() >= since) {
+                if (prevWp == null && prev >= 0) {
+                    prevWp = segment.getWayPoint(prev);
+                }
+                curWp = segment.getWayPoint(cur);
+                ret += matchPoints(images, prevWp, prevWpTime, curWp, curWpTime, offset);
+            }
+            prev = cur;
+            prevWp = curWp;
+            prevWpTime = curWpTime;
+        }
+        return ret;
+    }
+
     private static Double getElevation(WayPoint wp) {
         String value = wp.getString(GpxConstants.PT_ELE);
         if (value != null) {
@@ -18,6 +18,7 @@ import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.gpx.GpxConstants;
 import org.openstreetmap.josm.data.gpx.GpxData;
+import org.openstreetmap.josm.data.gpx.PackedGpxTrackSegment;
 import org.openstreetmap.josm.data.gpx.WayPoint;
 import org.openstreetmap.josm.gui.MapView;
 import org.openstreetmap.josm.tools.ColorScale;
@@ -46,6 +47,8 @@ public class GpxDrawHelper {
     /** don't draw arrows nearer to each other than this **/
     private int delta;
     private double minTrackDurationForTimeColoring;
+    /** Duration of the tracks, in seconds, when colored by time */
+    private double trackDuration;
 
     private int hdopfactor;
 
@@ -53,6 +56,8 @@ public class GpxDrawHelper {
 
     //// Variables used only to check cache validity
     private boolean computeCacheInSync = false;
+    /** true if the color scales are computed, even if the colors of the points are not assigned */
+    private boolean computeCacheRangesInSync = false;
     private int computeCacheMaxLineLengthUsed;
     private Color computeCacheColorUsed;
     private boolean computeCacheColorDynamic;
@@ -190,11 +195,24 @@ public class GpxDrawHelper {
     }
 
     public void drawAll(Graphics2D g, MapView mv, List<WayPoint> visibleSegments) {
+        drawAll(g, mv, visibleSegments, true);
+    }
+
+    /**
+     * Draws the given points.
+     * @param g the graphics
+     * @param mv the map view
+     * @param visibleSegments the points to draw
+     * @param assignColors if the colors of all the points of the data must be assigned first,
+     * {@code false} if the given points were colored by {@link #calculateColors(List, WayPoint)}
+     * @since 8584
+     */
+    public void drawAll(Graphics2D g, MapView mv, List<WayPoint> visibleSegments, boolean assignColors) {
 
         checkCache();
 
         // STEP 2b - RE-COMPUTE CACHE DATA *********************
-        if (!computeCacheInSync) { // don't compute if the cache is good
+        if (assignColors && !computeCacheInSync) { // don't compute if the cache is good
             calculateColors();
         }
 
@@ -217,6 +235,33 @@ public class GpxDrawHelper {
     }
 
     public void calculateColors() {
+        if (!computeCacheRangesInSync) {
+            calculateRanges();
+        }
+        double now = System.currentTimeMillis()/1000.0;
+        WayPoint oldWp = null;
+
+        // Now the colors for all the points will be assigned
+        for (Collection<WayPoint> segment : data.getLinesIterable(null)) {
+            if (!forceLines) { // don't draw lines between segments, unless forced to
+                oldWp = null;
+            }
+            if (segment instanceof PackedGpxTrackSegment.WayPointList) {
+                // the points are created when painted, their colors are assigned then, see calculateColors(List, WayPoint)
+                int size = segment.size();
+                oldWp = forceLines && size > 0 ? ((PackedGpxTrackSegment.WayPointList) segment).get(size - 1) : null;
+                continue;
+            }
+            oldWp = calculateColors(segment, oldWp, now);
+        }
+
+        computeCacheInSync = true;
+    }
+
+    /**
+     * Computes the ranges of the color scales from all the points.
+     */
+    private void calculateRanges() {
         double minval = +1e10;
         double maxval = -1e10;
         WayPoint oldWp = null;
@@ -227,6 +272,31 @@ public class GpxDrawHelper {
                     if (!forceLines) {
                         oldWp = null;
                     }
+                    if (segment instanceof PackedGpxTrackSegment.WayPointList) {
+                        // compare the points without creating them
+                        PackedGpxTrackSegment packed = ((PackedGpxTrackSegment.WayPointList) segment).getSegment();
+                        LatLon oldCoor = oldWp == null ? null : oldWp.getCoor();
+                        double oldTime = oldWp == null ? 0 : oldWp.time;
+                        for (int i = 0; i < packed.size(); i++) {
+                            LatLon c = packed.getCoor(i);
+                            if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
+                                continue;
+                            }
+                            double time = packed.getTime(i);
+                            if (oldCoor != null && time > oldTime) {
+                                double vel = c.greatCircleDistance(oldCoor) / (time - oldTime);
+                                maxval = Math.max(maxval, vel);
+                                minval = Math.min(minval, vel);
+                            }
+                            oldCoor = c;
+                            oldTime = time;
+                        }
+                        oldWp = oldCoor == null ? null : new WayPoint(oldCoor);
+                        if (oldWp != null) {
+                            oldWp.time = oldTime;
+                        }
+                        continue;
+                    }
                     for (WayPoint trkPnt : segment) {
                         LatLon c = trkPnt.getCoor();
                         if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
@@ -252,6 +322,18 @@ public class GpxDrawHelper {
                 }
             } else if (colored == ColorMode.HDOP) {
                 for (Collection<WayPoint> segment : data.getLinesIterable(null)) {
+                    if (segment instanceof PackedGpxTrackSegment.WayPointList) {
+                        PackedGpxTrackSegment packed = ((PackedGpxTrackSegment.WayPointList) segment).getSegment();
+                        for (int i = 0; i < packed.size(); i++) {
+                            Object val = packed.get(i, GpxConstants.PT_HDOP);
+                            if (val != null) {
+                                double hdop = ((Float) val).doubleValue();
+                                maxval = Math.max(maxval, hdop);
+                                minval = Math.min(minval, hdop);
+                            }
+                        }
+                        continue;
+                    }
                     for (WayPoint trkPnt : segment) {
                         Object val = trkPnt.get(GpxConstants.PT_HDOP);
                         if (val != null) {
@@ -271,7 +353,6 @@ public class GpxDrawHelper {
                     hdopScale.setRange(minval, maxval);
                 }
             }
-            oldWp = null;
         } else { // color mode not dynamic
             velocityScale.setRange(0, colorTracksTune);
             hdopScale.setRange(0, 1.0/hdopfactor);
@@ -290,68 +371,82 @@ public class GpxDrawHelper {
         }
 
 
-        // Now the colors for all the points will be assigned
-        for (Collection<WayPoint> segment : data.getLinesIterable(null)) {
-            if (!forceLines) { // don't draw lines between segments, unless forced to
-                oldWp = null;
+        trackDuration = maxval - minval;
+        computeCacheRangesInSync = true;
+    }
+
+    /**
+     * Assigns the colors of points created only to be painted, like the points of packed track segments
+     * or of simplified tracks. The colors of the other points are not assigned.
+     * @param points consecutive points of a track
+     * @param previous the point before the first point, or {@code null}
+     * @since 8583
+     */
+    public void calculateColors(List<WayPoint> points, WayPoint previous) {
+        checkCache();
+        if (!computeCacheRangesInSync) {
+            calculateRanges();
+        }
+        calculateColors(points, previous, System.currentTimeMillis()/1000.0);
+    }
+
+    private WayPoint calculateColors(Collection<WayPoint> segment, WayPoint previous, double now) {
+        WayPoint oldWp = previous;
+        for (WayPoint trkPnt : segment) {
+            LatLon c = trkPnt.getCoor();
+            trkPnt.customColoring = neutralColor;
+            if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
+                continue;
             }
-            for (WayPoint trkPnt : segment) {
-                LatLon c = trkPnt.getCoor();
-                trkPnt.customColoring = neutralColor;
-                if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
-                    continue;
-                }
-                 // now we are sure some color will be assigned
-                Color color = null;
+             // now we are sure some color will be assigned
+            Color color = null;
 
-                if (colored == ColorMode.HDOP) {
-                    Float hdop = (Float) trkPnt.get(GpxConstants.PT_HDOP);
-                    color = hdopScale.getColor(hdop);
-                }
-                if (oldWp != null) { // other coloring modes need segment for calcuation
-                    double dist = c.greatCircleDistance(oldWp.getCoor());
-                    boolean noDraw = false;
-                    switch (colored) {
-                    case VELOCITY:
-                        double dtime = trkPnt.time - oldWp.time;
-                        if (dtime > 0) {
-                            color = velocityScale.getColor(dist / dtime);
-                        } else {
-                            color = velocityScale.getNoDataColor();
-                        }
-                        break;
-                    case DIRECTION:
-                        double dirColor = oldWp.getCoor().heading(trkPnt.getCoor());
-                        color = directionScale.getColor(dirColor);
-                        break;
-                    case TIME:
-                        double t = trkPnt.time;
-                        // skip bad timestamps and very short tracks
-                        if (t > 0 && t <= now && maxval - minval > minTrackDurationForTimeColoring) {
-                            color = dateScale.getColor(t);
-                        } else {
-                            color = dateScale.getNoDataColor();
-                        }
-                        break;
+            if (colored == ColorMode.HDOP) {
+                Float hdop = (Float) trkPnt.get(GpxConstants.PT_HDOP);
+                color = hdopScale.getColor(hdop);
+            }
+            if (oldWp != null) { // other coloring modes need segment for calcuation
+                double dist = c.greatCircleDistance(oldWp.getCoor());
+                boolean noDraw = false;
+                switch (colored) {
+                case VELOCITY:
+                    double dtime = trkPnt.time - oldWp.time;
+                    if (dtime > 0) {
+                        color = velocityScale.getColor(dist / dtime);
+                    } else {
+                        color = velocityScale.getNoDataColor();
                     }
-                    if (!noDraw && (maxLineLength == -1 || dist <= maxLineLength)) {
-                        trkPnt.drawLine = true;
-                        trkPnt.dir = (int) oldWp.getCoor().heading(trkPnt.getCoor());
+                    break;
+                case DIRECTION:
+                    double dirColor = oldWp.getCoor().heading(trkPnt.getCoor());
+                    color = directionScale.getColor(dirColor);
+                    break;
+                case TIME:
+                    double t = trkPnt.time;
+                    // skip bad timestamps and very short tracks
+                    if (t > 0 && t <= now && trackDuration > minTrackDurationForTimeColoring) {
+                        color = dateScale.getColor(t);
                     } else {
-                        trkPnt.drawLine = false;
+                        color = dateScale.getNoDataColor();
                     }
-                } else { // make sure we reset outdated data
-                    trkPnt.drawLine = false;
-                    color = neutralColor;
+                    break;
                 }
-                if (color != null) {
-                    trkPnt.customColoring = color;
+                if (!noDraw && (maxLineLength == -1 || dist <= maxLineLength)) {
+                    trkPnt.drawLine = true;
+                    trkPnt.dir = (int) oldWp.getCoor().heading(trkPnt.getCoor());
+                } else {
+                    trkPnt.drawLine = false;
                 }
-                oldWp = trkPnt;
+            } else { // make sure we reset outdated data
+                trkPnt.drawLine = false;
+                color = neutralColor;
             }
+            if (color != null) {
+                trkPnt.customColoring = color;
+            }
+            oldWp = trkPnt;
         }
-
-        computeCacheInSync = true;
+        return oldWp;
     }
 
     private void drawLines(Graphics2D g, MapView mv, List<WayPoint> visibleSegments) {
@@ -527,6 +622,7 @@ public class GpxDrawHelper {
                 || (computeCacheColorDynamic != colorModeDynamic)) {
             computeCacheMaxLineLengthUsed = maxLineLength;
             computeCacheInSync = false;
+            computeCacheRangesInSync = false;
             computeCacheColorUsed = neutralColor;
             computeCacheColored = colored;
             computeCacheColorTracksTune = colorTracksTune;
@@ -536,6 +632,7 @@ public class GpxDrawHelper {
 
     public void dataChanged() {
         computeCacheInSync = false;
+        computeCacheRangesInSync = false;
     }
 
     public void drawColorBar(Graphics2D g, MapView mv) {
@@ -0,0 +1,233 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.gpx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.gpx.GpxData;
+import org.openstreetmap.josm.data.gpx.GpxTrack;
+import org.openstreetmap.josm.data.gpx.GpxTrackSegment;
+import org.openstreetmap.josm.data.gpx.PackedGpxTrackSegment;
+import org.openstreetmap.josm.data.gpx.WayPoint;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+
+/**
+ * Simplified versions of the track segments of a {@link GpxData}, to draw only the points that matter at the current zoom.
+ * <p>
+ * Level {@code k} keeps a point when it is more than {@code 2^k} times {@link #FINEST_TOLERANCE} degrees away,
+ * in latitude or longitude, from the previous kept point. Each level is computed from the previous one.
+ * The first and last points of the segments are always kept. Routes are not simplified.
+ * Only the indexes of the kept points are stored, their coordinates are read from the segments.
+ * @since 8584
+ */
+public class GpxLodPyramid {
+
+    /** Number of track points from which the tracks are simplified to be drawn zoomed out */
+    public static final IntegerProperty PROP_MIN_POINTS = new IntegerProperty("draw.rawgps.lod.min-points", 50000);
+
+    /** Tolerance of the finest level, in degrees (about ten meters). With smaller pixels, all the visible points are drawn */
+    public static final double FINEST_TOLERANCE = 1e-4;
+    /** Number of levels, the coarsest one has a tolerance of about 0.2 degrees */
+    public static final int LEVELS = 12;
+
+    /**
+     * The kept points of a segment, per level.
+     */
+    private static final class Line {
+        private final GpxTrackSegment segment;
+        /** the points of the segment, {@code null} for packed segments */
+        private final WayPoint[] points;
+        /** the indexes of the kept points in the segment, per level */
+        private final int[][] indexes;
+
+        Line(GpxTrackSegment segment) {
+            this.segment = segment;
+            this.indexes = new int[LEVELS][];
+            int size;
+            if (segment instanceof PackedGpxTrackSegment) {
+                points = null;
+                size = ((PackedGpxTrackSegment) segment).size();
+            } else {
+                Collection<WayPoint> wayPoints = segment.getWayPoints();
+                points = wayPoints.toArray(new WayPoint[wayPoints.size()]);
+                size = points.length;
+            }
+            int[] allIndexes = new int[size];
+            for (int i = 0; i < size; i++) {
+                allIndexes[i] = i;
+            }
+            double tolerance = FINEST_TOLERANCE;
+            int[] previousIndexes = allIndexes;
+            for (int k = 0; k < LEVELS; k++) {
+                indexes[k] = simplify(previousIndexes, tolerance);
+                previousIndexes = indexes[k];
+                tolerance *= 2;
+            }
+        }
+
+        private double getLat(int i) {
+            return points != null ? points[i].getCoor().lat() : ((PackedGpxTrackSegment) segment).getLat(i);
+        }
+
+        private double getLon(int i) {
+            return points != null ? points[i].getCoor().lon() : ((PackedGpxTrackSegment) segment).getLon(i);
+        }
+
+        private int[] simplify(int[] fromIndexes, double tolerance) {
+            int n = fromIndexes.length;
+            int[] kept = new int[n];
+            int count = 0;
+            double keptLat = 0;
+            double keptLon = 0;
+            for (int j = 0; j < n; j++) {
+                double lat = getLat(fromIndexes[j]);
+                double lon = getLon(fromIndexes[j]);
+                if (Double.isNaN(lat) || Double.isNaN(lon)) {
+                    continue;
+                }
+                if (count == 0 || j == n - 1 || Math.abs(lat - keptLat) > tolerance || Math.abs(lon - keptLon) > tolerance) {
+                    kept[count++] = fromIndexes[j];
+                    keptLat = lat;
+                    keptLon = lon;
+                }
+            }
+            // nothing to simplify at this level: share the array
+            return count == n ? fromIndexes : Arrays.copyOf(kept, count);
+        }
+
+        private WayPoint getWayPoint(int level, int j) {
+            int i = indexes[level][j];
+            // copied, not to change the colors of the points drawn when zoomed in
+            return points != null ? new WayPoint(points[i]) : ((PackedGpxTrackSegment) segment).getWayPoint(i);
+        }
+
+        private void addVisiblePoints(int level, Bounds box, GpxDrawHelper drawHelper, List<WayPoint> visiblePoints) {
+            int[] kept = indexes[level];
+            int first = -1;
+            int last = -1;
+            double previousLat = 0;
+            double previousLon = 0;
+            for (int j = 0; j < kept.length; j++) {
+                double lat = getLat(kept[j]);
+                double lon = getLon(kept[j]);
+                boolean visible = j > 0
+                        ? intersects(box, Math.min(lat, previousLat), Math.min(lon, previousLon),
+                                Math.max(lat, previousLat), Math.max(lon, previousLon))
+                        : intersects(box, lat, lon, lat, lon);
+                if (visible) {
+                    if (first < 0 || j > last + 1) {
+                        addRun(level, first, last, drawHelper, visiblePoints);
+                        // starts with the previous point, to draw the line to this one
+                        first = j > 0 ? j - 1 : j;
+                    }
+                    last = j;
+                }
+                previousLat = lat;
+                previousLon = lon;
+            }
+            addRun(level, first, last, drawHelper, visiblePoints);
+        }
+
+        private void addRun(int level, int first, int last, GpxDrawHelper drawHelper, List<WayPoint> visiblePoints) {
+            if (first < 0)
+                return;
+            List<WayPoint> run = new ArrayList<>(last - first + 1);
+            for (int j = first; j <= last; j++) {
+                run.add(getWayPoint(level, j));
+            }
+            // the colors depend on the kept points, not on all the points
+            drawHelper.calculateColors(run, first > 0 ? getWayPoint(level, first - 1) : null);
+            run.get(0).drawLine = false;
+            visiblePoints.addAll(run);
+        }
+    }
+
+    private final List<GpxTrack> tracks;
+    private final int updateCount;
+    private final Map<GpxTrackSegment, Line> lines = new IdentityHashMap<>();
+
+    /**
+     * Computes the levels of the given tracks. Can take a while, the tracks should be simplified in a background thread.
+     * @param tracks the tracks, which must not change
+     * @param updateCount the sum of the update counts of the tracks
+     */
+    public GpxLodPyramid(List<GpxTrack> tracks, int updateCount) {
+        this.tracks = new ArrayList<>(tracks);
+        this.updateCount = updateCount;
+        for (GpxTrack track : this.tracks) {
+            for (GpxTrackSegment segment : track.getSegments()) {
+                lines.put(segment, new Line(segment));
+            }
+        }
+    }
+
+    /**
+     * Determines if the levels are computed from the given tracks.
+     * @param tracks the current tracks
+     * @param updateCount the current sum of the update counts of the tracks
+     * @return {@code true} if the levels are computed from the given tracks
+     */
+    public boolean isValid(Collection<GpxTrack> tracks, int updateCount) {
+        return this.updateCount == updateCount && this.tracks.equals(tracks);
+    }
+
+    /**
+     * Returns the coarsest level whose tolerance is smaller than the given size.
+     * @param degreesPerPixel the size of a pixel, in degrees of latitude
+     * @return the level, or -1 if all the points are relevant at this size
+     */
+    public static int getLevel(double degreesPerPixel) {
+        int level = -1;
+        double tolerance = FINEST_TOLERANCE;
+        while (level < LEVELS - 1 && tolerance <= degreesPerPixel) {
+            level++;
+            tolerance *= 2;
+        }
+        return level;
+    }
+
+    /**
+     * Adds the kept points of a segment which are in the given bounds, or whose line from the previous
+     * kept point is, and assigns their colors. The points are copies, their colors depend on the level.
+     * @param segment the segment, one of the tracks
+     * @param level the level
+     * @param box the bounds
+     * @param drawHelper the draw helper assigning the colors
+     * @param visiblePoints the list of the points to draw, to which the points are added
+     * @return {@code false} if the segment is not one of the simplified ones
+     */
+    public boolean addVisiblePoints(GpxTrackSegment segment, int level, Bounds box, GpxDrawHelper drawHelper,
+            List<WayPoint> visiblePoints) {
+        Line line = lines.get(segment);
+        if (line == null)
+            return false;
+        line.addVisiblePoints(level, box, drawHelper, visiblePoints);
+        return true;
+    }
+
+    /**
+     * Returns the number of points kept at a given level.
+     * @param level the level
+     * @return the number of points kept at this level
+     */
+    public int getPointCount(int level) {
+        int count = 0;
+        for (Line line : lines.values()) {
+            count += line.indexes[level].length;
+        }
+        return count;
+    }
+
+    private static boolean intersects(Bounds box, double minLat, double minLon, double maxLat, double maxLon) {
+        if (minLat > box.getMaxLat() || maxLat < box.getMinLat())
+            return false;
+        if (box.crosses180thMeridian())
+            return maxLon >= box.getMinLon() || minLon <= box.getMaxLon();
+        return minLon <= box.getMaxLon() && maxLon >= box.getMinLon();
+    }
+}
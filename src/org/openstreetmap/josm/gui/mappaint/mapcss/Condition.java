@@ -158,8 +158,9 @@ public abstract class Condition {
         public final String v;
 
         public SimpleKeyValueCondition(String k, String v) {
-            this.k = k;
-            this.v = v;
+            // keys and values of primitives are interned, this allows to compare by identity first
+            this.k = k.intern();
+            this.v = v.intern();
         }
 
         @Override
@@ -198,8 +199,8 @@ public abstract class Condition {
          * @param considerValAsKey whether to consider {@code v} as another key and compare the values of key {@code k} and key {@code v}.
          */
         public KeyValueCondition(String k, String v, Op op, boolean considerValAsKey) {
-            this.k = k;
-            this.v = v;
+            this.k = k.intern();
+            this.v = v.intern();
             this.op = op;
             this.considerValAsKey = considerValAsKey;
         }
@@ -312,7 +313,7 @@ public abstract class Condition {
         public Predicate<String> containsPattern;
 
         public KeyCondition(String label, boolean negateResult, KeyMatchType matchType) {
-            this.label = label;
+            this.label = label.intern();
             this.negateResult = negateResult;
             this.matchType = matchType;
             this.containsPattern = KeyMatchType.REGEX.equals(matchType)
@@ -497,6 +498,8 @@ public abstract class Condition {
             }
             final Method method = getMethod(id);
             if (method != null) {
+                // the methods are not public, skip the access check on each call
+                method.setAccessible(true);
                 return new PseudoClassCondition(method, not);
             }
             throw new MapCSSException("Invalid pseudo class specified: " + id);
@@ -548,6 +551,15 @@ public abstract class Condition {
             this.e = e;
         }
 
+        /**
+         * Returns the expression evaluated by this condition.
+         * @return the expression
+         * @since 8566
+         */
+        public Expression getExpression() {
+            return e;
+        }
+
         @Override
         public boolean applies(Environment env) {
             Boolean b = Cascade.convertTo(e.evaluate(env), Boolean.class);
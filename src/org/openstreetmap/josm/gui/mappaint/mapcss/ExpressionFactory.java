@@ -50,6 +50,14 @@ public final class ExpressionFactory {
     @Retention(RetentionPolicy.RUNTIME)
     static @interface NullableArguments {}
 
+    /**
+     * Marks functions which must not be evaluated when the style is loaded, even if all arguments are constant,
+     * because their result does not only depend on the arguments, or because they have side effects.
+     */
+    @Target(ElementType.METHOD)
+    @Retention(RetentionPolicy.RUNTIME)
+    static @interface NotConstant {}
+
     private static final List<Method> arrayFunctions = new ArrayList<>();
     private static final List<Method> parameterFunctions = new ArrayList<>();
     private static final List<Method> parameterFunctionsEnv = new ArrayList<>();
@@ -639,6 +647,7 @@ public final class ExpressionFactory {
          * @return value for key, or default value if not found
          * @see org.openstreetmap.josm.data.Preferences#get(String, String)
          */
+        @NotConstant
         public static String JOSM_pref(String key, String def) {
             String res = Main.pref.get(key, null);
             return res != null ? res : def;
@@ -831,6 +840,7 @@ public final class ExpressionFactory {
          * @return the same object, unchanged
          */
         @NullableArguments
+        @NotConstant
         public static Object print(Object o) {
             System.out.print(o == null ? "none" : o.toString());
             return o;
@@ -843,6 +853,7 @@ public final class ExpressionFactory {
          * @return the same object, unchanged
          */
         @NullableArguments
+        @NotConstant
         public static Object println(Object o) {
             System.out.println(o == null ? "none" : o.toString());
             return o;
@@ -892,11 +903,11 @@ public final class ExpressionFactory {
 
         for (Method m : arrayFunctions) {
             if (m.getName().equals(name))
-                return new ArrayFunction(m, args);
+                return fold(new ArrayFunction(m, args), m, args);
         }
         for (Method m : parameterFunctions) {
             if (m.getName().equals(name) && args.size() == m.getParameterTypes().length)
-                return new ParameterFunction(m, args, false);
+                return fold(new ParameterFunction(m, args, false), m, args);
         }
         for (Method m : parameterFunctionsEnv) {
             if (m.getName().equals(name) && args.size() == m.getParameterTypes().length-1)
@@ -905,6 +916,69 @@ public final class ExpressionFactory {
         return NullExpression.INSTANCE;
     }
 
+    /**
+     * Evaluates a call of a function that does not need the environment once, when the style is loaded,
+     * if all arguments are constant.
+     * @param function the function call
+     * @param m the called method
+     * @param args the arguments of the call
+     * @return a {@link ConstantExpression} with the result of the call, or {@code function} if it cannot be folded
+     */
+    private static Expression fold(Expression function, Method m, List<Expression> args) {
+        if (!isConstant(m))
+            return function;
+        for (Expression arg : args) {
+            if (!(arg instanceof LiteralExpression) && !(arg instanceof ConstantExpression))
+                return function;
+        }
+        Object result = function.evaluate(null);
+        return result != null ? new ConstantExpression(result, function) : function;
+    }
+
+    private static boolean isConstant(Method m) {
+        return m.getAnnotation(NotConstant.class) == null && !(Math.class.equals(m.getDeclaringClass()) && "random".equals(m.getName()));
+    }
+
+    private static boolean isSourceConstant(List<Expression> args) {
+        for (Expression arg : args) {
+            if (!isSourceConstant(arg))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Determines if the value of an expression only depends on literals and on the settings of the style source,
+     * like {@code setting("hide_icons")}. Such an expression has the same value for all primitives, and it cannot change
+     * until the style is reloaded.
+     * @param e the expression
+     * @return {@code true} if the expression can be evaluated without primitive
+     * @since 8566
+     */
+    public static boolean isSourceConstant(Expression e) {
+        if (e instanceof LiteralExpression || e instanceof ConstantExpression || e instanceof NullExpression) {
+            return true;
+        } else if (e instanceof ParameterFunction) {
+            ParameterFunction f = (ParameterFunction) e;
+            return (f.needsEnvironment ? "setting".equals(f.m.getName()) : isConstant(f.m)) && isSourceConstant(f.args);
+        } else if (e instanceof ArrayFunction) {
+            ArrayFunction f = (ArrayFunction) e;
+            return isConstant(f.m) && isSourceConstant(f.args);
+        } else if (e instanceof CondOperator) {
+            CondOperator c = (CondOperator) e;
+            return isSourceConstant(Arrays.asList(c.condition, c.firstOption, c.secondOption));
+        } else if (e instanceof AndOperator) {
+            return isSourceConstant(((AndOperator) e).args);
+        } else if (e instanceof OrOperator) {
+            return isSourceConstant(((OrOperator) e).args);
+        } else if (e instanceof LengthFunction) {
+            return isSourceConstant(((LengthFunction) e).arg);
+        } else if (e instanceof MinMaxFunction) {
+            return isSourceConstant(((MinMaxFunction) e).args);
+        }
+        return false;
+    }
+
     /**
      * Expression that always evaluates to null.
      */
@@ -921,6 +995,38 @@ public final class ExpressionFactory {
         }
     }
 
+    /**
+     * Function call whose result has been computed when the style was loaded.
+     *
+     * Unlike a {@link LiteralExpression}, it is not interpreted as a tag key by a {@code text} declaration.
+     * @since 8566
+     */
+    public static class ConstantExpression implements Expression {
+
+        private final Object value;
+        private final Expression function;
+
+        /**
+         * Constructs a new {@code ConstantExpression}.
+         * @param value the result of the function call, must not be null
+         * @param function the folded function call
+         */
+        public ConstantExpression(Object value, Expression function) {
+            this.value = value;
+            this.function = function;
+        }
+
+        @Override
+        public Object evaluate(Environment env) {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return function.toString();
+        }
+    }
+
     /**
      * Conditional operator.
      */
@@ -42,13 +42,16 @@ import org.openstreetmap.josm.gui.mappaint.StyleKeys;
 import org.openstreetmap.josm.gui.mappaint.StyleSetting;
 import org.openstreetmap.josm.gui.mappaint.StyleSetting.BooleanStyleSetting;
 import org.openstreetmap.josm.gui.mappaint.StyleSource;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Condition.ExpressionCondition;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Condition.KeyCondition;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Condition.KeyMatchType;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Condition.KeyValueCondition;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Condition.Op;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Condition.SimpleKeyValueCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.AbstractSelector;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.ChildOrParentSelector;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.GeneralSelector;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.LinkSelector;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.OptimizedGeneralSelector;
 import org.openstreetmap.josm.gui.mappaint.mapcss.parsergen.MapCSSParser;
 import org.openstreetmap.josm.gui.mappaint.mapcss.parsergen.ParseException;
@@ -413,13 +416,20 @@ public class MapCSSStyleSource extends StyleSource {
                 logError(new ParseException(e.getMessage())); // allow e to be garbage collected, it links to the entire token stream
             }
             // optimization: filter rules for different primitive types
+            Environment settingsEnv = new Environment(null, new MultiCascade(), "default", this);
             for (MapCSSRule r: rules) {
                 // find the rightmost selector, this must be a GeneralSelector
                 Selector selRightmost = r.selector;
                 while (selRightmost instanceof ChildOrParentSelector) {
                     selRightmost = ((ChildOrParentSelector) selRightmost).right;
                 }
-                MapCSSRule optRule = new MapCSSRule(r.selector.optimizedBaseCheck(), r.declaration);
+                // optimization: evaluate the conditions on the style settings only once
+                Selector selector = evaluateSettingConditions(r.selector, settingsEnv);
+                if (selector == null) {
+                    // the rule does not apply with the current settings
+                    continue;
+                }
+                MapCSSRule optRule = new MapCSSRule(selector.optimizedBaseCheck(), r.declaration);
                 final String base = ((GeneralSelector) selRightmost).getBase();
                 switch (base) {
                     case "node":
@@ -468,6 +478,49 @@ public class MapCSSStyleSource extends StyleSource {
         }
     }
 
+    /**
+     * Evaluates the conditions of a selector that only depend on the settings of this style, like
+     * {@code [setting("hide_icons")]}. The settings cannot change without reloading the style.
+     * @param s the selector
+     * @param env environment without primitive used to evaluate the conditions
+     * @return the selector without these conditions, or {@code null} if one of them is false
+     */
+    private static Selector evaluateSettingConditions(Selector s, Environment env) {
+        if (s instanceof ChildOrParentSelector) {
+            ChildOrParentSelector cps = (ChildOrParentSelector) s;
+            Selector left = evaluateSettingConditions(cps.left, env);
+            Selector link = evaluateSettingConditions(cps.link, env);
+            Selector right = evaluateSettingConditions(cps.right, env);
+            if (left == null || link == null || right == null)
+                return null;
+            if (left == cps.left && link == cps.link && right == cps.right)
+                return s;
+            return new ChildOrParentSelector(left, (LinkSelector) link, right, cps.type);
+        }
+        List<Condition> conds = ((AbstractSelector) s).getConditions();
+        List<Condition> remaining = new ArrayList<>(conds.size());
+        for (Condition c : conds) {
+            if (c instanceof ExpressionCondition && ExpressionFactory.isSourceConstant(((ExpressionCondition) c).getExpression())) {
+                if (!c.applies(env))
+                    return null;
+            } else {
+                remaining.add(c);
+            }
+        }
+        if (remaining.size() == conds.size()) {
+            return s;
+        } else if (s instanceof GeneralSelector) {
+            GeneralSelector gs = (GeneralSelector) s;
+            return new GeneralSelector(gs.base, gs.range, remaining, gs.subpart);
+        } else if (s instanceof OptimizedGeneralSelector) {
+            OptimizedGeneralSelector ogs = (OptimizedGeneralSelector) s;
+            return new OptimizedGeneralSelector(ogs.base, ogs.range, remaining, ogs.subpart);
+        } else if (s instanceof LinkSelector) {
+            return new LinkSelector(remaining);
+        }
+        return s;
+    }
+
     @Override
     public InputStream getSourceInputStream() throws IOException {
         if (css != null) {
@@ -523,6 +523,18 @@ public interface Selector {
             super(base, zoom, conds, subpart);
         }
 
+        /**
+         * Constructs a new {@code GeneralSelector}.
+         * @param base the base, e.g. {@code way}
+         * @param range the scale range
+         * @param conds the conditions
+         * @param subpart the subpart
+         * @since 8566
+         */
+        public GeneralSelector(String base, Range range, List<Condition> conds, Subpart subpart) {
+            super(base, range, conds, subpart);
+        }
+
         public boolean matchesConditions(Environment e) {
             return super.matches(e);
         }
@@ -48,6 +48,7 @@ public class ValidatorTestsPreference implements SubPreferenceSetting {
     private JCheckBox prefUseLayer;
     private JCheckBox prefOtherUpload;
     private JCheckBox prefOther;
+    private JCheckBox prefIncremental;
 
     /** The list of all tests */
     private Collection<Test> allTests;
@@ -65,6 +66,10 @@ public class ValidatorTestsPreference implements SubPreferenceSetting {
         prefUseLayer.setToolTipText(tr("Use the error layer to display problematic elements."));
         testPanel.add(prefUseLayer, GBC.eol());
 
+        prefIncremental = new JCheckBox(tr("Validate changed objects while editing."), ValidatorPreference.PREF_INCREMENTAL.get());
+        prefIncremental.setToolTipText(tr("After each change, run the tests again on the changed objects and their surroundings."));
+        testPanel.add(prefIncremental, GBC.eol());
+
         prefOther = new JCheckBox(tr("Show informational level."), ValidatorPreference.PREF_OTHER.get());
         prefOther.setToolTipText(tr("Show the informational tests."));
         testPanel.add(prefOther, GBC.eol());
@@ -125,6 +130,7 @@ public class ValidatorTestsPreference implements SubPreferenceSetting {
         ValidatorPreference.PREF_OTHER.put(prefOther.isSelected());
         Main.pref.put(ValidatorPreference.PREF_OTHER_UPLOAD, prefOtherUpload.isSelected());
         Main.pref.put(ValidatorPreference.PREF_LAYER, prefUseLayer.isSelected());
+        ValidatorPreference.PREF_INCREMENTAL.put(prefIncremental.isSelected());
         return false;
     }
 
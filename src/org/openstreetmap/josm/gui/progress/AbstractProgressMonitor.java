@@ -231,7 +231,7 @@ public abstract class AbstractProgressMonitor implements ProgressMonitor {
     }
 
     @Override
-    public void worked(int ticks) {
+    public synchronized void worked(int ticks) {
         if (ticks == ALL_TICKS) {
             setTicks(this.ticksCount - 1);
         } else {
@@ -339,8 +339,11 @@ public abstract class AbstractProgressMonitor implements ProgressMonitor {
         } else {
             Iterator<Request> it = requests.iterator();
             while (it.hasNext()) {
-                if (it.next().originator == child) {
+                Request request = it.next();
+                if (request.originator == child) {
+                    // a subtask running concurrently finished before becoming the current one
                     it.remove();
+                    setTicks(ticks + request.childTicks);
                     return;
                 }
             }
@@ -1,6 +1,7 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.io;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -72,12 +73,24 @@ public enum Compression {
 
     /**
      * Returns an un-compressing {@link InputStream} for the {@link File} {@code file}.
+     * Compressed files are decompressed in a background thread, ahead of the reader.
      *
      * @throws IOException if any I/O error occurs
+     * @see ReadAheadInputStream
      */
     @SuppressWarnings("resource")
     public static InputStream getUncompressedFileInputStream(File file) throws IOException {
-        return byExtension(file.getName()).getUncompressedInputStream(new FileInputStream(file));
+        Compression compression = byExtension(file.getName());
+        if (compression == NONE) {
+            return new FileInputStream(file);
+        }
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return new ReadAheadInputStream(compression.getUncompressedInputStream(in));
+        } catch (IOException e) {
+            Utils.close(in);
+            throw e;
+        }
     }
 
     /**
@@ -24,8 +24,12 @@ import org.openstreetmap.josm.data.gpx.GpxConstants;
 import org.openstreetmap.josm.data.gpx.GpxData;
 import org.openstreetmap.josm.data.gpx.GpxLink;
 import org.openstreetmap.josm.data.gpx.GpxRoute;
+import org.openstreetmap.josm.data.gpx.GpxTrackSegment;
 import org.openstreetmap.josm.data.gpx.ImmutableGpxTrack;
+import org.openstreetmap.josm.data.gpx.ImmutableGpxTrackSegment;
+import org.openstreetmap.josm.data.gpx.PackedGpxTrackSegment;
 import org.openstreetmap.josm.data.gpx.WayPoint;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
 import org.openstreetmap.josm.tools.Utils;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
@@ -43,6 +47,13 @@ import org.xml.sax.helpers.DefaultHandler;
  */
 public class GpxReader implements GpxConstants {
 
+    /**
+     * Number of points from which the track segments are stored as {@link PackedGpxTrackSegment}, to save memory.
+     * Negative to never pack them.
+     * @since 8583
+     */
+    public static final IntegerProperty PROP_PACKED_SEGMENT_SIZE = new IntegerProperty("gpx.packed-segment-size", 100000);
+
     private enum State { init, gpx, metadata, wpt, rte, trk, ext, author, link, trkseg, copyright}
 
     private String version;
@@ -53,9 +64,11 @@ public class GpxReader implements GpxConstants {
     private class Parser extends DefaultHandler {
 
         private GpxData data;
-        private Collection<Collection<WayPoint>> currentTrack;
+        private List<GpxTrackSegment> currentTrack;
         private Map<String, Object> currentTrackAttr;
         private Collection<WayPoint> currentTrackSeg;
+        private PackedGpxTrackSegment.Builder currentPackedTrackSeg;
+        private final int packedSegmentSize = PROP_PACKED_SEGMENT_SIZE.get();
         private GpxRoute currentRoute;
         private WayPoint currentWayPoint;
 
@@ -414,7 +427,7 @@ public class GpxReader implements GpxConstants {
                 case "trkpt":
                     currentState = states.pop();
                     convertUrlToLink(currentWayPoint.attr);
-                    currentTrackSeg.add(currentWayPoint);
+                    addTrackPoint(currentWayPoint);
                     break;
                 case "wpt":
                     currentState = states.pop();
@@ -429,7 +442,12 @@ public class GpxReader implements GpxConstants {
             case trkseg:
                 if ("trkseg".equals(localName)) {
                     currentState = states.pop();
-                    currentTrack.add(currentTrackSeg);
+                    if (currentPackedTrackSeg != null) {
+                        currentTrack.add(currentPackedTrackSeg.build());
+                        currentPackedTrackSeg = null;
+                    } else if (!currentTrackSeg.isEmpty()) {
+                        currentTrack.add(new ImmutableGpxTrackSegment(currentTrackSeg));
+                    }
                 }
                 break;
             case trk:
@@ -484,6 +502,24 @@ public class GpxReader implements GpxConstants {
             gpxData = data;
         }
 
+        /**
+         * Adds a point to the current track segment, which is packed once it is large enough.
+         */
+        private void addTrackPoint(WayPoint wp) {
+            if (currentPackedTrackSeg != null) {
+                currentPackedTrackSeg.add(wp);
+                return;
+            }
+            currentTrackSeg.add(wp);
+            if (packedSegmentSize >= 0 && currentTrackSeg.size() >= packedSegmentSize) {
+                currentPackedTrackSeg = new PackedGpxTrackSegment.Builder();
+                for (WayPoint p : currentTrackSeg) {
+                    currentPackedTrackSeg.add(p);
+                }
+                currentTrackSeg.clear();
+            }
+        }
+
         /**
          * convert url/urlname to link element (GPX 1.0 -&gt; GPX 1.1).
          */
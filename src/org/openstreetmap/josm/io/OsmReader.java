@@ -8,7 +8,9 @@ import java.io.InputStreamReader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -53,6 +55,18 @@ public class OsmReader extends AbstractReader {
 
     protected boolean cancel;
 
+    /** Tag strings already read, to share them between primitives without the cost of {@link String#intern} for each tag */
+    private final Map<String, String> tagStrings = new HashMap<>();
+
+    /** Powers of ten up to 10^15, which are exact doubles */
+    private static final double[] POWERS_OF_TEN = new double[16];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
     /** Used by plugins to register themselves as data postprocessors. */
     private static volatile List<OsmServerReadPostprocessor> postprocessors;
 
@@ -201,7 +215,7 @@ public class OsmReader extends AbstractReader {
         String lat = parser.getAttributeValue(null, "lat");
         String lon = parser.getAttributeValue(null, "lon");
         if (lat != null && lon != null) {
-            nd.setCoor(new LatLon(Double.parseDouble(lat), Double.parseDouble(lon)));
+            nd.setCoor(new LatLon(parseCoordinate(lat), parseCoordinate(lon)));
         }
         readCommon(nd);
         Node n = new Node(nd.getId(), nd.getVersion());
@@ -370,10 +384,59 @@ public class OsmReader extends AbstractReader {
         if (key == null || value == null) {
             throwException(tr("Missing key or value attribute in tag."));
         }
-        t.put(key.intern(), value.intern());
+        t.put(intern(key), intern(value));
         jumpToEnd();
     }
 
+    private String intern(String s) {
+        String cached = tagStrings.get(s);
+        if (cached == null) {
+            cached = s.intern();
+            tagStrings.put(cached, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Parses a coordinate, with the same result as {@link Double#parseDouble}.
+     * <p>
+     * The usual decimal notation of coordinates with up to 15 digits is parsed as an exact long divided by an exact
+     * power of ten, which is correctly rounded like {@code Double.parseDouble}, and much faster.
+     * Other notations are parsed by {@code Double.parseDouble}.
+     * @param s the coordinate
+     * @return the coordinate value
+     * @throws NumberFormatException if the string is not a number
+     */
+    static double parseCoordinate(String s) {
+        int len = s.length();
+        int i = 0;
+        boolean negative = len > 0 && s.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits >= POWERS_OF_TEN.length)
+                    return Double.parseDouble(s);
+                mantissa = mantissa * 10 + (c - '0');
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else
+                return Double.parseDouble(s);
+        }
+        if (digits == 0)
+            return Double.parseDouble(s);
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
     protected void parseUnknown(boolean printWarning) throws XMLStreamException {
         if (printWarning) {
             Main.info(tr("Undefined element ''{0}'' found in input stream. Skipping.", parser.getLocalName()));
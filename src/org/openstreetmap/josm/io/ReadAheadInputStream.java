@@ -0,0 +1,151 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * An input stream reading its source in a background thread, ahead of the reader.
+ * <p>
+ * Used to decompress a file while the decompressed data is parsed: both are CPU-bound, so they are
+ * faster on two cores than one after the other. At most {@link #MAX_CHUNKS} chunks of {@link #CHUNK_SIZE} bytes
+ * are read ahead.
+ * @since 8580
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    /** Size of the chunks read by the background thread */
+    public static final int CHUNK_SIZE = 64 * 1024;
+    /** Maximum number of chunks read ahead */
+    public static final int MAX_CHUNKS = 16;
+
+    private static final byte[] EOF = new byte[0];
+
+    private final InputStream source;
+    private final BlockingQueue<Object> chunks = new ArrayBlockingQueue<>(MAX_CHUNKS);
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private byte[] chunk;
+    private int pos;
+
+    /**
+     * Constructs a new {@code ReadAheadInputStream} and starts reading the source.
+     * @param source the source stream, closed by the background thread once read or once this stream is closed
+     */
+    public ReadAheadInputStream(InputStream source) {
+        this.source = source;
+        this.thread = Utils.getNamedThreadFactory("read-ahead").newThread(new Runnable() {
+            @Override
+            public void run() {
+                readSource();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void readSource() {
+        try {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            while (!closed) {
+                int n = 0;
+                int read = 0;
+                while (n < buffer.length && (read = source.read(buffer, n, buffer.length - n)) >= 0) {
+                    n += read;
+                }
+                if (n > 0) {
+                    put(Arrays.copyOf(buffer, n));
+                }
+                if (read < 0) {
+                    put(EOF);
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                put(e);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // closed here rather than in close(), not to close the source while it is read
+            Utils.close(source);
+        }
+    }
+
+    private void put(Object o) throws InterruptedException {
+        while (!closed && !chunks.offer(o, 100, TimeUnit.MILLISECONDS)) {
+            // wait until the reader takes a chunk or closes the stream
+        }
+    }
+
+    /**
+     * Makes the next chunk current if the current one is consumed.
+     * @return false at the end of the stream
+     */
+    private boolean nextChunk() throws IOException {
+        while (chunk == null || (pos == chunk.length && chunk != EOF)) {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            Object o;
+            try {
+                o = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            if (o instanceof IOException) {
+                chunk = EOF;
+                throw new IOException(((IOException) o).getMessage(), (IOException) o);
+            } else if (o instanceof RuntimeException) {
+                chunk = EOF;
+                throw new IOException((RuntimeException) o);
+            }
+            chunk = (byte[]) o;
+            pos = 0;
+        }
+        return chunk != EOF;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return nextChunk() ? chunk[pos++] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (!nextChunk())
+            return -1;
+        int n = Math.min(len, chunk.length - pos);
+        System.arraycopy(chunk, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return chunk == null || chunk == EOF ? 0 : chunk.length - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            thread.interrupt();
+            chunks.clear();
+        }
+    }
+}
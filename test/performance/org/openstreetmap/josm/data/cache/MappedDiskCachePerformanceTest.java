@@ -0,0 +1,120 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.apache.commons.jcs.auxiliary.AuxiliaryCache;
+import org.apache.commons.jcs.auxiliary.disk.behavior.IDiskCacheAttributes;
+import org.apache.commons.jcs.auxiliary.disk.indexed.IndexedDiskCacheAttributes;
+import org.apache.commons.jcs.auxiliary.disk.indexed.IndexedDiskCacheFactory;
+import org.apache.commons.jcs.engine.CacheElement;
+import org.apache.commons.jcs.utils.serialization.StandardSerializer;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Compares the startup and lookup time of {@link MappedDiskCache} with the JCS indexed disk cache.
+ */
+public class MappedDiskCachePerformanceTest {
+
+    private static final int TILES = 20000;
+    private static final int TILE_SIZE = 8 * 1024;
+    private static final int LOOKUPS = 2000;
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createPerformanceTestFixture().init();
+    }
+
+    private interface CacheFactory {
+        AuxiliaryCache<String, BufferedImageCacheEntry> open(File dir) throws Exception;
+    }
+
+    private static String key(int i) {
+        return "Bing_Sat:" + (12 + i % 8) + '/' + i + '/' + (i * 7 % 1000);
+    }
+
+    private static void measure(String name, CacheFactory factory) throws Exception {
+        File dir = Files.createTempDirectory("josm-cache-perf").toFile();
+        try {
+            AuxiliaryCache<String, BufferedImageCacheEntry> cache = factory.open(dir);
+            byte[] content = new byte[TILE_SIZE];
+            new Random(0).nextBytes(content);
+            long time = System.nanoTime();
+            for (int i = 0; i < TILES; i++) {
+                CacheElement<String, BufferedImageCacheEntry> element = new CacheElement<>("perf",
+                        key(i), new BufferedImageCacheEntry(content.clone()));
+                element.setElementAttributes(new CacheEntryAttributes());
+                cache.update(element);
+            }
+            // dispose waits for the queued writes
+            cache.dispose();
+            long writeTime = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            cache = factory.open(dir);
+            long openTime = System.nanoTime() - time;
+            assertEquals(TILES, cache.getSize());
+            Random random = new Random(1);
+            time = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                assertNotNull(cache.get(key(random.nextInt(TILES))));
+            }
+            long lookupTime = System.nanoTime() - time;
+            time = System.nanoTime();
+            cache.dispose();
+            long closeTime = System.nanoTime() - time;
+            System.out.println(String.format("%s: write %d ms, open %d ms, %d lookups %d ms (%.1f us each), close %d ms",
+                    name, writeTime / 1000000, openTime / 1000000, LOOKUPS, lookupTime / 1000000,
+                    lookupTime / 1000.0 / LOOKUPS, closeTime / 1000000));
+        } finally {
+            Utils.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * Measures the time needed to reopen a cache of {@value #TILES} tiles and to look up tiles in it.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testColdStartLookup() throws Exception {
+        for (int run = 0; run < 2; run++) {
+            measure("JCS indexed disk cache", new CacheFactory() {
+                @Override
+                public AuxiliaryCache<String, BufferedImageCacheEntry> open(File dir) throws Exception {
+                    IndexedDiskCacheAttributes attributes = new IndexedDiskCacheAttributes();
+                    attributes.setCacheName("perf");
+                    attributes.setDiskPath(dir);
+                    // keep all the queued writes
+                    attributes.setMaxPurgatorySize(-1);
+                    attributes.setDiskLimitType(IDiskCacheAttributes.DiskLimitType.SIZE);
+                    attributes.setMaxKeySize(1024 * 1024);
+                    return new IndexedDiskCacheFactory().createCache(attributes, null, null, new StandardSerializer());
+                }
+            });
+            measure("Mapped disk cache", new CacheFactory() {
+                @Override
+                public AuxiliaryCache<String, BufferedImageCacheEntry> open(File dir) throws Exception {
+                    MappedDiskCacheAttributes attributes = new MappedDiskCacheAttributes();
+                    attributes.setCacheName("perf");
+                    attributes.setDiskPath(dir);
+                    attributes.setMaxPurgatorySize(-1);
+                    attributes.setMaxSize(1024 * 1024);
+                    MappedDiskCache<String, BufferedImageCacheEntry> cache = new MappedDiskCache<>(attributes);
+                    cache.setElementSerializer(new StandardSerializer());
+                    return cache;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,128 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
+
+/**
+ * Compares the build time and the search time of a {@link QuadBuckets} index built by successive insertions
+ * with a bulk loaded one.
+ */
+public class QuadBucketsPerformanceTest {
+
+    private static final int RUNS = 5;
+    private static final int GRID = 40;
+
+    private static DataSet ds;
+    private static List<BBox> queries;
+
+    /**
+     * Setup test.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void load() throws Exception {
+        JOSMFixture.createPerformanceTestFixture().init();
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File("data_nodist/neubrandenburg.osm.bz2"))) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+        // a grid of small views over the data bounds, like successive map views
+        BBox bounds = new BBox(ds.getWays().iterator().next());
+        for (Way w : ds.getWays()) {
+            bounds.add(w.getBBox());
+        }
+        queries = new ArrayList<>();
+        double w = bounds.width() / GRID;
+        double h = bounds.height() / GRID;
+        for (int i = 0; i < GRID; i++) {
+            for (int j = 0; j < GRID; j++) {
+                double x = bounds.getTopLeftLon() + i * w;
+                double y = bounds.getBottomRightLat() + j * h;
+                queries.add(new BBox(x, y, x + 2 * w, y + 2 * h));
+            }
+        }
+    }
+
+    private static <T extends OsmPrimitive> QuadBuckets<T> build(Collection<T> primitives, boolean bulk) {
+        QuadBuckets<T> qb = new QuadBuckets<>();
+        if (bulk) {
+            qb.addAll(primitives);
+        } else {
+            for (T p : primitives) {
+                qb.add(p);
+            }
+        }
+        return qb;
+    }
+
+    private static <T extends OsmPrimitive> long buildTime(Collection<T> primitives, boolean bulk) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            build(primitives, bulk);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static long searchTime(QuadBuckets<Way> ways, int[] found) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            int count = 0;
+            long start = System.nanoTime();
+            for (BBox bbox : queries) {
+                count += ways.search(bbox).size();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            found[0] = count;
+        }
+        return best;
+    }
+
+    /**
+     * Measures the time needed to build the node and way indexes of a big dataset.
+     */
+    @Test
+    public void testBuild() {
+        Collection<Node> nodes = ds.getNodes();
+        Collection<Way> ways = ds.getWays();
+        long incrementalNodes = buildTime(nodes, false);
+        long bulkNodes = buildTime(nodes, true);
+        long incrementalWays = buildTime(ways, false);
+        long bulkWays = buildTime(ways, true);
+
+        System.out.println("Index build for " + nodes.size() + " nodes, incremental: " + incrementalNodes / 1000 + " us, bulk: "
+                + bulkNodes / 1000 + " us");
+        System.out.println("Index build for " + ways.size() + " ways, incremental: " + incrementalWays / 1000 + " us, bulk: "
+                + bulkWays / 1000 + " us");
+        assertTrue(bulkNodes + bulkWays < incrementalNodes + incrementalWays);
+    }
+
+    /**
+     * Measures the cost of {@link DataSet#searchWays} like queries on both indexes.
+     */
+    @Test
+    public void testSearchWays() {
+        int[] incrementalFound = new int[1];
+        int[] bulkFound = new int[1];
+        long incremental = searchTime(build(ds.getWays(), false), incrementalFound);
+        long bulk = searchTime(build(ds.getWays(), true), bulkFound);
+
+        System.out.println(queries.size() + " way searches, incremental index: " + incremental / 1000 + " us, bulk loaded index: "
+                + bulk / 1000 + " us (" + bulkFound[0] + " results)");
+        assertEquals(incrementalFound[0], bulkFound[0]);
+    }
+}
@@ -0,0 +1,89 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.InputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
+
+/**
+ * Compares the cost of panning the map view with and without {@link RenderTileCache}.
+ */
+public class RenderTileCachePerformanceTest {
+
+    private static final int IMG_WIDTH = 1400;
+    private static final int IMG_HEIGHT = 1050;
+    private static final int STEPS = 40;
+    private static final int STEP_PIXELS = 20;
+
+    private static Graphics2D g;
+    private static NavigatableComponent nc;
+    private static DataSet ds;
+
+    /**
+     * Setup test.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void load() throws Exception {
+        JOSMFixture.createPerformanceTestFixture().init();
+        BufferedImage img = new BufferedImage(IMG_WIDTH, IMG_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        g = (Graphics2D) img.getGraphics();
+        nc = new NavigatableComponent();
+        nc.setBounds(0, 0, IMG_WIDTH, IMG_HEIGHT);
+        MapPaintStyles.readFromPreferences();
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File("data_nodist/neubrandenburg.osm.bz2"))) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+    }
+
+    private static long pan(RenderTileCache cache) {
+        nc.zoomTo(new Bounds(53.55, 13.29, 53.57, 13.30));
+        EastNorth start = nc.getCenter();
+        long time = System.nanoTime();
+        for (int i = 0; i < STEPS; i++) {
+            double delta = i * STEP_PIXELS * nc.getScale();
+            nc.zoomTo(new EastNorth(start.east() + delta, start.north()));
+            if (cache != null) {
+                cache.paint(g, nc, false, false);
+            } else {
+                new StyledMapRenderer(g, nc, false).render(ds, false, nc.getRealBounds());
+            }
+        }
+        return System.nanoTime() - time;
+    }
+
+    /**
+     * Measures the time needed to pan the map view over a city.
+     */
+    @Test
+    public void testPan() {
+        pan(null);
+        long uncached = pan(null);
+        RenderTileCache cache = new RenderTileCache(ds);
+        try {
+            long firstPass = pan(cache);
+            long cached = pan(cache);
+            System.out.println(STEPS + " pan steps, full rendering: " + uncached / 1000000 + " ms, tile cache: "
+                    + firstPass / 1000000 + " ms (empty cache), " + cached / 1000000 + " ms (warm cache), "
+                    + cache.getRenderedTiles() + " tiles rendered");
+            assertTrue(cached < uncached);
+        } finally {
+            cache.destroy();
+        }
+    }
+}
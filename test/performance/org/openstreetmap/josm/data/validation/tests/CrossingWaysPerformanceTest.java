@@ -0,0 +1,98 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation.tests;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
+
+/**
+ * Measures the time needed by the {@link CrossingWays} and {@link UnconnectedWays} tests on a city,
+ * crossed by long coastline and boundary ways.
+ */
+public class CrossingWaysPerformanceTest {
+
+    private static final int RUNS = 3;
+    private static final int LONG_WAYS = 10;
+    private static final int LONG_WAY_SEGMENTS = 10;
+
+    private static List<OsmPrimitive> primitives;
+
+    /**
+     * Setup test.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void load() throws Exception {
+        JOSMFixture.createPerformanceTestFixture().init();
+        DataSet ds;
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File("data_nodist/neubrandenburg.osm.bz2"))) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+        BBox bbox = null;
+        for (Node n : ds.getNodes()) {
+            if (n.isLatLonKnown()) {
+                if (bbox == null) {
+                    bbox = new BBox(n);
+                } else {
+                    bbox.add(n.getCoor());
+                }
+            }
+        }
+        // zigzag ways whose long segments cross the whole city
+        for (int k = 0; k < LONG_WAYS; k++) {
+            List<Node> nodes = new ArrayList<>();
+            for (int i = 0; i <= LONG_WAY_SEGMENTS; i++) {
+                double lat = bbox.getBottomRightLat() + bbox.height() * ((i + k) % 2 == 0 ? 0.05 : 0.95);
+                double lon = bbox.getTopLeftLon() + bbox.width() * (i + k / (double) LONG_WAYS) / (LONG_WAY_SEGMENTS + 1);
+                Node n = new Node(new LatLon(lat, lon));
+                ds.addPrimitive(n);
+                nodes.add(n);
+            }
+            Way w = new Way();
+            w.setNodes(nodes);
+            if (k % 2 == 0) {
+                w.put("natural", "coastline");
+            } else {
+                w.put("boundary", "administrative");
+            }
+            ds.addPrimitive(w);
+        }
+        primitives = new ArrayList<>(ds.allPrimitives());
+    }
+
+    /**
+     * Measures the time needed by the tests.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testValidation() throws Exception {
+        for (org.openstreetmap.josm.data.validation.Test test : Arrays.asList(new CrossingWays.Ways(),
+                new CrossingWays.Boundaries(), new UnconnectedWays.UnconnectedHighways())) {
+            test.initialize();
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                test.startTest(null);
+                test.visit(primitives);
+                test.endTest();
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.println(test.getName() + ": " + best / 1000000 + " ms, " + test.getErrors().size() + " errors");
+        }
+    }
+}
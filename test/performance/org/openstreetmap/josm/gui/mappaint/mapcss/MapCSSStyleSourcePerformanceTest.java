@@ -0,0 +1,67 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.mapcss;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.mappaint.MultiCascade;
+import org.openstreetmap.josm.gui.preferences.SourceEntry;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
+
+/**
+ * Measures the time needed to compute the styles of all primitives of a big dataset with the default style.
+ */
+public class MapCSSStyleSourcePerformanceTest {
+
+    private static final int RUNS = 15;
+
+    private static MapCSSStyleSource source;
+    private static List<OsmPrimitive> primitives;
+
+    /**
+     * Setup test.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void load() throws Exception {
+        JOSMFixture.createPerformanceTestFixture().init();
+        source = new MapCSSStyleSource(new SourceEntry("styles/standard/elemstyles.mapcss", "standard", "standard", true));
+        source.loadStyleSource();
+        assertTrue(source.getErrors().isEmpty());
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File("data_nodist/neubrandenburg.osm.bz2"))) {
+            primitives = new ArrayList<>(OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE).allPrimitives());
+        }
+    }
+
+    /**
+     * Measures the time of {@link MapCSSStyleSource#apply} for all primitives.
+     */
+    @Test
+    public void testApply() {
+        long best = Long.MAX_VALUE;
+        int layers = 0;
+        for (int i = 0; i < RUNS; i++) {
+            layers = 0;
+            long start = System.nanoTime();
+            for (OsmPrimitive p : primitives) {
+                MultiCascade mc = new MultiCascade();
+                source.apply(mc, p, 0.25, false);
+                layers += mc.getLayers().size();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.println("Style computation for " + primitives.size() + " primitives: " + best / 1000000 + " ms, "
+                + layers + " layers");
+        assertTrue(layers >= primitives.size());
+    }
+}
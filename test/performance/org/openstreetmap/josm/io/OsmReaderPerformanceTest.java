@@ -0,0 +1,86 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+
+/**
+ * Measures the throughput of {@link OsmReader}, in MB/s of uncompressed OSM data.
+ */
+public class OsmReaderPerformanceTest {
+
+    private static final File FILE = new File("data_nodist/neubrandenburg.osm.bz2");
+    private static final int RUNS = 5;
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void init() {
+        JOSMFixture.createPerformanceTestFixture().init();
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void print(String what, long bytes, long nanos) {
+        System.out.println(String.format("%s: %.1f MB/s", what, bytes / 1e6 / (nanos / 1e9)));
+    }
+
+    /**
+     * Measures the parsing of data in memory, and the loading of a compressed file
+     * with and without decompression ahead of the parser.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testThroughput() throws Exception {
+        byte[] data;
+        try (InputStream in = Compression.getUncompressedFileInputStream(FILE)) {
+            data = readAll(in);
+        }
+        int nodes = OsmReader.parseDataSet(new ByteArrayInputStream(data), NullProgressMonitor.INSTANCE).getNodes().size();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            OsmReader.parseDataSet(new ByteArrayInputStream(data), NullProgressMonitor.INSTANCE);
+        }
+        print("Parsing from memory", (long) RUNS * data.length, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            try (InputStream in = Compression.BZIP2.getUncompressedInputStream(new BufferedInputStream(new FileInputStream(FILE)))) {
+                DataSet ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+                assertEquals(nodes, ds.getNodes().size());
+            }
+        }
+        print("Decompressing then parsing", (long) RUNS * data.length, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            try (InputStream in = Compression.getUncompressedFileInputStream(FILE)) {
+                DataSet ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+                assertEquals(nodes, ds.getNodes().size());
+            }
+        }
+        print("Decompressing ahead of parsing", (long) RUNS * data.length, System.nanoTime() - start);
+    }
+}
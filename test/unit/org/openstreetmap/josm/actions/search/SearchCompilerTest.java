@@ -1,6 +1,8 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.actions.search;
 
+import java.util.Arrays;
+
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
 import org.junit.Before;
@@ -97,4 +99,58 @@ public class SearchCompilerTest {
         Assert.assertThat(SearchCompiler.compile("nth:-1", false, false).toString(), CoreMatchers.is("Nth{nth=-1, modulo=false}"));
 
     }
+
+    /**
+     * Checks the primitives found with the tag index.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testCandidates() throws Exception {
+        final DataSet dataSet = new DataSet();
+        final Node signals = new Node(new LatLon(1, 1));
+        signals.put("highway", "traffic_signals");
+        final Node stop = new Node(new LatLon(2, 2));
+        stop.put("highway", "stop");
+        stop.put("name", "Foo");
+        final Node other = new Node(new LatLon(3, 3));
+        dataSet.addPrimitive(signals);
+        dataSet.addPrimitive(stop);
+        dataSet.addPrimitive(other);
+        Assert.assertEquals(Arrays.asList(signals),
+                SearchCompiler.compile("highway=traffic_signals", false, false).getCandidates(dataSet));
+        Assert.assertEquals(2, SearchCompiler.compile("highway=*", false, false).getCandidates(dataSet).size());
+        Assert.assertEquals(Arrays.asList(stop),
+                SearchCompiler.compile("highway=* name:foo", false, false).getCandidates(dataSet));
+        Assert.assertEquals(2, SearchCompiler.compile("highway=stop | highway=traffic_signals", false, false)
+                .getCandidates(dataSet).size());
+        Assert.assertEquals(Arrays.asList(stop), SearchCompiler.compile("NAME:foo", false, false).getCandidates(dataSet));
+        Assert.assertNull(SearchCompiler.compile("foo", false, false).getCandidates(dataSet));
+        Assert.assertNull(SearchCompiler.compile("-highway=stop", false, false).getCandidates(dataSet));
+
+        // the index is updated when tags change
+        other.put("highway", "traffic_signals");
+        signals.put("highway", "crossing");
+        Assert.assertEquals(Arrays.asList(other),
+                SearchCompiler.compile("highway=traffic_signals", false, false).getCandidates(dataSet));
+        dataSet.removePrimitive(other);
+        Assert.assertTrue(SearchCompiler.compile("highway=traffic_signals", false, false).getCandidates(dataSet).isEmpty());
+    }
+
+    /**
+     * Checks that the primitives purged after an upload are no longer found with the tag index.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testCandidatesAfterCleanup() throws Exception {
+        final DataSet dataSet = new DataSet();
+        final Node signals = new Node(new LatLon(1, 1));
+        signals.put("highway", "traffic_signals");
+        dataSet.addPrimitive(signals);
+        Assert.assertEquals(Arrays.asList(signals),
+                SearchCompiler.compile("highway=traffic_signals", false, false).getCandidates(dataSet));
+        signals.setDeleted(true);
+        dataSet.cleanupDeletedPrimitives();
+        Assert.assertNull(signals.getDataSet());
+        Assert.assertTrue(SearchCompiler.compile("highway=traffic_signals", false, false).getCandidates(dataSet).isEmpty());
+    }
 }
@@ -0,0 +1,130 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.WayData;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * Unit tests of {@link Command} class.
+ */
+public class CommandTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static Node createNode(DataSet ds, double lat, double lon) {
+        Node n = new Node(new LatLon(lat, lon));
+        ds.addPrimitive(n);
+        return n;
+    }
+
+    /**
+     * Checks that a command is undone once its undo data is reduced to the changed fields.
+     */
+    @Test
+    public void testCompactUndoData() {
+        DataSet ds = new DataSet();
+        Node n1 = createNode(ds, 0, 0);
+        Node n2 = createNode(ds, 0, 1);
+        Node n3 = createNode(ds, 0, 2);
+        Node n4 = createNode(ds, 0, 3);
+        Node x = createNode(ds, 1, 1);
+        Way w = new Way();
+        w.setNodes(Arrays.asList(n1, n2, n3, n4));
+        w.put("highway", "residential");
+        w.put("name", "Main Street");
+        ds.addPrimitive(w);
+
+        Way changed = new Way(w);
+        changed.setNodes(Arrays.asList(n1, x, n3, n4));
+        changed.put("name", null);
+        changed.put("oneway", "yes");
+        Command c = new ChangeCommand(w, changed);
+        c.executeCommand();
+        long size = c.getUndoDataSize();
+        c.compactUndoData();
+        assertTrue(c.getUndoDataSize() < size);
+        assertEquals(Collections.singleton(w), new HashSet<>(c.getParticipatingPrimitives()));
+
+        WayData orig = (WayData) c.getOrig(w);
+        assertEquals(Arrays.asList(n1.getUniqueId(), n2.getUniqueId(), n3.getUniqueId(), n4.getUniqueId()), orig.getNodes());
+        assertEquals("Main Street", orig.get("name"));
+        assertNull(orig.get("oneway"));
+        assertFalse(orig.isModified());
+
+        c.undoCommand();
+        assertEquals(Arrays.asList(n1, n2, n3, n4), w.getNodes());
+        assertEquals("Main Street", w.get("name"));
+        assertEquals("residential", w.get("highway"));
+        assertNull(w.get("oneway"));
+        assertFalse(w.isModified());
+    }
+
+    /**
+     * Checks that commands with the same compacted undo data are equal.
+     */
+    @Test
+    public void testCompactUndoDataEquals() {
+        DataSet ds = new DataSet();
+        Node n = createNode(ds, 0, 0);
+        n.put("name", "a");
+        Node changed = new Node(n);
+        changed.put("name", "b");
+        changed.setCoor(new LatLon(1, 1));
+        Command c1 = new ChangeCommand(n, changed);
+        c1.executeCommand();
+        c1.compactUndoData();
+        c1.undoCommand();
+        Command c2 = new ChangeCommand(n, changed);
+        c2.executeCommand();
+        c2.compactUndoData();
+        assertEquals(c1, c2);
+        assertEquals(c1.hashCode(), c2.hashCode());
+    }
+
+    /**
+     * Checks that the commands of a sequence modifying the same primitive are undone.
+     */
+    @Test
+    public void testSequence() {
+        DataSet ds = new DataSet();
+        Node n = createNode(ds, 0, 0);
+        n.put("name", "a");
+        Node b = new Node(n);
+        b.put("name", "b");
+        Node a = new Node(b);
+        a.put("name", "a");
+        SequenceCommand c = new SequenceCommand("test",
+                new ChangeCommand(n, b),
+                new MoveCommand(n, 10, 10),
+                new ChangeCommand(n, a));
+        c.executeCommand();
+        c.compactUndoData();
+        assertEquals("a", n.get("name"));
+        assertTrue(n.isModified());
+        c.undoCommand();
+        assertEquals("a", n.get("name"));
+        assertEquals(new LatLon(0, 0), n.getCoor());
+        assertFalse(n.isModified());
+    }
+}
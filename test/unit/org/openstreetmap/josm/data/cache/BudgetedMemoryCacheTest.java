@@ -0,0 +1,99 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.jcs.access.CacheAccess;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+
+/**
+ * Unit tests of {@link BudgetedMemoryCache} class.
+ */
+public class BudgetedMemoryCacheTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static BudgetedMemoryCache<String, BufferedImageCacheEntry> getMemoryCache(CacheAccess<String, BufferedImageCacheEntry> cache) {
+        return (BudgetedMemoryCache<String, BufferedImageCacheEntry>) cache.getCacheControl().getMemoryCache();
+    }
+
+    private static byte[] png(int size) throws IOException {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(size / 2, size / 2, 0xff0000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks that the memory cache stays within its byte budget.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testBudget() throws IOException {
+        CacheAccess<String, BufferedImageCacheEntry> cache = JCSCacheManager.getCache("test:budget", 1000, 0, null, false, 1024);
+        BudgetedMemoryCache<String, BufferedImageCacheEntry> memoryCache = getMemoryCache(cache);
+        assertEquals(1024 * 1024, memoryCache.getMaxMemorySize());
+        for (int i = 0; i < 1000; i++) {
+            cache.put("tile:" + i, new BufferedImageCacheEntry(new byte[10 * 1024]), new CacheEntryAttributes());
+        }
+        int size = memoryCache.getSize();
+        // each of the 16 stripes keeps 64 kB, so about 6 entries of 10 kB
+        assertTrue(String.valueOf(size), size > 50 && size <= 110);
+        assertTrue(memoryCache.getMemorySize() <= memoryCache.getMaxMemorySize());
+        assertEquals(1000 - size, memoryCache.getEvictionCount());
+        assertNotNull(cache.get("tile:999"));
+        assertNull(cache.get("tile:0"));
+        assertEquals(1, memoryCache.getHitCount());
+        assertEquals(1, memoryCache.getMissCount());
+        cache.remove("tile:");
+        assertEquals(0, memoryCache.getSize());
+        assertEquals(0, memoryCache.getMemorySize());
+    }
+
+    /**
+     * Checks that decoded images are accounted for, and that the images of evicted entries are kept as they are.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testDecodedImages() throws IOException {
+        CacheAccess<String, BufferedImageCacheEntry> cache = JCSCacheManager.getCache("test:images", 1000, 0, null, false, 1024);
+        BudgetedMemoryCache<String, BufferedImageCacheEntry> memoryCache = getMemoryCache(cache);
+        byte[] content = png(256);
+        BufferedImageCacheEntry entry = new BufferedImageCacheEntry(content);
+        cache.put("tile:0", entry, new CacheEntryAttributes());
+        long before = memoryCache.getMemorySize();
+        BufferedImage image = cache.get("tile:0").getImage();
+        assertEquals(0xff0000, image.getRGB(128, 128) & 0xffffff);
+        // the size is updated on next access
+        cache.get("tile:0");
+        assertEquals(before + BufferedImageCacheEntry.getMemorySize(image), memoryCache.getMemorySize());
+
+        // fill the cache to evict the decoded tile
+        for (int i = 1; memoryCache.getEvictionCount() == 0 || cache.get("tile:0") != null; i++) {
+            cache.put("tile:" + i, new BufferedImageCacheEntry(new byte[10 * 1024]), new CacheEntryAttributes());
+        }
+        // the image may still be drawn by a tile, decoding other images must not write into it
+        BufferedImage decoded = new BufferedImageCacheEntry(png(256)).getImage();
+        assertTrue(decoded != image);
+        assertTrue(entry.getImage() == image);
+        assertEquals(0xff0000, image.getRGB(128, 128) & 0xffffff);
+    }
+}
@@ -0,0 +1,88 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+
+/**
+ * Unit tests of {@link BufferedImageDecoder} class.
+ */
+public class BufferedImageDecoderTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static byte[] encode(int type, String format) throws IOException {
+        BufferedImage image = new BufferedImage(256, 256, type);
+        for (int y = 128; y < 132; y++) {
+            for (int x = 128; x < 132; x++) {
+                image.setRGB(x, y, 0xffff0000);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, out));
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks that images are decoded into integer RGB images when possible, and that readers are reused.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testDecode() throws IOException {
+        BufferedImage image = BufferedImageDecoder.decode(encode(BufferedImage.TYPE_INT_RGB, "png"), 1);
+        assertEquals(256, image.getWidth());
+        assertEquals(BufferedImage.TYPE_INT_RGB, image.getType());
+        assertEquals(0xff0000, image.getRGB(128, 128) & 0xffffff);
+        int readers = BufferedImageDecoder.getReaderCount();
+        assertTrue(readers > 0);
+        image = BufferedImageDecoder.decode(encode(BufferedImage.TYPE_INT_ARGB, "png"), 1);
+        assertEquals(BufferedImage.TYPE_INT_ARGB, image.getType());
+        assertEquals(0xffff0000, image.getRGB(129, 129));
+        assertEquals(0, image.getRGB(0, 0));
+        assertEquals(readers, BufferedImageDecoder.getReaderCount());
+        image = BufferedImageDecoder.decode(encode(BufferedImage.TYPE_3BYTE_BGR, "jpg"), 1);
+        assertEquals(256, image.getHeight());
+        assertNull(BufferedImageDecoder.decode("<html>not an image</html>".getBytes("UTF-8"), 1));
+    }
+
+    /**
+     * Checks that images can be decoded with a lower resolution.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testSubsampling() throws IOException {
+        byte[] content = encode(BufferedImage.TYPE_INT_RGB, "png");
+        BufferedImage image = BufferedImageDecoder.decode(content, 4);
+        assertEquals(64, image.getWidth());
+        assertEquals(64, image.getHeight());
+        assertEquals(0xff0000, image.getRGB(32, 32) & 0xffffff);
+
+        BufferedImageCacheEntry entry = new BufferedImageCacheEntry(content);
+        assertFalse(entry.isImageLoaded(2));
+        assertEquals(128, entry.getImage(2).getWidth());
+        assertTrue(entry.isImageLoaded(2));
+        assertTrue(entry.isImageLoaded(4));
+        assertFalse(entry.isImageLoaded(1));
+        assertEquals(128, entry.getImage(4).getWidth());
+        assertEquals(256, entry.getImage().getWidth());
+        assertTrue(entry.isImageLoaded(1));
+    }
+}
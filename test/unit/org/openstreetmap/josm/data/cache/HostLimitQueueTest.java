@@ -0,0 +1,209 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Unit tests of {@link HostLimitQueue} class.
+ */
+public class HostLimitQueueTest {
+
+    private static class Job extends JCSCachedTileLoaderJob<String, CacheEntry> {
+        private final String host;
+        private final String name;
+        private double priority;
+        private boolean obsolete;
+        private boolean canceled;
+
+        Job(String host, String name, double priority) throws IOException {
+            super(JCSCacheManager.<String, CacheEntry>getCache("test"), 30000, 30000, null);
+            this.host = host;
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Override
+        public String getCacheKey() {
+            return name;
+        }
+
+        @Override
+        public URL getUrl() {
+            try {
+                return new URL("http://" + host + "/" + name);
+            } catch (MalformedURLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        protected CacheEntry createCacheEntry(byte[] content) {
+            return new CacheEntry(content);
+        }
+
+        @Override
+        public double getPriority() {
+            return priority;
+        }
+
+        @Override
+        public boolean isObsolete() {
+            return obsolete;
+        }
+
+        @Override
+        public void handleJobCancellation() {
+            canceled = true;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    /**
+     * Checks that jobs are taken by priority, and in submission order for equal priorities.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testPriority() throws Exception {
+        HostLimitQueue queue = new HostLimitQueue(10);
+        Job a = new Job("a.example.com", "a", 5);
+        Job b = new Job("b.example.com", "b", 1);
+        Job c = new Job("a.example.com", "c", 1);
+        Job d = new Job("a.example.com", "d", 3);
+        queue.offer(a);
+        queue.offer(b);
+        queue.offer(c);
+        queue.offer(d);
+        assertEquals(4, queue.size());
+        assertSame(b, queue.peek());
+        assertSame(b, queue.poll());
+        assertSame(c, queue.poll());
+        assertSame(d, queue.poll());
+        assertSame(a, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+        assertEquals(4, queue.getDispatchedCount());
+    }
+
+    /**
+     * Checks that no more than the host limit of jobs of a host are taken before they finish.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testHostLimit() throws Exception {
+        HostLimitQueue queue = new HostLimitQueue(2);
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            jobs.add(new Job("a.example.com", "a" + i, i));
+            queue.offer(jobs.get(i));
+        }
+        Job other = new Job("b.example.com", "b", 10);
+        queue.offer(other);
+        assertSame(jobs.get(0), queue.poll());
+        assertSame(jobs.get(1), queue.poll());
+        // host a has reached its limit
+        assertSame(other, queue.poll());
+        assertNull(queue.poll());
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        assertEquals(2, queue.size());
+        jobs.get(0).executionFinished();
+        assertSame(jobs.get(2), queue.poll());
+        assertNull(queue.poll());
+    }
+
+    /**
+     * Checks that reprioritizing the queue changes the order and cancels obsolete jobs.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testReprioritize() throws Exception {
+        HostLimitQueue queue = new HostLimitQueue(2);
+        Job a = new Job("a.example.com", "a", 1);
+        Job b = new Job("a.example.com", "b", 2);
+        Job c = new Job("a.example.com", "c", 3);
+        queue.offer(a);
+        queue.offer(b);
+        queue.offer(c);
+        a.obsolete = true;
+        c.priority = 0;
+        queue.reprioritize();
+        assertTrue(a.canceled);
+        assertFalse(b.canceled);
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.getCanceledCount());
+        assertSame(c, queue.poll());
+        assertTrue(queue.remove(b));
+        assertFalse(queue.remove(b));
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Checks that all the jobs are run by an executor using the queue, within the host limit.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testExecutor() throws Exception {
+        final int hostLimit = 2;
+        final HostLimitQueue queue = new HostLimitQueue(hostLimit);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(6, 6, 30, TimeUnit.SECONDS, queue,
+                Utils.getNamedThreadFactory("HostLimitQueueTest"));
+        executor.prestartAllCoreThreads();
+        final CountDownLatch done = new CountDownLatch(30);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        for (int i = 0; i < 30; i++) {
+            executor.execute(new Job("a.example.com", "a" + i, i) {
+                @Override
+                public void run() {
+                    try {
+                        int r = running.incrementAndGet();
+                        synchronized (maxRunning) {
+                            maxRunning.set(Math.max(maxRunning.get(), r));
+                        }
+                        Thread.sleep(2);
+                        running.decrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        executionFinished();
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(maxRunning.get() <= hostLimit);
+        assertEquals(30, queue.getDispatchedCount());
+    }
+}
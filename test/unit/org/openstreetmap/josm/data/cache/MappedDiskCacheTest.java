@@ -0,0 +1,193 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.apache.commons.jcs.engine.CacheElement;
+import org.apache.commons.jcs.engine.behavior.ICacheElement;
+import org.apache.commons.jcs.utils.serialization.StandardSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Unit tests of {@link MappedDiskCache} class.
+ */
+public class MappedDiskCacheTest {
+
+    private File dir;
+
+    /**
+     * Creates a temporary cache directory.
+     * @throws IOException if an I/O error occurs
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("josm-mapped-cache").toFile();
+    }
+
+    /**
+     * Deletes the temporary cache directory.
+     */
+    @After
+    public void tearDown() {
+        Utils.deleteDirectory(dir);
+    }
+
+    private MappedDiskCache<String, Object> open(int segmentSize, int maxSize) throws IOException {
+        MappedDiskCacheAttributes attributes = new MappedDiskCacheAttributes();
+        attributes.setCacheName("test:cache");
+        attributes.setDiskPath(dir);
+        attributes.setSegmentSize(segmentSize);
+        attributes.setMaxSize(maxSize);
+        MappedDiskCache<String, Object> cache = new MappedDiskCache<>(attributes);
+        cache.setElementSerializer(new StandardSerializer());
+        return cache;
+    }
+
+    private static byte[] content(int i, int size) {
+        byte[] content = new byte[size];
+        new Random(i).nextBytes(content);
+        return content;
+    }
+
+    private static void put(MappedDiskCache<String, Object> cache, String key, int i, int size) throws IOException {
+        CacheEntryAttributes attributes = new CacheEntryAttributes();
+        attributes.setEtag("etag" + i);
+        attributes.setExpirationTime(1000L * i);
+        attributes.setResponseCode(i % 2 == 0 ? 200 : 404);
+        CacheElement<String, Object> element = new CacheElement<String, Object>("test:cache", key,
+                new BufferedImageCacheEntry(content(i, size)));
+        element.setElementAttributes(attributes);
+        cache.processUpdate(element);
+    }
+
+    private static void check(MappedDiskCache<String, Object> cache, String key, int i, int size) throws IOException {
+        ICacheElement<String, Object> element = cache.processGet(key);
+        assertNotNull(key, element);
+        assertEquals(key, element.getKey());
+        assertTrue(element.getVal() instanceof BufferedImageCacheEntry);
+        assertArrayEquals(content(i, size), ((CacheEntry) element.getVal()).getContent());
+        CacheEntryAttributes attributes = (CacheEntryAttributes) element.getElementAttributes();
+        assertEquals("etag" + i, attributes.getEtag());
+        assertEquals(1000L * i, attributes.getExpirationTime());
+        assertEquals(i % 2 == 0 ? 200 : 404, attributes.getResponseCode());
+    }
+
+    /**
+     * Checks that entries are found again after the cache is reopened.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testReopen() throws Exception {
+        MappedDiskCache<String, Object> cache = open(MappedDiskCacheAttributes.DEFAULT_SEGMENT_SIZE, -1);
+        for (int i = 0; i < 10000; i++) {
+            put(cache, "tile:" + i, i, 100 + i % 50);
+        }
+        // not a cache entry, stored with Java serialization
+        cache.processUpdate(new CacheElement<String, Object>("test:cache", "other", "value"));
+        assertNull(cache.processGet("missing"));
+        assertEquals(10001, cache.getSize());
+        cache.processDispose();
+
+        cache = open(MappedDiskCacheAttributes.DEFAULT_SEGMENT_SIZE, -1);
+        assertEquals(10001, cache.getSize());
+        assertEquals(10001, cache.getKeySet().size());
+        for (int i = 0; i < 10000; i++) {
+            check(cache, "tile:" + i, i, 100 + i % 50);
+        }
+        assertEquals("value", cache.processGet("other").getVal());
+        assertTrue(cache.processRemove("tile:1"));
+        assertNull(cache.processGet("tile:1"));
+        assertTrue(cache.processRemove("tile:"));
+        assertEquals(1, cache.getSize());
+        cache.processRemoveAll();
+        assertEquals(0, cache.getSize());
+        assertNull(cache.processGet("other"));
+        cache.processDispose();
+    }
+
+    /**
+     * Checks that the removed slots of the index are counted when it is opened after a crash,
+     * i.e. without being flushed or closed.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testIndexReopenAfterCrash() throws Exception {
+        MappedDiskIndex index = new MappedDiskIndex(dir, "test");
+        for (int i = 1; i <= 2400; i++) {
+            index.insert(i, 1, i, 1);
+        }
+        for (int i = 1; i <= 2400; i++) {
+            index.remove(index.find(i));
+        }
+        // not closed
+        index = new MappedDiskIndex(dir, "test");
+        assertEquals(0, index.size());
+        for (int i = 3001; i <= 5400; i++) {
+            index.insert(i, 1, i, 1);
+        }
+        // enough slots must stay empty for the lookups of missing keys to end
+        int used = 0;
+        for (int slot = 0; slot < index.capacity(); slot++) {
+            if (index.getSegment(slot) != MappedDiskIndex.EMPTY) {
+                used++;
+            }
+        }
+        assertTrue(used <= index.capacity() * 0.6);
+        assertEquals(2400, index.size());
+        assertEquals(-1, index.find(1));
+        index.close();
+    }
+
+    /**
+     * Checks that segments with obsolete entries are compacted.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        MappedDiskCache<String, Object> cache = open(64 * 1024, -1);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100; i++) {
+                put(cache, "tile:" + i, round * 100 + i, 1000);
+            }
+        }
+        for (int i = 0; i < 200 && cache.getSegmentCount() > 5; i++) {
+            Thread.sleep(50);
+        }
+        // 100 entries of about 1 kB take 2 segments of 64 kB, 20 rounds would take 32 segments without compaction
+        assertTrue(String.valueOf(cache.getSegmentCount()), cache.getSegmentCount() <= 5);
+        assertEquals(100, cache.getSize());
+        for (int i = 0; i < 100; i++) {
+            check(cache, "tile:" + i, 1900 + i, 1000);
+        }
+        cache.processDispose();
+    }
+
+    /**
+     * Checks that the oldest entries are dropped when the size limit is reached.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testMaxSize() throws Exception {
+        MappedDiskCache<String, Object> cache = open(64 * 1024, 256);
+        for (int i = 0; i < 1000; i++) {
+            put(cache, "tile:" + i, i, 1000);
+        }
+        assertTrue(cache.getSegmentCount() <= 4);
+        assertTrue(cache.getSize() < 300);
+        assertNull(cache.processGet("tile:0"));
+        check(cache, "tile:999", 999, 1000);
+        cache.processDispose();
+    }
+}
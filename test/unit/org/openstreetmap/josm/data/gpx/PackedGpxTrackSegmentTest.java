@@ -0,0 +1,191 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.gpx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.io.GpxReader;
+import org.xml.sax.SAXException;
+
+/**
+ * Unit tests of {@link PackedGpxTrackSegment} class.
+ */
+public class PackedGpxTrackSegmentTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static List<WayPoint> createWayPoints(int count) {
+        List<WayPoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            WayPoint wp = new WayPoint(new LatLon(45 + i * 0.001, 5 + (i % 100) * 0.002));
+            if (i % 10 != 3) {
+                String millis = i % 7 == 0 ? ".250" : "";
+                wp.attr.put(GpxConstants.PT_TIME, String.format("2015-06-01T10:%02d:%02d%sZ", i / 60 % 60, i % 60, millis));
+                wp.setTime();
+            }
+            if (i % 5 == 0) {
+                wp.attr.put(GpxConstants.PT_ELE, Integer.toString(i));
+                wp.attr.put(GpxConstants.PT_HDOP, 1.5f);
+            }
+            points.add(wp);
+        }
+        // a time which is not formatted the way the segment formats it
+        points.get(1).attr.put(GpxConstants.PT_TIME, "2015-06-01T12:00:01+02:00");
+        points.get(1).setTime();
+        return points;
+    }
+
+    private static PackedGpxTrackSegment pack(List<WayPoint> points) {
+        PackedGpxTrackSegment.Builder builder = new PackedGpxTrackSegment.Builder();
+        for (WayPoint wp : points) {
+            builder.add(wp);
+        }
+        assertEquals(points.size(), builder.size());
+        return builder.build();
+    }
+
+    /**
+     * Checks that the points of a packed segment are the points it was built from.
+     */
+    @Test
+    public void testWayPoints() {
+        List<WayPoint> points = createWayPoints(1000);
+        PackedGpxTrackSegment packed = pack(points);
+        ImmutableGpxTrackSegment segment = new ImmutableGpxTrackSegment(points);
+        assertEquals(points.size(), packed.size());
+        assertEquals(segment.getBounds(), packed.getBounds());
+        assertEquals(segment.length(), packed.length(), 1e-6);
+        List<WayPoint> unpacked = packed.getWayPoints();
+        for (int i = 0; i < points.size(); i++) {
+            WayPoint expected = points.get(i);
+            WayPoint actual = unpacked.get(i);
+            assertEquals(expected.getCoor(), actual.getCoor());
+            assertEquals(expected.attr, actual.attr);
+            assertEquals(expected.time, actual.time, 0);
+            assertEquals(expected.attr.containsKey(GpxConstants.PT_TIME), packed.hasTime(i));
+            assertEquals(expected.time, packed.getTime(i), 0);
+            assertEquals(expected.get(GpxConstants.PT_HDOP), packed.get(i, GpxConstants.PT_HDOP));
+            assertEquals(expected.getEastNorth(), packed.getEastNorth(i));
+            assertEquals(expected.getEastNorth(), actual.getEastNorth());
+        }
+    }
+
+    /**
+     * Checks that the ranges of points cover the lines intersecting given bounds.
+     */
+    @Test
+    public void testRanges() {
+        List<WayPoint> points = createWayPoints(1000);
+        PackedGpxTrackSegment packed = pack(points);
+        Bounds[] areas = {
+            packed.getBounds(),
+            new Bounds(45.1, 5.05, 45.2, 5.06),
+            new Bounds(45.1, 5.05, 45.1, 5.05),
+            new Bounds(10, 5, 11, 6),
+            new Bounds(45, 170, 46, 6, false), // crosses the 180th meridian
+        };
+        for (Bounds area : areas) {
+            boolean[] covered = new boolean[points.size()];
+            int[] ranges = packed.getRanges(area);
+            assertEquals(0, ranges.length % 2);
+            for (int r = 0; r < ranges.length; r += 2) {
+                assertTrue(ranges[r] < ranges[r + 1]);
+                assertTrue(r == 0 || ranges[r - 1] < ranges[r]);
+                for (int i = ranges[r]; i <= ranges[r + 1]; i++) {
+                    covered[i] = true;
+                }
+            }
+            for (int i = 1; i < points.size(); i++) {
+                Bounds line = new Bounds(points.get(i - 1).getCoor());
+                line.extend(points.get(i).getCoor());
+                if (line.intersects(area)) {
+                    assertTrue(covered[i - 1] && covered[i]);
+                }
+            }
+        }
+        assertArrayEquals(new int[] {0, 999}, packed.getRanges(packed.getBounds()));
+        assertArrayEquals(new int[0], packed.getRanges(areas[3]));
+    }
+
+    /**
+     * Checks that the nearest point of a track does not depend on how its segments are stored.
+     */
+    @Test
+    public void testNearestPointOnTrack() {
+        List<WayPoint> points = createWayPoints(1000);
+        GpxData immutable = new GpxData();
+        immutable.tracks.add(new ImmutableGpxTrack(Collections.<Collection<WayPoint>>singleton(points), Collections.<String, Object>emptyMap()));
+        GpxData packed = new GpxData();
+        packed.tracks.add(new ImmutableGpxTrack(
+                Collections.<GpxTrackSegment>singletonList(pack(points)), Collections.<String, Object>emptyMap()));
+        for (int i = 0; i < points.size(); i += 37) {
+            EastNorth en = points.get(i).getEastNorth().add(50, -30);
+            WayPoint expected = immutable.nearestPointOnTrack(en, 200);
+            WayPoint actual = packed.nearestPointOnTrack(en, 200);
+            assertEquals(expected.getCoor().lat(), actual.getCoor().lat(), 1e-9);
+            assertEquals(expected.getCoor().lon(), actual.getCoor().lon(), 1e-9);
+            assertEquals(expected.time, actual.time, 1e-6);
+        }
+        EastNorth far = new EastNorth(0, 0);
+        assertNull(immutable.nearestPointOnTrack(far, 200));
+        assertNull(packed.nearestPointOnTrack(far, 200));
+    }
+
+    /**
+     * Checks that {@link GpxReader} packs the segments having enough points.
+     * @throws IOException if the data cannot be read
+     * @throws SAXException if the data cannot be parsed
+     */
+    @Test
+    public void testGpxReader() throws IOException, SAXException {
+        StringBuilder sb = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>"
+                + "<gpx version='1.1' creator='test' xmlns='http://www.topografix.com/GPX/1/1'><trk><trkseg>");
+        for (int i = 0; i < 10; i++) {
+            sb.append("<trkpt lat='45.").append(i).append("' lon='5'><time>2015-06-01T10:00:0").append(i).append("Z</time></trkpt>");
+        }
+        sb.append("</trkseg><trkseg><trkpt lat='46' lon='5'/></trkseg></trk></gpx>");
+        int old = GpxReader.PROP_PACKED_SEGMENT_SIZE.get();
+        try {
+            GpxReader.PROP_PACKED_SEGMENT_SIZE.put(5);
+            GpxReader reader = new GpxReader(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)));
+            assertTrue(reader.parse(false));
+            GpxTrack track = reader.getGpxData().tracks.iterator().next();
+            List<GpxTrackSegment> segments = new ArrayList<>(track.getSegments());
+            assertEquals(2, segments.size());
+            assertTrue(segments.get(0) instanceof PackedGpxTrackSegment);
+            assertFalse(segments.get(1) instanceof PackedGpxTrackSegment);
+            PackedGpxTrackSegment packed = (PackedGpxTrackSegment) segments.get(0);
+            assertEquals(10, packed.size());
+            assertEquals(45.9, packed.getLat(9), 0);
+            assertEquals("2015-06-01T10:00:09Z", packed.getWayPoint(9).get(GpxConstants.PT_TIME));
+            PackedGpxTrackSegment.WayPointList list = (PackedGpxTrackSegment.WayPointList) packed.getWayPoints();
+            assertSame(packed, list.getSegment());
+        } finally {
+            GpxReader.PROP_PACKED_SEGMENT_SIZE.put(old);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.jcs.access.CacheAccess;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.gui.jmapviewer.tilesources.OsmTileSource;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.cache.BufferedImageCacheEntry;
+import org.openstreetmap.josm.data.cache.CacheEntryAttributes;
+import org.openstreetmap.josm.data.cache.JCSCacheManager;
+
+/**
+ * Unit tests of {@link ProvisionalTileComposer} class.
+ */
+public class ProvisionalTileComposerTest {
+
+    private static final TileSource SOURCE = new OsmTileSource.Mapnik();
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static void putTile(CacheAccess<String, BufferedImageCacheEntry> cache, int x, int y, int zoom, int rgb) throws IOException {
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < 256; i++) {
+            for (int j = 0; j < 256; j++) {
+                image.setRGB(i, j, j < 128 ? rgb : 0x0000ff);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        cache.put(TMSCachedTileLoaderJob.getCacheKey(SOURCE, x, y, zoom), new BufferedImageCacheEntry(out.toByteArray()),
+                new CacheEntryAttributes());
+    }
+
+    /**
+     * Checks that a tile is composed from its four children.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testChildren() throws IOException {
+        CacheAccess<String, BufferedImageCacheEntry> cache = JCSCacheManager.getCache("test:provisional_children");
+        ProvisionalTileComposer composer = new ProvisionalTileComposer(cache);
+        assertNull(composer.composeImage(SOURCE, 5, 6, 10));
+        putTile(cache, 10, 12, 11, 0xff0000);
+        putTile(cache, 11, 12, 11, 0x00ff00);
+        putTile(cache, 10, 13, 11, 0xff0000);
+        // one child is missing
+        assertNull(composer.composeImage(SOURCE, 5, 6, 10));
+        putTile(cache, 11, 13, 11, 0x00ff00);
+        BufferedImage image = composer.composeImage(SOURCE, 5, 6, 10);
+        assertNotNull(image);
+        assertEquals(256, image.getWidth());
+        assertEquals(0xff0000, image.getRGB(10, 10) & 0xffffff);
+        assertEquals(0x00ff00, image.getRGB(200, 10) & 0xffffff);
+        assertEquals(0x0000ff, image.getRGB(10, 100) & 0xffffff);
+        assertEquals(0xff0000, image.getRGB(10, 138) & 0xffffff);
+    }
+
+    /**
+     * Checks that a tile is composed from a part of a parent tile, in the background.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testParent() throws Exception {
+        CacheAccess<String, BufferedImageCacheEntry> cache = JCSCacheManager.getCache("test:provisional_parent");
+        ProvisionalTileComposer composer = new ProvisionalTileComposer(cache);
+        putTile(cache, 2, 3, 8, 0xff0000);
+        // top left quarter of the top right quarter of the parent
+        Tile tile = new Tile(SOURCE, 10, 12, 10);
+        final CountDownLatch composed = new CountDownLatch(1);
+        composer.compose(tile, new Runnable() {
+            @Override
+            public void run() {
+                composed.countDown();
+            }
+        });
+        assertTrue(composed.await(10, TimeUnit.SECONDS));
+        BufferedImage image = composer.getImage(tile);
+        assertEquals(0xff0000, image.getRGB(0, 0) & 0xffffff);
+        assertEquals(0xff0000, image.getRGB(255, 255) & 0xffffff);
+        Tile other = new Tile(SOURCE, 10, 14, 10);
+        assertEquals(0x0000ff, composer.composeImage(SOURCE, 10, 14, 10).getRGB(128, 128) & 0xffffff);
+        composer.remove(tile);
+        assertNull(composer.getImage(tile));
+        assertNull(composer.getImage(other));
+    }
+
+    /**
+     * Checks that a tile which could not be composed is composed again once its parent tile has been loaded.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testFailure() throws Exception {
+        CacheAccess<String, BufferedImageCacheEntry> cache = JCSCacheManager.getCache("test:provisional_failure");
+        ProvisionalTileComposer composer = new ProvisionalTileComposer(cache);
+        Tile tile = new Tile(SOURCE, 10, 12, 10);
+        composer.compose(tile, null);
+        for (int i = 0; i < 100 && !composer.hasFailed(tile); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(composer.hasFailed(tile));
+        assertNull(composer.getImage(tile));
+
+        // a tile which is neither a parent nor a child is loaded
+        composer.remove(new Tile(SOURCE, 11, 12, 10));
+        composer.remove(new Tile(SOURCE, 3, 3, 8));
+        assertTrue(composer.hasFailed(tile));
+
+        // the parent tile is loaded
+        putTile(cache, 2, 3, 8, 0xff0000);
+        composer.remove(new Tile(SOURCE, 2, 3, 8));
+        assertFalse(composer.hasFailed(tile));
+        final CountDownLatch composed = new CountDownLatch(1);
+        composer.compose(tile, new Runnable() {
+            @Override
+            public void run() {
+                composed.countDown();
+            }
+        });
+        assertTrue(composed.await(10, TimeUnit.SECONDS));
+        assertNotNull(composer.getImage(tile));
+    }
+
+    /**
+     * Checks that the failure of a tile waiting to be decoded is forgotten once the tile itself is loaded.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testFailureOfLoadedTile() throws Exception {
+        CacheAccess<String, BufferedImageCacheEntry> cache = JCSCacheManager.getCache("test:provisional_loaded");
+        ProvisionalTileComposer composer = new ProvisionalTileComposer(cache);
+        // the tile is in the cache, so it is not composed
+        putTile(cache, 10, 12, 10, 0xff0000);
+        Tile tile = new Tile(SOURCE, 10, 12, 10);
+        composer.compose(tile, null);
+        for (int i = 0; i < 100 && !composer.hasFailed(tile); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(composer.hasFailed(tile));
+
+        composer.remove(tile);
+        assertFalse(composer.hasFailed(tile));
+        assertTrue(composer.hasNoFailures());
+    }
+}
@@ -0,0 +1,120 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.jcs.access.CacheAccess;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileLoaderListener;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.gui.jmapviewer.tilesources.OsmTileSource;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.cache.BufferedImageCacheEntry;
+import org.openstreetmap.josm.data.cache.CacheEntryAttributes;
+import org.openstreetmap.josm.data.cache.JCSCacheManager;
+
+/**
+ * Unit tests of {@link TMSCachedTileLoaderJob} class.
+ */
+public class TMSCachedTileLoaderJobTest {
+
+    private static final TileSource SOURCE = new OsmTileSource.Mapnik();
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static class ScaleListener implements TileLoaderListener, TileDisplayScaleProvider {
+        private final double scale;
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        ScaleListener(double scale) {
+            this.scale = scale;
+        }
+
+        @Override
+        public void tileLoadingFinished(Tile tile, boolean success) {
+            finished.countDown();
+        }
+
+        @Override
+        public double getDisplayScale(Tile tile) {
+            return scale;
+        }
+    }
+
+    private static BufferedImageCacheEntry putPng(CacheAccess<String, BufferedImageCacheEntry> cache, Tile tile) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB), "png", out);
+        CacheEntryAttributes attributes = new CacheEntryAttributes();
+        attributes.setLastModification(System.currentTimeMillis());
+        BufferedImageCacheEntry entry = new BufferedImageCacheEntry(out.toByteArray());
+        cache.put(TMSCachedTileLoaderJob.getCacheKey(SOURCE, tile.getXtile(), tile.getYtile(), tile.getZoom()), entry, attributes);
+        return entry;
+    }
+
+    private static void load(CacheAccess<String, BufferedImageCacheEntry> cache, Tile tile, double scale) throws InterruptedException {
+        ScaleListener listener = new ScaleListener(scale);
+        new TMSCachedTileLoaderJob(listener, tile, cache, 1000, 1000, Collections.<String, String>emptyMap(),
+                TMSCachedTileLoader.getNewThreadPoolExecutor("test", 1)).submit(false);
+        assertTrue(listener.finished.await(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Checks that a tile decoded with subsampling is loaded again with more detail once displayed larger.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testSubsampledTile() throws Exception {
+        CacheAccess<String, BufferedImageCacheEntry> cache = JCSCacheManager.getCache("test:subsampling");
+        Tile tile = new Tile(SOURCE, 1, 2, 3);
+        putPng(cache, tile);
+        load(cache, tile, 0.25);
+        assertTrue(tile.isLoaded());
+        assertEquals(64, tile.getImage().getWidth());
+        assertFalse(TMSCachedTileLoaderJob.needsMoreDetail(tile, 0.25));
+        assertTrue(TMSCachedTileLoaderJob.needsMoreDetail(tile, 0.5));
+
+        load(cache, tile, 1);
+        assertTrue(tile.isLoaded());
+        assertEquals(256, tile.getImage().getWidth());
+        assertFalse(TMSCachedTileLoaderJob.needsMoreDetail(tile, 1));
+    }
+
+    /**
+     * Checks that the tiles loaded for a {@link TilePrefetcher} only are not decoded.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testPrefetchedTile() throws Exception {
+        CacheAccess<String, BufferedImageCacheEntry> cache = JCSCacheManager.getCache("test:prefetched");
+        Tile tile = new Tile(SOURCE, 1, 2, 3);
+        BufferedImageCacheEntry entry = putPng(cache, tile);
+        TilePrefetcher prefetcher = new TilePrefetcher(SOURCE, new CachedTileLoaderFactory(cache, TMSCachedTileLoader.class),
+                Collections.<String, String>emptyMap(), new Area(new Rectangle2D.Double(0, 0, 1, 1)), 3, 3);
+        new TMSCachedTileLoaderJob(prefetcher, tile, cache, 1000, 1000, Collections.<String, String>emptyMap(),
+                TMSCachedTileLoader.getNewThreadPoolExecutor("test", 1)).submit(false);
+        assertTrue(tile.isLoaded());
+        assertEquals(1, prefetcher.getDownloadedCount());
+        assertFalse(entry.isImageLoaded(4));
+    }
+}
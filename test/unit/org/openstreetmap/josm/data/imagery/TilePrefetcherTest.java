@@ -0,0 +1,111 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.jcs.access.CacheAccess;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.TileXY;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.gui.jmapviewer.tilesources.OsmTileSource;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.cache.BufferedImageCacheEntry;
+import org.openstreetmap.josm.data.cache.CacheEntryAttributes;
+import org.openstreetmap.josm.data.cache.JCSCacheManager;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.gpx.GpxTrack;
+import org.openstreetmap.josm.data.gpx.ImmutableGpxTrack;
+import org.openstreetmap.josm.data.gpx.WayPoint;
+
+/**
+ * Unit tests of {@link TilePrefetcher} class.
+ */
+public class TilePrefetcherTest {
+
+    private static final TileSource SOURCE = new OsmTileSource.Mapnik();
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    /**
+     * Checks the tiles of an area, and that the cached tiles are not downloaded again.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testCachedTiles() throws Exception {
+        CacheAccess<String, BufferedImageCacheEntry> cache = JCSCacheManager.getCache("test:prefetch");
+        // a triangle over a few tiles of zoom level 12
+        Rectangle2D bounds = new Rectangle2D.Double(2.25, 48.8, 0.2, 0.1);
+        Path2D.Double triangle = new Path2D.Double();
+        triangle.moveTo(bounds.getMinX(), bounds.getMinY());
+        triangle.lineTo(bounds.getMaxX(), bounds.getMinY());
+        triangle.lineTo(bounds.getMinX(), bounds.getMaxY());
+        triangle.closePath();
+        TilePrefetcher prefetcher = new TilePrefetcher(SOURCE, new CachedTileLoaderFactory(cache, TMSCachedTileLoader.class),
+                Collections.<String, String>emptyMap(), new Area(triangle), 12, 12);
+
+        TileXY t1 = SOURCE.latLonToTileXY(bounds.getMaxY(), bounds.getMinX(), 12);
+        TileXY t2 = SOURCE.latLonToTileXY(bounds.getMinY(), bounds.getMaxX(), 12);
+        int boxCount = (t2.getXIndex() - t1.getXIndex() + 1) * (t2.getYIndex() - t1.getYIndex() + 1);
+        int count = prefetcher.getTileCount();
+        assertTrue(count + " / " + boxCount, count > 1 && count < boxCount);
+
+        TMSCachedTileLoader loader = (TMSCachedTileLoader) new CachedTileLoaderFactory(cache, TMSCachedTileLoader.class)
+                .makeTileLoader(null, Collections.<String, String>emptyMap());
+        Tile tile = new Tile(SOURCE, t1.getXIndex(), t1.getYIndex(), 12);
+        assertFalse(loader.isTileCached(tile));
+        for (int x = t1.getXIndex(); x <= t2.getXIndex(); x++) {
+            for (int y = t1.getYIndex(); y <= t2.getYIndex(); y++) {
+                CacheEntryAttributes attributes = new CacheEntryAttributes();
+                attributes.setLastModification(System.currentTimeMillis());
+                cache.put(TMSCachedTileLoaderJob.getCacheKey(SOURCE, x, y, 12), new BufferedImageCacheEntry(new byte[] {1}), attributes);
+            }
+        }
+        assertTrue(loader.isTileCached(tile));
+
+        prefetcher.run(null);
+        assertEquals(count, prefetcher.getCachedCount());
+        assertEquals(0, prefetcher.getDownloadedCount());
+        assertEquals(0, prefetcher.getFailedCount());
+    }
+
+    /**
+     * Checks the area along GPX tracks, also between distant points of a track.
+     */
+    @Test
+    public void testAreaAlongTracks() {
+        List<WayPoint> points = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            points.add(new WayPoint(new LatLon(48.8 + 0.001 * i, 2.25)));
+        }
+        // a long straight part, without points
+        points.add(new WayPoint(new LatLon(48.9, 2.35)));
+        GpxTrack track = new ImmutableGpxTrack(Collections.<Collection<WayPoint>>singleton(points),
+                Collections.<String, Object>emptyMap());
+        // about 100 m around the track
+        Area area = TilePrefetcher.getAreaAlongTracks(Collections.singleton(track), 100);
+        assertTrue(area.contains(2.25, 48.805));
+        assertTrue(area.contains(2.2512, 48.805));
+        assertFalse(area.contains(2.2525, 48.805));
+        // on the straight part, but not next to it
+        assertTrue(area.contains(2.30, 48.855));
+        assertFalse(area.contains(2.30, 48.85));
+    }
+}
@@ -0,0 +1,126 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.data.projection.Projections;
+
+/**
+ * Unit tests for class {@link DataSet}.
+ */
+public class DataSetTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void init() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    /**
+     * Checks that the cached projected coordinates are reprojected when the projection changes.
+     */
+    @Test
+    public void testReprojectEastNorthCache() {
+        Projection old = Main.getProjection();
+        DataSet ds = new DataSet();
+        Node cached = new Node(new LatLon(51.12, 14.15));
+        Node notCached = new Node(new LatLon(51.13, 14.16));
+        ds.addPrimitive(cached);
+        ds.addPrimitive(notCached);
+        cached.getEastNorth();
+        try {
+            Projection utm = Projections.getProjectionByCode("EPSG:32633");
+            Main.setProjection(utm);
+            assertEquals(utm.latlon2eastNorth(cached.getCoor()), cached.getEastNorth());
+            assertEquals(utm.latlon2eastNorth(notCached.getCoor()), notCached.getEastNorth());
+        } finally {
+            Main.setProjection(old);
+        }
+        assertEquals(old.latlon2eastNorth(cached.getCoor()), cached.getEastNorth());
+    }
+
+    /**
+     * Lists the segments whose bounding box intersects the given one, by testing all the segments.
+     */
+    private static List<WaySegment> searchAllWaySegments(DataSet ds, BBox bbox) {
+        List<WaySegment> result = new ArrayList<>();
+        for (Way w : ds.searchWays(bbox)) {
+            for (int i = 0; i < w.getNodesCount() - 1; i++) {
+                BBox b = new BBox(w.getNode(i));
+                b.add(w.getNode(i + 1).getCoor());
+                if (b.intersects(bbox)) {
+                    result.add(new WaySegment(w, i));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void assertSameWaySegments(DataSet ds, Random random) {
+        for (int i = 0; i < 200; i++) {
+            double lat = 49.9 + random.nextDouble() * 0.2;
+            double lon = 9.9 + random.nextDouble() * 0.2;
+            double size = random.nextDouble() * 0.01;
+            BBox bbox = new BBox(lon, lat, lon + size, lat + size);
+            assertEquals(searchAllWaySegments(ds, bbox), ds.searchWaySegments(bbox));
+        }
+    }
+
+    /**
+     * Checks that the segments found through the segment index are the segments near the searched area,
+     * also after changes to the ways and their nodes.
+     */
+    @Test
+    public void testSearchWaySegments() {
+        DataSet ds = new DataSet();
+        Way circle = new Way();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            double angle = 2 * Math.PI * i / 2000;
+            Node n = new Node(new LatLon(50 + 0.05 * Math.sin(angle), 10 + 0.05 * Math.cos(angle)));
+            ds.addPrimitive(n);
+            nodes.add(n);
+        }
+        nodes.add(nodes.get(0));
+        circle.setNodes(nodes);
+        ds.addPrimitive(circle);
+        Way shortWay = new Way();
+        shortWay.setNodes(Arrays.asList(nodes.get(10), nodes.get(1010)));
+        ds.addPrimitive(shortWay);
+
+        Random random = new Random(42);
+        assertSameWaySegments(ds, random);
+        BBox bbox = new BBox(9.9999, 50.0499, 10.0001, 50.0501);
+        assertEquals(Arrays.asList(new WaySegment(circle, 499), new WaySegment(circle, 500)), ds.searchWaySegments(bbox));
+
+        // move a node, far from the searched area
+        nodes.get(500).setCoor(new LatLon(50.5, 10.5));
+        assertSameWaySegments(ds, random);
+        assertEquals(2, ds.searchWaySegments(new BBox(10.49, 50.49, 10.51, 50.51)).size());
+        // change the nodes of the way
+        nodes.remove(1000);
+        circle.setNodes(nodes);
+        assertSameWaySegments(ds, random);
+        ds.removePrimitive(shortWay);
+        assertSameWaySegments(ds, random);
+        // a deleted node is ignored
+        bbox = new BBox(10.0499, 49.9999, 10.0501, 50.0001);
+        assertEquals(Arrays.asList(new WaySegment(circle, 0), new WaySegment(circle, 1998)), ds.searchWaySegments(bbox));
+        nodes.get(0).setDeleted(true);
+        assertTrue(ds.searchWaySegments(bbox).isEmpty());
+    }
+}
@@ -1,6 +1,7 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.data.osm;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -183,6 +184,48 @@ public class FilterTest {
         }
     }
 
+    /**
+     * Checks that only the changed primitives and their relatives are filtered again after a change.
+     * @throws ParseError if a filter cannot be parsed
+     */
+    @Test
+    public void testAffectedPrimitives() throws ParseError {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(new LatLon(0, 0));
+        Node n2 = new Node(new LatLon(0, 1));
+        Node n3 = new Node(new LatLon(0, 2));
+        Way w1 = new Way();
+        Way w2 = new Way();
+        for (OsmPrimitive p : new OsmPrimitive[] {n1, n2, n3, w1, w2}) {
+            ds.addPrimitive(p);
+        }
+        w1.setNodes(Arrays.asList(n1, n2));
+        w2.setNodes(Arrays.asList(n2, n3));
+
+        Filter f1 = new Filter();
+        f1.text = "highway=track";
+        f1.hiding = true;
+        FilterMatcher filterMatcher = new FilterMatcher();
+        filterMatcher.update(Arrays.asList(f1));
+        assertFalse(filterMatcher.isTestingRelatives());
+        FilterWorker.executeFilters(ds.allPrimitives(), filterMatcher);
+        assertFalse(n1.isDisabled());
+
+        w1.put("highway", "track");
+        Collection<OsmPrimitive> affected = FilterWorker.getAffectedPrimitives(Arrays.asList(w1), filterMatcher);
+        assertEquals(new HashSet<>(Arrays.<OsmPrimitive>asList(w1, n1, n2)), affected);
+        assertTrue(FilterWorker.executeFilters(affected, filterMatcher));
+        assertTrue(w1.isDisabledAndHidden());
+        assertTrue(n1.isDisabledAndHidden());
+        // the node is still used by a visible way
+        assertFalse(n2.isDisabled());
+
+        f1.text = "child highway=track";
+        filterMatcher.update(Arrays.asList(f1));
+        assertTrue(filterMatcher.isTestingRelatives());
+        assertEquals(5, FilterWorker.getAffectedPrimitives(Arrays.asList(n1), filterMatcher).size());
+    }
+
     private String filterCode(OsmPrimitive osm) {
         if (!osm.isDisabled())
             return "v";
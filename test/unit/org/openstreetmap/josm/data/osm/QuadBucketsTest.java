@@ -5,6 +5,7 @@ import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -86,4 +87,37 @@ public class QuadBucketsTest {
             removeAllTest(ds);
         }
     }
+
+    private <T extends OsmPrimitive> void checkBulkLoad(Collection<T> primitives) {
+        QuadBuckets<T> incremental = new QuadBuckets<>();
+        for (T p : primitives) {
+            incremental.add(p);
+        }
+        QuadBuckets<T> bulk = new QuadBuckets<>();
+        bulk.addAll(primitives);
+        Assert.assertEquals(primitives.size(), bulk.size());
+        checkIterator(bulk, primitives.size());
+        for (BBox bbox : new BBox[] {
+                new BBox(-180, -90, 180, 90), new BBox(14.15, 51.12, 14.16, 51.13), new BBox(14.155, 51.125, 14.156, 51.126)}) {
+            Assert.assertEquals(new HashSet<>(incremental.search(bbox)), new HashSet<>(bulk.search(bbox)));
+        }
+        for (T p : primitives) {
+            Assert.assertTrue(bulk.contains(p));
+            Assert.assertTrue(bulk.remove(p));
+        }
+        Assert.assertTrue(bulk.isEmpty());
+    }
+
+    /**
+     * Checks that a bulk loaded index gives the same results as an index built by successive insertions.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testBulkLoad() throws Exception {
+        try (InputStream fis = new FileInputStream("data_nodist/restriction.osm")) {
+            DataSet ds = OsmReader.parseDataSet(fis, NullProgressMonitor.INSTANCE);
+            checkBulkLoad(ds.getNodes());
+            checkBulkLoad(ds.getWays());
+        }
+    }
 }
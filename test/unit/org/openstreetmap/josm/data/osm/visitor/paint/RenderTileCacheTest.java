@@ -0,0 +1,109 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+
+/**
+ * Unit tests of {@link RenderTileCache} class.
+ */
+public class RenderTileCacheTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+        // initializes the renderer preference, so that it does not invalidate the cache during the test
+        MapRendererFactory.getInstance();
+    }
+
+    /**
+     * Checks that only the tiles which are not cached or affected by a change are rendered.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testInvalidation() throws Exception {
+        DataSet ds;
+        try (InputStream in = new FileInputStream("data_nodist/restriction.osm")) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+        BufferedImage img = new BufferedImage(1024, 768, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        NavigatableComponent nc = new NavigatableComponent();
+        nc.setBounds(0, 0, 1024, 768);
+        nc.zoomTo(new Bounds(51.12, 14.147, 51.128, 14.162));
+
+        RenderTileCache cache = new RenderTileCache(ds);
+        try {
+            cache.paint(g, nc, false, false);
+            int visible = cache.getRenderedTiles();
+            assertTrue(visible >= 12);
+
+            // nothing changed
+            cache.paint(g, nc, false, false);
+            assertEquals(visible, cache.getRenderedTiles());
+
+            // pan by less than a tile: at most one new row and one new column of tiles
+            EastNorth center = nc.getCenter();
+            nc.zoomTo(new EastNorth(center.east() + 100 * nc.getScale(), center.north() + 100 * nc.getScale()));
+            cache.paint(g, nc, false, false);
+            int panned = cache.getRenderedTiles() - visible;
+            assertTrue(panned > 0 && panned < visible / 2);
+
+            // move a node: only the tiles around the node and its ways are rendered again
+            Node n = ds.getNodes().iterator().next();
+            int before = cache.getRenderedTiles();
+            n.setCoor(new LatLon(n.getCoor().lat() + 0.00001, n.getCoor().lon()));
+            cache.paint(g, nc, false, false);
+            int moved = cache.getRenderedTiles() - before;
+            assertTrue(moved > 0 && moved < visible);
+
+            // select the node
+            before = cache.getRenderedTiles();
+            ds.setSelected(n);
+            cache.paint(g, nc, false, false);
+            int selected = cache.getRenderedTiles() - before;
+            assertTrue(selected > 0 && selected < visible);
+
+            // highlight the node, as when the mouse moves over it
+            before = cache.getRenderedTiles();
+            n.setHighlighted(true);
+            cache.paint(g, nc, false, false);
+            int highlighted = cache.getRenderedTiles() - before;
+            assertTrue(highlighted > 0 && highlighted < visible);
+
+            // preferences which do not affect the rendering do not invalidate tiles
+            before = cache.getRenderedTiles();
+            Main.pref.put("rendertilecachetest.unrelated", Long.toString(System.nanoTime()));
+            cache.paint(g, nc, false, false);
+            assertEquals(before, cache.getRenderedTiles());
+
+            // a change of the rendering settings invalidates all tiles
+            before = cache.getRenderedTiles();
+            cache.paint(g, nc, true, false);
+            assertTrue(cache.getRenderedTiles() - before >= visible);
+        } finally {
+            cache.destroy();
+        }
+    }
+}
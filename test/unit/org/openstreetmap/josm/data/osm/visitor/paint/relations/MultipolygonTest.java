@@ -0,0 +1,139 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint.relations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.data.osm.visitor.paint.relations.Multipolygon.PolyData;
+
+/**
+ * Unit tests of {@link Multipolygon} class.
+ */
+public class MultipolygonTest {
+
+    private DataSet ds;
+    private Node a, b, c, d, e;
+    private Way way1, way2, way3, inner;
+    private Multipolygon multipolygon;
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private Node createNode(double lat, double lon) {
+        Node n = new Node(new LatLon(lat, lon));
+        ds.addPrimitive(n);
+        return n;
+    }
+
+    private Way createWay(Node... nodes) {
+        Way w = new Way();
+        w.setNodes(Arrays.asList(nodes));
+        ds.addPrimitive(w);
+        return w;
+    }
+
+    /**
+     * Creates an outer ring of three ways, the second one in the opposite direction, and a closed inner way.
+     */
+    private void createMultipolygon() {
+        ds = new DataSet();
+        a = createNode(0, 0);
+        b = createNode(0, 1);
+        c = createNode(1, 1);
+        d = createNode(1, 0);
+        way1 = createWay(a, b);
+        way2 = createWay(c, b);
+        way3 = createWay(c, d, a);
+        e = createNode(0.4, 0.4);
+        inner = createWay(e, createNode(0.4, 0.6), createNode(0.6, 0.6), createNode(0.6, 0.4), e);
+        Relation r = new Relation();
+        r.put("type", "multipolygon");
+        r.addMember(new RelationMember("outer", way1));
+        r.addMember(new RelationMember("outer", way2));
+        r.addMember(new RelationMember("outer", way3));
+        r.addMember(new RelationMember("inner", inner));
+        ds.addPrimitive(r);
+        multipolygon = new Multipolygon(r);
+    }
+
+    private static boolean hasVertex(Path2D.Double path, EastNorth en) {
+        double[] coords = new double[6];
+        for (PathIterator it = path.getPathIterator(null); !it.isDone(); it.next()) {
+            int type = it.currentSegment(coords);
+            if ((type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO)
+                    && coords[0] == en.getX() && coords[1] == en.getY()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks that the ring of a moved node is updated, and only when the path is needed.
+     */
+    @Test
+    public void testNodeMoved() {
+        createMultipolygon();
+        assertEquals(1, multipolygon.getCombinedPolygons().size());
+        PolyData pd = multipolygon.getCombinedPolygons().get(0);
+        assertEquals(Arrays.asList(a, b, c, d, a), pd.getNodes());
+        for (Way w : Arrays.asList(way1, way2, way3, inner)) {
+            assertEquals(Arrays.asList(pd), multipolygon.getCombinedPolygons(w.getUniqueId()));
+        }
+        double maxX = pd.getBounds().getMaxX();
+
+        b.setCoor(new LatLon(0, 2));
+        multipolygon.nodeMoved(new NodeMovedEvent(ds, b));
+        assertTrue(pd.getBounds().getMaxX() > maxX);
+        assertTrue(hasVertex(pd.get(), b.getEastNorth()));
+
+        e.setCoor(new LatLon(0.3, 0.3));
+        multipolygon.nodeMoved(new NodeMovedEvent(ds, e));
+        assertTrue(hasVertex(pd.getInners().get(0).get(), e.getEastNorth()));
+        assertTrue(hasVertex(pd.get(), e.getEastNorth()));
+    }
+
+    /**
+     * Checks that a ring is joined again when the nodes of one of its ways change.
+     */
+    @Test
+    public void testWayNodesChanged() {
+        createMultipolygon();
+        PolyData pd = multipolygon.getCombinedPolygons().get(0);
+        Node x = createNode(0.5, 1.5);
+        way2.setNodes(Arrays.asList(c, x, b));
+        multipolygon.wayNodesChanged(new WayNodesChangedEvent(ds, way2));
+        assertEquals(Arrays.asList(a, b, x, c, d, a), pd.getNodes());
+        assertTrue(hasVertex(pd.get(), x.getEastNorth()));
+
+        // the ways are not connected anymore, they are joined from scratch
+        Node y = createNode(0.5, 2);
+        way2.setNodes(Arrays.asList(c, y));
+        multipolygon.wayNodesChanged(new WayNodesChangedEvent(ds, way2));
+        assertFalse(pd.getNodes().isEmpty());
+        assertSame(pd, multipolygon.getCombinedPolygons(way2.getUniqueId()).get(0));
+    }
+}
@@ -0,0 +1,95 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.projection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+
+/**
+ * Unit tests of the batch conversions of {@link AbstractProjection} and {@link Projections#project(Projection, double[], int)}.
+ */
+public class ProjectionBatchTest {
+
+    private static final String[] CODES = {
+        "EPSG:4326", // WGS 84
+        "EPSG:3857", // Mercator
+        "EPSG:32633", // UTM 33N
+        "EPSG:27561", // Lambert Nord France, NTV2 grid
+        "EPSG:31466", // Gauss-Krüger Zone 2, BETA2007 grid
+        "EPSG:21781", // Swiss grid
+    };
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static double[] randomPoints(Projection p, int count) {
+        Random rand = new Random(42);
+        Bounds b = p.getWorldBoundsLatLon();
+        double[] coords = new double[2 * count];
+        for (int i = 0; i < count; i++) {
+            coords[2 * i] = b.getMinLat() + rand.nextDouble() * (b.getMaxLat() - b.getMinLat());
+            coords[2 * i + 1] = b.getMinLon() + rand.nextDouble() * (b.getMaxLon() - b.getMinLon());
+        }
+        return coords;
+    }
+
+    /**
+     * Checks that the batch conversions give the same results as the conversions of single points.
+     */
+    @Test
+    public void testBatchEqualsSingle() {
+        for (String code : CODES) {
+            AbstractProjection p = (AbstractProjection) Projections.getProjectionByCode(code);
+            double[] coords = randomPoints(p, 1000);
+            double[] latlon = coords.clone();
+            coords[10] = Double.NaN;
+            p.latlon2eastNorth(coords, 0, 1000);
+            assertTrue(code, Double.isNaN(coords[10]));
+            for (int i = 0; i < 1000; i++) {
+                if (i != 5) {
+                    EastNorth en = p.latlon2eastNorth(new LatLon(latlon[2 * i], latlon[2 * i + 1]));
+                    assertEquals(code, en.east(), coords[2 * i], 0);
+                    assertEquals(code, en.north(), coords[2 * i + 1], 0);
+                }
+            }
+            double[] eastNorth = coords.clone();
+            p.eastNorth2latlon(coords, 0, 1000);
+            for (int i = 0; i < 1000; i++) {
+                if (i != 5) {
+                    LatLon ll = p.eastNorth2latlon(new EastNorth(eastNorth[2 * i], eastNorth[2 * i + 1]));
+                    assertEquals(code, ll.lat(), coords[2 * i], 0);
+                    assertEquals(code, ll.lon(), coords[2 * i + 1], 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that the points of a large array are all projected, whatever the number of threads.
+     */
+    @Test
+    public void testProjectLargeArray() {
+        AbstractProjection p = (AbstractProjection) Projections.getProjectionByCode("EPSG:32633");
+        int count = 50000;
+        double[] coords = randomPoints(p, count);
+        double[] expected = coords.clone();
+        p.latlon2eastNorth(expected, 0, count);
+        Projections.project(p, coords, count);
+        for (int i = 0; i < 2 * count; i++) {
+            assertEquals(expected[i], coords[i], 0);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.projection.datum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Test;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Unit tests of {@link NTV2GridShiftFile} class.
+ */
+public class NTV2GridShiftFileTest {
+
+    private static NTV2GridShiftFile loadInMemory(String path, boolean loadAccuracy) throws IOException {
+        NTV2GridShiftFile file = new NTV2GridShiftFile();
+        try (InputStream in = new FileInputStream(path)) {
+            file.loadGridShiftFile(in, loadAccuracy);
+        }
+        return file;
+    }
+
+    private static NTV2GridShiftFile loadMapped(String path, boolean loadAccuracy) throws IOException {
+        NTV2GridShiftFile file = new NTV2GridShiftFile();
+        file.loadGridShiftFile(new File(path), loadAccuracy);
+        return file;
+    }
+
+    private static void testSameShifts(String path, boolean loadAccuracy) throws IOException {
+        NTV2GridShiftFile inMemory = loadInMemory(path, loadAccuracy);
+        NTV2GridShiftFile mapped = loadMapped(path, loadAccuracy);
+        assertEquals(inMemory.toString(), mapped.toString());
+        assertEquals(inMemory.getFromEllipsoid(), mapped.getFromEllipsoid());
+
+        NTV2SubGrid[] subGrids = inMemory.getSubGridTree();
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE, minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (NTV2SubGrid sub : subGrids) {
+            minLat = Math.min(minLat, sub.getMinLat());
+            maxLat = Math.max(maxLat, sub.getMaxLat());
+            minLon = Math.min(minLon, sub.getMinLon());
+            maxLon = Math.max(maxLon, sub.getMaxLon());
+        }
+        Random rand = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            // the points are a bit outside the grid, and close to each other to use the cached cells
+            double lat = minLat - 60 + rand.nextDouble() * (maxLat - minLat + 120);
+            double lon = minLon - 60 + rand.nextDouble() * (maxLon - minLon + 120);
+            for (int j = 0; j < 3; j++) {
+                NTV2GridShift expected = new NTV2GridShift();
+                expected.setLatSeconds(lat + j);
+                expected.setLonPositiveWestSeconds(lon + j);
+                NTV2GridShift actual = new NTV2GridShift();
+                actual.setLatSeconds(lat + j);
+                actual.setLonPositiveWestSeconds(lon + j);
+                assertEquals(inMemory.gridShiftForward(expected), mapped.gridShiftForward(actual));
+                assertEquals(expected.getLatShiftSeconds(), actual.getLatShiftSeconds(), 0);
+                assertEquals(expected.getLonShiftPositiveWestSeconds(), actual.getLonShiftPositiveWestSeconds(), 0);
+                assertEquals(expected.isLatAccuracyAvailable(), actual.isLatAccuracyAvailable());
+                if (loadAccuracy && expected.isLatAccuracyAvailable()) {
+                    assertEquals(expected.getLatAccuracySeconds(), actual.getLatAccuracySeconds(), 0);
+                    assertEquals(expected.getLonAccuracySeconds(), actual.getLonAccuracySeconds(), 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that a memory-mapped grid file shifts coordinates exactly like a grid file loaded in memory.
+     * @throws IOException if the grid files cannot be read
+     */
+    @Test
+    public void testMappedEqualsInMemory() throws IOException {
+        testSameShifts("data/projection/ntf_r93_b.gsb", false);
+        testSameShifts("data/projection/ntf_r93_b.gsb", true);
+        testSameShifts("data/projection/BETA2007.gsb", false);
+    }
+
+    /**
+     * Checks that a grid file packed in a jar, like the grid files of JOSM, is copied to the cache directory
+     * to be memory-mapped, and that the copy is used again.
+     * @throws IOException if the grid files cannot be read
+     */
+    @Test
+    public void testMappedFromJar() throws IOException {
+        File dir = Files.createTempDirectory("josm-ntv2").toFile();
+        try {
+            File jar = new File(dir, "josm.jar");
+            try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+                JarEntry entry = new JarEntry("data/projection/ntf_r93_b.gsb");
+                entry.setTime(1420070400000L);
+                out.putNextEntry(entry);
+                Files.copy(Paths.get("data/projection/ntf_r93_b.gsb"), out);
+            }
+            URL url = new URL("jar:" + jar.toURI().toURL() + "!/data/projection/ntf_r93_b.gsb");
+            File cacheDir = new File(dir, "cache");
+            File local = NTV2GridShiftFileWrapper.getLocalFile(url, cacheDir);
+            assertNotNull(local);
+            assertEquals(new File(cacheDir, "ntf_r93_b.gsb"), local);
+            testSameShifts(local.getPath(), true);
+
+            long lastModified = local.lastModified();
+            assertEquals(local, NTV2GridShiftFileWrapper.getLocalFile(url, cacheDir));
+            assertEquals(lastModified, local.lastModified());
+            assertEquals(1, cacheDir.list().length);
+        } finally {
+            Utils.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * Checks that an invalid file is rejected.
+     * @throws IOException if the file cannot be read
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotAGridFile() throws IOException {
+        loadMapped("data/projection/epsg", false);
+    }
+}
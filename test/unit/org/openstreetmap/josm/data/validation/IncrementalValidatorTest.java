@@ -0,0 +1,134 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.data.validation.tests.CrossingWays;
+import org.openstreetmap.josm.data.validation.tests.DuplicateNode;
+import org.openstreetmap.josm.data.validation.tests.NameMismatch;
+import org.openstreetmap.josm.data.validation.tests.UnconnectedWays;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.tools.Pair;
+
+/**
+ * Unit tests of {@link IncrementalValidator} class.
+ */
+public class IncrementalValidatorTest {
+
+    private static List<org.openstreetmap.josm.data.validation.Test> tests;
+
+    /**
+     * Setup test.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+        tests = Arrays.asList(new CrossingWays.Ways(), new UnconnectedWays.UnconnectedHighways(), new DuplicateNode(),
+                new NameMismatch());
+        for (org.openstreetmap.josm.data.validation.Test test : tests) {
+            test.initialize();
+        }
+    }
+
+    private static List<String> toStrings(List<TestError> errors) {
+        List<String> result = new ArrayList<>(errors.size());
+        for (TestError e : errors) {
+            // the order of the primitives of an error depends on the order in which they are visited
+            List<String> primitives = new ArrayList<>();
+            for (OsmPrimitive p : e.getPrimitives()) {
+                primitives.add(p.toString());
+            }
+            Collections.sort(primitives);
+            result.add(e.getTester().getName() + ' ' + e.getCode() + ' ' + e.getMessage() + ' ' + primitives);
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static void update(IncrementalValidator validator, List<TestError> errors) {
+        Pair<List<TestError>, List<TestError>> result = validator.validate(tests, errors);
+        errors.removeAll(result.a);
+        errors.addAll(result.b);
+    }
+
+    /**
+     * Checks that the errors updated after each change are the same as the errors of a full validation.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testSameErrorsAsFullValidation() throws Exception {
+        DataSet ds;
+        try (InputStream in = new FileInputStream("data_nodist/restriction.osm")) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+        final IncrementalValidator validator = new IncrementalValidator(ds);
+        ds.addDataSetListener(new DataSetListenerAdapter(new DataSetListenerAdapter.Listener() {
+            @Override
+            public void processDatasetEvent(AbstractDatasetChangedEvent event) {
+                validator.addEvent(event);
+            }
+        }));
+        List<TestError> errors = ValidationRunner.run(tests, ds.allNonDeletedPrimitives(), null);
+        int initialErrors = errors.size();
+
+        // a new highway across the data
+        BBox bbox = new BBox(ds.getNodes().iterator().next());
+        for (Node n : ds.getNodes()) {
+            bbox.add(n.getCoor());
+        }
+        Node n1 = new Node(new LatLon(bbox.getTopLeftLat(), bbox.getTopLeftLon()));
+        Node n2 = new Node(new LatLon(bbox.getBottomRightLat(), bbox.getBottomRightLon()));
+        Way w = new Way();
+        w.setNodes(Arrays.asList(n1, n2));
+        w.put("highway", "residential");
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(w);
+        assertFalse(validator.isEmpty());
+        update(validator, errors);
+        assertTrue(validator.isEmpty());
+        assertTrue(errors.size() > initialErrors);
+        assertEquals(toStrings(ValidationRunner.run(tests, ds.allNonDeletedPrimitives(), null)), toStrings(errors));
+
+        // a name mismatch
+        w.put("name:en", "Foo");
+        update(validator, errors);
+        assertEquals(toStrings(ValidationRunner.run(tests, ds.allNonDeletedPrimitives(), null)), toStrings(errors));
+
+        // move the new way away
+        n1.setCoor(new LatLon(bbox.getTopLeftLat() + 1, bbox.getTopLeftLon()));
+        n2.setCoor(new LatLon(bbox.getTopLeftLat() + 1, bbox.getBottomRightLon()));
+        update(validator, errors);
+        assertEquals(toStrings(ValidationRunner.run(tests, ds.allNonDeletedPrimitives(), null)), toStrings(errors));
+
+        // delete it
+        w.setDeleted(true);
+        n1.setDeleted(true);
+        n2.setDeleted(true);
+        update(validator, errors);
+        assertEquals(initialErrors, errors.size());
+        assertEquals(toStrings(ValidationRunner.run(tests, ds.allNonDeletedPrimitives(), null)), toStrings(errors));
+    }
+}
@@ -0,0 +1,91 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.validation.tests.ConditionalKeys;
+import org.openstreetmap.josm.data.validation.tests.CrossingWays;
+import org.openstreetmap.josm.data.validation.tests.DuplicateNode;
+import org.openstreetmap.josm.data.validation.tests.Lanes;
+import org.openstreetmap.josm.data.validation.tests.MapCSSTagChecker;
+import org.openstreetmap.josm.data.validation.tests.NameMismatch;
+import org.openstreetmap.josm.data.validation.tests.TagChecker;
+import org.openstreetmap.josm.data.validation.tests.UnconnectedWays;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+
+/**
+ * Unit tests of {@link ValidationRunner} class.
+ */
+public class ValidationRunnerTest {
+
+    private static List<org.openstreetmap.josm.data.validation.Test> tests;
+    private static Collection<OsmPrimitive> primitives;
+
+    /**
+     * Setup test.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // the main application is needed by the MapCSS inDownloadedArea pseudo class
+        JOSMFixture.createUnitTestFixture().init(true);
+        // must be set before the thread pool of the runner is created
+        Main.pref.putInteger("validator.numberOfThreads", 4);
+        tests = Arrays.asList(new TagChecker(), new MapCSSTagChecker(), new CrossingWays.Ways(), new NameMismatch(),
+                new DuplicateNode(), new Lanes(), new UnconnectedWays.UnconnectedHighways(), new ConditionalKeys());
+        for (org.openstreetmap.josm.data.validation.Test test : tests) {
+            test.initialize();
+        }
+        try (InputStream in = new FileInputStream("data_nodist/multipolygon.osm")) {
+            primitives = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE).allPrimitives();
+        }
+    }
+
+    private static List<String> toStrings(List<TestError> errors) {
+        List<String> result = new ArrayList<>(errors.size());
+        for (TestError e : errors) {
+            result.add(e.getTester().getName() + ' ' + e.getCode() + ' ' + e.getMessage() + ' ' + e.getDescription()
+                    + ' ' + e.getPrimitives());
+        }
+        return result;
+    }
+
+    /**
+     * Checks that running the tests concurrently finds the same errors, in the same order, as running them one
+     * after the other.
+     */
+    @Test
+    public void testSameErrorsAsSequential() {
+        List<TestError> sequential = new ArrayList<>();
+        for (org.openstreetmap.josm.data.validation.Test test : tests) {
+            test.startTest(null);
+            test.visit(primitives);
+            test.endTest();
+            sequential.addAll(test.getErrors());
+        }
+        assertFalse(sequential.isEmpty());
+        assertTrue(primitives.size() > 1000);
+
+        DataSet ds = new DataSet();
+        assertEquals(0, ValidationRunner.run(tests, ds.allPrimitives(), null).size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(toStrings(sequential), toStrings(ValidationRunner.run(tests, primitives, null)));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Line2D;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link SegmentIndex} class.
+ */
+public class SegmentIndexTest {
+
+    private static Set<Integer> search(SegmentIndex index, double[] q, double margin) {
+        final Set<Integer> found = new HashSet<>();
+        index.search(q[0], q[1], q[2], q[3], margin, new SegmentIndex.Visitor() {
+            @Override
+            public void visit(int segment) {
+                assertTrue(found.add(segment));
+            }
+        });
+        return found;
+    }
+
+    private static double[] randomSegment(Random random, double maxLength) {
+        double x = random.nextDouble() * 1000;
+        double y = random.nextDouble() * 1000;
+        return new double[] {x, y, x + (random.nextDouble() - 0.5) * maxLength, y + (random.nextDouble() - 0.5) * maxLength};
+    }
+
+    /**
+     * Checks that a search finds all the intersecting segments, and only segments whose enlarged bounding box
+     * overlaps the one of the searched segment.
+     */
+    @Test
+    public void testSearch() {
+        Random random = new Random(42);
+        int count = 5000;
+        double[] coords = new double[4 * count];
+        for (int i = 0; i < count; i++) {
+            // mostly short segments, and a few long ones
+            System.arraycopy(randomSegment(random, i % 100 == 0 ? 2000 : 20), 0, coords, 4 * i, 4);
+        }
+        SegmentIndex index = new SegmentIndex(coords, count);
+        assertEquals(count, index.size());
+        for (int n = 0; n < 200; n++) {
+            double[] q = randomSegment(random, n % 10 == 0 ? 2000 : 20);
+            double margin = n % 2 == 0 ? 0 : 5;
+            Set<Integer> found = search(index, q, margin);
+            for (int i = 0; i < count; i++) {
+                double x1 = coords[4 * i];
+                double y1 = coords[4 * i + 1];
+                double x2 = coords[4 * i + 2];
+                double y2 = coords[4 * i + 3];
+                if (Line2D.linesIntersect(x1, y1, x2, y2, q[0], q[1], q[2], q[3])) {
+                    assertTrue(found.contains(i));
+                }
+                if (margin > 0 && Line2D.ptSegDist(q[0], q[1], q[2], q[3], x1, y1) < margin) {
+                    assertTrue(found.contains(i));
+                }
+                if (found.contains(i)) {
+                    assertTrue(Math.max(x1, x2) + margin >= Math.min(q[0], q[2])
+                            && Math.min(x1, x2) - margin <= Math.max(q[0], q[2])
+                            && Math.max(y1, y2) + margin >= Math.min(q[1], q[3])
+                            && Math.min(y1, y2) - margin <= Math.max(q[1], q[3]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the search of an empty index.
+     */
+    @Test
+    public void testEmpty() {
+        SegmentIndex index = new SegmentIndex(new double[0], 0);
+        assertEquals(0, index.size());
+        assertTrue(search(index, new double[] {0, 0, 1, 1}, 1).isEmpty());
+    }
+}
@@ -0,0 +1,139 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.gpx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.gpx.GpxConstants;
+import org.openstreetmap.josm.data.gpx.GpxData;
+import org.openstreetmap.josm.data.gpx.GpxTrack;
+import org.openstreetmap.josm.data.gpx.GpxTrackSegment;
+import org.openstreetmap.josm.data.gpx.ImmutableGpxTrack;
+import org.openstreetmap.josm.data.gpx.PackedGpxTrackSegment;
+import org.openstreetmap.josm.data.gpx.WayPoint;
+
+/**
+ * Unit tests of {@link GpxLodPyramid} class.
+ */
+public class GpxLodPyramidTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static List<WayPoint> createWayPoints(int count) {
+        List<WayPoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // about 0.5 m between the points, along a zigzag
+            WayPoint wp = new WayPoint(new LatLon(45 + i * 4e-6, 5 + (i % 2000 < 1000 ? i % 1000 : 1000 - i % 1000) * 4e-6));
+            wp.time = 1433152800 + i;
+            points.add(wp);
+        }
+        return points;
+    }
+
+    private static GpxData createData(List<WayPoint> points) {
+        GpxData data = new GpxData();
+        data.tracks.add(new ImmutableGpxTrack(Collections.<Collection<WayPoint>>singleton(points),
+                Collections.<String, Object>emptyMap()));
+        PackedGpxTrackSegment.Builder builder = new PackedGpxTrackSegment.Builder();
+        for (WayPoint wp : points) {
+            builder.add(wp);
+        }
+        data.tracks.add(new ImmutableGpxTrack(Collections.<GpxTrackSegment>singletonList(builder.build()),
+                Collections.<String, Object>emptyMap()));
+        return data;
+    }
+
+    /**
+     * Checks the level used for a given pixel size.
+     */
+    @Test
+    public void testGetLevel() {
+        assertEquals(-1, GpxLodPyramid.getLevel(GpxLodPyramid.FINEST_TOLERANCE / 2));
+        assertEquals(0, GpxLodPyramid.getLevel(GpxLodPyramid.FINEST_TOLERANCE));
+        assertEquals(0, GpxLodPyramid.getLevel(GpxLodPyramid.FINEST_TOLERANCE * 1.5));
+        assertEquals(3, GpxLodPyramid.getLevel(GpxLodPyramid.FINEST_TOLERANCE * 8));
+        assertEquals(GpxLodPyramid.LEVELS - 1, GpxLodPyramid.getLevel(360));
+    }
+
+    /**
+     * Checks that the levels keep fewer points as they get coarser, and at least the ends of the segments.
+     */
+    @Test
+    public void testLevels() {
+        List<WayPoint> points = createWayPoints(20000);
+        GpxData data = createData(points);
+        List<GpxTrack> tracks = new ArrayList<>(data.tracks);
+        GpxLodPyramid lod = new GpxLodPyramid(tracks, 0);
+        assertTrue(lod.isValid(data.tracks, 0));
+        assertFalse(lod.isValid(data.tracks, 1));
+        assertFalse(lod.isValid(tracks.subList(0, 1), 0));
+
+        // the points are 25 times closer than the finest tolerance
+        assertTrue(lod.getPointCount(0) < 2 * points.size() / 20);
+        assertTrue(lod.getPointCount(0) > 2 * points.size() / 40);
+        int previous = lod.getPointCount(0);
+        for (int k = 1; k < GpxLodPyramid.LEVELS; k++) {
+            int count = lod.getPointCount(k);
+            assertTrue(count <= previous);
+            assertTrue(count >= 4);
+            previous = count;
+        }
+        // 0.08 degrees long, with a tolerance of about 0.025 degrees
+        assertTrue(lod.getPointCount(8) < 20);
+    }
+
+    /**
+     * Checks the visible points of a level.
+     */
+    @Test
+    public void testAddVisiblePoints() {
+        List<WayPoint> points = createWayPoints(20000);
+        GpxData data = createData(points);
+        GpxLodPyramid lod = new GpxLodPyramid(new ArrayList<>(data.tracks), 0);
+        GpxDrawHelper drawHelper = new GpxDrawHelper(data);
+        drawHelper.readPreferences("test");
+        Bounds box = new Bounds(45.01, 5.001, 45.02, 5.002);
+        for (GpxTrack track : data.tracks) {
+            GpxTrackSegment segment = track.getSegments().iterator().next();
+            for (int level : new int[] {2, 5}) {
+                List<WayPoint> visible = new ArrayList<>();
+                assertTrue(lod.addVisiblePoints(segment, level, box, drawHelper, visible));
+                assertFalse(visible.isEmpty());
+                assertTrue(visible.size() < 2500 >> level);
+                assertFalse(visible.get(0).drawLine);
+                for (WayPoint wp : visible) {
+                    assertNotNull(wp.customColoring);
+                }
+            }
+            List<WayPoint> visible = new ArrayList<>();
+            lod.addVisiblePoints(segment, 0, new Bounds(10, 10, 11, 11), drawHelper, visible);
+            assertTrue(visible.isEmpty());
+        }
+        // the simplified points are copies, the colors of the points are not changed
+        for (WayPoint wp : points) {
+            assertNull(wp.customColoring);
+        }
+        GpxTrackSegment other = new ImmutableGpxTrack(Collections.<Collection<WayPoint>>singleton(points),
+                Collections.<String, Object>singletonMap(GpxConstants.GPX_NAME, "other")).getSegments().iterator().next();
+        assertFalse(lod.addVisiblePoints(other, 0, box, drawHelper, new ArrayList<WayPoint>()));
+    }
+}
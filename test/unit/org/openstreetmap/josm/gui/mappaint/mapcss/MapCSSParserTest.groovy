@@ -377,4 +377,43 @@ class MapCSSParserTest {
         assert mc.getCascade(Environment.DEFAULT_LAYER).get("max_value", -777f, Float.class) == 6
         assert mc.getCascade(Environment.DEFAULT_LAYER).get("max_split", -777f, Float.class) == 56
     }
+
+    @Test
+    public void testSettingConditions() throws Exception {
+        def sheet = new MapCSSStyleSource("setting::on { type: boolean; label: \"on\"; default: true; } " +
+                "setting::off { type: boolean; label: \"off\"; default: false; } " +
+                "way[highway][setting(\"on\")] { a: 1; } " +
+                "way[highway][!setting(\"off\")] { b: 2; } " +
+                "way[highway][setting(\"off\")] { c: 3; } " +
+                "node[setting(\"on\")] < way[highway] { d: 4; }")
+        sheet.loadStyleSource()
+        assert sheet.getErrors().isEmpty()
+        // the conditions on the settings have been evaluated when the style was loaded
+        assert sheet.wayRules.rules.size() == 3
+        def s = (Selector.OptimizedGeneralSelector) sheet.wayRules.rules.get(0).selector
+        assert s.getConditions().size() == 1
+        assert s.getConditions().get(0) instanceof Condition.KeyCondition
+
+        def mc = new MultiCascade()
+        sheet.apply(mc, OsmUtils.createPrimitive("way highway=primary"), 20, false)
+        def c = mc.getCascade(Environment.DEFAULT_LAYER)
+        assert c.get("a", -1f, Float.class) == 1
+        assert c.get("b", -1f, Float.class) == 2
+        assert c.get("c", -1f, Float.class) == -1
+    }
+
+    @Test
+    public void testConstantFunctions() throws Exception {
+        def concat = ExpressionFactory.createFunctionExpression("concat", [new LiteralExpression("a"), new LiteralExpression("b")])
+        assert concat instanceof ExpressionFactory.ConstantExpression
+        def pref = ExpressionFactory.createFunctionExpression("JOSM_pref", [new LiteralExpression("a"), new LiteralExpression("b")])
+        assert !(pref instanceof ExpressionFactory.ConstantExpression)
+        def sheet = new MapCSSStyleSource("way { text: eval(concat(\"na\", \"me\")); width: eval(2 * 3); }")
+        sheet.loadStyleSource()
+        def mc = new MultiCascade()
+        sheet.apply(mc, OsmUtils.createPrimitive("way name=X"), 20, false)
+        // a constant expression is not a tag key reference
+        assert mc.getCascade(Environment.DEFAULT_LAYER).get("text", null, String.class) == "name"
+        assert mc.getCascade(Environment.DEFAULT_LAYER).get("width", null, Float.class) == 6
+    }
 }
@@ -0,0 +1,42 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link OsmReader} class.
+ */
+public class OsmReaderTest {
+
+    private static void assertParsed(String s) {
+        assertEquals(s, Double.doubleToLongBits(Double.parseDouble(s)), Double.doubleToLongBits(OsmReader.parseCoordinate(s)));
+    }
+
+    /**
+     * Checks that coordinates are parsed exactly like {@link Double#parseDouble}.
+     */
+    @Test
+    public void testParseCoordinate() {
+        for (String s : new String[] {"0", "-0", "0.0", "-0.0", "1.", ".5", "-.5", "+1.5", "180", "-179.9999999",
+                "53.5553145", "1e-7", "1.2E3", "0.1234567890123456789", "12345678901234567890", "-90.0000000"}) {
+            assertParsed(s);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            assertParsed(String.format("%.7f", (random.nextDouble() - 0.5) * 360).replace(',', '.'));
+            assertParsed(Double.toString((random.nextDouble() - 0.5) * 180));
+        }
+    }
+
+    /**
+     * Checks that an invalid coordinate is rejected like {@link Double#parseDouble}.
+     */
+    @Test(expected = NumberFormatException.class)
+    public void testParseInvalidCoordinate() {
+        OsmReader.parseCoordinate("1.2.3");
+    }
+}
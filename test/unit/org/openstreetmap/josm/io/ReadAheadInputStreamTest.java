@@ -0,0 +1,57 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link ReadAheadInputStream} class.
+ */
+public class ReadAheadInputStreamTest {
+
+    /**
+     * Checks that the stream returns the bytes of its source.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testRead() throws IOException {
+        byte[] data = new byte[5 * ReadAheadInputStream.CHUNK_SIZE + 123];
+        new Random(42).nextBytes(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data))) {
+            assertEquals(data[0] & 0xff, in.read());
+            out.write(data[0]);
+            byte[] buffer = new byte[1000];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+            assertEquals(-1, in.read());
+        }
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    /**
+     * Checks that an error of the source is reported to the reader.
+     * @throws IOException if an error occurs
+     */
+    @Test(expected = IOException.class)
+    public void testError() throws IOException {
+        try (InputStream in = new ReadAheadInputStream(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("test");
+            }
+        })) {
+            in.read();
+        }
+    }
+}